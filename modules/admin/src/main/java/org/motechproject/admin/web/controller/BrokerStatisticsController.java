@@ -5,12 +5,17 @@ import org.motechproject.admin.domain.TopicMBean;
 import org.motechproject.commons.api.Tenant;
 import org.motechproject.admin.domain.QueueMBean;
 import org.motechproject.admin.jmx.MBeanService;
+import org.motechproject.event.metrics.EventListenerMetrics;
+import org.motechproject.event.metrics.EventMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 import java.util.Collections;
 import java.util.List;
@@ -25,6 +30,9 @@ public class BrokerStatisticsController {
     @Autowired
     private MBeanService mBeanService;
 
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
     @Autowired
     @Qualifier("currentTenant")
     private Tenant tenant;
@@ -62,4 +70,23 @@ public class BrokerStatisticsController {
         }
         return Collections.emptyList();
     }
+
+    /**
+     * Returns the handling statistics of event listeners.
+     * @return a list of {@link org.motechproject.event.metrics.EventListenerMetrics}, one for each subject and listener
+     */
+    @RequestMapping(value = "/listeners")
+    @ResponseBody
+    public List<EventListenerMetrics> listeners() {
+        return eventMetricsService.getListenerMetrics();
+    }
+
+    /**
+     * Clears the handling statistics of event listeners.
+     */
+    @RequestMapping(value = "/listeners/reset", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetListeners() {
+        eventMetricsService.reset();
+    }
 }
@@ -15,6 +15,7 @@
               when('/admin/bundleSettings/:bundleId', {templateUrl: '../admin/partials/bundleSettings.html', controller: 'AdminBundleSettingsCtrl'}).
               when('/admin/log', {templateUrl: '../admin/partials/log.html', controller: 'AdminServerLogCtrl'}).
               when('/admin/topics', {templateUrl: '../admin/partials/topic_stats.html', controller: 'AdminTopicStatsCtrl'}).
+              when('/admin/listeners', {templateUrl: '../admin/partials/listener_stats.html', controller: 'AdminListenerStatsCtrl'}).
               when('/admin/queues', {templateUrl: '../admin/partials/queue_stats.html', controller: 'AdminQueueStatsCtrl'}).
               when('/admin/queues/browse', {templateUrl: '../admin/partials/queue_message_stats.html', controller: 'AdminQueueMessageStatsCtrl'}).
               when('/admin/logOptions', {templateUrl: '../admin/partials/logOptions.html', controller: 'AdminServerLogOptionsCtrl'}).
@@ -890,6 +890,30 @@
 
         });
 
+    controllers.controller('AdminListenerStatsCtrl', function($scope, $http) {
+
+        $scope.dataAvailable = true;
+
+        $scope.refresh = function () {
+            $http.get('../admin/api/listeners/').success(function (data) {
+                $scope.listeners = data;
+            }).error(function () {
+                $scope.dataAvailable = false;
+            });
+        };
+
+        $scope.reset = function () {
+            $http.post('../admin/api/listeners/reset').success(function () {
+                $scope.refresh();
+            }).error(function () {
+                $scope.dataAvailable = false;
+            });
+        };
+
+        $scope.refresh();
+
+    });
+
     controllers.controller('AdminQueueStatsCtrl', function($scope, $http) {
 
         $scope.dataAvailable = true;
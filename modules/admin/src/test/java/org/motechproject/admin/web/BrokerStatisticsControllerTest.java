@@ -13,6 +13,8 @@ import org.motechproject.admin.domain.TopicMBean;
 import org.motechproject.admin.jmx.MBeanService;
 import org.motechproject.admin.web.controller.BrokerStatisticsController;
 import org.motechproject.commons.api.Tenant;
+import org.motechproject.event.metrics.EventListenerMetrics;
+import org.motechproject.event.metrics.EventMetricsService;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.request.MockMvcRequestBuilders;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
@@ -21,6 +23,7 @@ import java.util.Arrays;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.springframework.test.web.server.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.server.result.MockMvcResultMatchers.status;
@@ -35,6 +38,9 @@ public class BrokerStatisticsControllerTest {
     @Mock
     MBeanService mBeanService;
 
+    @Mock
+    EventMetricsService eventMetricsService;
+
     @Mock
     Tenant tenant;
 
@@ -91,4 +97,28 @@ public class BrokerStatisticsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("[]"));
     }
+
+    @Test
+    public void shouldReturnListenerMetrics() throws Exception {
+        EventListenerMetrics metrics = new EventListenerMetrics();
+        metrics.setSubject("subject-1");
+        metrics.setListenerIdentifier("listener-1");
+        metrics.setHandledCount(5);
+        given(eventMetricsService.getListenerMetrics()).willReturn(Arrays.asList(metrics));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/listeners"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new StringContains("\"listenerIdentifier\":\"listener-1\"")))
+                .andExpect(content().string(new StringContains("\"handledCount\":5")));
+    }
+
+    @Test
+    public void shouldResetListenerMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/listeners/reset"))
+                .andExpect(status().isOk());
+
+        verify(eventMetricsService).reset();
+    }
 }
@@ -0,0 +1,86 @@
+package org.motechproject.scheduler.contract;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of the lag between the time at which scheduled jobs should have fired and the time at which their
+ * events were published. Lags are given in milliseconds, percentiles are approximations with the precision of
+ * a power of two.
+ */
+public class FireLagMetrics implements Serializable {
+
+    private static final long serialVersionUID = 4273011622908176525L;
+
+    private long publishedCount;
+    private long failedCount;
+    private int queuedCount;
+    private double averageLag;
+    private double maxLag;
+    private double lag95th;
+    private double lag99th;
+
+    /**
+     * @return the number of events of fired jobs that were published
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public void setPublishedCount(long publishedCount) {
+        this.publishedCount = publishedCount;
+    }
+
+    /**
+     * @return the number of events of fired jobs that could not be published
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * @return the number of events of fired jobs waiting for a dispatch thread
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    public void setQueuedCount(int queuedCount) {
+        this.queuedCount = queuedCount;
+    }
+
+    public double getAverageLag() {
+        return averageLag;
+    }
+
+    public void setAverageLag(double averageLag) {
+        this.averageLag = averageLag;
+    }
+
+    public double getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(double maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public double getLag95th() {
+        return lag95th;
+    }
+
+    public void setLag95th(double lag95th) {
+        this.lag95th = lag95th;
+    }
+
+    public double getLag99th() {
+        return lag99th;
+    }
+
+    public void setLag99th(double lag99th) {
+        this.lag99th = lag99th;
+    }
+}
@@ -0,0 +1,43 @@
+package org.motechproject.scheduler.contract;
+
+/**
+ * JobFailure describes a job, which could not be processed by a bulk operation of the scheduler, together with
+ * the reason of the failure.
+ *
+ * @param <T> the type of the jobs
+ */
+public class JobFailure<T> {
+
+    private final T job;
+    private final String message;
+    private final Throwable cause;
+
+    /**
+     * Constructor.
+     *
+     * @param job  the job which could not be processed, can be null if null was passed in place of the job
+     * @param cause  the cause of the failure, not null
+     */
+    public JobFailure(T job, Throwable cause) {
+        this.job = job;
+        this.message = cause.getMessage();
+        this.cause = cause;
+    }
+
+    public T getJob() {
+        return job;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobFailure{job=%s, message='%s'}", job, message);
+    }
+}
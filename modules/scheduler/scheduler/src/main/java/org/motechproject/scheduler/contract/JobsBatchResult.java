@@ -0,0 +1,59 @@
+package org.motechproject.scheduler.contract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JobsBatchResult is the result of a bulk operation of the scheduler. It lists the jobs which were processed
+ * successfully and the ones which failed, with the reasons of their failures. A failure of one job does not stop
+ * the processing of the others.
+ *
+ * @param <T> the type of the jobs
+ */
+public class JobsBatchResult<T> {
+
+    private final List<T> succeeded = new ArrayList<>();
+    private final List<JobFailure<T>> failures = new ArrayList<>();
+
+    /**
+     * Marks the given job as processed successfully.
+     *
+     * @param job  the job
+     */
+    public void addSucceeded(T job) {
+        succeeded.add(job);
+    }
+
+    /**
+     * Marks the given job as failed.
+     *
+     * @param job  the job
+     * @param cause  the cause of the failure, not null
+     */
+    public void addFailure(T job, Throwable cause) {
+        failures.add(new JobFailure<>(job, cause));
+    }
+
+    public List<T> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    public List<JobFailure<T>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Checks whether processing of any of the jobs failed.
+     *
+     * @return true if at least one job failed, false otherwise
+     */
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobsBatchResult{succeeded=%d, failures=%s}", succeeded.size(), failures);
+    }
+}
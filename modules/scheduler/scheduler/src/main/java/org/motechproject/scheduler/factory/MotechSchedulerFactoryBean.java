@@ -2,6 +2,7 @@ package org.motechproject.scheduler.factory;
 
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
+import org.motechproject.scheduler.service.impl.ScheduledJobDispatcher;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Collections;
 import java.util.Properties;
 
 import static java.lang.Boolean.getBoolean;
@@ -28,6 +30,8 @@ public class MotechSchedulerFactoryBean {
 
     private Properties schedulerProperties;
 
+    private ScheduledJobDispatcher scheduledJobDispatcher;
+
     /**
      * Constructor.
      *
@@ -50,6 +54,10 @@ public class MotechSchedulerFactoryBean {
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
         schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
         schedulerFactoryBean.setApplicationContext(applicationContext);
+        if (scheduledJobDispatcher != null) {
+            schedulerFactoryBean.setSchedulerContextAsMap(Collections.singletonMap(
+                    ScheduledJobDispatcher.SCHEDULER_CONTEXT_KEY, scheduledJobDispatcher));
+        }
         try {
             schedulerFactoryBean.afterPropertiesSet();
             schedulerFactoryBean.getScheduler().start();
@@ -70,6 +78,17 @@ public class MotechSchedulerFactoryBean {
         }
     }
 
+    /**
+     * Sets the dispatcher publishing the events of fired jobs. Without it, every job looks up the event relay
+     * and publishes its event by itself.
+     *
+     * @param scheduledJobDispatcher the dispatcher of fired jobs
+     */
+    @Autowired(required = false)
+    public void setScheduledJobDispatcher(ScheduledJobDispatcher scheduledJobDispatcher) {
+        this.scheduledJobDispatcher = scheduledJobDispatcher;
+    }
+
     public SchedulerFactoryBean getQuartzSchedulerFactoryBean() {
         return schedulerFactoryBean;
     }
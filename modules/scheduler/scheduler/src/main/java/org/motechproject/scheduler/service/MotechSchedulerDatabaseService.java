@@ -40,7 +40,8 @@ public interface MotechSchedulerDatabaseService {
     JobDetailedInfo getScheduledJobDetailedInfo(JobBasicInfo jobBasicInfo) throws MotechSchedulerJobRetrievalException;
 
     /**
-     * Counts all triggers in TRIGGER table which matches the filters built from grid settings.
+     * Counts all triggers in TRIGGER table which matches the filters built from grid settings. Counts are cached
+     * until the scheduled jobs change, or for a short time at most.
      *
      * @param jobsSearchSettings contains filter jobs information.
      *
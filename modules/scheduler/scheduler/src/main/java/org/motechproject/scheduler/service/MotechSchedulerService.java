@@ -5,10 +5,13 @@ import org.motechproject.event.MotechEvent;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -163,19 +166,42 @@ public interface MotechSchedulerService {
     void safeUnscheduleJob(String subject, String externalId);
 
     /**
-     * Unschedules all jobs with given prefix.
+     * Unschedules all jobs whose IDs start with given prefix. The jobs are unscheduled in batches.
      *
      * @param jobIdPrefix the jobs prefix
      */
     void unscheduleAllJobs(String jobIdPrefix);
 
     /**
-     * Unschedules all jobs with given prefix. Logs all exceptions instead of throwing them.
+     * Unschedules all jobs whose IDs start with given prefix. Logs all exceptions instead of throwing them.
      *
      * @param jobIdPrefix the jobs prefix
      */
     void safeUnscheduleAllJobs(String jobIdPrefix);
 
+    /**
+     * Schedules the given jobs in bulk. Supported are {@code CronSchedulableJob}, {@code RepeatingSchedulableJob},
+     * {@code RepeatingPeriodSchedulableJob}, {@code RunOnceSchedulableJob} and {@code DayOfWeekSchedulableJob}.
+     * All jobs are validated before anything is scheduled, then the valid ones are written to the job store in
+     * batches, each batch in a single transaction. Existing jobs with the same IDs are replaced. If several of the
+     * given jobs have the same ID, only the last of them is scheduled. Failures of single jobs are reported in the
+     * result instead of being thrown.
+     *
+     * @param schedulableJobs  the jobs to schedule, not null
+     * @return the result listing the scheduled jobs and the ones which failed
+     */
+    JobsBatchResult<SchedulableJob> scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs);
+
+    /**
+     * Unschedules the jobs with the given IDs in bulk. The jobs are removed from the job store in batches, each
+     * batch in a single transaction. IDs of jobs which are not scheduled are ignored. Failures of single jobs are
+     * reported in the result instead of being thrown.
+     *
+     * @param jobIds  the IDs of the jobs to unschedule, not null
+     * @return the result listing the unscheduled jobs and the ones which failed
+     */
+    JobsBatchResult<JobId> unscheduleJobs(Collection<JobId> jobIds);
+
     /**
      * Unschedules {@code RepeatingSchedulableJob} with given subject and external ID.
      *
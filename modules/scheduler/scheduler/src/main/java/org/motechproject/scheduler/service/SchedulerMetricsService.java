@@ -0,0 +1,27 @@
+package org.motechproject.scheduler.service;
+
+import org.motechproject.scheduler.contract.FireLagMetrics;
+
+/**
+ * Gives access to the statistics of firing the scheduled jobs in this MOTECH instance. The statistics are also
+ * exposed through JMX, under the {@link #OBJECT_NAME} name.
+ */
+public interface SchedulerMetricsService {
+
+    /**
+     * The JMX object name of the scheduler metrics.
+     */
+    String OBJECT_NAME = "org.motechproject.scheduler:type=SchedulerMetrics";
+
+    /**
+     * Returns the statistics of the lag between the scheduled and the actual fire times of the jobs.
+     *
+     * @return the fire lag statistics
+     */
+    FireLagMetrics getFireLagMetrics();
+
+    /**
+     * Clears all statistics gathered so far.
+     */
+    void reset();
+}
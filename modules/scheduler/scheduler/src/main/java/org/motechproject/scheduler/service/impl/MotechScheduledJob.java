@@ -17,9 +17,10 @@ import java.util.Map;
 /**
  * Represents a MOTECH job scheduled with quartz. This class implements the {@code org.quartz.Job} interface -
  * its execute method will be called when a MOTECH job in quartz triggers. Since jobs in MOTECH are basically {@link org.motechproject.event.MotechEvent}s
- * getting published on a quartz schedule, upon execution this class retrieves the {@link org.motechproject.event.listener.EventRelay}
- * from the application context and uses it to immediately publish the event scheduled with this job. For every execution
- * a new copy of the event is constructed.
+ * getting published on a quartz schedule, upon execution this class hands the event scheduled with this job to the
+ * {@link ScheduledJobDispatcher} kept in the scheduler context. If there is no dispatcher, it retrieves the
+ * {@link org.motechproject.event.listener.EventRelay} from the application context and uses it to immediately publish
+ * the event. For every execution a new copy of the event is constructed.
  */
 public class MotechScheduledJob implements Job {
 
@@ -34,7 +35,7 @@ public class MotechScheduledJob implements Job {
     @SuppressWarnings("unchecked")
     public void execute(JobExecutionContext jobExecutionContext) {
 
-        LOGGER.info("executing...");
+        LOGGER.debug("executing...");
 
         try {
             JobDetail jobDetail = jobExecutionContext.getJobDetail();
@@ -48,7 +49,7 @@ public class MotechScheduledJob implements Job {
 
             MotechEvent motechEvent = new MotechEvent(eventType, params);
 
-            LOGGER.info("Sending Motech Event Message: " + motechEvent);
+            LOGGER.debug("Sending Motech Event Message: {}", motechEvent);
 
             SchedulerContext schedulerContext;
             try {
@@ -58,9 +59,14 @@ public class MotechScheduledJob implements Job {
                 return;
             }
 
-            ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
-            EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
+            ScheduledJobDispatcher dispatcher = (ScheduledJobDispatcher) schedulerContext.get(ScheduledJobDispatcher.SCHEDULER_CONTEXT_KEY);
+            if (dispatcher != null) {
+                dispatcher.dispatch(motechEvent, jobExecutionContext.getScheduledFireTime());
+            } else {
+                ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
+                EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
+                eventRelay.sendEventMessage(motechEvent);
+            }
         } catch (RuntimeException e) {
             LOGGER.error("Job execution failed.", e);
         }
@@ -2,6 +2,13 @@ package org.motechproject.scheduler.service.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.Hours;
+import org.joda.time.Minutes;
+import org.joda.time.Months;
+import org.joda.time.Seconds;
+import org.joda.time.Weeks;
+import org.joda.time.Years;
 import org.joda.time.format.DateTimeFormat;
 import org.motechproject.commons.sql.util.Drivers;
 import org.motechproject.event.MotechEvent;
@@ -9,23 +16,21 @@ import org.motechproject.scheduler.contract.EventInfo;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
 import org.motechproject.scheduler.contract.RepeatingJobId;
+import org.motechproject.scheduler.contract.RepeatingPeriodJobId;
 import org.motechproject.scheduler.contract.RunOnceJobId;
 import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
-import org.quartz.CalendarIntervalTrigger;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
+import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
-import org.quartz.SimpleTrigger;
+import org.quartz.SchedulerListener;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
-import org.quartz.TriggerUtils;
-import org.quartz.impl.matchers.GroupMatcher;
-import org.quartz.spi.OperableTrigger;
+import org.quartz.listeners.SchedulerListenerSupport;
 import org.quartz.utils.DBConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,19 +38,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 /**
- * Motech Scheduler Database Service implementation
+ * Motech Scheduler Database Service implementation. Jobs are listed by a single query which reads only the columns
+ * needed for the {@link JobBasicInfo}s from the triggers tables, so no jobs are loaded through the Quartz scheduler.
+ * When the next page of the same search is requested, it is read by a keyset query starting after the last row of
+ * the previous page instead of skipping all the rows of the previous pages. Job counts are cached for a short time,
+ * and both the counts and the page positions are discarded whenever jobs are scheduled, unscheduled, paused or
+ * resumed on this node.
  *
  * @see MotechSchedulerDatabaseService
  */
@@ -55,17 +70,41 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerDatabaseServiceImpl.class);
     private static final String DATE_FORMAT_PATTERN = "Y-MM-dd HH:mm:ss";
     private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String SCHED_NAME = "SCHED_NAME";
     private static final String START_TIME = "START_TIME";
     private static final String END_TIME = "END_TIME";
+    private static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
     private static final String TRIGGER_NAME = "TRIGGER_NAME";
     private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
     private static final String TRIGGER_STATE = "TRIGGER_STATE";
     private static final String TRIGGER_TYPE = "TRIGGER_TYPE";
+    private static final String CRON_EXPRESSION = "CRON_EXPRESSION";
+    private static final String REPEAT_COUNT = "REPEAT_COUNT";
+    private static final String REPEAT_INTERVAL = "REPEAT_INTERVAL";
+    private static final String TIMES_TRIGGERED = "TIMES_TRIGGERED";
+    private static final String STR_PROP_1 = "STR_PROP_1";
+    private static final String INT_PROP_1 = "INT_PROP_1";
+    private static final String INT_PROP_2 = "INT_PROP_2";
     private static final String WAITING = "WAITING";
-    private static final String JOB_NAME = "JOB_NAME";
+    private static final String PAUSED_BLOCKED = "PAUSED_BLOCKED";
     private static final String TRIGGERS = "TRIGGERS";
+    private static final String CRON_TRIGGERS = "CRON_TRIGGERS";
+    private static final String SIMPLE_TRIGGERS = "SIMPLE_TRIGGERS";
+    private static final String SIMPROP_TRIGGERS = "SIMPROP_TRIGGERS";
+    private static final String TRIGGERS_ALIAS = "t";
+    private static final String CRON_ALIAS = "c";
+    private static final String SIMPLE_ALIAS = "s";
+    private static final String SIMPROP_ALIAS = "p";
     private static final String OR = " OR ";
     private static final String AND = " AND ";
+    private static final String ASC = "ASC";
+    private static final String DESC = "DESC";
+    private static final char LIKE_ESCAPE = '!';
+
+    private static final long COUNT_CACHE_TTL_MILLIS = 60000;
+    private static final int MAX_CACHED_ENTRIES = 1000;
 
     @Autowired
     private Properties sqlProperties;
@@ -75,18 +114,45 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     @Autowired
     private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
 
+    private final AtomicLong jobsVersion = new AtomicLong();
+    private final Map<String, CachedCount> cachedCounts = boundedMap();
+    private final Map<String, Object[]> pageCursors = boundedMap();
+    private final SchedulerListener jobsChangeListener = new JobsChangeListener();
+
     @PostConstruct
     public void init() {
         scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+
+        try {
+            scheduler.getListenerManager().addSchedulerListener(jobsChangeListener);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to listen for changes of the scheduled jobs, job counts will only expire", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        try {
+            scheduler.getListenerManager().removeSchedulerListener(jobsChangeListener);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to remove the listener for changes of the scheduled jobs", e);
+        }
     }
 
     @Override
     public int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
-        String query = buildJobsCountSqlQuery(jobsSearchSettings);
-        int rowCount;
+        String cacheKey = jobsVersion.get() + "|" + buildFilterSignature(jobsSearchSettings);
+        CachedCount cachedCount = cachedCounts.get(cacheKey);
+        if (cachedCount != null && !cachedCount.isExpired()) {
+            return cachedCount.count;
+        }
+
+        List<Object> params = new ArrayList<>();
+        String query = buildJobsCountSqlQuery(jobsSearchSettings, params);
         try {
-            rowCount = executeCountQuery(query);
-            LOGGER.debug("Executing {}", query);
+            LOGGER.debug("Executing {} with {}", query, params);
+            int rowCount = executeCountQuery(query, params);
+            cachedCounts.put(cacheKey, new CachedCount(rowCount));
             return rowCount;
         } catch (SQLException e) {
             throw new MotechSchedulerJobRetrievalException("Jobs counting failed.", e);
@@ -100,46 +166,34 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         if (!isNotBlank(jobsSearchSettings.getActivity()) || !isNotBlank(jobsSearchSettings.getStatus())) {
             return jobBasicInfos;
         }
-        String query = buildJobsBasicInfoSqlQuery(jobsSearchSettings);
-        LOGGER.debug("Executing {}", query);
 
-        List<String> columnNames = new LinkedList<>();
-        columnNames.add(TRIGGER_NAME);
-        columnNames.add(TRIGGER_GROUP);
-        List<List<Object>> objects;
+        String sortColumn = getSortColumn(jobsSearchSettings.getSortColumn());
+        String sortDirection = getSortDirection(jobsSearchSettings.getSortDirection());
+        Integer rows = jobsSearchSettings.getRows();
+        Integer page = jobsSearchSettings.getPage();
+        boolean paged = rows != null && page != null;
+
+        String searchKey = jobsVersion.get() + "|" + buildFilterSignature(jobsSearchSettings) + "|" + sortColumn + "|"
+                + sortDirection + "|" + rows;
+        Object[] previousPageCursor = paged && page > 1 ? pageCursors.get(searchKey + "|" + (page - 1)) : null;
+
+        List<Object> params = new ArrayList<>();
+        String query = buildJobsBasicInfoSqlQuery(jobsSearchSettings, sortColumn, sortDirection, previousPageCursor, params);
+        LOGGER.debug("Executing {} with {}", query, params);
 
         try {
-            objects = executeQuery(query, columnNames);
-
-            for (List<Object> row : objects) {
-                JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
-                }
-                String endDate = getEndDate(trigger, jobType);
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info
-                ));
+            List<TriggerRow> triggerRows = executeQuery(query, params);
+
+            for (TriggerRow row : triggerRows) {
+                jobBasicInfos.add(toJobBasicInfo(row));
+            }
+
+            if (paged && !triggerRows.isEmpty()) {
+                pageCursors.put(searchKey + "|" + page, triggerRows.get(triggerRows.size() - 1).getSortKey(sortColumn));
             }
 
             return jobBasicInfos;
-        } catch (SQLException | SchedulerException e) {
+        } catch (SQLException e) {
             throw new MotechSchedulerJobRetrievalException("Retrieval of scheduled jobs failed.", e);
         }
     }
@@ -151,25 +205,24 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
         try {
             for (String groupName : scheduler.getJobGroupNames()) {
-                for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
-                    if (jobKey.getName().equals(jobBasicInfo.getName())) {
-                        EventInfo eventInfo = new EventInfo();
-                        String subject;
-
-                        eventInfo.setParameters(
-                           scheduler.getJobDetail(jobKey).getJobDataMap().getWrappedMap()
-                        );
-
-                        if (eventInfo.getParameters().containsKey(MotechEvent.EVENT_TYPE_KEY_NAME)) {
-                            subject = eventInfo.getParameters().get(MotechEvent.EVENT_TYPE_KEY_NAME).toString();
-                            eventInfo.getParameters().remove(MotechEvent.EVENT_TYPE_KEY_NAME);
-                        } else {
-                            subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
-                        }
-
-                        eventInfo.setSubject(subject);
-                        eventInfos.add(eventInfo);
+                JobKey jobKey = new JobKey(jobBasicInfo.getName(), groupName);
+                JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+
+                if (jobDetail != null) {
+                    EventInfo eventInfo = new EventInfo();
+                    String subject;
+
+                    eventInfo.setParameters(jobDetail.getJobDataMap().getWrappedMap());
+
+                    if (eventInfo.getParameters().containsKey(MotechEvent.EVENT_TYPE_KEY_NAME)) {
+                        subject = eventInfo.getParameters().get(MotechEvent.EVENT_TYPE_KEY_NAME).toString();
+                        eventInfo.getParameters().remove(MotechEvent.EVENT_TYPE_KEY_NAME);
+                    } else {
+                        subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
                     }
+
+                    eventInfo.setSubject(subject);
+                    eventInfos.add(eventInfo);
                 }
             }
 
@@ -180,35 +233,34 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
-        List<List<Object>> rows = new LinkedList<>();
+    private List<TriggerRow> executeQuery(String query, List<Object> params) throws SQLException {
+        List<TriggerRow> rows = new ArrayList<>();
 
         try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
-
+                PreparedStatement stmt = prepareStatement(conn, query, params);
+                ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                List<Object> row = new LinkedList<>();
-                if (columns != null) {
-                    for (String name : columns) {
-                        row.add(rs.getObject(name));
-                    }
-                }
-                rows.add(row);
+                rows.add(new TriggerRow(rs));
             }
         }
         return rows;
     }
 
-    private int executeCountQuery(String query) throws SQLException {
-        int rowConut = 0;
+    private int executeCountQuery(String query, List<Object> params) throws SQLException {
         try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
+                PreparedStatement stmt = prepareStatement(conn, query, params);
+                ResultSet rs = stmt.executeQuery()) {
             rs.next();
-            rowConut = rs.getInt(1);
+            return rs.getInt(1);
+        }
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, String query, List<Object> params) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(query);
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
         }
-        return rowConut;
+        return stmt;
     }
 
     private void checkAndAddElement(StringBuilder sb, String element, boolean condition) {
@@ -217,7 +269,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private String buildDateRangeFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildDateRangeFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder dateRangeSb = new StringBuilder();
         boolean addAnd = false;
         DateTime dateFrom;
@@ -225,7 +277,8 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         if (StringUtils.isNotBlank(jobsSearchSettings.getTimeFrom())) {
             dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeFrom());
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" >= ").append(dateFrom.getMillis());
+            dateRangeSb.append(column(START_TIME)).append(" >= ?");
+            params.add(dateFrom.getMillis());
             addAnd = true;
         }
 
@@ -233,27 +286,32 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeTo());
             checkAndAddElement(dateRangeSb, AND, addAnd);
-            dateRangeSb.append(getCorrectNameRepresentation(END_TIME)).append(" <= ").append(dateTo.getMillis());
+            dateRangeSb.append(column(END_TIME)).append(" <= ?");
+            params.add(dateTo.getMillis());
         }
         return dateRangeSb.toString();
     }
 
-    private String buildActivityFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildActivityFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder activitySb = new StringBuilder();
         String[] activityElements = jobsSearchSettings.getActivity().split(",");
         boolean addOr = false;
+        long now = DateTime.now().getMillis();
         if (activityElements.length < 3) {
             for(String element : activityElements) {
                 checkAndAddElement(activitySb, OR, addOr);
                 if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(START_TIME)).append(" > ").append(DateTime.now().getMillis());
+                    activitySb.append(column(START_TIME)).append(" > ?");
+                    params.add(now);
                 } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" < ").append(DateTime.now().getMillis());
+                    activitySb.append(column(END_TIME)).append(" < ?");
+                    params.add(now);
                 } else {
-                    activitySb.append(" (").append(getCorrectNameRepresentation(START_TIME)).append(" <= ").append(DateTime.now().getMillis());
+                    activitySb.append(" (").append(column(START_TIME)).append(" <= ?");
                     checkAndAddElement(activitySb, AND, true);
-                    activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" >= ").append(DateTime.now().getMillis())
-                            .append(")");
+                    activitySb.append(column(END_TIME)).append(" >= ?").append(")");
+                    params.add(now);
+                    params.add(now);
                 }
                 addOr = true;
             }
@@ -261,25 +319,26 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return activitySb.toString();
     }
 
-    private String buildStatusFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildStatusFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder statusSb = new StringBuilder();
         String[] statusElements = jobsSearchSettings.getStatus().split(",");
-        boolean addOr = false; if (statusElements.length < 4) {
+        boolean addOr = false;
+        if (statusElements.length < 4) {
             for(String element : statusElements) {
                 checkAndAddElement(statusSb, OR, addOr);
-                statusSb.append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
+                statusSb.append(column(TRIGGER_STATE)).append(" = ?");
                 if (Trigger.TriggerState.ERROR.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.ERROR.toString()).append("\'");
+                    params.add(Trigger.TriggerState.ERROR.toString());
                 } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.BLOCKED.toString()).append("\'");
+                    params.add(Trigger.TriggerState.BLOCKED.toString());
                 } else if (Trigger.TriggerState.PAUSED.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.PAUSED.toString()).append("\'");
+                    params.add(Trigger.TriggerState.PAUSED.toString());
                 } else {
-                    statusSb.append("\'").append(Trigger.TriggerState.NORMAL.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
-                    statusSb.append("\'").append(Trigger.TriggerState.COMPLETE.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
-                    statusSb.append("\'").append(WAITING).append("\'");
+                    params.add(Trigger.TriggerState.NORMAL.toString());
+                    statusSb.append(OR).append(column(TRIGGER_STATE)).append(" = ?");
+                    params.add(Trigger.TriggerState.COMPLETE.toString());
+                    statusSb.append(OR).append(column(TRIGGER_STATE)).append(" = ?");
+                    params.add(WAITING);
                 }
                 addOr = true;
             }
@@ -287,37 +346,91 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return statusSb.toString();
     }
 
-    private List<String> buildFilters(JobsSearchSettings jobsSearchSettings) {
+    private String buildNameFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
+        if (!isNotBlank(jobsSearchSettings.getName())) {
+            return "";
+        }
+        params.add("%" + escapeLikePattern(jobsSearchSettings.getName()) + "%");
+        return column(TRIGGER_NAME) + " LIKE ? ESCAPE '" + LIKE_ESCAPE + "'";
+    }
+
+    private String buildKeysetFilter(String sortColumn, String sortDirection, Object[] cursor, List<Object> params) {
+        List<String> keyColumns = getSortKeyColumns(sortColumn);
+        String comparison = DESC.equals(sortDirection) ? " < ?" : " > ?";
+
+        // (k1 > ?) OR (k1 = ? AND ((k2 > ?) OR (k2 = ? AND ...)))
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            String keyColumn = column(keyColumns.get(i));
+            if (i == keyColumns.size() - 1) {
+                sb.append(keyColumn).append(comparison);
+                params.add(cursor[i]);
+            } else {
+                sb.append("(").append(keyColumn).append(comparison).append(OR).append(keyColumn).append(" = ?").append(AND)
+                        .append("(");
+                params.add(cursor[i]);
+                params.add(cursor[i]);
+            }
+        }
+        for (int i = 0; i < keyColumns.size() - 1; i++) {
+            sb.append("))");
+        }
+        return sb.toString();
+    }
+
+    private List<String> buildFilters(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         List<String> filters = new ArrayList<>();
-        String dateRangeFilter = buildDateRangeFilter(jobsSearchSettings);
+        filters.add(column(SCHED_NAME) + " = ?");
+        params.add(getSchedulerName());
+
+        String dateRangeFilter = buildDateRangeFilter(jobsSearchSettings, params);
         if (isNotBlank(dateRangeFilter)) {
             filters.add(dateRangeFilter);
         }
-        String activityFilter = buildActivityFilter(jobsSearchSettings);
-        if (isNotBlank(activityFilter)) {
-            filters.add(activityFilter);
+        if (isNotBlank(jobsSearchSettings.getActivity())) {
+            String activityFilter = buildActivityFilter(jobsSearchSettings, params);
+            if (isNotBlank(activityFilter)) {
+                filters.add(activityFilter);
+            }
         }
-        String statusFilter = buildStatusFilter(jobsSearchSettings);
-        if (isNotBlank(statusFilter)) {
-            filters.add(statusFilter);
+        if (isNotBlank(jobsSearchSettings.getStatus())) {
+            String statusFilter = buildStatusFilter(jobsSearchSettings, params);
+            if (isNotBlank(statusFilter)) {
+                filters.add(statusFilter);
+            }
         }
-        StringBuilder nameSb = new StringBuilder();
-        if (isNotBlank(jobsSearchSettings.getName())) {
-            nameSb.append(getCorrectNameRepresentation(JOB_NAME)).append(" LIKE ").append("\'%").append(jobsSearchSettings.getName())
-                    .append("%\'");
-            filters.add(nameSb.toString());
+        String nameFilter = buildNameFilter(jobsSearchSettings, params);
+        if (isNotBlank(nameFilter)) {
+            filters.add(nameFilter);
         }
 
         return filters;
     }
 
+    private String buildFilterSignature(JobsSearchSettings jobsSearchSettings) {
+        return StringUtils.join(new Object[] {
+                jobsSearchSettings.getName(), jobsSearchSettings.getActivity(), jobsSearchSettings.getStatus(),
+                jobsSearchSettings.getTimeFrom(), jobsSearchSettings.getTimeTo()
+        }, '|');
+    }
+
     private String getCorrectNameRepresentation(String name) {
-        return sqlProperties.get("org.quartz.dataSource.motechDS.driver").equals(Drivers.MYSQL_DRIVER) ? name : "\"" + name.toLowerCase() + "\"";
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
     }
 
-    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings) {
-        List<String> filters = buildFilters(jobsSearchSettings);
+    private String column(String name) {
+        return column(TRIGGERS_ALIAS, name);
+    }
+
+    private String column(String alias, String name) {
+        return alias + "." + getCorrectNameRepresentation(name);
+    }
 
+    private String table(String name, String alias) {
+        return getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX) + name) + " " + alias;
+    }
+
+    private String buildWhereCondition(List<String> filters) {
         StringBuilder sb = new StringBuilder();
         boolean addAnd = false;
         if (filters.size() > 0) {
@@ -333,137 +446,416 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sb.toString();
     }
 
-    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder sb = new StringBuilder("SELECT * FROM ");
-        sb = sb.append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS));
-        sb = sb.append(buildWhereCondition(jobsSearchSettings));
-        if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
-            sb = sb.append(" ORDER BY ").append(getCorrectNameRepresentation(getSortColumn(jobsSearchSettings.getSortColumn())))
-                    .append(" ").append(jobsSearchSettings.getSortDirection().toUpperCase());
+    private String buildJoin(String name, String alias) {
+        StringBuilder sb = new StringBuilder(" LEFT JOIN ").append(table(name, alias)).append(" ON ");
+        sb.append(column(alias, SCHED_NAME)).append(" = ").append(column(SCHED_NAME));
+        sb.append(AND).append(column(alias, TRIGGER_NAME)).append(" = ").append(column(TRIGGER_NAME));
+        sb.append(AND).append(column(alias, TRIGGER_GROUP)).append(" = ").append(column(TRIGGER_GROUP));
+        return sb.toString();
+    }
+
+    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings, String sortColumn, String sortDirection,
+                                              Object[] previousPageCursor, List<Object> params) {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        sb.append(StringUtils.join(new String[] {
+                column(TRIGGER_NAME), column(TRIGGER_GROUP), column(TRIGGER_STATE), column(TRIGGER_TYPE),
+                column(START_TIME), column(END_TIME), column(NEXT_FIRE_TIME), column(CRON_ALIAS, CRON_EXPRESSION),
+                column(SIMPLE_ALIAS, REPEAT_COUNT), column(SIMPLE_ALIAS, REPEAT_INTERVAL),
+                column(SIMPLE_ALIAS, TIMES_TRIGGERED), column(SIMPROP_ALIAS, STR_PROP_1),
+                column(SIMPROP_ALIAS, INT_PROP_1), column(SIMPROP_ALIAS, INT_PROP_2)
+        }, ", "));
+        sb.append(" FROM ").append(table(TRIGGERS, TRIGGERS_ALIAS));
+        sb.append(buildJoin(CRON_TRIGGERS, CRON_ALIAS));
+        sb.append(buildJoin(SIMPLE_TRIGGERS, SIMPLE_ALIAS));
+        sb.append(buildJoin(SIMPROP_TRIGGERS, SIMPROP_ALIAS));
+
+        List<String> filters = buildFilters(jobsSearchSettings, params);
+        if (previousPageCursor != null) {
+            filters.add(buildKeysetFilter(sortColumn, sortDirection, previousPageCursor, params));
+        }
+        sb.append(buildWhereCondition(filters));
+
+        List<String> orderBy = new ArrayList<>();
+        for (String keyColumn : getSortKeyColumns(sortColumn)) {
+            orderBy.add(column(keyColumn) + " " + sortDirection);
         }
+        sb.append(" ORDER BY ").append(StringUtils.join(orderBy, ", "));
+
         if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
-            int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
-            sb = sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(offset);
+            sb.append(" LIMIT ?");
+            params.add(jobsSearchSettings.getRows());
+            if (previousPageCursor == null) {
+                int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
+                sb.append(" OFFSET ?");
+                params.add(offset);
+            }
         }
 
         return sb.toString();
     }
 
-    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) {
+    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ");
-        sb = sb.append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS));
-        sb = sb.append(buildWhereCondition(jobsSearchSettings));
+        sb.append(table(TRIGGERS, TRIGGERS_ALIAS));
+        sb.append(buildWhereCondition(buildFilters(jobsSearchSettings, params)));
         return sb.toString();
     }
 
     private String getSortColumn(String column) {
         String sortColumn;
 
-        if (column.equalsIgnoreCase("startDate")) {
+        if ("startDate".equalsIgnoreCase(column)) {
             sortColumn = START_TIME;
-        } else if (column.equalsIgnoreCase("endDate")) {
+        } else if ("endDate".equalsIgnoreCase(column)) {
             sortColumn = END_TIME;
-        } else if (column.equalsIgnoreCase("status")) {
+        } else if ("status".equalsIgnoreCase(column)) {
             sortColumn = TRIGGER_STATE;
-        } else if (column.equalsIgnoreCase("jobType")) {
+        } else if ("jobType".equalsIgnoreCase(column)) {
             sortColumn = TRIGGER_TYPE;
         } else {
-            sortColumn = JOB_NAME;
+            sortColumn = TRIGGER_NAME;
         }
 
         return sortColumn;
     }
 
-    private String getJobInfo(Trigger trigger, String jobType) throws SchedulerException {
-        if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
-            Integer timesTriggered = 0;
-            String repeatMaxCount = "-";
+    private String getSortDirection(String direction) {
+        return DESC.equalsIgnoreCase(StringUtils.trim(direction)) ? DESC : ASC;
+    }
 
-            if (trigger instanceof CalendarIntervalTrigger) {
-                CalendarIntervalTrigger calendarIntervalTrigger = (CalendarIntervalTrigger) trigger;
+    private List<String> getSortKeyColumns(String sortColumn) {
+        List<String> keyColumns = new ArrayList<>();
+        if (!TRIGGER_NAME.equals(sortColumn)) {
+            keyColumns.add(sortColumn);
+        }
+        keyColumns.add(TRIGGER_NAME);
+        keyColumns.add(TRIGGER_GROUP);
+        return keyColumns;
+    }
 
-                timesTriggered = calendarIntervalTrigger.getTimesTriggered();
-            } else if (trigger instanceof SimpleTrigger) {
-                SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
 
-                timesTriggered = simpleTrigger.getTimesTriggered();
+        for (char c : value.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                sb.append(LIKE_ESCAPE);
             }
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private String getSchedulerName() throws MotechSchedulerJobRetrievalException {
+        try {
+            return scheduler.getSchedulerName();
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerJobRetrievalException("Unable to read the name of the scheduler.", e);
+        }
+    }
 
-            if (trigger.getEndTime() != null) {
-                repeatMaxCount = Integer.toString(TriggerUtils.computeFireTimesBetween(
-                        (OperableTrigger) trigger, null, trigger.getStartTime(), trigger.getEndTime()
-                ).size() + timesTriggered);
+    private JobBasicInfo toJobBasicInfo(TriggerRow row) {
+        String jobType = getJobType(row.name);
+        String startDate = formatDate(row.startTime);
+        String nextFireDate = row.nextFireTime == null ? "" : formatDate(row.nextFireTime);
+
+        return new JobBasicInfo(
+                getJobActivity(row),
+                getJobStatus(row.state),
+                row.name,
+                startDate,
+                nextFireDate,
+                getEndDate(row, jobType, startDate),
+                jobType,
+                getJobInfo(row, jobType)
+        );
+    }
+
+    private String getJobInfo(TriggerRow row, String jobType) {
+        if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING) || jobType.equals(JobBasicInfo.JOBTYPE_PERIOD)) {
+            long timesTriggered = row.getTimesTriggered();
+            String repeatMaxCount = "-";
+
+            if (row.endTime != null) {
+                repeatMaxCount = Long.toString(countRemainingFireTimes(row) + timesTriggered);
             }
 
             return String.format("%d/%s", timesTriggered, repeatMaxCount);
         } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
-            CronScheduleBuilder cronScheduleBuilder = (CronScheduleBuilder) trigger.getScheduleBuilder();
-
-            CronTrigger cronTrigger = (CronTrigger) cronScheduleBuilder.build();
-
-            return cronTrigger.getCronExpression();
+            return row.cronExpression;
         } else {
             return "-";
         }
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
-        if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
+    private long countRemainingFireTimes(TriggerRow row) {
+        if (row.nextFireTime == null || row.nextFireTime > row.endTime) {
+            return 0;
+        }
+
+        if (row.repeatInterval != null) {
+            long remaining = row.repeatInterval > 0 ? (row.endTime - row.nextFireTime) / row.repeatInterval + 1 : 1;
+            if (row.repeatCount != null && row.repeatCount >= 0) {
+                remaining = Math.min(remaining, Math.max(0, row.repeatCount + 1 - row.getTimesTriggered()));
+            }
+            return remaining;
+        } else if (row.intervalUnit != null && row.interval != null && row.interval > 0) {
+            return countIntervalUnits(row.intervalUnit, row.nextFireTime, row.endTime) / row.interval + 1;
+        }
+
+        return 1;
+    }
+
+    private long countIntervalUnits(String intervalUnit, long from, long to) {
+        DateTime start = new DateTime(from);
+        DateTime end = new DateTime(to);
+
+        switch (DateBuilder.IntervalUnit.valueOf(intervalUnit)) {
+            case SECOND:
+                return Seconds.secondsBetween(start, end).getSeconds();
+            case MINUTE:
+                return Minutes.minutesBetween(start, end).getMinutes();
+            case HOUR:
+                return Hours.hoursBetween(start, end).getHours();
+            case DAY:
+                return Days.daysBetween(start, end).getDays();
+            case WEEK:
+                return Weeks.weeksBetween(start, end).getWeeks();
+            case MONTH:
+                return Months.monthsBetween(start, end).getMonths();
+            case YEAR:
+                return Years.yearsBetween(start, end).getYears();
+            default:
+                return to - from;
+        }
+    }
+
+    private String getJobType(String jobName) {
+        if (jobName.endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
-        } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
+        } else if (jobName.endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
             return JobBasicInfo.JOBTYPE_REPEATING;
-        } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
+        } else if (jobName.endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
             return JobBasicInfo.JOBTYPE_PERIOD;
         } else {
             return JobBasicInfo.JOBTYPE_CRON;
         }
     }
 
-    private String getStartDate(Trigger trigger) throws SchedulerException {
-        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getStartTime().getTime());
+    private String formatDate(long millis) {
+        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(millis);
     }
 
-    private String getEndDate(Trigger trigger, String jobType) throws SchedulerException {
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-        String startDate = getStartDate(trigger);
+    private String getEndDate(TriggerRow row, String jobType, String startDate) {
         String endDate;
 
-        if (!endDateTime.isAfterNow()) {
+        if (row.endTime == null || row.endTime <= DateTime.now().getMillis()) {
             if (jobType.equals(JobBasicInfo.JOBTYPE_RUNONCE)) {
                 endDate = startDate;
             } else {
                 endDate = "-";
             }
         } else {
-            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endDateTime);
+            endDate = formatDate(row.endTime);
         }
 
         return endDate;
     }
 
-    private String getJobActivity(Trigger trigger) throws SchedulerException {
-        DateTime startDateTime = new DateTime(trigger.getStartTime());
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
+    private String getJobActivity(TriggerRow row) {
+        long now = DateTime.now().getMillis();
 
-        if (startDateTime.isAfterNow()) {
+        if (row.startTime > now) {
             return JobBasicInfo.ACTIVITY_NOTSTARTED;
-        } else if (endDateTime.isBeforeNow()) {
+        } else if (row.endTime != null && row.endTime < now) {
             return  JobBasicInfo.ACTIVITY_FINISHED;
         } else {
             return JobBasicInfo.ACTIVITY_ACTIVE;
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
-        if (currentTriggerState == Trigger.TriggerState.ERROR) {
+    private String getJobStatus(String triggerState) {
+        if (Trigger.TriggerState.ERROR.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_ERROR;
-        } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
+        } else if (Trigger.TriggerState.BLOCKED.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_BLOCKED;
-        } else if (currentTriggerState == Trigger.TriggerState.PAUSED) {
+        } else if (Trigger.TriggerState.PAUSED.toString().equals(triggerState) || PAUSED_BLOCKED.equals(triggerState)) {
             return JobBasicInfo.STATUS_PAUSED;
         } else {
             return JobBasicInfo.STATUS_OK;
         }
     }
+
+    private void jobsChanged() {
+        jobsVersion.incrementAndGet();
+    }
+
+    private static <V> Map<String, V> boundedMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_CACHED_ENTRIES;
+            }
+        });
+    }
+
+    /**
+     * The columns of a single trigger, as read by the listing query. Times of 0 or less stand for no time.
+     */
+    private static final class TriggerRow {
+
+        private final String name;
+        private final String group;
+        private final String state;
+        private final String type;
+        private final long startTime;
+        private final Long endTime;
+        private final Long nextFireTime;
+        private final String cronExpression;
+        private final Long repeatCount;
+        private final Long repeatInterval;
+        private final Long simpleTimesTriggered;
+        private final String intervalUnit;
+        private final Long interval;
+        private final Long calendarTimesTriggered;
+
+        private TriggerRow(ResultSet rs) throws SQLException {
+            name = rs.getString(1);
+            group = rs.getString(2);
+            state = rs.getString(3);
+            type = rs.getString(4);
+            startTime = rs.getLong(5);
+            endTime = getTime(rs, 6);
+            nextFireTime = getTime(rs, 7);
+            cronExpression = rs.getString(8);
+            repeatCount = getLong(rs, 9);
+            repeatInterval = getLong(rs, 10);
+            simpleTimesTriggered = getLong(rs, 11);
+            intervalUnit = rs.getString(12);
+            interval = getLong(rs, 13);
+            calendarTimesTriggered = getLong(rs, 14);
+        }
+
+        private long getTimesTriggered() {
+            if (simpleTimesTriggered != null) {
+                return simpleTimesTriggered;
+            }
+            return calendarTimesTriggered == null ? 0 : calendarTimesTriggered;
+        }
+
+        private Object[] getSortKey(String sortColumn) {
+            Object sortValue;
+
+            if (START_TIME.equals(sortColumn)) {
+                sortValue = startTime;
+            } else if (END_TIME.equals(sortColumn)) {
+                sortValue = endTime == null ? 0L : endTime;
+            } else if (TRIGGER_STATE.equals(sortColumn)) {
+                sortValue = state;
+            } else if (TRIGGER_TYPE.equals(sortColumn)) {
+                sortValue = type;
+            } else {
+                return new Object[] {name, group};
+            }
+
+            return new Object[] {sortValue, name, group};
+        }
+
+        private static Long getLong(ResultSet rs, int index) throws SQLException {
+            long value = rs.getLong(index);
+            return rs.wasNull() ? null : value;
+        }
+
+        private static Long getTime(ResultSet rs, int index) throws SQLException {
+            Long value = getLong(rs, index);
+            return value == null || value <= 0 ? null : value;
+        }
+    }
+
+    private static final class CachedCount {
+
+        private final int count;
+        private final long cachedAt = System.currentTimeMillis();
+
+        private CachedCount(int count) {
+            this.count = count;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - cachedAt > COUNT_CACHE_TTL_MILLIS;
+        }
+    }
+
+    /**
+     * Discards the cached counts and page positions whenever the scheduled jobs change.
+     */
+    private class JobsChangeListener extends SchedulerListenerSupport {
+
+        @Override
+        public void jobScheduled(Trigger trigger) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobUnscheduled(TriggerKey triggerKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void triggerFinalized(Trigger trigger) {
+            jobsChanged();
+        }
+
+        @Override
+        public void triggerPaused(TriggerKey triggerKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void triggersPaused(String triggerGroup) {
+            jobsChanged();
+        }
+
+        @Override
+        public void triggerResumed(TriggerKey triggerKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void triggersResumed(String triggerGroup) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobDeleted(JobKey jobKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobPaused(JobKey jobKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobsPaused(String jobGroup) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobResumed(JobKey jobKey) {
+            jobsChanged();
+        }
+
+        @Override
+        public void jobsResumed(String jobGroup) {
+            jobsChanged();
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            jobsChanged();
+        }
+    }
 }
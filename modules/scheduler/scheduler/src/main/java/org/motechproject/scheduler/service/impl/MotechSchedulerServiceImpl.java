@@ -11,6 +11,7 @@ import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
 import org.motechproject.scheduler.contract.RepeatingJobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodJobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
@@ -28,6 +29,7 @@ import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
+import org.quartz.JobKey;
 import org.quartz.ScheduleBuilder;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
@@ -37,7 +39,6 @@ import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
 import org.quartz.impl.calendar.BaseCalendar;
-import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.triggers.CronTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 import org.slf4j.Logger;
@@ -46,10 +47,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static java.lang.String.format;
 import static org.motechproject.commons.date.util.DateUtil.newDateTime;
@@ -73,11 +78,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
     private static final String LOG_SUBJECT_EXTERNALID = "subject: %s, externalId: %s";
+    private static final int BATCH_SIZE = 500;
 
     private SettingsFacade schedulerSettings;
 
     private Scheduler scheduler;
 
+    private TriggerKeyLookup triggerKeyLookup = new TriggerKeyLookup();
+
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
@@ -90,6 +98,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         constructMisfirePoliciesMaps();
     }
 
+    @Autowired(required = false)
+    public void setTriggerKeyLookup(TriggerKeyLookup triggerKeyLookup) {
+        this.triggerKeyLookup = triggerKeyLookup;
+    }
+
     private void constructMisfirePoliciesMaps() {
         cronTriggerMisfirePolicies = new HashMap<>();
         cronTriggerMisfirePolicies.put("do_nothing", CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING);
@@ -109,6 +122,23 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
 
+        JobDefinition jobDefinition = buildCronJob(cronSchedulableJob);
+        String jobId = jobDefinition.getJobDetail().getKey().getName();
+
+        Trigger existingTrigger;
+        try {
+            existingTrigger = scheduler.getTrigger(triggerKey(jobId, JOB_GROUP_NAME));
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()), e);
+        }
+        if (existingTrigger != null) {
+            unscheduleJob(jobId);
+        }
+
+        scheduleJob(jobDefinition.getJobDetail(), jobDefinition.getTrigger());
+    }
+
+    private JobDefinition buildCronJob(CronSchedulableJob cronSchedulableJob) {
         MotechEvent motechEvent = assertCronJob(cronSchedulableJob);
 
         JobId jobId = new CronJobId(motechEvent);
@@ -138,16 +168,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(cronSchedulableJob.getEndTime())
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()), e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (cronSchedulableJob.isIgnorePastFiresAtStart() && newDateTime(cronSchedulableJob.getStartTime()).isBefore(now)) {
@@ -166,7 +186,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .build();
         }
 
-        scheduleJob(jobDetail, trigger);
+        return new JobDefinition(cronSchedulableJob, jobDetail, trigger);
     }
 
     private MotechEvent assertCronJob(CronSchedulableJob cronSchedulableJob) {
@@ -297,6 +317,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         logObjectIfNotNull(repeatingSchedulableJob);
 
+        JobDefinition jobDefinition = buildRepeatingJob(repeatingSchedulableJob);
+        scheduleJob(jobDefinition.getJobDetail(), jobDefinition.getTrigger());
+    }
+
+    private JobDefinition buildRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         MotechEvent motechEvent = assertArgumentNotNull(repeatingSchedulableJob);
 
         Date jobStartTime = repeatingSchedulableJob.getStartTime();
@@ -340,13 +365,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
 
         Trigger trigger = buildJobDetail(repeatingSchedulableJob, jobStartTime, jobEndTime, jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger);
+        return new JobDefinition(repeatingSchedulableJob, jobDetail, trigger);
     }
 
     @Override
     public void scheduleRepeatingPeriodJob(RepeatingPeriodSchedulableJob repeatingPeriodSchedulableJob) {
         logObjectIfNotNull(repeatingPeriodSchedulableJob);
 
+        JobDefinition jobDefinition = buildRepeatingPeriodJob(repeatingPeriodSchedulableJob);
+        scheduleJob(jobDefinition.getJobDetail(), jobDefinition.getTrigger());
+    }
+
+    private JobDefinition buildRepeatingPeriodJob(RepeatingPeriodSchedulableJob repeatingPeriodSchedulableJob) {
         MotechEvent motechEvent = assertArgumentNotNull(repeatingPeriodSchedulableJob);
 
         assertArgumentNotNull("Job start date", repeatingPeriodSchedulableJob.getStartTime());
@@ -369,7 +399,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(repeatingPeriodSchedulableJob, repeatingPeriodSchedulableJob.getStartTime(),
                 repeatingPeriodSchedulableJob.getEndTime(), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger);
+        return new JobDefinition(repeatingPeriodSchedulableJob, jobDetail, trigger);
     }
 
     @Override
@@ -477,6 +507,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         logObjectIfNotNull(schedulableJob);
 
+        JobDefinition jobDefinition = buildRunOnceJob(schedulableJob);
+        scheduleJob(jobDefinition.getJobDetail(), jobDefinition.getTrigger());
+    }
+
+    private JobDefinition buildRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         assertArgumentNotNull("RunOnceSchedulableJob", schedulableJob);
         MotechEvent motechEvent = schedulableJob.getMotechEvent();
 
@@ -509,7 +544,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(jobStartDate)
                 .build();
 
-        scheduleJob(jobDetail, trigger);
+        return new JobDefinition(schedulableJob, jobDetail, trigger);
     }
 
     private MotechEvent assertArgumentNotNull(SchedulableJob schedulableJob) {
@@ -537,6 +572,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleDayOfWeekJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         logObjectIfNotNull(dayOfWeekSchedulableJob);
 
+        scheduleJob(toCronSchedulableJob(dayOfWeekSchedulableJob));
+    }
+
+    private CronSchedulableJob toCronSchedulableJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         MotechEvent motechEvent = dayOfWeekSchedulableJob.getMotechEvent();
         LocalDate start = dayOfWeekSchedulableJob.getStartDate();
         LocalDate end = dayOfWeekSchedulableJob.getEndDate();
@@ -544,9 +583,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         CronScheduleBuilder cronScheduleBuilder = CronScheduleBuilder.atHourAndMinuteOnGivenDaysOfWeek(time.getHour(), time.getMinute(), dayOfWeekSchedulableJob.getCronDays().toArray(new Integer[0]));
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
-        CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(), start.toDate(), end.toDate(), dayOfWeekSchedulableJob.isIgnorePastFiresAtStart());
-
-        scheduleJob(cronSchedulableJob);
+        return new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(), start.toDate(), end.toDate(), dayOfWeekSchedulableJob.isIgnorePastFiresAtStart());
     }
 
     @Override
@@ -686,11 +723,16 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
+            List<TriggerKey> triggerKeys = triggerKeyLookup.findByNamePrefix(scheduler, JOB_GROUP_NAME, jobIdPrefix);
+            for (List<TriggerKey> batch : partition(triggerKeys)) {
+                try {
+                    scheduler.unscheduleJobs(batch);
+                } catch (SchedulerException e) {
+                    LOGGER.warn("Unable to unschedule a batch of {} jobs with jobIdPrefix {}, unscheduling them one by one",
+                            batch.size(), jobIdPrefix, e);
+                    for (TriggerKey triggerKey : batch) {
+                        safeUnscheduleJob(triggerKey.getName());
+                    }
                 }
             }
         } catch (SchedulerException e) {
@@ -702,14 +744,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void unscheduleAllJobs(String jobIdPrefix) {
         try {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
+                LOGGER.debug("Unscheduling jobs with prefix: {}", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
-                }
+            List<TriggerKey> triggerKeys = triggerKeyLookup.findByNamePrefix(scheduler, JOB_GROUP_NAME, jobIdPrefix);
+            for (List<TriggerKey> batch : partition(triggerKeys)) {
+                scheduler.unscheduleJobs(batch);
             }
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not unschedule jobs given jobIdPrefix: %s %s",
@@ -717,6 +756,126 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    @Override
+    public JobsBatchResult<SchedulableJob> scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs) {
+        assertArgumentNotNull("SchedulableJobs", schedulableJobs);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Scheduling {} jobs in bulk", schedulableJobs.size());
+        }
+
+        JobsBatchResult<SchedulableJob> result = new JobsBatchResult<>();
+
+        // validate everything before writing anything, the last job with a given id wins
+        Map<JobKey, JobDefinition> jobDefinitions = new LinkedHashMap<>();
+        for (SchedulableJob schedulableJob : schedulableJobs) {
+            try {
+                JobDefinition jobDefinition = buildJobDefinition(schedulableJob);
+                JobDefinition replaced = jobDefinitions.remove(jobDefinition.getJobDetail().getKey());
+                if (replaced != null) {
+                    result.addFailure(replaced.getSchedulableJob(), new MotechSchedulerException(format(
+                            "Job %s was replaced by another job with the same ID", jobDefinition.getJobDetail().getKey().getName())));
+                }
+                jobDefinitions.put(jobDefinition.getJobDetail().getKey(), jobDefinition);
+            } catch (RuntimeException e) {
+                result.addFailure(schedulableJob, e);
+            }
+        }
+
+        for (List<JobDefinition> batch : partition(new ArrayList<>(jobDefinitions.values()))) {
+            Map<JobDetail, Set<? extends Trigger>> triggersAndJobs = new LinkedHashMap<>();
+            for (JobDefinition jobDefinition : batch) {
+                triggersAndJobs.put(jobDefinition.getJobDetail(), Collections.singleton(jobDefinition.getTrigger()));
+            }
+
+            try {
+                scheduler.scheduleJobs(triggersAndJobs, true);
+                for (JobDefinition jobDefinition : batch) {
+                    result.addSucceeded(jobDefinition.getSchedulableJob());
+                }
+            } catch (SchedulerException e) {
+                LOGGER.warn("Unable to schedule a batch of {} jobs, scheduling them one by one", batch.size(), e);
+                for (JobDefinition jobDefinition : batch) {
+                    try {
+                        scheduler.scheduleJob(jobDefinition.getJobDetail(), Collections.singleton(jobDefinition.getTrigger()), true);
+                        result.addSucceeded(jobDefinition.getSchedulableJob());
+                    } catch (SchedulerException ex) {
+                        result.addFailure(jobDefinition.getSchedulableJob(), ex);
+                    }
+                }
+            }
+        }
+
+        if (result.hasFailures()) {
+            LOGGER.error("Unable to schedule {} of {} jobs", result.getFailures().size(), schedulableJobs.size());
+        }
+
+        return result;
+    }
+
+    @Override
+    public JobsBatchResult<JobId> unscheduleJobs(Collection<JobId> jobIds) {
+        assertArgumentNotNull("JobIds", jobIds);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Unscheduling {} jobs in bulk", jobIds.size());
+        }
+
+        JobsBatchResult<JobId> result = new JobsBatchResult<>();
+
+        List<JobId> validJobIds = new ArrayList<>(jobIds.size());
+        for (JobId jobId : jobIds) {
+            if (jobId == null) {
+                result.addFailure(null, new IllegalArgumentException("ScheduledJobID cannot be null"));
+            } else {
+                validJobIds.add(jobId);
+            }
+        }
+
+        for (List<JobId> batch : partition(validJobIds)) {
+            List<TriggerKey> triggerKeys = new ArrayList<>(batch.size());
+            for (JobId jobId : batch) {
+                triggerKeys.add(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            }
+
+            try {
+                scheduler.unscheduleJobs(triggerKeys);
+                for (JobId jobId : batch) {
+                    result.addSucceeded(jobId);
+                }
+            } catch (SchedulerException e) {
+                LOGGER.warn("Unable to unschedule a batch of {} jobs, unscheduling them one by one", batch.size(), e);
+                for (JobId jobId : batch) {
+                    try {
+                        scheduler.unscheduleJob(triggerKey(jobId.value(), JOB_GROUP_NAME));
+                        result.addSucceeded(jobId);
+                    } catch (SchedulerException ex) {
+                        result.addFailure(jobId, ex);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private JobDefinition buildJobDefinition(SchedulableJob schedulableJob) {
+        assertArgumentNotNull("SchedulableJob", schedulableJob);
+
+        if (schedulableJob instanceof CronSchedulableJob) {
+            return buildCronJob((CronSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RepeatingSchedulableJob) {
+            return buildRepeatingJob((RepeatingSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RepeatingPeriodSchedulableJob) {
+            return buildRepeatingPeriodJob((RepeatingPeriodSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RunOnceSchedulableJob) {
+            return buildRunOnceJob((RunOnceSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof DayOfWeekSchedulableJob) {
+            JobDefinition jobDefinition = buildCronJob(toCronSchedulableJob((DayOfWeekSchedulableJob) schedulableJob));
+            return new JobDefinition(schedulableJob, jobDefinition.getJobDetail(), jobDefinition.getTrigger());
+        } else {
+            throw new IllegalArgumentException("Unsupported type of SchedulableJob: " + schedulableJob.getClass().getName());
+        }
+    }
+
     /*
      * Assumes that the externalJobId is non-repeating in nature. Thus the fetch is for jobId.value() and not
      * jobId.repeatingId()
@@ -739,8 +898,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     /*
-     * Loads all triggers and then loops over them to find the applicable trigger using string comparison. This
-     * will work regardless of the jobId being cron or repeating.
+     * Finds the triggers whose names start with the prefix, using the index on the trigger names when the jobs are
+     * kept in the database. This will work regardless of the jobId being cron or repeating.
      */
     @Override
     public List<Date> getScheduledJobTimingsWithPrefix(
@@ -749,11 +908,13 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
-                    Trigger trigger = scheduler.getTrigger(triggerKey);
+            if (StringUtils.isEmpty(externalJobIdPrefix)) {
+                return messageTimings;
+            }
+            // cron job ids have no suffix, so repeating and run once jobs with the prefix are matched too
+            for (TriggerKey triggerKey : triggerKeyLookup.findByNamePrefix(scheduler, JOB_GROUP_NAME, jobId.value())) {
+                Trigger trigger = scheduler.getTrigger(triggerKey);
+                if (trigger != null) {
                     messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
                             (OperableTrigger) trigger, new BaseCalendar(), startDate, endDate));
                 }
@@ -785,12 +946,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDataMap.put(MotechEvent.EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
+    private <T> List<List<T>> partition(List<T> elements) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i += BATCH_SIZE) {
+            batches.add(elements.subList(i, Math.min(i + BATCH_SIZE, elements.size())));
         }
-        return names;
+        return batches;
     }
 
     /**
@@ -816,4 +977,32 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             LOGGER.debug(obj.toString());
         }
     }
+
+    /**
+     * The job detail and the trigger built for a schedulable job, ready to be stored in the job store.
+     */
+    private static final class JobDefinition {
+
+        private final SchedulableJob schedulableJob;
+        private final JobDetail jobDetail;
+        private final Trigger trigger;
+
+        private JobDefinition(SchedulableJob schedulableJob, JobDetail jobDetail, Trigger trigger) {
+            this.schedulableJob = schedulableJob;
+            this.jobDetail = jobDetail;
+            this.trigger = trigger;
+        }
+
+        public SchedulableJob getSchedulableJob() {
+            return schedulableJob;
+        }
+
+        public JobDetail getJobDetail() {
+            return jobDetail;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+    }
 }
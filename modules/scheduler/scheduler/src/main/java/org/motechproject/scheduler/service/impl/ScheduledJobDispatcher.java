@@ -0,0 +1,246 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Publishes the events of fired jobs. In the {@code direct} dispatch mode, the default, events are published by the
+ * Quartz thread which fired the job. In the {@code pooled} mode, fired jobs only queue their events, which are then
+ * published in batches by a dedicated pool of dispatch threads, so that the Quartz threads are free to fire the next
+ * triggers when many jobs are due at the same time. When the queue is full, firing waits for the dispatch threads.
+ * Events which are still queued when the dispatcher is stopped are published before it stops, and events of jobs
+ * fired after that are published directly. The queue is kept in memory only, while the jobs of the queued events are
+ * already marked as fired in the job store, so queued events are lost if the server crashes, and Quartz does not fire
+ * them again. The event relay is looked up once, and the lag between the scheduled fire time and publishing is
+ * recorded for every event.
+ */
+@Component
+public class ScheduledJobDispatcher {
+
+    /**
+     * The key under which the dispatcher is kept in the Quartz scheduler context.
+     */
+    public static final String SCHEDULER_CONTEXT_KEY = "scheduledJobDispatcher";
+
+    public static final String DISPATCH_MODE = "scheduler.dispatch.mode";
+    public static final String DISPATCH_THREAD_COUNT = "scheduler.dispatch.threadCount";
+    public static final String DISPATCH_BATCH_SIZE = "scheduler.dispatch.batchSize";
+    public static final String DISPATCH_QUEUE_CAPACITY = "scheduler.dispatch.queueCapacity";
+
+    public static final String MODE_DIRECT = "direct";
+    public static final String MODE_POOLED = "pooled";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScheduledJobDispatcher.class);
+
+    private static final int DEFAULT_THREAD_COUNT = 5;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final ApplicationContext applicationContext;
+    private final Properties schedulerProperties;
+    private final SchedulerMetricsServiceImpl schedulerMetricsService;
+
+    // guards the running flag, so that no event is queued after the dispatch threads are stopped
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    private volatile EventRelay eventRelay;
+
+    private BlockingQueue<FiredEvent> queue;
+    private List<Thread> threads;
+    private int batchSize;
+    private volatile boolean running;
+
+    @Autowired
+    public ScheduledJobDispatcher(ApplicationContext applicationContext, @Qualifier("sqlProperties") Properties schedulerProperties,
+                                  SchedulerMetricsServiceImpl schedulerMetricsService) {
+        this.applicationContext = applicationContext;
+        this.schedulerProperties = schedulerProperties;
+        this.schedulerMetricsService = schedulerMetricsService;
+    }
+
+    /**
+     * Starts the dispatch threads, if the pooled dispatch mode is configured.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        String mode = StringUtils.trim(schedulerProperties.getProperty(DISPATCH_MODE, MODE_DIRECT));
+
+        if (MODE_POOLED.equalsIgnoreCase(mode) && threads == null) {
+            int threadCount = getIntProperty(DISPATCH_THREAD_COUNT, DEFAULT_THREAD_COUNT);
+            batchSize = getIntProperty(DISPATCH_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+            queue = new LinkedBlockingQueue<>(getIntProperty(DISPATCH_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY));
+
+            setRunning(true);
+            threads = new ArrayList<>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        publishQueuedEvents();
+                    }
+                }, "motech-scheduler-dispatch-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+
+            LOGGER.info("Events of fired jobs will be published by {} dispatch threads", threadCount);
+        } else if (!MODE_DIRECT.equalsIgnoreCase(mode)) {
+            LOGGER.warn("Unknown dispatch mode {}, events of fired jobs will be published directly", mode);
+        }
+    }
+
+    /**
+     * Publishes the remaining events and stops the dispatch threads.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (threads != null) {
+            setRunning(false);
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.warn("Interrupted while waiting for the dispatch threads to stop");
+                    break;
+                }
+            }
+            threads = null;
+
+            // events queued while stopping
+            List<FiredEvent> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            schedulerMetricsService.recordDequeued(remaining.size());
+            publish(remaining);
+        }
+    }
+
+    /**
+     * Publishes the event of a fired job, or queues it for a dispatch thread in the pooled mode.
+     *
+     * @param motechEvent the event of the job
+     * @param scheduledFireTime the time at which the job should have fired, null if not known
+     */
+    public void dispatch(MotechEvent motechEvent, Date scheduledFireTime) {
+        FiredEvent firedEvent = new FiredEvent(motechEvent, scheduledFireTime);
+
+        stateLock.readLock().lock();
+        try {
+            if (running) {
+                queue(firedEvent);
+                return;
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+
+        publish(firedEvent);
+    }
+
+    private void queue(FiredEvent firedEvent) {
+        try {
+            schedulerMetricsService.recordQueued();
+            queue.put(firedEvent);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            schedulerMetricsService.recordDequeued(1);
+            LOGGER.warn("Interrupted while queuing the event of job {}, publishing it right away",
+                    firedEvent.motechEvent.getParameters().get("JobID"));
+            publish(firedEvent);
+        }
+    }
+
+    private void setRunning(boolean running) {
+        stateLock.writeLock().lock();
+        try {
+            this.running = running;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    private void publishQueuedEvents() {
+        List<FiredEvent> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                schedulerMetricsService.recordDequeued(batch.size());
+
+                publish(batch);
+            } catch (InterruptedException e) {
+                LOGGER.debug("The dispatch thread was interrupted");
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(List<FiredEvent> firedEvents) {
+        for (FiredEvent firedEvent : firedEvents) {
+            publish(firedEvent);
+        }
+    }
+
+    private void publish(FiredEvent firedEvent) {
+        try {
+            getEventRelay().sendEventMessage(firedEvent.motechEvent);
+            schedulerMetricsService.recordPublished(firedEvent.lag());
+        } catch (RuntimeException e) {
+            schedulerMetricsService.recordFailed(firedEvent.lag());
+            LOGGER.error("Unable to publish the event of job {}", firedEvent.motechEvent.getParameters().get("JobID"), e);
+        }
+    }
+
+    private EventRelay getEventRelay() {
+        if (eventRelay == null) {
+            eventRelay = applicationContext.getBean(EventRelay.class);
+        }
+        return eventRelay;
+    }
+
+    private int getIntProperty(String name, int defaultValue) {
+        String value = StringUtils.trim(schedulerProperties.getProperty(name));
+        return StringUtils.isNumeric(value) && StringUtils.isNotEmpty(value) && Integer.parseInt(value) > 0
+                ? Integer.parseInt(value)
+                : defaultValue;
+    }
+
+    private static final class FiredEvent {
+
+        private final MotechEvent motechEvent;
+        private final Date scheduledFireTime;
+
+        private FiredEvent(MotechEvent motechEvent, Date scheduledFireTime) {
+            this.motechEvent = motechEvent;
+            this.scheduledFireTime = scheduledFireTime;
+        }
+
+        private long lag() {
+            return scheduledFireTime == null ? 0 : System.currentTimeMillis() - scheduledFireTime.getTime();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.scheduler.contract.FireLagMetrics;
+import org.motechproject.scheduler.service.SchedulerMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of the {@link SchedulerMetricsService} interface. Besides exposing the statistics, it is used by
+ * the {@link ScheduledJobDispatcher} for recording the fire lag of the published events. Recording does not take
+ * any locks. Lags are kept in a histogram with buckets for every power of two milliseconds.
+ */
+@Service("schedulerMetricsService")
+public class SchedulerMetricsServiceImpl implements SchedulerMetricsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsServiceImpl.class);
+
+    private static final int BUCKETS = 32;
+    private static final double PERCENTILE_95 = 0.95;
+    private static final double PERCENTILE_99 = 0.99;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile Statistics statistics = new Statistics();
+
+    /**
+     * Records an event of a fired job being queued for a dispatch thread.
+     */
+    public void recordQueued() {
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Records events of fired jobs being taken from the queue by a dispatch thread.
+     *
+     * @param count the number of events taken from the queue
+     */
+    public void recordDequeued(int count) {
+        queued.addAndGet(-count);
+    }
+
+    /**
+     * Records an event of a fired job being published.
+     *
+     * @param lagMillis the time between the scheduled fire time of the job and publishing its event, in milliseconds
+     */
+    public void recordPublished(long lagMillis) {
+        Statistics current = statistics;
+        current.published.increment();
+        current.recordLag(lagMillis);
+    }
+
+    /**
+     * Records an event of a fired job which could not be published.
+     *
+     * @param lagMillis the time between the scheduled fire time of the job and the failure, in milliseconds
+     */
+    public void recordFailed(long lagMillis) {
+        Statistics current = statistics;
+        current.failed.increment();
+        current.recordLag(lagMillis);
+    }
+
+    @Override
+    public FireLagMetrics getFireLagMetrics() {
+        FireLagMetrics metrics = statistics.toMetrics();
+        metrics.setQueuedCount(Math.max(queued.get(), 0));
+        return metrics;
+    }
+
+    @Override
+    public void reset() {
+        statistics = new Statistics();
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            // the bean from a previous start of the bundle might still be registered
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+
+            mBeanServer.registerMBean(new StandardMBean(this, SchedulerMetricsService.class, true), objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the scheduler metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the scheduler metrics MBean", e);
+        }
+    }
+
+    private static final class Statistics {
+
+        private final LongAdder published = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalLag = new LongAdder();
+        private final AtomicLong maxLag = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private void recordLag(long lagMillis) {
+            // triggers acquired ahead of time can fire a little early
+            long lag = Math.max(lagMillis, 0);
+
+            totalLag.add(lag);
+            histogram.incrementAndGet(bucket(lag));
+
+            long max = maxLag.get();
+            while (lag > max && !maxLag.compareAndSet(max, lag)) {
+                max = maxLag.get();
+            }
+        }
+
+        private FireLagMetrics toMetrics() {
+            FireLagMetrics metrics = new FireLagMetrics();
+
+            metrics.setPublishedCount(published.sum());
+            metrics.setFailedCount(failed.sum());
+
+            long[] buckets = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                buckets[i] = histogram.get(i);
+                count += buckets[i];
+            }
+
+            if (count > 0) {
+                metrics.setAverageLag((double) totalLag.sum() / count);
+                metrics.setMaxLag(maxLag.get());
+                metrics.setLag95th(percentile(buckets, count, PERCENTILE_95));
+                metrics.setLag99th(percentile(buckets, count, PERCENTILE_99));
+            }
+
+            return metrics;
+        }
+
+        private int bucket(long lagMillis) {
+            int bucket = Long.SIZE - Long.numberOfLeadingZeros(lagMillis);
+            return Math.min(bucket, BUCKETS - 1);
+        }
+
+        private double percentile(long[] buckets, long count, double percentile) {
+            long threshold = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += buckets[i];
+                if (seen >= threshold) {
+                    // upper bound of the bucket
+                    return 1L << i;
+                }
+            }
+            return maxLag.get();
+        }
+    }
+}
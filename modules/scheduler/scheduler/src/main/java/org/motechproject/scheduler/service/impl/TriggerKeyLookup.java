@@ -0,0 +1,144 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Finds the keys of the triggers whose names start with a given prefix. When the scheduler keeps its jobs in
+ * the database, the names are matched by a {@code LIKE 'prefix%'} query against the triggers table, which is
+ * served by an index on the trigger names, so the cost of the lookup depends on the number of matching triggers
+ * rather than the number of all scheduled jobs. For other job stores all the keys of the group are checked.
+ */
+@Component
+public class TriggerKeyLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerKeyLookup.class);
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String TRIGGER_NAME = "TRIGGER_NAME";
+    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final char LIKE_ESCAPE = '!';
+
+    private Properties sqlProperties;
+
+    /**
+     * Returns the keys of the triggers from the given group, whose names start with the given prefix.
+     *
+     * @param scheduler the scheduler owning the triggers
+     * @param group the group of the triggers
+     * @param prefix the prefix of the trigger names, the empty prefix matches no triggers
+     * @return the keys of the matching triggers, ordered by their names when read from the database
+     * @throws SchedulerException if the triggers could not be read
+     */
+    public List<TriggerKey> findByNamePrefix(Scheduler scheduler, String group, String prefix)
+            throws SchedulerException {
+        if (StringUtils.isEmpty(prefix)) {
+            return new ArrayList<>();
+        }
+
+        return isJdbcJobStore()
+                ? queryByNamePrefix(scheduler.getSchedulerName(), group, prefix)
+                : scanByNamePrefix(scheduler, group, prefix);
+    }
+
+    private List<TriggerKey> queryByNamePrefix(String schedulerName, String group, String prefix)
+            throws SchedulerException {
+        String query = buildQuery();
+        LOGGER.debug("Executing {} for prefix {}", query, prefix);
+
+        List<TriggerKey> keys = new ArrayList<>();
+
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, schedulerName);
+            stmt.setString(2, group);
+            stmt.setString(3, escapeLikePattern(prefix) + "%");
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(triggerKey(rs.getString(1), group));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SchedulerException("Unable to find the triggers with the name prefix " + prefix, e);
+        }
+
+        return keys;
+    }
+
+    private List<TriggerKey> scanByNamePrefix(Scheduler scheduler, String group, String prefix)
+            throws SchedulerException {
+        List<TriggerKey> keys = new ArrayList<>();
+
+        for (TriggerKey key : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group))) {
+            if (key.getName().startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+
+        return keys;
+    }
+
+    private String buildQuery() {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        sb.append(getCorrectNameRepresentation(TRIGGER_NAME));
+        sb.append(" FROM ").append(getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX) + TRIGGERS));
+        sb.append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ?");
+        sb.append(" AND ").append(getCorrectNameRepresentation(TRIGGER_GROUP)).append(" = ?");
+        sb.append(" AND ").append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ? ESCAPE '")
+                .append(LIKE_ESCAPE).append('\'');
+        sb.append(" ORDER BY ").append(getCorrectNameRepresentation(TRIGGER_NAME));
+        return sb.toString();
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+
+        for (char c : value.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+
+    private boolean isJdbcJobStore() {
+        return sqlProperties != null && StringUtils.isNotBlank(sqlProperties.getProperty(DATA_SOURCE));
+    }
+
+    @Autowired(required = false)
+    @Qualifier("sqlProperties")
+    public void setSqlProperties(Properties sqlProperties) {
+        this.sqlProperties = sqlProperties;
+    }
+}
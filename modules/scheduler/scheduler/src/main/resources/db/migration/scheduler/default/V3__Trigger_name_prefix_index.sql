@@ -0,0 +1,4 @@
+--
+-- Index for finding triggers by the prefix of their names
+--
+create index idx_qrtz_t_g_name_prefix on qrtz_triggers(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME varchar_pattern_ops);
@@ -0,0 +1,130 @@
+package org.motechproject.scheduler;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.commons.api.NanoStopWatch;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
+import org.motechproject.scheduler.contract.RepeatingJobId;
+import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl;
+import org.motechproject.server.config.SettingsFacade;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.motechproject.commons.date.util.DateUtil.now;
+
+/**
+ * Measures how long it takes to enroll and unenroll 100k jobs with the bulk operations of the scheduler service,
+ * compared with scheduling them one by one. Uses the in-memory job store, so that only the cost of the scheduler
+ * itself is measured.
+ */
+public class BulkSchedulingPerformanceAssessment {
+
+    private static final int JOB_COUNT = 100000;
+    private static final String SUBJECT = "bulk_test_event";
+
+    private MotechSchedulerFactoryBean schedulerFactoryBean;
+    private MotechSchedulerServiceImpl schedulerService;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "BulkSchedulingPerformanceAssessment");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+
+        schedulerFactoryBean = new MotechSchedulerFactoryBean(new StaticApplicationContext(), properties);
+        schedulerFactoryBean.init();
+
+        schedulerService = new MotechSchedulerServiceImpl(schedulerFactoryBean, mock(SettingsFacade.class));
+    }
+
+    @After
+    public void tearDown() {
+        schedulerFactoryBean.shutdown();
+    }
+
+    @Test
+    public void schedulingJobsInBulk() throws Exception {
+        List<SchedulableJob> jobs = buildJobs();
+        List<JobId> jobIds = new ArrayList<>(JOB_COUNT);
+        for (int i = 0; i < JOB_COUNT; i++) {
+            jobIds.add(new RepeatingJobId(SUBJECT, "patient_" + i));
+        }
+
+        NanoStopWatch timeToSchedule = new NanoStopWatch().start();
+        JobsBatchResult<SchedulableJob> scheduleResult = schedulerService.scheduleJobs(jobs);
+        System.out.println(format("Time to schedule %d jobs in bulk: %dms", JOB_COUNT, timeToSchedule.duration() / 1000000L));
+
+        assertFalse(scheduleResult.hasFailures());
+        assertEquals(JOB_COUNT, countTriggers());
+
+        NanoStopWatch timeToUnschedule = new NanoStopWatch().start();
+        JobsBatchResult<JobId> unscheduleResult = schedulerService.unscheduleJobs(jobIds);
+        System.out.println(format("Time to unschedule %d jobs in bulk: %dms", JOB_COUNT, timeToUnschedule.duration() / 1000000L));
+
+        assertFalse(unscheduleResult.hasFailures());
+        assertEquals(0, countTriggers());
+    }
+
+    @Test
+    public void schedulingJobsOneByOne() throws Exception {
+        List<SchedulableJob> jobs = buildJobs();
+
+        NanoStopWatch timeToSchedule = new NanoStopWatch().start();
+        for (SchedulableJob job : jobs) {
+            schedulerService.scheduleRepeatingJob((RepeatingSchedulableJob) job);
+        }
+        System.out.println(format("Time to schedule %d jobs one by one: %dms", JOB_COUNT, timeToSchedule.duration() / 1000000L));
+
+        assertEquals(JOB_COUNT, countTriggers());
+
+        NanoStopWatch timeToUnschedule = new NanoStopWatch().start();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            schedulerService.unscheduleRepeatingJob(SUBJECT, "patient_" + i);
+        }
+        System.out.println(format("Time to unschedule %d jobs one by one: %dms", JOB_COUNT, timeToUnschedule.duration() / 1000000L));
+
+        assertEquals(0, countTriggers());
+    }
+
+    private List<SchedulableJob> buildJobs() {
+        DateTime startTime = now().plusDays(1);
+        List<SchedulableJob> jobs = new ArrayList<>(JOB_COUNT);
+
+        for (int i = 0; i < JOB_COUNT; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "patient_" + i);
+            params.put("campaign", "pregnancy");
+
+            RepeatingSchedulableJob job = new RepeatingSchedulableJob(new MotechEvent(SUBJECT, params), 10, 604800,
+                    startTime.toDate(), null, false);
+            job.setUseOriginalFireTimeAfterMisfire(false);
+            jobs.add(job);
+        }
+
+        return jobs;
+    }
+
+    private int countTriggers() throws Exception {
+        return schedulerFactoryBean.getQuartzScheduler()
+                .getTriggerKeys(GroupMatcher.triggerGroupEquals(MotechSchedulerServiceImpl.JOB_GROUP_NAME)).size();
+    }
+}
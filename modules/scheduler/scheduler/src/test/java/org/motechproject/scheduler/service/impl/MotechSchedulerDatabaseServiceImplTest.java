@@ -0,0 +1,178 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.quartz.ListenerManager;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SchedulerListener;
+import org.quartz.Trigger;
+import org.quartz.utils.ConnectionProvider;
+import org.quartz.utils.DBConnectionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechSchedulerDatabaseServiceImplTest {
+
+    private static final String DATA_SOURCE = "schedulerDatabaseServiceTestDS";
+    private static final long HOUR = 3600000;
+
+    @Mock
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+
+    @Mock
+    private Scheduler scheduler;
+
+    @Mock
+    private ListenerManager listenerManager;
+
+    @Mock
+    private ConnectionProvider connectionProvider;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @InjectMocks
+    private MotechSchedulerDatabaseServiceImpl databaseService = new MotechSchedulerDatabaseServiceImpl();
+
+    private SchedulerListener schedulerListener;
+
+    @Before
+    public void setUp() throws SchedulerException, SQLException {
+        Properties sqlProperties = new Properties();
+        sqlProperties.setProperty("org.quartz.jobStore.dataSource", DATA_SOURCE);
+        sqlProperties.setProperty("org.quartz.jobStore.tablePrefix", "QRTZ_");
+        sqlProperties.setProperty("org.quartz.dataSource.motechDS.driver", "com.mysql.jdbc.Driver");
+        ReflectionTestUtils.setField(databaseService, "sqlProperties", sqlProperties);
+
+        DBConnectionManager.getInstance().addConnectionProvider(DATA_SOURCE, connectionProvider);
+        when(connectionProvider.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        when(motechSchedulerFactoryBean.getQuartzScheduler()).thenReturn(scheduler);
+        when(scheduler.getSchedulerName()).thenReturn("MotechScheduler");
+        when(scheduler.getListenerManager()).thenReturn(listenerManager);
+
+        databaseService.init();
+
+        ArgumentCaptor<SchedulerListener> listenerCaptor = ArgumentCaptor.forClass(SchedulerListener.class);
+        verify(listenerManager).addSchedulerListener(listenerCaptor.capture());
+        schedulerListener = listenerCaptor.getValue();
+    }
+
+    @Test
+    public void shouldCacheJobCountsUntilJobsChange() throws SQLException {
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(42);
+
+        JobsSearchSettings settings = searchSettings(null, null);
+
+        assertEquals(42, databaseService.countJobs(settings));
+        assertEquals(42, databaseService.countJobs(settings));
+        verify(statement, times(1)).executeQuery();
+
+        schedulerListener.jobScheduled(mock(Trigger.class));
+
+        assertEquals(42, databaseService.countJobs(settings));
+        verify(statement, times(2)).executeQuery();
+    }
+
+    @Test
+    public void shouldReadNextPageAfterLastRowOfPreviousPage() throws SQLException {
+        long now = System.currentTimeMillis();
+        when(resultSet.next()).thenReturn(true, false, true, false);
+        when(resultSet.getString(1)).thenReturn("subject-job1", "subject-job2");
+        when(resultSet.getString(2)).thenReturn("default");
+        when(resultSet.getString(3)).thenReturn("WAITING");
+        when(resultSet.getLong(5)).thenReturn(now + HOUR);
+
+        ArgumentCaptor<String> queryCaptor = ArgumentCaptor.forClass(String.class);
+
+        JobsSearchSettings settings = searchSettings(1, 1);
+        databaseService.getScheduledJobsBasicInfo(settings);
+        settings.setPage(2);
+        databaseService.getScheduledJobsBasicInfo(settings);
+
+        verify(connection, times(2)).prepareStatement(queryCaptor.capture());
+        List<String> queries = queryCaptor.getAllValues();
+
+        assertTrue(queries.get(0).contains("OFFSET ?"));
+        assertFalse(queries.get(1).contains("OFFSET ?"));
+        assertTrue(queries.get(1).contains("t.TRIGGER_NAME > ?"));
+        verify(statement, times(2)).setObject(anyInt(), eq("subject-job1"));
+    }
+
+    @Test
+    public void shouldBuildJobInfoFromTriggerColumns() throws SQLException {
+        long now = System.currentTimeMillis();
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString(1)).thenReturn("subject-job1-repeat");
+        when(resultSet.getString(2)).thenReturn("default");
+        when(resultSet.getString(3)).thenReturn("PAUSED_BLOCKED");
+        when(resultSet.getString(4)).thenReturn("SIMPLE");
+        when(resultSet.getLong(5)).thenReturn(now - 2 * HOUR);
+        when(resultSet.getLong(6)).thenReturn(now + 4 * HOUR);
+        when(resultSet.getLong(7)).thenReturn(now + HOUR);
+        when(resultSet.getLong(9)).thenReturn(-1L);
+        when(resultSet.getLong(10)).thenReturn(HOUR);
+        when(resultSet.getLong(11)).thenReturn(2L);
+        // repeat count, interval and times triggered of the simple trigger are set, the calendar ones are not
+        when(resultSet.wasNull()).thenReturn(false, false, false, false, false, true, true);
+
+        List<JobBasicInfo> jobs = databaseService.getScheduledJobsBasicInfo(searchSettings(1, 10));
+
+        assertEquals(1, jobs.size());
+        JobBasicInfo job = jobs.get(0);
+        assertEquals("subject-job1-repeat", job.getName());
+        assertEquals(JobBasicInfo.JOBTYPE_REPEATING, job.getJobType());
+        assertEquals(JobBasicInfo.STATUS_PAUSED, job.getStatus());
+        assertEquals(JobBasicInfo.ACTIVITY_ACTIVE, job.getActivity());
+        assertEquals("2/6", job.getInfo());
+    }
+
+    private JobsSearchSettings searchSettings(Integer page, Integer rows) {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setActivity(JobBasicInfo.ACTIVITY_NOTSTARTED + "," + JobBasicInfo.ACTIVITY_ACTIVE + ","
+                + JobBasicInfo.ACTIVITY_FINISHED);
+        settings.setStatus(JobBasicInfo.STATUS_OK + "," + JobBasicInfo.STATUS_PAUSED + "," + JobBasicInfo.STATUS_BLOCKED
+                + "," + JobBasicInfo.STATUS_ERROR);
+        settings.setSortColumn("name");
+        settings.setSortDirection("asc");
+        settings.setPage(page);
+        settings.setRows(rows);
+        return settings;
+    }
+}
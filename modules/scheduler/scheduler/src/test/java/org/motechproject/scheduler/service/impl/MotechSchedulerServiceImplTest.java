@@ -0,0 +1,138 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.CronSchedulableJob;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
+import org.motechproject.scheduler.contract.RepeatingJobId;
+import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
+import org.motechproject.scheduler.contract.RunOnceJobId;
+import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.server.config.SettingsFacade;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.commons.date.util.DateUtil.now;
+import static org.quartz.TriggerKey.triggerKey;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechSchedulerServiceImplTest {
+
+    private static final String SUBJECT = "campaign_message";
+
+    @Mock
+    private MotechSchedulerFactoryBean schedulerFactoryBean;
+
+    @Mock
+    private SettingsFacade schedulerSettings;
+
+    @Mock
+    private Scheduler scheduler;
+
+    private MotechSchedulerServiceImpl schedulerService;
+
+    @Before
+    public void setUp() {
+        when(schedulerFactoryBean.getQuartzScheduler()).thenReturn(scheduler);
+        schedulerService = new MotechSchedulerServiceImpl(schedulerFactoryBean, schedulerSettings);
+    }
+
+    @Test
+    public void shouldScheduleValidJobsInOneBatchAndReportInvalidOnes() throws SchedulerException {
+        ArgumentCaptor<Map> jobsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        SchedulableJob cronJob = new CronSchedulableJob(event("patient1"), "0 0 12 * * ?");
+        SchedulableJob repeatingJob = new RepeatingSchedulableJob(event("patient2"), 3, 60, now().plusDays(1).toDate(), null, false);
+        SchedulableJob invalidJob = new RunOnceSchedulableJob(event("patient3"), now().minusDays(1).toDate());
+
+        JobsBatchResult<SchedulableJob> result = schedulerService.scheduleJobs(asList(cronJob, invalidJob, repeatingJob));
+
+        verify(scheduler).scheduleJobs(jobsCaptor.capture(), eq(true));
+
+        Map<JobDetail, Set<? extends Trigger>> scheduled = jobsCaptor.getValue();
+        assertEquals(2, scheduled.size());
+
+        assertEquals(asList(cronJob, repeatingJob), result.getSucceeded());
+        assertEquals(1, result.getFailures().size());
+        assertSame(invalidJob, result.getFailures().get(0).getJob());
+        assertTrue(result.getFailures().get(0).getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void shouldScheduleJobsOneByOneWhenBatchFails() throws SchedulerException {
+        SchedulableJob firstJob = new CronSchedulableJob(event("patient1"), "0 0 12 * * ?");
+        SchedulableJob secondJob = new CronSchedulableJob(event("patient2"), "0 0 12 * * ?");
+
+        doThrow(new SchedulerException("batch failed")).when(scheduler).scheduleJobs(anyMap(), eq(true));
+        doThrow(new SchedulerException("job failed")).doNothing().when(scheduler)
+                .scheduleJob(any(JobDetail.class), (Set<? extends Trigger>) any(Set.class), eq(true));
+
+        JobsBatchResult<SchedulableJob> result = schedulerService.scheduleJobs(asList(firstJob, secondJob));
+
+        verify(scheduler, times(2)).scheduleJob(any(JobDetail.class), (Set<? extends Trigger>) any(Set.class), eq(true));
+        assertEquals(asList(secondJob), result.getSucceeded());
+        assertEquals(1, result.getFailures().size());
+        assertSame(firstJob, result.getFailures().get(0).getJob());
+    }
+
+    @Test
+    public void shouldUnscheduleJobsInBatch() throws SchedulerException {
+        ArgumentCaptor<List> keysCaptor = ArgumentCaptor.forClass(List.class);
+
+        JobId repeatingJobId = new RepeatingJobId(SUBJECT, "patient1");
+        JobId runOnceJobId = new RunOnceJobId(SUBJECT, "patient1");
+
+        JobsBatchResult<JobId> result = schedulerService.unscheduleJobs(asList(repeatingJobId, null, runOnceJobId));
+
+        verify(scheduler).unscheduleJobs(keysCaptor.capture());
+        List<TriggerKey> keys = keysCaptor.getValue();
+        assertEquals(asList(triggerKey(repeatingJobId.value(), MotechSchedulerServiceImpl.JOB_GROUP_NAME),
+                triggerKey(runOnceJobId.value(), MotechSchedulerServiceImpl.JOB_GROUP_NAME)), keys);
+
+        assertEquals(asList(repeatingJobId, runOnceJobId), result.getSucceeded());
+        assertEquals(1, result.getFailures().size());
+        assertNull(result.getFailures().get(0).getJob());
+    }
+
+    @Test
+    public void shouldReportNoFailuresForEmptyCollections() {
+        assertFalse(schedulerService.scheduleJobs(asList(new SchedulableJob[0])).hasFailures());
+        assertFalse(schedulerService.unscheduleJobs(asList(new JobId[0])).hasFailures());
+    }
+
+    private MotechEvent event(String externalId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, externalId);
+        return new MotechEvent(SUBJECT, params);
+    }
+}
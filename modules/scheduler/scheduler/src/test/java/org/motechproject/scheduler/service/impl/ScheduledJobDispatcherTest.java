@@ -0,0 +1,124 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.scheduler.contract.FireLagMetrics;
+import org.springframework.context.ApplicationContext;
+
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScheduledJobDispatcherTest {
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private EventRelay eventRelay;
+
+    private Properties properties = new Properties();
+
+    private SchedulerMetricsServiceImpl metricsService = new SchedulerMetricsServiceImpl();
+
+    private ScheduledJobDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        when(applicationContext.getBean(EventRelay.class)).thenReturn(eventRelay);
+    }
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void shouldPublishDirectlyAndLookUpEventRelayOnce() {
+        MotechEvent event = new MotechEvent("subject");
+
+        dispatcher = new ScheduledJobDispatcher(applicationContext, properties, metricsService);
+        dispatcher.start();
+
+        dispatcher.dispatch(event, new Date(System.currentTimeMillis() - 2000));
+        dispatcher.dispatch(event, new Date());
+
+        verify(eventRelay, times(2)).sendEventMessage(event);
+        verify(applicationContext, times(1)).getBean(EventRelay.class);
+
+        FireLagMetrics metrics = metricsService.getFireLagMetrics();
+        assertEquals(2, metrics.getPublishedCount());
+        assertTrue(metrics.getMaxLag() >= 2000);
+    }
+
+    @Test
+    public void shouldPublishThroughDispatchThreadsInPooledMode() {
+        properties.setProperty(ScheduledJobDispatcher.DISPATCH_MODE, ScheduledJobDispatcher.MODE_POOLED);
+        properties.setProperty(ScheduledJobDispatcher.DISPATCH_THREAD_COUNT, "2");
+        MotechEvent event = new MotechEvent("subject");
+
+        dispatcher = new ScheduledJobDispatcher(applicationContext, properties, metricsService);
+        dispatcher.start();
+
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(event, new Date());
+        }
+
+        verify(eventRelay, timeout(5000).times(100)).sendEventMessage(event);
+
+        dispatcher.stop();
+
+        FireLagMetrics metrics = metricsService.getFireLagMetrics();
+        assertEquals(100, metrics.getPublishedCount());
+        assertEquals(0, metrics.getQueuedCount());
+    }
+
+    @Test
+    public void shouldPublishDirectlyAfterDispatchThreadsAreStopped() {
+        properties.setProperty(ScheduledJobDispatcher.DISPATCH_MODE, ScheduledJobDispatcher.MODE_POOLED);
+        MotechEvent event = new MotechEvent("subject");
+
+        dispatcher = new ScheduledJobDispatcher(applicationContext, properties, metricsService);
+        dispatcher.start();
+        dispatcher.stop();
+
+        dispatcher.dispatch(event, new Date());
+
+        verify(eventRelay).sendEventMessage(event);
+
+        FireLagMetrics metrics = metricsService.getFireLagMetrics();
+        assertEquals(1, metrics.getPublishedCount());
+        assertEquals(0, metrics.getQueuedCount());
+    }
+
+    @Test
+    public void shouldRecordEventsThatCouldNotBePublished() {
+        MotechEvent event = new MotechEvent("subject");
+        doThrow(new IllegalStateException("broker down")).when(eventRelay).sendEventMessage(event);
+
+        dispatcher = new ScheduledJobDispatcher(applicationContext, properties, metricsService);
+        dispatcher.start();
+
+        dispatcher.dispatch(event, new Date());
+
+        FireLagMetrics metrics = metricsService.getFireLagMetrics();
+        assertEquals(0, metrics.getPublishedCount());
+        assertEquals(1, metrics.getFailedCount());
+    }
+}
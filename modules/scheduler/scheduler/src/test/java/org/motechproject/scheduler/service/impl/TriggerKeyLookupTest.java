@@ -0,0 +1,51 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.quartz.Scheduler;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.quartz.TriggerKey.triggerKey;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TriggerKeyLookupTest {
+
+    private static final String GROUP = "default";
+
+    @Mock
+    private Scheduler scheduler;
+
+    private TriggerKeyLookup triggerKeyLookup = new TriggerKeyLookup();
+
+    @Test
+    public void shouldFindTriggersStartingWithPrefixWhenJobsAreNotKeptInDatabase() throws Exception {
+        when(scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(GROUP))).thenReturn(new HashSet<>(asList(
+                triggerKey("reminder-patient1", GROUP), triggerKey("reminder-patient1-repeat", GROUP),
+                triggerKey("reminder-patient2", GROUP), triggerKey("other-reminder-patient1", GROUP))));
+
+        List<TriggerKey> keys = triggerKeyLookup.findByNamePrefix(scheduler, GROUP, "reminder-patient1");
+
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(triggerKey("reminder-patient1", GROUP)));
+        assertTrue(keys.contains(triggerKey("reminder-patient1-repeat", GROUP)));
+    }
+
+    @Test
+    public void shouldNotMatchAnyTriggersWithEmptyPrefix() throws Exception {
+        assertTrue(triggerKeyLookup.findByNamePrefix(scheduler, GROUP, "").isEmpty());
+        assertTrue(triggerKeyLookup.findByNamePrefix(scheduler, GROUP, null).isEmpty());
+
+        verifyZeroInteractions(scheduler);
+    }
+}
@@ -21,6 +21,17 @@ public final class EventSubjects {
     public static final String DATA_PROVIDER_SUBJECT = BASE_SUBJECT + "dataProvider.";
     public static final String DATA_PROVIDER_UPDATE_SUBJECT = DATA_PROVIDER_SUBJECT + "update";
 
+    /**
+     * Subjects of the events sent by MDS after tasks are created, updated or deleted.
+     */
+    public static final String TASK_CRUD_SUBJECT = "mds.crud.tasks.Task.";
+    public static final String TASK_CREATE_SUBJECT = TASK_CRUD_SUBJECT + "CREATE";
+    public static final String TASK_UPDATE_SUBJECT = TASK_CRUD_SUBJECT + "UPDATE";
+    public static final String TASK_DELETE_SUBJECT = TASK_CRUD_SUBJECT + "DELETE";
+    public static final String TASK_CREATE_BULK_SUBJECT = TASK_CREATE_SUBJECT + "_BULK";
+    public static final String TASK_UPDATE_BULK_SUBJECT = TASK_UPDATE_SUBJECT + "_BULK";
+    public static final String TASK_DELETE_BULK_SUBJECT = TASK_DELETE_SUBJECT + "_BULK";
+
     /**
      * Creates a subject used by the task trigger handler to send an event notifying about successful task execution.
      *
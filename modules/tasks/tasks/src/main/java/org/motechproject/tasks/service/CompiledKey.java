@@ -0,0 +1,59 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A key of a trigger or data source field together with its compiled manipulations.
+ */
+final class CompiledKey {
+    private final KeyInformation keyInformation;
+    private final List<Manipulation> manipulations;
+    private final String placeholder;
+
+    private CompiledKey(KeyInformation keyInformation, List<Manipulation> manipulations) {
+        this.keyInformation = keyInformation;
+        this.manipulations = manipulations;
+        this.placeholder = String.format("{{%s}}", keyInformation.getOriginalKey());
+    }
+
+    /**
+     * Compiles manipulations of the given key.
+     *
+     * @param keyInformation  the key, not null
+     * @return the compiled key
+     */
+    static CompiledKey compile(KeyInformation keyInformation) {
+        List<Manipulation> manipulations = new ArrayList<>(keyInformation.getManipulations().size());
+
+        for (String manipulation : keyInformation.getManipulations()) {
+            manipulations.add(Manipulation.compile(manipulation));
+        }
+
+        return new CompiledKey(keyInformation, Collections.unmodifiableList(manipulations));
+    }
+
+    KeyInformation getKeyInformation() {
+        return keyInformation;
+    }
+
+    List<Manipulation> getManipulations() {
+        return manipulations;
+    }
+
+    boolean hasManipulations() {
+        return !manipulations.isEmpty();
+    }
+
+    /**
+     * Returns the representation of this key in a template, e.g. <code>{{trigger.message?toupper}}</code>.
+     *
+     * @return the placeholder of this key
+     */
+    String getPlaceholder() {
+        return placeholder;
+    }
+}
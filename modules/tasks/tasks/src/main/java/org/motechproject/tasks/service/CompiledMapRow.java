@@ -0,0 +1,42 @@
+package org.motechproject.tasks.service;
+
+/**
+ * A single row of a map template. The row either defines a single entry, <code>key: value</code>, or contains
+ * a key of a map which entries should be all added.
+ */
+final class CompiledMapRow {
+    private final CompiledTemplate key;
+    private final CompiledTemplate value;
+
+    private CompiledMapRow(CompiledTemplate key, CompiledTemplate value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Compiles the given row of a map template.
+     *
+     * @param row  the row, not null
+     * @return the compiled row
+     * @throws IllegalArgumentException if the row contains an incorrect key
+     */
+    static CompiledMapRow compile(String row) {
+        String[] array = row.split(":", 2);
+
+        return array.length == 2
+                ? new CompiledMapRow(CompiledTemplate.compile(array[0]), CompiledTemplate.compile(array[1].trim()))
+                : new CompiledMapRow(CompiledTemplate.compile(array[0]), null);
+    }
+
+    CompiledTemplate getKey() {
+        return key;
+    }
+
+    CompiledTemplate getValue() {
+        return value;
+    }
+
+    boolean isEntry() {
+        return value != null;
+    }
+}
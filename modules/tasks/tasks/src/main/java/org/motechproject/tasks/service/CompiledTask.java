@@ -0,0 +1,207 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.DataSource;
+import org.motechproject.tasks.domain.Filter;
+import org.motechproject.tasks.domain.FilterSet;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.Lookup;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.motechproject.tasks.domain.ParameterType.LIST;
+
+/**
+ * Immutable evaluation plan of a task. Holds compiled values of the task actions, data source lookups and the keys
+ * of the task filters, so they don't have to be parsed each time the task is executed. Templates which are not part
+ * of the plan are compiled when they are requested.
+ */
+public final class CompiledTask {
+    private final Long taskId;
+    private final Map<String, CompiledTemplate> templates;
+    private final Map<String, List<CompiledTemplate>> lists;
+    private final Map<String, List<CompiledMapRow>> maps;
+    private final Map<String, CompiledKey> keys;
+
+    /**
+     * Creates an empty plan, which compiles every template when it is requested.
+     */
+    public CompiledTask() {
+        this(null, new HashMap<String, CompiledTemplate>(), new HashMap<String, List<CompiledTemplate>>(),
+                new HashMap<String, List<CompiledMapRow>>(), new HashMap<String, CompiledKey>());
+    }
+
+    private CompiledTask(Long taskId, Map<String, CompiledTemplate> templates,
+                         Map<String, List<CompiledTemplate>> lists, Map<String, List<CompiledMapRow>> maps,
+                         Map<String, CompiledKey> keys) {
+        this.taskId = taskId;
+        this.templates = Collections.unmodifiableMap(templates);
+        this.lists = Collections.unmodifiableMap(lists);
+        this.maps = Collections.unmodifiableMap(maps);
+        this.keys = Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * Compiles the given task. Incorrect templates are left out of the plan, so that their errors are reported
+     * when the task is executed.
+     *
+     * @param task  the task, not null
+     * @return the plan of the task
+     */
+    public static CompiledTask compile(Task task) {
+        Map<String, CompiledTemplate> templates = new HashMap<>();
+        Map<String, List<CompiledTemplate>> lists = new HashMap<>();
+        Map<String, List<CompiledMapRow>> maps = new HashMap<>();
+        Map<String, CompiledKey> keys = new HashMap<>();
+
+        for (TaskActionInformation action : task.getActions()) {
+            if (action.getValues() != null) {
+                for (String value : action.getValues().values()) {
+                    if (value != null) {
+                        addTemplate(templates, value);
+                        addList(templates, lists, value);
+                        addMap(maps, value);
+                    }
+                }
+            }
+        }
+
+        TaskConfig config = task.getTaskConfig();
+
+        if (config != null) {
+            for (DataSource dataSource : config.getDataSources()) {
+                if (dataSource.getLookup() != null) {
+                    for (Lookup lookup : dataSource.getLookup()) {
+                        addTemplate(templates, lookup.getValue());
+                    }
+                }
+            }
+
+            for (FilterSet filterSet : config.getFilters()) {
+                if (filterSet.getFilters() != null) {
+                    for (Filter filter : filterSet.getFilters()) {
+                        addKey(keys, filter.getKey());
+                    }
+                }
+            }
+        }
+
+        return new CompiledTask(task.getId(), templates, lists, maps, keys);
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Returns the compiled template.
+     *
+     * @param template  the template
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template contains an incorrect key
+     */
+    CompiledTemplate getTemplate(String template) {
+        CompiledTemplate compiled = templates.get(template);
+        return compiled != null ? compiled : CompiledTemplate.compile(template);
+    }
+
+    /**
+     * Returns compiled items of the given list template, one for each line.
+     *
+     * @param template  the list template, not null
+     * @return the compiled items
+     * @throws IllegalArgumentException if the template contains an incorrect key
+     */
+    List<CompiledTemplate> getListTemplates(String template) {
+        List<CompiledTemplate> compiled = lists.get(template);
+        return compiled != null ? compiled : compileList(templates, template);
+    }
+
+    /**
+     * Returns compiled rows of the given map template.
+     *
+     * @param template  the map template, not null
+     * @return the compiled rows
+     * @throws IllegalArgumentException if the template contains an incorrect key
+     */
+    List<CompiledMapRow> getMapTemplates(String template) {
+        List<CompiledMapRow> compiled = maps.get(template);
+        return compiled != null ? compiled : compileMap(template);
+    }
+
+    /**
+     * Returns the compiled key of a filter.
+     *
+     * @param key  the key, not null
+     * @return the compiled key
+     * @throws IllegalArgumentException if the key is incorrect
+     */
+    CompiledKey getKey(String key) {
+        CompiledKey compiled = keys.get(key);
+        return compiled != null ? compiled : CompiledKey.compile(KeyInformation.parse(key));
+    }
+
+    private static void addTemplate(Map<String, CompiledTemplate> templates, String template) {
+        try {
+            if (!templates.containsKey(template)) {
+                templates.put(template, CompiledTemplate.compile(template));
+            }
+        } catch (RuntimeException e) {
+            // left out of the plan
+        }
+    }
+
+    private static void addList(Map<String, CompiledTemplate> templates, Map<String, List<CompiledTemplate>> lists,
+                                String template) {
+        try {
+            lists.put(template, compileList(templates, template));
+        } catch (RuntimeException e) {
+            // left out of the plan
+        }
+    }
+
+    private static void addMap(Map<String, List<CompiledMapRow>> maps, String template) {
+        try {
+            maps.put(template, compileMap(template));
+        } catch (RuntimeException e) {
+            // left out of the plan
+        }
+    }
+
+    private static void addKey(Map<String, CompiledKey> keys, String key) {
+        try {
+            keys.put(key, CompiledKey.compile(KeyInformation.parse(key)));
+        } catch (RuntimeException e) {
+            // left out of the plan
+        }
+    }
+
+    private static List<CompiledTemplate> compileList(Map<String, CompiledTemplate> templates, String template) {
+        List<String> items = (List<String>) LIST.parse(template);
+        List<CompiledTemplate> compiled = new ArrayList<>(items.size());
+
+        for (String item : items) {
+            CompiledTemplate compiledItem = templates.get(item);
+            compiled.add(compiledItem != null ? compiledItem : CompiledTemplate.compile(item));
+        }
+
+        return Collections.unmodifiableList(compiled);
+    }
+
+    private static List<CompiledMapRow> compileMap(String template) {
+        String[] rows = template.split("(\\r)?\\n");
+        List<CompiledMapRow> compiled = new ArrayList<>(rows.length);
+
+        for (String row : rows) {
+            compiled.add(CompiledMapRow.compile(row));
+        }
+
+        return Collections.unmodifiableList(compiled);
+    }
+}
@@ -0,0 +1,104 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template split into the literal text and the keys which should be replaced with their values. Literals and keys
+ * alternate, starting and ending with a literal, so evaluating the template only requires appending the values.
+ */
+final class CompiledTemplate {
+
+    // the same expression as used by KeyInformation.parseAll
+    private static final Pattern KEY_PATTERN = Pattern.compile("\\{\\{((.*?))(\\}\\})(?![^(]*\\))");
+
+    private final String template;
+    private final List<String> literals;
+    private final List<CompiledKey> keys;
+    private final boolean replaceRequired;
+
+    private CompiledTemplate(String template, List<String> literals, List<CompiledKey> keys) {
+        this.template = template;
+        this.literals = Collections.unmodifiableList(literals);
+        this.keys = Collections.unmodifiableList(keys);
+        this.replaceRequired = isReplaceRequired(literals, keys);
+    }
+
+    /**
+     * Compiles the given template.
+     *
+     * @param template  the template, null will compile to a template without keys
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template contains an incorrect key
+     */
+    static CompiledTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<CompiledKey> keys = new ArrayList<>();
+
+        if (template != null) {
+            Matcher matcher = KEY_PATTERN.matcher(template);
+            int end = 0;
+
+            while (matcher.find()) {
+                literals.add(template.substring(end, matcher.start()));
+                keys.add(CompiledKey.compile(KeyInformation.parse(matcher.group(1))));
+                end = matcher.end();
+            }
+
+            literals.add(template.substring(end));
+        }
+
+        return new CompiledTemplate(template, literals, keys);
+    }
+
+    String getTemplate() {
+        return template;
+    }
+
+    List<String> getLiterals() {
+        return literals;
+    }
+
+    List<CompiledKey> getKeys() {
+        return keys;
+    }
+
+    boolean hasKeys() {
+        return !keys.isEmpty();
+    }
+
+    /**
+     * Checks whether placeholders of the keys must be replaced in the whole template, instead of only at the
+     * positions where the keys were found. This is the case when a placeholder also appears in the text which
+     * wasn't recognized as a key, e.g. inside the arguments of a manipulation.
+     *
+     * @return true if the placeholders must be replaced in the whole template
+     */
+    boolean isReplaceRequired() {
+        return replaceRequired;
+    }
+
+    private static boolean isReplaceRequired(List<String> literals, List<CompiledKey> keys) {
+        for (CompiledKey key : keys) {
+            for (String literal : literals) {
+                if (literal.contains(key.getPlaceholder())) {
+                    return true;
+                }
+            }
+
+            for (CompiledKey other : keys) {
+                if (!other.getPlaceholder().equals(key.getPlaceholder())
+                        && other.getPlaceholder().contains(key.getPlaceholder())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
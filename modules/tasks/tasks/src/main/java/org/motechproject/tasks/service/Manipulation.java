@@ -0,0 +1,406 @@
+package org.motechproject.tasks.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.WordUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * A single manipulation of a key value, e.g. <code>substring(0,5)</code>, compiled from its string representation.
+ * Arguments, patterns and formatters of the manipulation are parsed once, so applying it only transforms the value.
+ * An incorrect manipulation is reported when it is applied, the same way as if it was parsed at that time.
+ */
+abstract class Manipulation {
+
+    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
+    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
+    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
+    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
+    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
+    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
+    private static final int MINUS_DAYS_PATTERN_BEGIN_INDEX = 10;
+    private static final int PLUS_HOURS_PATTERN_BEGIN_INDEX = 10;
+    private static final int MINUS_HOURS_PATTERN_BEGIN_INDEX = 11;
+    private static final int PLUS_MINUTES_PATTERN_BEGIN_INDEX = 12;
+    private static final int MINUS_MINUTES_PATTERN_BEGIN_INDEX = 13;
+    private static final int PARSE_DATE_PATTERN_BEGIN_INDEX = 10;
+
+    private final String manipulation;
+
+    Manipulation(String manipulation) {
+        this.manipulation = manipulation;
+    }
+
+    /**
+     * Applies this manipulation to the given value.
+     *
+     * @param value  the value to manipulate, not null
+     * @param keyEvaluator  the evaluator used for keys which are arguments of the manipulation
+     * @return the manipulated value
+     * @throws TaskHandlerException if the value of an argument couldn't be retrieved
+     */
+    abstract String apply(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException;
+
+    /**
+     * Returns the string representation of this manipulation.
+     *
+     * @return the manipulation
+     */
+    String getManipulation() {
+        return manipulation;
+    }
+
+    /**
+     * Compiles the given manipulation. Errors in the manipulation are deferred until it is applied.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the compiled manipulation
+     */
+    static Manipulation compile(String manipulation) {
+        Manipulation compiled;
+
+        try {
+            compiled = compileStrictly(manipulation);
+        } catch (RuntimeException e) {
+            compiled = new InvalidManipulation(manipulation);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compiles the given manipulation, which is not a <code>format</code> manipulation.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the compiled manipulation
+     * @throws RuntimeException if the manipulation is incorrect
+     */
+    static ValueManipulation compileValueManipulation(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        ValueManipulation compiled;
+
+        if (lowerCase.contains("join")) {
+            compiled = new JoinManipulation(manipulation);
+        } else if (lowerCase.contains("datetime")) {
+            compiled = new DateTimeManipulation(manipulation);
+        } else if (lowerCase.contains("substring")) {
+            compiled = new SubstringManipulation(manipulation);
+        } else if (lowerCase.contains("split")) {
+            compiled = new SplitManipulation(manipulation);
+        } else if (lowerCase.contains("parsedate")) {
+            compiled = new ParseDateManipulation(manipulation);
+        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
+            compiled = new DateTimeChangeManipulation(manipulation, lowerCase);
+        } else {
+            compiled = new SimpleManipulation(manipulation, lowerCase.replace("()", ""));
+        }
+
+        return compiled;
+    }
+
+    private static Manipulation compileStrictly(String manipulation) {
+        return manipulation.contains("format")
+                ? new FormatManipulation(manipulation)
+                : compileValueManipulation(manipulation);
+    }
+
+    private static String getArgument(String manipulation, int beginIndex) {
+        return manipulation.substring(beginIndex, manipulation.length() - 1);
+    }
+
+    /**
+     * Manipulation which doesn't depend on values of other keys.
+     */
+    abstract static class ValueManipulation extends Manipulation {
+
+        ValueManipulation(String manipulation) {
+            super(manipulation);
+        }
+
+        abstract String apply(String value);
+
+        @Override
+        String apply(String value, KeyEvaluator keyEvaluator) {
+            return apply(value);
+        }
+    }
+
+    private static final class InvalidManipulation extends Manipulation {
+
+        InvalidManipulation(String manipulation) {
+            super(manipulation);
+        }
+
+        @Override
+        String apply(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+            // compiling it again throws the original error
+            return compileStrictly(getManipulation()).apply(value, keyEvaluator);
+        }
+    }
+
+    private static final class FormatManipulation extends Manipulation {
+        private final String[] items;
+        private final KeyInformation[] keys;
+
+        FormatManipulation(String manipulation) {
+            super(manipulation);
+            String formatElements = getArgument(manipulation, FORMAT_PATTERN_BEGIN_INDEX);
+
+            if (isNotBlank(formatElements)) {
+                items = formatElements.split(",");
+                keys = new KeyInformation[items.length];
+
+                for (int i = 0; i < items.length; ++i) {
+                    String item = items[i];
+
+                    if (item.startsWith("{{") && item.endsWith("}}")) {
+                        keys[i] = KeyInformation.parse(item.substring(2, item.length() - 2));
+                    }
+                }
+            } else {
+                items = null;
+                keys = null;
+            }
+        }
+
+        @Override
+        String apply(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+            if (items == null) {
+                return value;
+            }
+
+            String[] values = new String[items.length];
+
+            for (int i = 0; i < items.length; ++i) {
+                if (keys[i] == null) {
+                    values[i] = items[i];
+                } else {
+                    Object subValue = keyEvaluator.getValue(keys[i]);
+                    values[i] = subValue != null ? subValue.toString() : "";
+                }
+            }
+
+            return String.format(value, (Object[]) values);
+        }
+    }
+
+    private static final class JoinManipulation extends ValueManipulation {
+        private final String separator;
+
+        JoinManipulation(String manipulation) {
+            super(manipulation);
+            separator = getArgument(manipulation, JOIN_PATTERN_BEGIN_INDEX);
+        }
+
+        @Override
+        String apply(String value) {
+            return StringUtils.join(value.split(" "), separator);
+        }
+    }
+
+    private static final class DateTimeManipulation extends ValueManipulation {
+        private final DateTimeFormatter targetFormat;
+
+        DateTimeManipulation(String manipulation) {
+            super(manipulation);
+            String pattern = getArgument(manipulation, DATETIME_PATTERN_BEGIN_INDEX);
+
+            try {
+                targetFormat = DateTimeFormat.forPattern(pattern);
+            } catch (IllegalArgumentException e) {
+                throw new MotechException("error.date.format", e);
+            }
+        }
+
+        @Override
+        String apply(String value) {
+            try {
+                return targetFormat.print(new DateTime(value));
+            } catch (IllegalArgumentException e) {
+                throw new MotechException("error.date.format", e);
+            }
+        }
+    }
+
+    private static final class SubstringManipulation extends ValueManipulation {
+        private final int[] indexes;
+
+        SubstringManipulation(String manipulation) {
+            super(manipulation);
+            String pattern = getArgument(manipulation, SUBSTRING_PATTERN_BEGIN_INDEX);
+            String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
+
+            if (splitValue.length != 1 && splitValue.length != 2) {
+                throw new IllegalArgumentException("Incorrect pattern for substring manipulation");
+            }
+
+            indexes = new int[splitValue.length];
+
+            for (int i = 0; i < splitValue.length; ++i) {
+                indexes[i] = Integer.parseInt(splitValue[i]);
+            }
+        }
+
+        @Override
+        String apply(String value) {
+            return indexes.length == 1
+                    ? value.substring(indexes[0])
+                    : value.substring(indexes[0], indexes[1]);
+        }
+    }
+
+    private static final class SplitManipulation extends ValueManipulation {
+        private final Pattern regex;
+        private final int idx;
+
+        SplitManipulation(String manipulation) {
+            super(manipulation);
+            String[] splitValue = getArgument(manipulation, SPLIT_PATTERN_BEGIN_INDEX).split(",");
+
+            regex = Pattern.compile(splitValue[0]);
+            idx = Integer.parseInt(splitValue[1]);
+        }
+
+        @Override
+        String apply(String value) {
+            return regex.split(value)[idx];
+        }
+    }
+
+    private static final class ParseDateManipulation extends ValueManipulation {
+        private final DateTimeFormatter formatter;
+
+        ParseDateManipulation(String manipulation) {
+            super(manipulation);
+            formatter = DateTimeFormat.forPattern(getArgument(manipulation, PARSE_DATE_PATTERN_BEGIN_INDEX));
+        }
+
+        @Override
+        String apply(String value) {
+            return formatter.parseDateTime(value).toString("yyyy-MM-dd HH:mm Z");
+        }
+    }
+
+    private static final class DateTimeChangeManipulation extends ValueManipulation {
+        private final DateTimeChange change;
+        private final int amount;
+
+        DateTimeChangeManipulation(String manipulation, String lowerCase) {
+            super(manipulation);
+            change = DateTimeChange.find(lowerCase);
+            amount = Integer.parseInt(getArgument(lowerCase, change.getBeginIndex()));
+        }
+
+        @Override
+        String apply(String value) {
+            return change.apply(new DateTime(value), amount).toString();
+        }
+    }
+
+    private static final class SimpleManipulation extends ValueManipulation {
+        private final String name;
+
+        SimpleManipulation(String manipulation, String name) {
+            super(manipulation);
+            this.name = name;
+        }
+
+        @Override
+        String apply(String value) {
+            String result;
+            switch (name) {
+                case "toupper":
+                    result = value.toUpperCase();
+                    break;
+                case "tolower":
+                    result = value.toLowerCase();
+                    break;
+                case "capitalize":
+                    result = WordUtils.capitalize(value);
+                    break;
+                case "urlencode":
+                    try {
+                        result = URLEncoder.encode(value, "UTF-8");
+                    } catch (UnsupportedEncodingException e) {
+                        throw new MotechException("URLEncode manipulator error.", e);
+                    }
+                    break;
+                default:
+                    throw new MotechException("task.warning.manipulation");
+            }
+            return result;
+        }
+    }
+
+    private enum DateTimeChange {
+        PLUS_DAYS("plusdays", PLUS_DAYS_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.plusDays(amount);
+            }
+        },
+        MINUS_DAYS("minusdays", MINUS_DAYS_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.minusDays(amount);
+            }
+        },
+        PLUS_HOURS("plushours", PLUS_HOURS_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.plusHours(amount);
+            }
+        },
+        MINUS_HOURS("minushours", MINUS_HOURS_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.minusHours(amount);
+            }
+        },
+        PLUS_MINUTES("plusminutes", PLUS_MINUTES_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.plusMinutes(amount);
+            }
+        },
+        MINUS_MINUTES("minusminutes", MINUS_MINUTES_PATTERN_BEGIN_INDEX) {
+            @Override
+            DateTime apply(DateTime dateTime, int amount) {
+                return dateTime.minusMinutes(amount);
+            }
+        };
+
+        private final String name;
+        private final int beginIndex;
+
+        DateTimeChange(String name, int beginIndex) {
+            this.name = name;
+            this.beginIndex = beginIndex;
+        }
+
+        abstract DateTime apply(DateTime dateTime, int amount);
+
+        int getBeginIndex() {
+            return beginIndex;
+        }
+
+        static DateTimeChange find(String manipulation) {
+            for (DateTimeChange change : values()) {
+                if (manipulation.contains(change.name)) {
+                    return change;
+                }
+            }
+            throw new MotechException("task.warning.manipulation");
+        }
+    }
+}
@@ -6,7 +6,6 @@ import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.tasks.domain.ActionEvent;
 import org.motechproject.tasks.domain.ActionParameter;
-import org.motechproject.tasks.domain.KeyInformation;
 import org.motechproject.tasks.domain.ParameterType;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
@@ -35,6 +34,7 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
 
 /**
  * Builds action parameters from  {@link TaskContext} and executes the action by invoking its service or raising its event.
+ * The executor doesn't keep any state of the execution, so actions of different tasks can be executed concurrently.
  */
 @Component
 public class TaskActionExecutor {
@@ -45,7 +45,6 @@ public class TaskActionExecutor {
 
     private TaskService taskService;
     private TaskActivityService activityService;
-    private KeyEvaluator keyEvaluator;
 
     @Autowired
     public TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
@@ -65,9 +64,10 @@ public class TaskActionExecutor {
      */
     public void execute(Task task, TaskActionInformation actionInformation, TaskContext taskContext) throws TaskHandlerException {
         LOGGER.info("Executing task action: {} from task: {}", actionInformation.getName(), task.getName());
-        this.keyEvaluator = new KeyEvaluator(taskContext);
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         ActionEvent action = getActionEvent(actionInformation);
-        Map<String, Object> parameters = createParameters(actionInformation, action);
+        Map<String, Object> parameters = createParameters(actionInformation, action, taskContext.getCompiledTask(),
+                keyEvaluator);
         LOGGER.debug("Parameters created: {} for task action: {}", parameters.toString(), action.getName());
 
         if (action.hasService() && bundleContext != null) {
@@ -100,8 +100,9 @@ public class TaskActionExecutor {
         return action;
     }
 
-    private Map<String, Object> createParameters(TaskActionInformation info,
-                                         ActionEvent action) throws TaskHandlerException {
+    private Map<String, Object> createParameters(TaskActionInformation info, ActionEvent action,
+                                                 CompiledTask compiledTask, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
         SortedSet<ActionParameter> actionParameters = action.getActionParameters();
         Map<String, Object> parameters = new HashMap<>(actionParameters.size());
 
@@ -119,14 +120,14 @@ public class TaskActionExecutor {
 
                 switch (actionParameter.getType()) {
                     case LIST:
-                        parameters.put(key, convertToList((List<String>) LIST.parse(template)));
+                        parameters.put(key, convertToList(compiledTask.getListTemplates(template), keyEvaluator));
                         break;
                     case MAP:
-                        parameters.put(key, convertToMap(template));
+                        parameters.put(key, convertToMap(compiledTask.getMapTemplates(template), keyEvaluator));
                         break;
                     default:
                         try {
-                            String userInput = keyEvaluator.evaluateTemplateString(template);
+                            String userInput = keyEvaluator.evaluateTemplate(compiledTask.getTemplate(template));
                             Object obj = actionParameter.getType().parse(userInput);
                             parameters.put(key, obj);
                         } catch (MotechException ex) {
@@ -152,65 +153,57 @@ public class TaskActionExecutor {
         return parameters;
     }
 
-    private Map<Object, Object> convertToMap(String template) throws TaskHandlerException {
-        String[] rows = template.split("(\\r)?\\n");
-        Map<Object, Object> tempMap = new HashMap<>(rows.length);
+    private Map<Object, Object> convertToMap(List<CompiledMapRow> rows, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
+        Map<Object, Object> tempMap = new HashMap<>(rows.size());
 
-        for (String row : rows) {
-            String[] array = row.split(":", 2);
+        for (CompiledMapRow row : rows) {
             Object mapKey;
             Object mapValue;
 
-            switch (array.length) {
-                case 2:
-                    array[1] = array[1].trim();
-                    mapKey = getValue(array[0]);
-                    mapValue = getValue(array[1]);
+            if (row.isEntry()) {
+                mapKey = getValue(row.getKey(), keyEvaluator);
+                mapValue = getValue(row.getValue(), keyEvaluator);
 
-                    tempMap.put(
-                        ParameterType.getType(mapKey.getClass()).parse(keyEvaluator.evaluateTemplateString(array[0])),
-                        ParameterType.getType(mapValue.getClass()).parse(keyEvaluator.evaluateTemplateString(array[1]))
-                    );
-                    break;
-                case 1:
-                    mapValue = getValue(array[0]);
-                    if (mapValue instanceof Multimap) {
-                        tempMap.putAll(((Multimap) mapValue).asMap());
-                    } else {
-                        tempMap.putAll((Map) mapValue);
-                    }
-                    break;
-                default:
+                tempMap.put(
+                    ParameterType.getType(mapKey.getClass()).parse(keyEvaluator.evaluateTemplate(row.getKey())),
+                    ParameterType.getType(mapValue.getClass()).parse(keyEvaluator.evaluateTemplate(row.getValue()))
+                );
+            } else {
+                mapValue = getValue(row.getKey(), keyEvaluator);
+                if (mapValue instanceof Multimap) {
+                    tempMap.putAll(((Multimap) mapValue).asMap());
+                } else {
+                    tempMap.putAll((Map) mapValue);
+                }
             }
         }
         return tempMap;
     }
 
-    private List<Object> convertToList(List<String> templates) throws TaskHandlerException {
+    private List<Object> convertToList(List<CompiledTemplate> templates, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
         List<Object> tempList = new ArrayList<>();
 
-        for (String template : templates) {
-            Object value = getValue(template.trim());
+        for (CompiledTemplate template : templates) {
+            Object value = getValue(template, keyEvaluator);
 
             if (value instanceof Collection) {
                 tempList.addAll((Collection) value);
             } else {
-                tempList.add(ParameterType.getType(value.getClass()).parse(keyEvaluator.evaluateTemplateString(template)));
+                tempList.add(ParameterType.getType(value.getClass()).parse(keyEvaluator.evaluateTemplate(template)));
             }
         }
 
         return tempList;
     }
 
-    private Object getValue(String row) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
-
+    private Object getValue(CompiledTemplate template, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         Object result;
-        if (keys.isEmpty()) {
-            result = row;
+        if (template.hasKeys()) {
+            result = keyEvaluator.getValue(template.getKeys().get(0).getKeyInformation());
         } else {
-            KeyInformation rowKeyInfo = keys.get(0);
-            result = keyEvaluator.getValue(rowKeyInfo);
+            result = template.getTemplate();
         }
 
         return result;
@@ -0,0 +1,254 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists task activities and failure counters of tasks in the background. Activities are queued and saved in
+ * batches, each batch in a single transaction. For failure counters only the latest value for each task is kept
+ * until the next flush, and they are saved through the MDS update of the tasks. A batch or counters, which could not
+ * be saved, are put back and saved again with the next flush, as long as they fit in the queue. When the queue is
+ * full, the calling thread flushes it and saves its activity directly if the queue is still full afterwards. On
+ * shutdown the pending writes are flushed once and the later writes are saved directly in the calling thread.
+ */
+@Component
+public class TaskActivityWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityWriter.class);
+
+    private static final String QUEUE_SIZE_KEY = "task.activity.queue.size";
+    private static final String BATCH_SIZE_KEY = "task.activity.batch.size";
+    private static final String FLUSH_INTERVAL_KEY = "task.activity.flush.interval";
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private TaskActivitiesDataService taskActivitiesDataService;
+    private TasksDataService tasksDataService;
+
+    private BlockingQueue<TaskActivity> activities;
+    private ConcurrentMap<Long, Integer> failuresInRow = new ConcurrentHashMap<>();
+    private int batchSize;
+    private int flushInterval;
+
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+    private volatile boolean stopped;
+
+    @Autowired
+    public TaskActivityWriter(TaskActivitiesDataService taskActivitiesDataService, TasksDataService tasksDataService,
+                              @Qualifier("tasksSettings") SettingsFacade settings) {
+        this.taskActivitiesDataService = taskActivitiesDataService;
+        this.tasksDataService = tasksDataService;
+        this.activities = new ArrayBlockingQueue<>(getIntProperty(settings, QUEUE_SIZE_KEY, DEFAULT_QUEUE_SIZE));
+        this.batchSize = getIntProperty(settings, BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        this.flushInterval = getIntProperty(settings, FLUSH_INTERVAL_KEY, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Starts the background flushing of the pending writes.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (flusher == null && !stopped) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-task-activity-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules saving of the given activity.
+     *
+     * @param activity  the activity to save
+     */
+    public void write(TaskActivity activity) {
+        if (stopped) {
+            saveActivities(Collections.singletonList(activity));
+        } else if (!activities.offer(activity)) {
+            LOGGER.debug("Task activity queue is full, flushing it in the calling thread");
+            flush();
+
+            if (!activities.offer(activity)) {
+                saveActivities(Collections.singletonList(activity));
+            }
+        }
+    }
+
+    /**
+     * Schedules saving of the current number of failures in row of the given task.
+     *
+     * @param task  the task, which failures counter should be saved
+     */
+    public void writeFailuresInRow(Task task) {
+        if (task.getId() != null) {
+            failuresInRow.put(task.getId(), task.getFailuresInRow());
+
+            if (stopped) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Saves all pending activities and failure counters.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<TaskActivity> batch = new ArrayList<>(batchSize);
+
+            while (activities.drainTo(batch, batchSize) > 0) {
+                if (!saveActivities(batch)) {
+                    // the remaining batches would most likely fail as well, they are retried with the next flush
+                    requeue(batch);
+                    break;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+
+            saveFailuresInRow();
+        }
+    }
+
+    /**
+     * Stops the background flushing and saves everything that is pending. Writes after shutdown are done in the
+     * calling thread.
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            stopped = true;
+
+            if (flusher != null) {
+                flusher.shutdown();
+                flusher = null;
+            }
+        }
+
+        flush();
+    }
+
+    private boolean saveActivities(final List<TaskActivity> batch) {
+        try {
+            taskActivitiesDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (TaskActivity activity : batch) {
+                        taskActivitiesDataService.create(activity);
+                    }
+                }
+            });
+
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to save {} task activities", batch.size(), e);
+            return false;
+        }
+    }
+
+    private void requeue(List<TaskActivity> batch) {
+        int dropped = 0;
+
+        for (TaskActivity activity : batch) {
+            if (stopped || !activities.offer(activity)) {
+                dropped++;
+            }
+        }
+
+        if (dropped > 0) {
+            LOGGER.error("Unable to put back {} task activities, they will not be saved", dropped);
+        }
+    }
+
+    private void saveFailuresInRow() {
+        final Map<Long, Integer> counters = new HashMap<>();
+        for (Long taskId : failuresInRow.keySet()) {
+            Integer value = failuresInRow.remove(taskId);
+            if (value != null) {
+                counters.put(taskId, value);
+            }
+        }
+
+        if (counters.isEmpty()) {
+            return;
+        }
+
+        try {
+            tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (Map.Entry<Long, Integer> entry : counters.entrySet()) {
+                        Task task = tasksDataService.findById(entry.getKey());
+
+                        if (task != null && task.getFailuresInRow() != entry.getValue()) {
+                            task.setFailuresInRow(entry.getValue());
+                            tasksDataService.update(task);
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to save failure counters of {} tasks", counters.size(), e);
+
+            if (!stopped) {
+                for (Map.Entry<Long, Integer> entry : counters.entrySet()) {
+                    // a newer counter written in the meantime wins
+                    failuresInRow.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static int getIntProperty(SettingsFacade settings, String key, int defaultValue) {
+        String property = (settings == null) ? null : settings.getProperty(key);
+
+        if (property == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(property.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("The value of key: {} is not a number. Using the default value: {}", key, defaultValue);
+            return defaultValue;
+        }
+    }
+}
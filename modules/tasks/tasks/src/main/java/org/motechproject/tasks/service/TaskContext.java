@@ -25,19 +25,34 @@ public class TaskContext {
     private Map<String, Object> parameters;
     private TaskActivityService activityService;
     private Set<DataSourceObject> dataSourceObjects;
+    private CompiledTask compiledTask;
 
     /**
-     * Class constructor.
+     * Class constructor. Templates of the task will be compiled when they are evaluated.
      *
      * @param task  the task, not null
      * @param parameters  the task parameters
      * @param activityService  the activity service, not null
      */
     public TaskContext(Task task, Map<String, Object> parameters, TaskActivityService activityService) {
+        this(task, parameters, activityService, new CompiledTask());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param task  the task, not null
+     * @param parameters  the task parameters
+     * @param activityService  the activity service, not null
+     * @param compiledTask  the compiled templates of the task, not null
+     */
+    public TaskContext(Task task, Map<String, Object> parameters, TaskActivityService activityService,
+                       CompiledTask compiledTask) {
         this.task = task;
         this.parameters = parameters;
         this.activityService = activityService;
         this.dataSourceObjects = new HashSet<>();
+        this.compiledTask = compiledTask;
     }
 
     /**
@@ -123,6 +138,10 @@ public class TaskContext {
         return parameters;
     }
 
+    public CompiledTask getCompiledTask() {
+        return compiledTask;
+    }
+
     private DataSourceObject getDataSourceObject(String objectId) {
         for (DataSourceObject dataSourceObject : dataSourceObjects) {
             if (dataSourceObject.getObjectId().equals(objectId)) {
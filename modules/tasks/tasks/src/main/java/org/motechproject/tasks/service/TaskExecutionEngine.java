@@ -0,0 +1,198 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tasks triggered by a single event on a pool of worker threads, so that a slow task doesn't hold back the
+ * other ones. The size of the pool and the time limit for the execution of tasks are configured in the tasks
+ * settings. Tasks which don't finish in time are cancelled and their threads interrupted. The pool size is zero by
+ * default, which means the tasks are executed one by one in the calling thread, without a time limit.
+ */
+@Component
+public class TaskExecutionEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionEngine.class);
+
+    private static final String POOL_SIZE_KEY = "task.execution.pool.size";
+    private static final String TIMEOUT_KEY = "task.execution.timeout";
+
+    private static final int DEFAULT_POOL_SIZE = 0;
+    private static final int DEFAULT_TIMEOUT = 0;
+
+    private int poolSize;
+    private long timeout;
+
+    private ExecutorService executor;
+    private final ThreadLocal<Boolean> workerThread = new ThreadLocal<>();
+
+    @Autowired
+    public TaskExecutionEngine(@Qualifier("tasksSettings") SettingsFacade settings) {
+        this.poolSize = getIntProperty(settings, POOL_SIZE_KEY, DEFAULT_POOL_SIZE);
+        this.timeout = getIntProperty(settings, TIMEOUT_KEY, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (executor == null && poolSize > 0) {
+            executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-task-executor-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Executes the given tasks and waits until all of them are finished, or until the time limit passes. The tasks
+     * which are still running when the time limit passes are cancelled, which interrupts the threads executing them.
+     * Tasks which don't respond to the interruption keep running after this method returns. The tasks must handle
+     * their own errors.
+     *
+     * @param tasks  the tasks to execute
+     */
+    public void executeAll(List<? extends Callable<Void>> tasks) {
+        ExecutorService pool = executor;
+
+        // tasks triggered from inside another task are executed by its worker, since the pool could be exhausted
+        if (pool == null || Boolean.TRUE.equals(workerThread.get())) {
+            executeInCallingThread(tasks);
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(new Worker(task)));
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Unable to execute the tasks in the worker pool, executing them in the calling thread", e);
+            executeInCallingThread(tasks.subList(futures.size(), tasks.size()));
+        }
+
+        try {
+            awaitAll(futures);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for the tasks to finish");
+            Thread.currentThread().interrupt();
+        } finally {
+            cancelAll(futures);
+        }
+    }
+
+    /**
+     * Returns the time limit for the execution of tasks.
+     *
+     * @return the time limit in milliseconds, zero if there is no limit
+     */
+    public long getTimeout() {
+        return executor == null ? 0 : timeout;
+    }
+
+    /**
+     * Stops the worker threads. The running tasks are interrupted.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void awaitAll(List<Future<Void>> futures) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        for (Future<Void> future : futures) {
+            try {
+                if (timeout <= 0) {
+                    future.get();
+                } else {
+                    future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (ExecutionException e) {
+                LOGGER.error("Error while executing the task", e.getCause());
+            } catch (CancellationException | TimeoutException e) {
+                // the time limit passed, the remaining tasks are cancelled
+                return;
+            }
+        }
+    }
+
+    private void cancelAll(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            // interrupts the tasks which are still running, finished tasks are not affected
+            future.cancel(true);
+        }
+    }
+
+    private void executeInCallingThread(List<? extends Callable<Void>> tasks) {
+        for (Callable<Void> task : tasks) {
+            try {
+                task.call();
+            } catch (Exception e) {
+                LOGGER.error("Error while executing the task", e);
+            }
+        }
+    }
+
+    private static int getIntProperty(SettingsFacade settings, String key, int defaultValue) {
+        String property = (settings == null) ? null : settings.getProperty(key);
+
+        if (property == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(property.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("The value of key: {} is not a number. Using the default value: {}", key, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private final class Worker implements Callable<Void> {
+        private final Callable<Void> task;
+
+        private Worker(Callable<Void> task) {
+            this.task = task;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            workerThread.set(Boolean.TRUE);
+            try {
+                return task.call();
+            } finally {
+                workerThread.remove();
+            }
+        }
+    }
+}
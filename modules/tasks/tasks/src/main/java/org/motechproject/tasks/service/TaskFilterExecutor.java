@@ -5,7 +5,6 @@ import org.joda.time.Days;
 import org.joda.time.Months;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.tasks.domain.Filter;
-import org.motechproject.tasks.domain.KeyInformation;
 import org.motechproject.tasks.domain.LogicalOperator;
 import org.motechproject.tasks.domain.OperatorType;
 import org.motechproject.tasks.domain.ParameterType;
@@ -19,7 +18,6 @@ import java.util.List;
 import java.util.Map;
 
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
-import static org.motechproject.tasks.domain.KeyInformation.parse;
 
 /**
  * The <code>TaskFilterExecutor</code> applies a list of filters in a #{@link TaskContext}.
@@ -61,11 +59,11 @@ public class TaskFilterExecutor {
         }
 
         boolean filterCheck = false;
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         for (Filter filter : filters) {
-            KeyInformation key = parse(filter.getKey());
+            CompiledKey key = taskContext.getCompiledTask().getKey(filter.getKey());
             Object value;
             try {
-                KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
                 value = keyEvaluator.getManipulatedValue(key);
             } catch (TaskHandlerException e) {
                 if (TaskFailureCause.DATA_SOURCE.equals(e.getFailureCause())) {
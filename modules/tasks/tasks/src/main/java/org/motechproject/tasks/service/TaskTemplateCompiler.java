@@ -0,0 +1,66 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles tasks into evaluation plans and keeps the plans until the tasks change. The plans are compiled when a
+ * task is saved, or when it is executed for the first time.
+ */
+@Component
+public class TaskTemplateCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskTemplateCompiler.class);
+
+    private Map<Long, CompiledTask> compiledTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles the given task and replaces its previous plan.
+     *
+     * @param task  the task, not null
+     * @return the plan of the task
+     */
+    public CompiledTask compile(Task task) {
+        CompiledTask compiled = CompiledTask.compile(task);
+
+        if (task.getId() != null) {
+            compiledTasks.put(task.getId(), compiled);
+            LOGGER.debug("Compiled templates of task: {} with ID: {}", task.getName(), task.getId());
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the plan of the given task, compiling it if it doesn't exist yet.
+     *
+     * @param task  the task, not null
+     * @return the plan of the task
+     */
+    public CompiledTask getCompiledTask(Task task) {
+        CompiledTask compiled = (task.getId() == null) ? null : compiledTasks.get(task.getId());
+        return compiled != null ? compiled : compile(task);
+    }
+
+    /**
+     * Removes the plan of the task with the given ID.
+     *
+     * @param taskId  the ID of the task
+     */
+    public void invalidate(Long taskId) {
+        if (taskId != null) {
+            compiledTasks.remove(taskId);
+        }
+    }
+
+    /**
+     * Removes all plans.
+     */
+    public void invalidateAll() {
+        compiledTasks.clear();
+    }
+}
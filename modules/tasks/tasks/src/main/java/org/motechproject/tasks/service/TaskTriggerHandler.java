@@ -26,9 +26,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.motechproject.tasks.events.constants.EventDataKeys.HANDLER_ERROR_PARAM;
 import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_FAILURE_DATE;
@@ -40,6 +45,7 @@ import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_T
 import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_TRIGGER_DISABLED;
 import static org.motechproject.tasks.events.constants.EventSubjects.createHandlerFailureSubject;
 import static org.motechproject.tasks.events.constants.EventSubjects.createHandlerSuccessSubject;
+import static org.motechproject.tasks.events.constants.TaskFailureCause.ACTION;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
 import static org.motechproject.tasks.service.HandlerPredicates.withServiceName;
 
@@ -62,6 +68,9 @@ public class TaskTriggerHandler implements TriggerHandler {
     private Map<String, DataProvider> dataProviders;
 
     private TaskActionExecutor executor;
+    private TaskActivityWriter activityWriter;
+    private TaskTemplateCompiler templateCompiler;
+    private TaskExecutionEngine executionEngine;
 
     @Autowired
     public TaskTriggerHandler(TaskService taskService, TaskActivityService activityService,
@@ -123,46 +132,70 @@ public class TaskTriggerHandler implements TriggerHandler {
 
         List<Task> tasks = taskService.findActiveTasksForTrigger(trigger);
 
-        for (Task task : tasks) {
-            TaskContext taskContext = new TaskContext(task, parameters, activityService);
-            TaskInitializer initializer = new TaskInitializer(taskContext);
+        if (executionEngine == null) {
+            for (Task task : tasks) {
+                new TaskExecution(task, parameters).call();
+            }
+        } else {
+            List<TaskExecution> executions = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                executions.add(new TaskExecution(task, parameters));
+            }
 
-            try {
-                LOGGER.info("Executing all actions from task: {}", task.getName());
-                if (initializer.evalConfigSteps(dataProviders)) {
-                    for (TaskActionInformation action : task.getActions()) {
-                        executor.execute(task, action, taskContext);
-                    }
-                    handleSuccess(parameters, task);
+            executionEngine.executeAll(executions);
+
+            for (TaskExecution execution : executions) {
+                if (!execution.isFinished()) {
+                    execution.timedOut(executionEngine.getTimeout());
                 }
-                LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
-            } catch (TaskHandlerException e) {
-                handleError(parameters, task, e);
-            } catch (RuntimeException e) {
-                handleError(parameters, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
             }
         }
     }
 
+    private boolean execute(Task task, Map<String, Object> parameters) throws TaskHandlerException {
+        TaskContext taskContext = (templateCompiler == null)
+                ? new TaskContext(task, parameters, activityService)
+                : new TaskContext(task, parameters, activityService, templateCompiler.getCompiledTask(task));
+        TaskInitializer initializer = new TaskInitializer(taskContext);
+
+        LOGGER.info("Executing all actions from task: {}", task.getName());
+        if (initializer.evalConfigSteps(dataProviders)) {
+            for (TaskActionInformation action : task.getActions()) {
+                executor.execute(task, action, taskContext);
+            }
+            return true;
+        }
+
+        LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
+        return false;
+    }
+
     private void handleError(Map<String, Object> params, Task task, TaskHandlerException e) {
         LOGGER.warn("Omitted task: {} with ID: {} because: {}", task.getName(), task.getId(), e);
 
         activityService.addError(task, e);
-        task.incrementFailuresInRow();
 
-        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), task.getFailuresInRow());
+        int failureNumber;
+        boolean disabled = false;
+
+        synchronized (task) {
+            task.incrementFailuresInRow();
+            failureNumber = task.getFailuresInRow();
 
-        int failureNumber = task.getFailuresInRow();
-        int possibleErrorsNumber = getPossibleErrorsNumber();
+            if (task.isEnabled() && failureNumber >= getPossibleErrorsNumber()) {
+                task.setEnabled(false);
+                disabled = true;
+            }
+        }
 
-        if (failureNumber >= possibleErrorsNumber) {
-            task.setEnabled(false);
+        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), failureNumber);
 
+        if (disabled) {
             activityService.addWarning(task);
             publishTaskDisabledMessage(task.getName());
         }
 
-        taskService.save(task);
+        saveFailuresInRow(task, disabled);
 
         Map<String, Object> errorParam = new HashMap<>();
         errorParam.put(TASK_FAIL_MESSAGE, e.getMessage());
@@ -173,11 +206,13 @@ public class TaskTriggerHandler implements TriggerHandler {
         errorParam.put(TASK_FAIL_TASK_ID, task.getId());
         errorParam.put(TASK_FAIL_TASK_NAME, task.getName());
 
-        params.put(HANDLER_ERROR_PARAM, errorParam);
+        // tasks for the same trigger share its parameters, so the error is added to a copy
+        Map<String, Object> failureParams = new HashMap<>(params);
+        failureParams.put(HANDLER_ERROR_PARAM, errorParam);
 
         eventRelay.sendEventMessage(new MotechEvent(
             createHandlerFailureSubject(task.getName(), e.getFailureCause()),
-            params
+            failureParams
         ));
     }
 
@@ -185,8 +220,16 @@ public class TaskTriggerHandler implements TriggerHandler {
         LOGGER.debug("All actions from task: {} with ID: {} were successfully executed", task.getName(), task.getId());
 
         activityService.addSuccess(task);
-        task.resetFailuresInRow();
-        taskService.save(task);
+
+        boolean changed;
+        synchronized (task) {
+            changed = task.getFailuresInRow() != 0;
+            task.resetFailuresInRow();
+        }
+
+        if (changed || activityWriter == null) {
+            saveFailuresInRow(task, false);
+        }
 
         eventRelay.sendEventMessage(new MotechEvent(
             createHandlerSuccessSubject(task.getName()),
@@ -194,9 +237,18 @@ public class TaskTriggerHandler implements TriggerHandler {
         ));
     }
 
+    private void saveFailuresInRow(Task task, boolean disabled) {
+        if (activityWriter == null || disabled) {
+            taskService.save(task);
+        } else {
+            // the counter is kept by the task instance, only its value has to be saved
+            activityWriter.writeFailuresInRow(task);
+        }
+    }
+
     public void addDataProvider(DataProvider provider) {
         if (dataProviders == null) {
-            dataProviders = new HashMap<>();
+            dataProviders = new ConcurrentHashMap<>();
         }
 
         dataProviders.put(provider.getName(), provider);
@@ -238,9 +290,115 @@ public class TaskTriggerHandler implements TriggerHandler {
         return number;
     }
 
+    @Autowired(required = false)
+    public void setActivityWriter(TaskActivityWriter activityWriter) {
+        this.activityWriter = activityWriter;
+    }
+
+    @Autowired(required = false)
+    public void setTemplateCompiler(TaskTemplateCompiler templateCompiler) {
+        this.templateCompiler = templateCompiler;
+    }
+
+    @Autowired(required = false)
+    public void setExecutionEngine(TaskExecutionEngine executionEngine) {
+        this.executionEngine = executionEngine;
+    }
+
     @Autowired(required = false)
     public void setBundleContext(BundleContext bundleContext) {
         this.executor.setBundleContext(bundleContext);
     }
 
+
+    /**
+     * Executes a single task and reports its outcome. A task which didn't finish in time is reported as failed
+     * once its execution stops, or right away if it never started.
+     */
+    private final class TaskExecution implements Callable<Void> {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+
+        private final Task task;
+        private final Map<String, Object> parameters;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private volatile boolean timedOut;
+        private volatile long timeout;
+
+        private TaskExecution(Task task, Map<String, Object> parameters) {
+            this.task = task;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Void call() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                // the time limit passed before the execution started
+                return null;
+            }
+
+            long start = System.nanoTime();
+            boolean reported = false;
+
+            try {
+                boolean executed = execute(task, parameters);
+                reported = true;
+
+                if (executed) {
+                    handleSuccess(parameters, task);
+                }
+            } catch (TaskHandlerException e) {
+                reported = reportError(e);
+            } catch (RuntimeException e) {
+                reported = reportError(new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
+            } finally {
+                state.set(FINISHED);
+
+                if (!reported && timedOut) {
+                    reportTimeout();
+                }
+
+                LOGGER.info("Execution of task: {} with ID: {} took {} ms", task.getName(), task.getId(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            return null;
+        }
+
+        private boolean isFinished() {
+            return state.get() == FINISHED;
+        }
+
+        /**
+         * Marks the execution as not finished within the given time limit. An execution which finishes
+         * concurrently with this call has already reported its outcome, so it is left as it is.
+         */
+        private void timedOut(long timeLimit) {
+            timeout = timeLimit;
+            timedOut = true;
+
+            if (state.compareAndSet(NEW, FINISHED)) {
+                reportTimeout();
+            } else if (state.get() == RUNNING) {
+                LOGGER.warn("Task: {} with ID: {} didn't finish in {} ms, it will be reported once it stops",
+                        task.getName(), task.getId(), timeLimit);
+            }
+        }
+
+        private boolean reportError(TaskHandlerException e) {
+            // an error caused by interrupting the task after the time limit is reported as a timeout
+            if (timedOut) {
+                return false;
+            }
+
+            handleError(parameters, task, e);
+            return true;
+        }
+
+        private void reportTimeout() {
+            LOGGER.warn("Task: {} with ID: {} didn't finish in {} ms", task.getName(), task.getId(), timeout);
+            handleError(parameters, task, new TaskHandlerException(ACTION, "task.error.timeout", timeout));
+        }
+    }
 }
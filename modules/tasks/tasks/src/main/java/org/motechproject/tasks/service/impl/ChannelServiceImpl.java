@@ -12,6 +12,7 @@ import org.motechproject.server.api.BundleIcon;
 import org.motechproject.tasks.contract.ActionEventRequest;
 import org.motechproject.tasks.contract.ChannelRequest;
 import org.motechproject.tasks.domain.Channel;
+import org.motechproject.tasks.domain.ChannelRegisterEvent;
 import org.motechproject.tasks.domain.TaskError;
 import org.motechproject.tasks.ex.ValidationException;
 import org.motechproject.tasks.json.ActionEventRequestDeserializer;
@@ -137,6 +138,7 @@ public class ChannelServiceImpl implements ChannelService {
                 } else if (existingChannel == null) {
                     LOGGER.debug("Creating channel {}", channel.getDisplayName());
                     channelsDataService.create(channel);
+                    eventRelay.sendEventMessage(new ChannelRegisterEvent(channel.getModuleName()).toMotechEvent());
                 }
             }
         });
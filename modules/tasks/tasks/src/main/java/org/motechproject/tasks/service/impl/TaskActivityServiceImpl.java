@@ -9,6 +9,7 @@ import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.motechproject.tasks.service.TaskActivityWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -22,44 +23,63 @@ import java.util.Set;
 public class TaskActivityServiceImpl implements TaskActivityService {
 
     private TaskActivitiesDataService taskActivitiesDataService;
+    private TaskActivityWriter activityWriter;
 
-    @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
+        this(taskActivitiesDataService, null);
+    }
+
+    /**
+     * Service constructor.
+     *
+     * @param taskActivitiesDataService  the data service for task activities, not null
+     * @param activityWriter  the writer used for saving new activities in the background, if null the activities
+     *                        are saved immediately
+     */
+    @Autowired
+    public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService,
+                                   TaskActivityWriter activityWriter) {
         this.taskActivitiesDataService = taskActivitiesDataService;
+        this.activityWriter = activityWriter;
     }
 
     @Override
     public void addError(Task task, TaskHandlerException e) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
+        save(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
                 TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e)));
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
+        save(new TaskActivity("task.success.ok", task.getId(),
                 TaskActivityType.SUCCESS));
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
+        save(new TaskActivity("task.warning.taskDisabled", task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
+        save(new TaskActivity(key, field, task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
+        save(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
                 task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
     }
 
     @Override
     public void deleteActivitiesForTask(Long taskId) {
+        if (activityWriter != null) {
+            // pending activities of the task would be saved after it is deleted
+            activityWriter.flush();
+        }
+
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
@@ -84,4 +104,12 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
     }
+
+    private void save(TaskActivity activity) {
+        if (activityWriter == null) {
+            taskActivitiesDataService.create(activity);
+        } else {
+            activityWriter.write(activity);
+        }
+    }
 }
@@ -14,6 +14,7 @@ import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.osgi.web.util.WebBundleUtil;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.motechproject.tasks.domain.ActionEvent;
 import org.motechproject.tasks.domain.Channel;
 import org.motechproject.tasks.domain.DataSource;
@@ -36,22 +37,26 @@ import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
 import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TaskService;
+import org.motechproject.tasks.service.TaskTemplateCompiler;
 import org.motechproject.tasks.service.TriggerHandler;
+import org.motechproject.tasks.util.TasksEventParserManager;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionCallback;
 
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -60,32 +65,67 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
-import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_IDS;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_CREATE_BULK_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_CREATE_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_DELETE_BULK_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_DELETE_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_UPDATE_BULK_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_UPDATE_SUBJECT;
 import static org.motechproject.tasks.service.HandlerPredicates.tasksWithRegisteredChannel;
 import static org.motechproject.tasks.validation.TaskValidator.TASK;
 
 /**
  * A {@link TaskService} that manages CRUD operations for a {@link Task}.
  * Expects channel registered,updated and deregistered events to be raised so that the associated tasks can be revalidated.
+ * The triggers and the active tasks for trigger subjects are kept in memory, so that handling of trigger events does
+ * not require database reads. The tasks are updated in memory when they are saved or deleted through this service, or
+ * when MDS reports a change of a task made elsewhere, like the data browser or the task activity writer. Triggers are
+ * reloaded after channel changes and both are reloaded when modules are installed or uninstalled. MDS and channel
+ * events reach only one MOTECH instance, so the instance handling them broadcasts the change through the
+ * {@link OsgiEventProxy} and the other instances refresh their tasks and triggers as well.
  */
 @Service("taskService")
-public class TaskServiceImpl implements TaskService {
+public class TaskServiceImpl implements TaskService, EventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskServiceImpl.class);
 
+    /**
+     * The subject of the event, which makes all MOTECH instances refresh the tasks and triggers kept in memory.
+     */
+    public static final String INVALIDATE_TASKS = "org_motechproject_tasks_invalidate_tasks";
+
+    private static final String TASK_IDS_EVENT_PARAM = "taskIds";
+    private static final String BULK_EVENT_PARAM = "bulk";
+    private static final String TRIGGERS_EVENT_PARAM = "triggers";
+    private static final String ORIGIN_EVENT_PARAM = "origin";
+
     private TasksDataService tasksDataService;
     private ChannelService channelService;
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
     private BundleContext bundleContext;
+    private TasksEventParserManager parserManager;
+    private TaskTemplateCompiler templateCompiler;
+    private OsgiEventProxy osgiEventProxy;
 
+    private final String origin = UUID.randomUUID().toString();
+    private final Object indexLock = new Object();
+    private Map<String, List<Task>> activeTasksIndex = new ConcurrentHashMap<>();
+    private volatile Map<String, TriggerEvent> triggerIndex;
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -177,48 +217,58 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public List<Task> findActiveTasksForTriggerSubject(final String subject) {
-        List<Task> list = null;
+        if (StringUtils.isBlank(subject)) {
+            return new ArrayList<>();
+        }
 
-        if (isNotBlank(subject)) {
-            List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
-                @Override
-                public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
-                    String byTriggerSubject = "trigger.subject == param";
-                    String isTaskActive = "enabled == true";
-                    String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
+        List<Task> tasks = activeTasksIndex.get(subject);
 
-                    query.setFilter(filter);
-                    query.declareParameters("java.lang.String param");
+        if (tasks == null) {
+            synchronized (indexLock) {
+                tasks = activeTasksIndex.get(subject);
 
-                    return (List) QueryExecutor.execute(query, subject, restriction);
+                if (tasks == null) {
+                    tasks = Collections.unmodifiableList(loadActiveTasksForTriggerSubject(subject));
+                    activeTasksIndex.put(subject, tasks);
                 }
-            });
-            if (enabledTasks != null) {
-                checkChannelAvailableInTasks(enabledTasks);
-                list = new ArrayList<>(enabledTasks);
-                CollectionUtils.filter(list, tasksWithRegisteredChannel());
             }
         }
 
-        return list == null ? new ArrayList<Task>() : list;
+        return new ArrayList<>(tasks);
+    }
+
+    private List<Task> loadActiveTasksForTriggerSubject(final String subject) {
+        List<Task> list = new ArrayList<>();
+        List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
+            @Override
+            public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
+                String byTriggerSubject = "trigger.subject == param";
+                String isTaskActive = "enabled == true";
+                String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
+
+                query.setFilter(filter);
+                query.declareParameters("java.lang.String param");
+
+                return (List) QueryExecutor.execute(query, subject, restriction);
+            }
+        });
+
+        if (enabledTasks != null) {
+            checkChannelAvailableInTasks(enabledTasks);
+            list.addAll(enabledTasks);
+            CollectionUtils.filter(list, tasksWithRegisteredChannel());
+        }
+
+        return list;
     }
 
     @Override
     public TriggerEvent findTrigger(String subject) throws TriggerNotFoundException {
-        List<Channel> channels = channelService.getAllChannels();
         TriggerEvent trigger = null;
 
-        for (Channel c : channels) {
-            for (TriggerEvent t : c.getTriggerTaskEvents()) {
-                if (t.getSubject().equalsIgnoreCase(subject)) {
-                    trigger = t;
-                    break;
-                }
-            }
-
-            if (trigger != null) {
-                break;
-            }
+        if (subject != null) {
+            // channels registered after the index was built invalidate it, so a miss does not require a reload
+            trigger = getTriggerIndex().get(subject);
         }
 
         if (trigger == null) {
@@ -236,18 +286,9 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
-
-            for (ServiceReference<TasksEventParser> ref : references) {
-                TasksEventParser parser = bundleContext.getService(ref);
-                if (parser.getName().equals(name)) {
-                    return parser;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.");
+        TasksEventParser parser = (parserManager == null) ? null : parserManager.getParser(name);
+        if (parser != null) {
+            return parser;
         }
 
         // If a non-null parser name has been found in the event parameter, yet it cannot be found in
@@ -272,11 +313,45 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        updateActiveTasksIndex(taskId, null);
+
+        if (templateCompiler != null) {
+            templateCompiler.invalidate(taskId);
+        }
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
+    @MotechListener(subjects = {CHANNEL_REGISTER_SUBJECT, CHANNEL_DEREGISTER_SUBJECT})
+    public void reloadTriggersAfterChannelChange(MotechEvent event) {
+        LOGGER.debug("Handling Channel change: {}", event.getParameters().get(CHANNEL_MODULE_NAME));
+        invalidateTriggerIndex();
+        broadcastTriggersChange();
+    }
+
+    @MotechListener(subjects = {TASK_CREATE_SUBJECT, TASK_UPDATE_SUBJECT, TASK_DELETE_SUBJECT})
+    public void refreshTaskAfterChange(MotechEvent event) {
+        Long taskId = (Long) event.getParameters().get(OBJECT_ID);
+        LOGGER.debug("Handling change of task with ID: {}", taskId);
+
+        refreshTask(taskId);
+        broadcastTasksChange(Collections.singletonList(taskId), false);
+    }
+
+    @MotechListener(subjects = {TASK_CREATE_BULK_SUBJECT, TASK_UPDATE_BULK_SUBJECT, TASK_DELETE_BULK_SUBJECT})
+    public void reloadTasksAfterBulkChange(MotechEvent event) {
+        LOGGER.debug("Handling bulk change of tasks: {}", event.getSubject());
+
+        List<Long> taskIds = (List<Long>) event.getParameters().get(OBJECT_IDS);
+
+        reloadTasks(taskIds);
+        broadcastTasksChange(taskIds, true);
+    }
+
     @MotechListener(subjects = CHANNEL_UPDATE_SUBJECT)
     public void validateTasksAfterChannelUpdate(MotechEvent event) {
+        invalidateTriggerIndex();
+        broadcastTriggersChange();
+
         String moduleName = event.getParameters().get(CHANNEL_MODULE_NAME).toString();
         Channel channel = channelService.getChannel(moduleName);
 
@@ -641,9 +716,9 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
-        tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+        Task saved = tasksDataService.doInTransaction(new TransactionCallback<Task>() {
             @Override
-            protected void doInTransactionWithoutResult(TransactionStatus status) {
+            public Task doInTransaction(TransactionStatus status) {
                 Task existing = tasksDataService.findById(task.getId());
 
                 if (null != existing) {
@@ -665,19 +740,184 @@ public class TaskServiceImpl implements TaskService {
 
                     checkChannelAvailableInTask(existing);
 
-                    tasksDataService.update(existing);
+                    return tasksDataService.update(existing);
                 } else {
                     LOGGER.debug("Creating task: {}", task.getName());
                     checkChannelAvailableInTask(task);
 
-                    tasksDataService.create(task);
+                    return tasksDataService.create(task);
                 }
             }
         });
 
+        updateActiveTasksIndex(task.getId(), saved);
+
+        if (templateCompiler != null && saved != null) {
+            // the previous plan is replaced, templates of the saved task are compiled only once
+            templateCompiler.compile(saved);
+        }
+
         LOGGER.info("Saved task: {}", task.getName());
     }
 
+    private void updateActiveTasksIndex(Long removedTaskId, Task saved) {
+        synchronized (indexLock) {
+            Long savedTaskId = (saved == null) ? null : saved.getId();
+
+            for (Map.Entry<String, List<Task>> entry : activeTasksIndex.entrySet()) {
+                List<Task> tasks = new ArrayList<>(entry.getValue());
+                Iterator<Task> iterator = tasks.iterator();
+                boolean removed = false;
+
+                while (iterator.hasNext()) {
+                    Long id = iterator.next().getId();
+                    if (id != null && (id.equals(removedTaskId) || id.equals(savedTaskId))) {
+                        iterator.remove();
+                        removed = true;
+                    }
+                }
+
+                if (removed) {
+                    entry.setValue(Collections.unmodifiableList(tasks));
+                }
+            }
+
+            if (saved != null && saved.isEnabled() && saved.hasRegisteredChannel() && saved.getTrigger() != null) {
+                // subjects which are not indexed yet will be loaded from the database when needed
+                List<Task> tasks = activeTasksIndex.get(saved.getTrigger().getSubject());
+
+                if (tasks != null) {
+                    tasks = new ArrayList<>(tasks);
+                    tasks.add(saved);
+                    activeTasksIndex.put(saved.getTrigger().getSubject(), Collections.unmodifiableList(tasks));
+                }
+            }
+        }
+    }
+
+    private Map<String, TriggerEvent> getTriggerIndex() {
+        Map<String, TriggerEvent> index = triggerIndex;
+
+        if (index == null) {
+            synchronized (indexLock) {
+                index = triggerIndex;
+
+                if (index == null) {
+                    index = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+                    for (Channel channel : channelService.getAllChannels()) {
+                        for (TriggerEvent trigger : channel.getTriggerTaskEvents()) {
+                            if (!index.containsKey(trigger.getSubject())) {
+                                index.put(trigger.getSubject(), trigger);
+                            }
+                        }
+                    }
+
+                    index = Collections.unmodifiableMap(index);
+                    triggerIndex = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private void invalidateTriggerIndex() {
+        synchronized (indexLock) {
+            triggerIndex = null;
+        }
+    }
+
+    private void invalidateIndexes() {
+        synchronized (indexLock) {
+            triggerIndex = null;
+            activeTasksIndex.clear();
+        }
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        switch (event.getTopic()) {
+            case INVALIDATE_TASKS:
+                if (!origin.equals(event.getProperty(ORIGIN_EVENT_PARAM))) {
+                    handleRemoteChange(event);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+    }
+
+    private void handleRemoteChange(Event event) {
+        List<Long> taskIds = (List<Long>) event.getProperty(TASK_IDS_EVENT_PARAM);
+
+        LOGGER.debug("Handling change of tasks: {} made on another instance", taskIds);
+
+        if (Boolean.TRUE.equals(event.getProperty(BULK_EVENT_PARAM))) {
+            reloadTasks(taskIds);
+        } else if (taskIds != null) {
+            for (Long taskId : taskIds) {
+                refreshTask(taskId);
+            }
+        }
+
+        if (Boolean.TRUE.equals(event.getProperty(TRIGGERS_EVENT_PARAM))) {
+            invalidateTriggerIndex();
+        }
+    }
+
+    private void refreshTask(Long taskId) {
+        Task task = tasksDataService.findById(taskId);
+        checkChannelAvailableInTask(task);
+        updateActiveTasksIndex(taskId, task);
+
+        if (templateCompiler != null) {
+            templateCompiler.invalidate(taskId);
+        }
+
+        if (task != null && task.isEnabled() && task.getTrigger() != null) {
+            registerHandler(task.getTrigger().getEffectiveListenerSubject());
+        }
+    }
+
+    private void reloadTasks(List<Long> taskIds) {
+        synchronized (indexLock) {
+            activeTasksIndex.clear();
+        }
+
+        if (templateCompiler != null) {
+            if (taskIds == null) {
+                templateCompiler.invalidateAll();
+            } else {
+                for (Long taskId : taskIds) {
+                    templateCompiler.invalidate(taskId);
+                }
+            }
+        }
+    }
+
+    private void broadcastTasksChange(List<Long> taskIds, boolean bulk) {
+        Map<String, Object> params = new HashMap<>();
+        if (taskIds != null) {
+            params.put(TASK_IDS_EVENT_PARAM, new ArrayList<>(taskIds));
+        }
+        params.put(BULK_EVENT_PARAM, bulk);
+        broadcast(params);
+    }
+
+    private void broadcastTriggersChange() {
+        Map<String, Object> params = new HashMap<>();
+        params.put(TRIGGERS_EVENT_PARAM, true);
+        broadcast(params);
+    }
+
+    private void broadcast(Map<String, Object> params) {
+        if (osgiEventProxy != null) {
+            params.put(ORIGIN_EVENT_PARAM, origin);
+            osgiEventProxy.broadcastEvent(INVALIDATE_TASKS, params, true);
+        }
+    }
+
     private void registerHandler(String effectiveListenerSubject) {
         // We cannot simply autowire trigger handler bean, since that would create
         // circular dependency between TaskService and TriggerHandler
@@ -738,5 +978,32 @@ public class TaskServiceImpl implements TaskService {
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+
+        if (bundleContext != null) {
+            // availability of channels depends on the installed modules
+            bundleContext.addBundleListener(new BundleListener() {
+                @Override
+                public void bundleChanged(BundleEvent event) {
+                    if (event.getType() == BundleEvent.INSTALLED || event.getType() == BundleEvent.UNINSTALLED) {
+                        invalidateIndexes();
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired(required = false)
+    public void setParserManager(TasksEventParserManager parserManager) {
+        this.parserManager = parserManager;
+    }
+
+    @Autowired(required = false)
+    public void setTemplateCompiler(TaskTemplateCompiler templateCompiler) {
+        this.templateCompiler = templateCompiler;
+    }
+
+    @Autowired(required = false)
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
     }
 }
@@ -0,0 +1,77 @@
+package org.motechproject.tasks.util;
+
+import org.eclipse.gemini.blueprint.service.importer.OsgiServiceLifecycleListener;
+import org.motechproject.commons.api.TasksEventParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the custom event parsers exposed as OSGi services, so that they can be found by name without
+ * querying the service registry each time an event is handled.
+ */
+@Component("tasksEventParserManager")
+public class TasksEventParserManager implements OsgiServiceLifecycleListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TasksEventParserManager.class);
+
+    private Map<String, TasksEventParser> parsers = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if the given service is an event parser and, if so, registers it under its name.
+     *
+     * @param service  the service to be registered, null will do nothing
+     * @param serviceProperties  unused
+     */
+    @Override
+    public void bind(Object service, Map serviceProperties) {
+        try {
+            if (service instanceof TasksEventParser) {
+                TasksEventParser parser = (TasksEventParser) service;
+                parsers.put(parser.getName(), parser);
+
+                LOGGER.info("Added tasks event parser: {}", parser.getName());
+            }
+        } catch (RuntimeException e) {
+            // Blueprint will swallow exceptions
+            LOGGER.error("Unable to add the tasks event parser: {}", service, e);
+        }
+    }
+
+    /**
+     * Checks if the given service is an event parser and, if so, unregisters it.
+     *
+     * @param service  the service to be unregistered, null will do nothing
+     * @param serviceProperties  unused
+     */
+    @Override
+    public void unbind(Object service, Map serviceProperties) {
+        if (service instanceof TasksEventParser) {
+            String name = removeParser((TasksEventParser) service);
+            LOGGER.info("Removed tasks event parser: {}", name);
+        }
+    }
+
+    /**
+     * Returns the parser with the given name.
+     *
+     * @param name  the name of the parser
+     * @return the parser, null if there is no parser with such name
+     */
+    public TasksEventParser getParser(String name) {
+        return parsers.get(name);
+    }
+
+    private String removeParser(TasksEventParser parser) {
+        // the service may be already gone, so its name is looked up by identity
+        for (Map.Entry<String, TasksEventParser> entry : parsers.entrySet()) {
+            if (entry.getValue() == parser) {
+                parsers.remove(entry.getKey());
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package org.motechproject.tasks.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.springframework.transaction.support.TransactionCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskActivityWriterTest {
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    TaskActivitiesDataService taskActivitiesDataService;
+
+    @Mock
+    TasksDataService tasksDataService;
+
+    @Mock
+    SettingsFacade settings;
+
+    TaskActivityWriter writer;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+
+        when(settings.getProperty("task.activity.queue.size")).thenReturn("5");
+        when(settings.getProperty("task.activity.batch.size")).thenReturn("2");
+        when(taskActivitiesDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new InTransaction());
+        when(tasksDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new InTransaction());
+
+        writer = new TaskActivityWriter(taskActivitiesDataService, tasksDataService, settings);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    public void shouldSaveActivitiesInBatches() {
+        for (int i = 0; i < 5; ++i) {
+            writer.write(createActivity());
+        }
+
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        writer.flush();
+
+        verify(taskActivitiesDataService, times(3)).doInTransaction(any(TransactionCallback.class));
+        verify(taskActivitiesDataService, times(5)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldFlushInCallingThreadWhenQueueIsFull() {
+        for (int i = 0; i < 6; ++i) {
+            writer.write(createActivity());
+        }
+
+        verify(taskActivitiesDataService, times(5)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldSaveOnlyLatestFailuresInRow() {
+        Task task = new Task();
+        task.setId(TASK_ID);
+        Task persisted = new Task();
+        persisted.setId(TASK_ID);
+
+        when(tasksDataService.findById(TASK_ID)).thenReturn(persisted);
+
+        task.setFailuresInRow(1);
+        writer.writeFailuresInRow(task);
+        task.setFailuresInRow(2);
+        writer.writeFailuresInRow(task);
+
+        writer.flush();
+
+        assertEquals(2, persisted.getFailuresInRow());
+        verify(tasksDataService, times(1)).update(persisted);
+    }
+
+    @Test
+    public void shouldRetryActivitiesWhichCouldNotBeSaved() {
+        doThrow(new IllegalStateException()).doAnswer(new InTransaction())
+                .when(taskActivitiesDataService).doInTransaction(any(TransactionCallback.class));
+
+        for (int i = 0; i < 3; ++i) {
+            writer.write(createActivity());
+        }
+
+        writer.flush();
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        writer.flush();
+        verify(taskActivitiesDataService, times(3)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldRetryFailuresInRowWhichCouldNotBeSaved() {
+        Task task = new Task();
+        task.setId(TASK_ID);
+        task.setFailuresInRow(1);
+        Task persisted = new Task();
+        persisted.setId(TASK_ID);
+
+        when(tasksDataService.findById(TASK_ID)).thenReturn(persisted);
+        doThrow(new IllegalStateException()).doAnswer(new InTransaction())
+                .when(tasksDataService).doInTransaction(any(TransactionCallback.class));
+
+        writer.writeFailuresInRow(task);
+
+        writer.flush();
+        verify(tasksDataService, never()).update(any(Task.class));
+
+        writer.flush();
+        assertEquals(1, persisted.getFailuresInRow());
+        verify(tasksDataService).update(persisted);
+    }
+
+    @Test
+    public void shouldSavePendingWritesOnShutdown() {
+        writer.write(createActivity());
+
+        writer.shutdown();
+        verify(taskActivitiesDataService).create(any(TaskActivity.class));
+
+        writer.write(createActivity());
+        verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+    }
+
+    private TaskActivity createActivity() {
+        return new TaskActivity("task.success.ok", TASK_ID, TaskActivityType.SUCCESS);
+    }
+
+    private static class InTransaction implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) {
+            return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+        }
+    }
+}
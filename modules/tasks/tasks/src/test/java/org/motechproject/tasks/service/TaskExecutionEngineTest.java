@@ -0,0 +1,120 @@
+package org.motechproject.tasks.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.server.config.SettingsFacade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskExecutionEngineTest {
+
+    @Mock
+    SettingsFacade settings;
+
+    TaskExecutionEngine engine;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldExecuteTasksConcurrently() {
+        createEngine("2", "0");
+
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicInteger passed = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < 2; ++i) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    started.countDown();
+                    // passes only if the other task is running at the same time
+                    if (started.await(5, TimeUnit.SECONDS)) {
+                        passed.incrementAndGet();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        engine.executeAll(tasks);
+
+        assertEquals(2, passed.get());
+    }
+
+    @Test
+    public void shouldCancelTasksWhichDidNotFinishInTime() throws Exception {
+        createEngine("1", "50");
+
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+        });
+
+        engine.executeAll(tasks);
+
+        assertEquals(50, engine.getTimeout());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldExecuteTasksInCallingThreadWhenPoolIsDisabled() {
+        createEngine("0", "50");
+
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() {
+                thread.set(Thread.currentThread());
+                return null;
+            }
+        });
+
+        engine.executeAll(tasks);
+
+        assertSame(Thread.currentThread(), thread.get());
+        assertEquals(0, engine.getTimeout());
+    }
+
+    private void createEngine(String poolSize, String timeout) {
+        when(settings.getProperty("task.execution.pool.size")).thenReturn(poolSize);
+        when(settings.getProperty("task.execution.timeout")).thenReturn(timeout);
+
+        engine = new TaskExecutionEngine(settings);
+        engine.start();
+    }
+}
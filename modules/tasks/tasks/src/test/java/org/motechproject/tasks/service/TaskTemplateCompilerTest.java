@@ -0,0 +1,85 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.tasks.domain.Filter;
+import org.motechproject.tasks.domain.FilterSet;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskTriggerInformation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.ParameterType.UNICODE;
+
+public class TaskTemplateCompilerTest {
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    TaskActivityService activityService;
+
+    TaskTemplateCompiler compiler;
+
+    Task task;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        compiler = new TaskTemplateCompiler();
+
+        Map<String, String> values = new HashMap<>();
+        values.put("message", "Hello {{trigger.name?toupper}}, your code is {{trigger.code?substring(0,3)}}");
+        values.put("unknown", "{{unknown.key}}");
+
+        TaskActionInformation action = new TaskActionInformation("send", "channel", "module", "0.1", "SEND", values);
+        task = new Task("name", new TaskTriggerInformation(), asList(action));
+        task.setId(TASK_ID);
+        task.getTaskConfig().add(new FilterSet(asList(new Filter("Name", "trigger.name?tolower", UNICODE, true, "equals", "ala"))));
+    }
+
+    @Test
+    public void shouldKeepCompiledTaskUntilInvalidated() {
+        CompiledTask compiled = compiler.getCompiledTask(task);
+
+        assertEquals(TASK_ID, compiled.getTaskId());
+        assertSame(compiled, compiler.getCompiledTask(task));
+
+        compiler.invalidate(TASK_ID);
+
+        CompiledTask recompiled = compiler.getCompiledTask(task);
+        assertNotSame(compiled, recompiled);
+
+        assertNotSame(recompiled, compiler.compile(task));
+    }
+
+    @Test
+    public void shouldEvaluateCompiledTemplates() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "Ala");
+        parameters.put("code", "123456");
+
+        TaskContext taskContext = new TaskContext(task, parameters, activityService, compiler.getCompiledTask(task));
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+
+        assertEquals("Hello ALA, your code is 123",
+                keyEvaluator.evaluateTemplateString(task.getActions().get(0).getValues().get("message")));
+        assertEquals("ala", keyEvaluator.getManipulatedValue(taskContext.getCompiledTask().getKey("trigger.name?tolower")));
+        assertEquals("Ala (Ala)", keyEvaluator.evaluateTemplateString("{{trigger.name}} ({{trigger.name}})"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldReportIncorrectTemplatesWhenEvaluated() throws Exception {
+        TaskContext taskContext = new TaskContext(task, new HashMap<String, Object>(), activityService,
+                compiler.getCompiledTask(task));
+
+        new KeyEvaluator(taskContext).evaluateTemplateString("{{unknown.key}}");
+    }
+}
@@ -9,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.commons.api.TasksEventParser;
 import org.motechproject.event.MotechEvent;
@@ -49,6 +51,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
 
 import static ch.lambdaj.Lambda.extract;
 import static ch.lambdaj.Lambda.on;
@@ -260,6 +263,42 @@ public class TaskTriggerHandlerTest {
         assertEquals("task.error.actionNotFound", captor.getValue().getMessage());
     }
 
+    @Test
+    public void shouldWriteFailuresInRowInBackgroundWhenTaskIsNotDisabled() throws Exception {
+        TaskActivityWriter activityWriter = mock(TaskActivityWriter.class);
+        handler.setActivityWriter(activityWriter);
+        setTriggerEvent();
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenThrow(new ActionNotFoundException(""));
+
+        handler.handle(createEvent());
+
+        assertEquals(1, task.getFailuresInRow());
+        assertTrue(task.isEnabled());
+        verify(activityWriter).writeFailuresInRow(task);
+        verify(taskService, never()).save(task);
+    }
+
+    @Test
+    public void shouldNotSaveTaskAfterSuccessWhenThereWereNoFailures() throws Exception {
+        TaskActivityWriter activityWriter = mock(TaskActivityWriter.class);
+        handler.setActivityWriter(activityWriter);
+        setTriggerEvent();
+        setActionEvent();
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+
+        verify(taskActivityService).addSuccess(task);
+        verify(activityWriter, never()).writeFailuresInRow(task);
+        verify(taskService, never()).save(task);
+    }
+
     @Test
     public void shouldNotSendEventWhenActionEventParameterNotContainValue() throws Exception {
         setTriggerEvent();
@@ -1404,6 +1443,87 @@ public class TaskTriggerHandlerTest {
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
     }
 
+    @Test
+    public void shouldReportTimeoutOfTaskExecutedInWorkerPool() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        when(settingsFacade.getProperty("task.execution.pool.size")).thenReturn("2");
+        when(settingsFacade.getProperty("task.execution.timeout")).thenReturn("100");
+
+        TaskExecutionEngine executionEngine = new TaskExecutionEngine(settingsFacade);
+        executionEngine.start();
+        handler.setExecutionEngine(executionEngine);
+
+        setTriggerEvent();
+        setActionEvent();
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenAnswer(new Answer<ActionEvent>() {
+            @Override
+            public ActionEvent answer(InvocationOnMock invocation) throws Throwable {
+                latch.await();
+                return actionEvent;
+            }
+        });
+
+        try {
+            handler.handle(createEvent());
+        } finally {
+            latch.countDown();
+            executionEngine.shutdown();
+        }
+
+        // the interrupted task reports the timeout once it stops
+        long deadline = System.currentTimeMillis() + 5000;
+        while (task.getFailuresInRow() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
+        verify(taskActivityService).addError(eq(task), captor.capture());
+        verify(taskActivityService, never()).addSuccess(task);
+
+        assertEquals("task.error.timeout", captor.getValue().getMessage());
+        assertEquals(1, task.getFailuresInRow());
+    }
+
+    @Test
+    public void shouldReportTimeoutOfTaskWhichDidNotStartInTime() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        when(settingsFacade.getProperty("task.execution.pool.size")).thenReturn("1");
+        when(settingsFacade.getProperty("task.execution.timeout")).thenReturn("100");
+
+        TaskExecutionEngine executionEngine = new TaskExecutionEngine(settingsFacade);
+        executionEngine.start();
+        handler.setExecutionEngine(executionEngine);
+
+        setTriggerEvent();
+        setActionEvent();
+
+        Task waiting = new Task("waiting", task.getTrigger(), task.getActions());
+        waiting.setId(10L);
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(asList(task, waiting));
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenAnswer(new Answer<ActionEvent>() {
+            @Override
+            public ActionEvent answer(InvocationOnMock invocation) throws Throwable {
+                latch.await();
+                return actionEvent;
+            }
+        });
+
+        try {
+            handler.handle(createEvent());
+
+            // the second task was waiting for the only worker, so it is reported right away
+            verify(taskActivityService).addError(eq(waiting), any(TaskHandlerException.class));
+        } finally {
+            latch.countDown();
+            executionEngine.shutdown();
+        }
+    }
+
     @Test
     public void shouldExecuteTwoActions() throws Exception {
         setTriggerEvent();
@@ -12,6 +12,7 @@ import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.motechproject.tasks.service.TaskActivityWriter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,6 +26,7 @@ import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -89,6 +91,22 @@ public class TaskActivityServiceImplTest {
                 TaskActivityType.SUCCESS, null, captor.getValue());
     }
 
+    @Test
+    public void shouldPassActivityToWriter() {
+        TaskActivityWriter activityWriter = mock(TaskActivityWriter.class);
+        activityService = new TaskActivityServiceImpl(taskActivitiesDataService, activityWriter);
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+
+        activityService.addSuccess(task);
+
+        verify(activityWriter).write(captor.capture());
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        assertActivity("task.success.ok", Collections.<String>emptyList(), TASK_ID,
+                TaskActivityType.SUCCESS, null, captor.getValue());
+    }
+
     @Test
     public void shouldAddTaskWarningActivity() {
         String messageKey = "task.warning.taskDisabled";
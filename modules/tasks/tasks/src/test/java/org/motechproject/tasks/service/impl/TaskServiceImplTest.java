@@ -17,6 +17,7 @@ import org.mockito.verification.VerificationMode;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.motechproject.tasks.domain.ActionEventBuilder;
 import org.motechproject.tasks.domain.ActionParameterBuilder;
 import org.motechproject.tasks.domain.ActionEvent;
@@ -46,11 +47,14 @@ import org.motechproject.tasks.ex.TriggerNotFoundException;
 import org.motechproject.tasks.ex.ValidationException;
 import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
+import org.motechproject.tasks.service.CompiledTask;
 import org.motechproject.tasks.service.TaskDataProviderService;
+import org.motechproject.tasks.service.TaskTemplateCompiler;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
 import org.springframework.transaction.support.TransactionCallback;
 
 import java.util.ArrayList;
@@ -68,20 +72,28 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
 import static org.motechproject.tasks.domain.ParameterType.UNICODE;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_UPDATE_SUBJECT;
 
 public class TaskServiceImplTest {
 
@@ -115,6 +127,9 @@ public class TaskServiceImplTest {
     @Mock
     TriggerHandler triggerHandler;
 
+    @Mock
+    OsgiEventProxy osgiEventProxy;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -130,6 +145,7 @@ public class TaskServiceImplTest {
         taskService.setEventRelay(eventRelay);
         taskService.setProviderService(providerService);
         taskService.setTasksDataService(tasksDataService);
+        taskService.setOsgiEventProxy(osgiEventProxy);
 
         when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger, bundleAction});
         when(bundleTrigger.getSymbolicName()).thenReturn("test-trigger");
@@ -342,6 +358,210 @@ public class TaskServiceImplTest {
         assertEquals(asList(t), tasks);
     }
 
+    @Test
+    public void shouldKeepActiveTasksForTriggerInMemory() {
+        Task t = new Task("name", trigger, asList(action));
+
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject(trigger.getSubject());
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+
+        taskService.findActiveTasksForTrigger(triggerEvent);
+        List<Task> tasks = taskService.findActiveTasksForTrigger(triggerEvent);
+
+        assertEquals(asList(t), tasks);
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+    }
+
+    @Test
+    public void shouldRemoveDeletedTaskFromActiveTasks() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject(trigger.getSubject());
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(t.getId())).thenReturn(t);
+
+        assertEquals(asList(t), taskService.findActiveTasksForTrigger(triggerEvent));
+
+        taskService.deleteTask(t.getId());
+
+        assertTrue(taskService.findActiveTasksForTrigger(triggerEvent).isEmpty());
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+    }
+
+    @Test
+    public void shouldInvalidateCompiledTemplatesOfDeletedTask() {
+        TaskTemplateCompiler templateCompiler = new TaskTemplateCompiler();
+        taskService.setTemplateCompiler(templateCompiler);
+
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        when(tasksDataService.findById(t.getId())).thenReturn(t);
+
+        CompiledTask compiledTask = templateCompiler.getCompiledTask(t);
+        assertSame(compiledTask, templateCompiler.getCompiledTask(t));
+
+        taskService.deleteTask(t.getId());
+
+        assertNotSame(compiledTask, templateCompiler.getCompiledTask(t));
+    }
+
+    @Test
+    public void shouldKeepTriggersInMemory() throws TriggerNotFoundException {
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject("RECEIVE");
+
+        Channel c = new Channel();
+        c.setTriggerTaskEvents(asList(triggerEvent));
+
+        when(channelService.getAllChannels()).thenReturn(asList(c));
+
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        assertEquals(triggerEvent, taskService.findTrigger("receive"));
+
+        verify(channelService, times(1)).getAllChannels();
+    }
+
+    @Test
+    public void shouldRemoveTaskDisabledOutsideOfServiceFromActiveTasks() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        Task disabled = new Task("name", trigger, asList(action));
+        disabled.setId(t.getId());
+        disabled.setEnabled(false);
+
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject(trigger.getSubject());
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(t.getId())).thenReturn(disabled);
+
+        assertEquals(asList(t), taskService.findActiveTasksForTrigger(triggerEvent));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(OBJECT_ID, t.getId());
+        taskService.refreshTaskAfterChange(new MotechEvent(TASK_UPDATE_SUBJECT, params));
+
+        assertTrue(taskService.findActiveTasksForTrigger(triggerEvent).isEmpty());
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+    }
+
+    @Test
+    public void shouldBroadcastTaskChangeReportedByMds() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(OBJECT_ID, 12345L);
+        taskService.refreshTaskAfterChange(new MotechEvent(TASK_UPDATE_SUBJECT, params));
+
+        verify(osgiEventProxy).broadcastEvent(eq(TaskServiceImpl.INVALIDATE_TASKS), paramsCaptor.capture(), eq(true));
+        assertEquals(asList(12345L), paramsCaptor.getValue().get("taskIds"));
+        assertNotNull(paramsCaptor.getValue().get("origin"));
+    }
+
+    @Test
+    public void shouldRefreshTaskChangedOnAnotherInstance() {
+        TaskTemplateCompiler templateCompiler = new TaskTemplateCompiler();
+        taskService.setTemplateCompiler(templateCompiler);
+
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        Task disabled = new Task("name", trigger, asList(action));
+        disabled.setId(t.getId());
+        disabled.setEnabled(false);
+
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject(trigger.getSubject());
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(t.getId())).thenReturn(disabled);
+
+        assertEquals(asList(t), taskService.findActiveTasksForTrigger(triggerEvent));
+        CompiledTask compiledTask = templateCompiler.getCompiledTask(t);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("taskIds", asList(t.getId()));
+        params.put("origin", "other-instance");
+        taskService.handleEvent(new Event(TaskServiceImpl.INVALIDATE_TASKS, params));
+
+        assertTrue(taskService.findActiveTasksForTrigger(triggerEvent).isEmpty());
+        assertNotSame(compiledTask, templateCompiler.getCompiledTask(t));
+        verify(osgiEventProxy, never()).broadcastEvent(anyString(), anyMap(), anyBoolean());
+    }
+
+    @Test
+    public void shouldIgnoreOwnTaskChangeEvents() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(OBJECT_ID, 12345L);
+        taskService.refreshTaskAfterChange(new MotechEvent(TASK_UPDATE_SUBJECT, params));
+
+        verify(osgiEventProxy).broadcastEvent(eq(TaskServiceImpl.INVALIDATE_TASKS), paramsCaptor.capture(), eq(true));
+
+        // the event comes back to this instance
+        taskService.handleEvent(new Event(TaskServiceImpl.INVALIDATE_TASKS, paramsCaptor.getValue()));
+
+        verify(tasksDataService, times(1)).findById(12345L);
+    }
+
+    @Test
+    public void shouldReloadTriggersChangedOnAnotherInstance() throws TriggerNotFoundException {
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject("RECEIVE");
+
+        Channel c = new Channel();
+        c.setTriggerTaskEvents(asList(triggerEvent));
+
+        when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>(), asList(c));
+
+        try {
+            taskService.findTrigger("RECEIVE");
+        } catch (TriggerNotFoundException e) {
+            // the channel is not registered yet
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("triggers", true);
+        params.put("origin", "other-instance");
+        taskService.handleEvent(new Event(TaskServiceImpl.INVALIDATE_TASKS, params));
+
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        verify(channelService, times(2)).getAllChannels();
+    }
+
+    @Test
+    public void shouldReloadTriggersOnlyAfterChannelChange() throws TriggerNotFoundException {
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject("RECEIVE");
+
+        Channel c = new Channel();
+        c.setTriggerTaskEvents(asList(triggerEvent));
+
+        when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>(), asList(c));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                taskService.findTrigger("RECEIVE");
+            } catch (TriggerNotFoundException e) {
+                // the channel is not registered yet
+            }
+        }
+        verify(channelService, times(1)).getAllChannels();
+
+        taskService.reloadTriggersAfterChannelChange(new MotechEvent(CHANNEL_REGISTER_SUBJECT));
+
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        verify(channelService, times(2)).getAllChannels();
+    }
+
     @Test(expected = TriggerNotFoundException.class)
     public void shouldThrowTriggerNotFoundExceptionWhenChannelListIsEmpty() throws TriggerNotFoundException {
         when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>());
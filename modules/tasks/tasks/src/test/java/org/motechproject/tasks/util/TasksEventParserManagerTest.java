@@ -0,0 +1,33 @@
+package org.motechproject.tasks.util;
+
+import org.junit.Test;
+import org.motechproject.commons.api.TasksEventParser;
+import org.motechproject.tasks.service.SampleTasksEventParser;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TasksEventParserManagerTest {
+
+    @Test
+    public void shouldRegisterAndUnregisterParser() {
+        TasksEventParserManager mgr = new TasksEventParserManager();
+        TasksEventParser parser = new SampleTasksEventParser();
+
+        mgr.bind(parser, null);
+        assertSame(parser, mgr.getParser(SampleTasksEventParser.PARSER_NAME));
+
+        mgr.unbind(parser, null);
+        assertNull(mgr.getParser(SampleTasksEventParser.PARSER_NAME));
+    }
+
+    @Test
+    public void shouldIgnoreOtherServices() {
+        TasksEventParserManager mgr = new TasksEventParserManager();
+
+        mgr.bind(new Object(), null);
+        mgr.unbind(new Object(), null);
+
+        assertNull(mgr.getParser(SampleTasksEventParser.PARSER_NAME));
+    }
+}
@@ -15,7 +15,8 @@ public interface EventRelay {
      * registered for the subject (in this instance). Meaning if you have clustered Motech instances,
      * you must ensure they both have the listeners registered. The message is then handled by exactly one
      * Motech instance, by calling {@link org.motechproject.event.listener.impl.ServerEventRelay#relayQueueEvent(org.motechproject.event.MotechEvent)}
-     * service method.
+     * service method. If local dispatch is enabled in the event configuration, the event is handed directly to the
+     * listeners registered in this instance and does not go through ActiveMQ.
      *
      * @param motechEvent the event to be sent
      */
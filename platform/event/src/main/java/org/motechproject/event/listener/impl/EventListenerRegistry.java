@@ -6,18 +6,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
  import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of the {@link EventListenerRegistryService} interface.
  * Acts as a registry for all scheduled event listeners.
+ * <p>
+ * Listeners resolved for a subject, including the wildcard ones, are kept in an index keyed by the exact subject,
+ * so that looking them up on every sent and received event does not require walking the listener tree. The index
+ * is replaced with an empty one whenever listeners are registered or removed.
  */
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerRegistry.class);
+    private static final int MAX_INDEXED_SUBJECTS = 10000;
 
     private EventListenerTree listenerTree = new EventListenerTree();
+    private volatile Map<String, Set<EventListener>> subjectIndex = new ConcurrentHashMap<>();
 
     public void registerListener(EventListener listener, List<String> subjects) {
 
@@ -48,23 +57,50 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             LOGGER.debug("registering handler for {} to {}", subject, this.toString());
         }
 
-        listenerTree.addListener(listener, subject);
+        synchronized (this) {
+            listenerTree.addListener(listener, subject);
+            invalidateIndex();
+        }
     }
 
+    /**
+     * {@inheritDoc}. The returned set is shared between callers and cannot be modified.
+     */
     public Set<EventListener> getListeners(String subject) {
-        return listenerTree.getListeners(subject);
+        Set<EventListener> listeners = subjectIndex.get(subject);
+        return (listeners == null) ? resolveListeners(subject) : listeners;
     }
 
     public boolean hasListener(String subject) {
-        return listenerTree.hasListener(subject);
+        return !getListeners(subject).isEmpty();
     }
 
-    public int getListenerCount(String subject) {
+    public synchronized int getListenerCount(String subject) {
         return listenerTree.getListenerCount(subject);
     }
 
-    public void clearListenersForBean(String beanName) {
+    public synchronized void clearListenersForBean(String beanName) {
         LOGGER.debug("Clearing listeners for bean: {}", beanName);
         listenerTree.removeAllListeners(beanName);
+        invalidateIndex();
+    }
+
+    private synchronized Set<EventListener> resolveListeners(String subject) {
+        Map<String, Set<EventListener>> index = subjectIndex;
+
+        Set<EventListener> listeners = index.get(subject);
+        if (listeners == null) {
+            listeners = Collections.unmodifiableSet(listenerTree.getListeners(subject));
+            // don't let subjects generated on the fly grow the index without bounds
+            if (index.size() < MAX_INDEXED_SUBJECTS) {
+                index.put(subject, listeners);
+            }
+        }
+
+        return listeners;
+    }
+
+    private void invalidateIndex() {
+        subjectIndex = new ConcurrentHashMap<>();
     }
 }
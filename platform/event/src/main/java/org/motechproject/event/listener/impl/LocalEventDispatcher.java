@@ -0,0 +1,173 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.metrics.impl.EventMetricsRecorder;
+import org.motechproject.event.utils.MotechProxyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands events over to listeners registered in this instance, without sending them through the JMS broker.
+ * Events are handled by a bounded pool of workers. When the pool queue is full, or the dispatcher is shut down,
+ * the publishing thread handles the event itself. Failed deliveries are retried with the same redelivery count
+ * and delay rules that are used for events sent through the queue.
+ * <p>
+ * Since the broker is bypassed, an event is always handled by the instance that published it, instead of any
+ * instance of the cluster, and events that are still pending are lost if the instance stops. Local dispatch
+ * should therefore only be enabled for single instance deployments.
+ */
+@Component
+public class LocalEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventDispatcher.class);
+    private static final long MILLIS_PER_SEC = 1000L;
+
+    private MotechEventConfig motechEventConfig;
+    private EventMetricsRecorder eventMetricsRecorder;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService redeliveryScheduler;
+    private boolean stopped;
+
+    @Autowired
+    public LocalEventDispatcher(MotechEventConfig motechEventConfig, EventMetricsRecorder eventMetricsRecorder) {
+        this.motechEventConfig = motechEventConfig;
+        this.eventMetricsRecorder = eventMetricsRecorder;
+    }
+
+    /**
+     * Schedules handling of the given event by the given listener.
+     *
+     * @param listener the listener that should handle the event
+     * @param event the event to be handled, it should not be shared with other listeners
+     */
+    public void dispatch(final EventListener listener, final MotechEvent event) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                handle(listener, event);
+            }
+        };
+
+        ThreadPoolExecutor pool = getExecutor();
+        if (pool != null) {
+            try {
+                pool.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the queue is full or the pool was shut down in the meantime, don't lose the event
+                LOGGER.debug("Local dispatcher rejected event {}, handling it in the calling thread",
+                        event.getSubject(), e);
+            }
+        } else {
+            LOGGER.warn("Local dispatcher is shut down, handling event {} in the calling thread", event.getSubject());
+        }
+
+        task.run();
+    }
+
+    /**
+     * Stops the workers. Events that are already queued are still handled.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopped = true;
+        if (redeliveryScheduler != null) {
+            redeliveryScheduler.shutdown();
+            redeliveryScheduler = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private void handle(EventListener listener, MotechEvent event) {
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        long start = System.nanoTime();
+        try {
+            Object target = MotechProxyUtils.getTargetIfProxied(listener);
+            Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
+            listener.handle(event);
+
+            eventMetricsRecorder.recordHandled(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            eventMetricsRecorder.recordFailed(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
+            LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
+
+            event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, Boolean.TRUE);
+
+            if (event.getMessageRedeliveryCount() >= motechEventConfig.getMessageMaxRedeliveryCount()) {
+                event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, Boolean.TRUE);
+                eventMetricsRecorder.recordDiscarded(event.getSubject(), listener.getIdentifier());
+                LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
+                return;
+            }
+
+            event.incrementMessageRedeliveryCount();
+            eventMetricsRecorder.recordRedelivered(event.getSubject(), listener.getIdentifier());
+            scheduleRedelivery(listener, event);
+        } finally {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+        }
+    }
+
+    private void scheduleRedelivery(final EventListener listener, final MotechEvent event) {
+        long delay = (long) (motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
+                Math.pow(2, event.getMessageRedeliveryCount() - 1));
+        LOGGER.debug("Redelivering {} after {} millis.", event, delay);
+
+        ScheduledExecutorService scheduler = getRedeliveryScheduler();
+        if (scheduler == null) {
+            LOGGER.error("Discarding Motech event {}. The local dispatcher is shut down.", event);
+            return;
+        }
+
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(listener, event);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Discarding Motech event {}. The local dispatcher is shut down.", event, e);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null && !stopped) {
+            LOGGER.warn("Local dispatch is enabled, events are handled by this instance without going through the " +
+                    "broker. It should not be used if more than one MOTECH instance is running.");
+
+            int poolSize = motechEventConfig.getLocalDispatchPoolSize();
+            // rejected events are handled by the caller in dispatch, also after the pool was shut down,
+            // when the caller runs policy would silently discard them
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(motechEventConfig.getLocalDispatchQueueSize()),
+                    new ThreadFactoryBuilder().setNameFormat("motech-local-event-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+        return executor;
+    }
+
+    private synchronized ScheduledExecutorService getRedeliveryScheduler() {
+        if (redeliveryScheduler == null && !stopped) {
+            redeliveryScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("motech-local-event-redelivery").setDaemon(true).build());
+        }
+        return redeliveryScheduler;
+    }
+}
@@ -4,6 +4,7 @@ import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.metrics.impl.EventMetricsRecorder;
 import org.motechproject.event.messaging.OutboundEventGateway;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
@@ -15,9 +16,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Handles incoming scheduled events and relays those events to the appropriate event listeners.
@@ -28,6 +33,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerEventRelay.class);
 
     private static final String MESSAGE_DESTINATION = "message-destination";
+    private static final String MESSAGE_DESTINATIONS = "message-destinations";
     private static final String BROADCAST_MESSAGE = "broadcast-message";
     private static final String PROXY_IN_OSGI = "proxy-in-osgi";
 
@@ -35,14 +41,21 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private OutboundEventGateway outboundEventGateway;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
+    private LocalEventDispatcher localEventDispatcher;
+    private TopicEventDispatcher topicEventDispatcher;
+    private EventMetricsRecorder eventMetricsRecorder;
 
     @Autowired
     public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin) {
+                            EventAdmin osgiEventAdmin, LocalEventDispatcher localEventDispatcher,
+                            TopicEventDispatcher topicEventDispatcher, EventMetricsRecorder eventMetricsRecorder) {
         this.outboundEventGateway = outboundEventGateway;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
+        this.localEventDispatcher = localEventDispatcher;
+        this.topicEventDispatcher = topicEventDispatcher;
+        this.eventMetricsRecorder = eventMetricsRecorder;
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
@@ -51,7 +64,20 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         verifyEventNotNull(event);
         Set<EventListener> listeners = getEventListeners(event);
 
-        if (!listeners.isEmpty()) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        if (motechEventConfig.isLocalDispatch()) {
+            // All the listeners are registered in this instance, so there is no need
+            // to go through the broker
+            dispatchLocally(event, listeners);
+        } else if (listeners.size() > 1 && motechEventConfig.isBatchDispatch()) {
+            // A single message carries all the destinations, it gets split between
+            // the listeners by the instance that receives it. Failed work units are
+            // still re-sent individually, so they are not lost
+            batchEvent(event, listeners);
+        } else {
             // We need to split the message for each listener to ensure the work units
             // are completed individually. Therefore, if a message fails it will be
             // re-distributed to another server without being lost
@@ -80,7 +106,10 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     public void relayQueueEvent(MotechEvent event) {
         verifyEventNotNull(event);
         String messageDestination = (String) event.getParameters().get(MESSAGE_DESTINATION);
-        if (null != messageDestination) {
+        List<String> messageDestinations = (List<String>) event.getParameters().get(MESSAGE_DESTINATIONS);
+        if (null != messageDestinations) {
+            relayBatchedQueueEvent(event, messageDestinations);
+        } else if (null != messageDestination) {
             EventListener listener = getEventListener(event, messageDestination);
             if (null != listener) {
                 MotechEvent e = copyMotechEvent(event);
@@ -97,12 +126,18 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      * Relays the event that were published in the message topic to all listeners of that event.
      *
      * @param event the event being relayed
+     * @throws TopicEventRejectedException if the listeners are run in parallel and some of them did not catch up
+     * with their pending events in time, the message carrying the event is then rolled back
      */
     public void relayTopicEvent(MotechEvent event) {
         verifyEventNotNull(event);
         Set<EventListener> listeners = getEventListeners(event);
-        for (EventListener listener : listeners) {
-            handleTopicEvent(listener, event);
+        if (motechEventConfig.isTopicParallel()) {
+            dispatchTopicEvent(listeners, event);
+        } else {
+            for (EventListener listener : listeners) {
+                handleTopicEvent(listener, event);
+            }
         }
 
         // broadcast events can be also be additionally sent as OSGi events upon being received
@@ -146,14 +181,48 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         }
     }
 
+    private void relayBatchedQueueEvent(MotechEvent event, List<String> messageDestinations) {
+        Map<String, EventListener> listenersById = new HashMap<>();
+        for (EventListener listener : getEventListeners(event)) {
+            listenersById.put(listener.getIdentifier(), listener);
+        }
+
+        for (String messageDestination : messageDestinations) {
+            EventListener listener = listenersById.get(messageDestination);
+            if (null == listener) {
+                LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", messageDestination, event);
+                continue;
+            }
+
+            // every listener works on its own copy, so that failures are recorded per destination
+            Map<String, Object> parameters = new HashMap<>(event.getParameters());
+            parameters.remove(MESSAGE_DESTINATIONS);
+            parameters.put(MESSAGE_DESTINATION, messageDestination);
+            MotechEvent e = new MotechEvent(event.getSubject(), parameters);
+            e.setId(event.getId());
+
+            try {
+                handleQueueEvent(listener, e);
+            } catch (RuntimeException ex) {
+                // the event was discarded for this destination only, rethrowing would roll back the message
+                // and deliver it again to the destinations that already handled it
+                LOGGER.error("Event {} discarded for listener {}, it will not be delivered to it again",
+                        event.getSubject(), messageDestination, ex);
+            }
+        }
+    }
+
     private void handleQueueEvent(EventListener listener, MotechEvent event) {
         ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        long start = System.nanoTime();
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
             listener.handle(event);
 
+            eventMetricsRecorder.recordHandled(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
         } catch (RuntimeException e) {
+            eventMetricsRecorder.recordFailed(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
             LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
 
             event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, Boolean.TRUE);
@@ -161,33 +230,64 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
             if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                 event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, Boolean.TRUE);
+                eventMetricsRecorder.recordDiscarded(event.getSubject(), listener.getIdentifier());
                 LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
                 throw e;
             }
 
             event.incrementMessageRedeliveryCount();
+            eventMetricsRecorder.recordRedelivered(event.getSubject(), listener.getIdentifier());
             outboundEventGateway.sendEventMessage(event);
         } finally {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
         }
     }
 
+    private void dispatchTopicEvent(Set<EventListener> listeners, MotechEvent event) {
+        Map<EventListener, Runnable> handlers = new LinkedHashMap<>();
+        for (final EventListener listener : listeners) {
+            // listeners run concurrently, so each of them gets its own copy of the parameters
+            final MotechEvent listenerEvent = new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+            listenerEvent.setId(event.getId());
+
+            handlers.put(listener, new Runnable() {
+                @Override
+                public void run() {
+                    handleTopicEvent(listener, listenerEvent);
+                }
+            });
+        }
+
+        for (String listenerIdentifier : topicEventDispatcher.dispatch(event, handlers)) {
+            eventMetricsRecorder.recordDiscarded(event.getSubject(), listenerIdentifier);
+            LOGGER.error("Discarding topic event {} for listener {}. Too many events are waiting for the listener.",
+                    event, listenerIdentifier);
+        }
+    }
+
     private void handleTopicEvent(EventListener listener, MotechEvent event) {
         int retryCount = 0;
         int maxRetryCount = motechEventConfig.getMessageMaxRedeliveryCount();
         ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 
         do {
+            long start = System.nanoTime();
             try {
                 Object target = MotechProxyUtils.getTargetIfProxied(listener);
                 Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
                 listener.handle(event);
+
+                eventMetricsRecorder.recordHandled(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
                 break;
             } catch (RuntimeException e) {
+                eventMetricsRecorder.recordFailed(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
+
                 if (retryCount < maxRetryCount) {
+                    eventMetricsRecorder.recordRedelivered(event.getSubject(), listener.getIdentifier());
                     LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
                             event.toString(), listener.getIdentifier()), e);
                 } else {
+                    eventMetricsRecorder.recordDiscarded(event.getSubject(), listener.getIdentifier());
                     LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
                             event.toString(), listener.getIdentifier()), e);
                     break;
@@ -219,6 +319,43 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         }
     }
 
+    /**
+     * Hands a copy of a given message to each of the listeners, without sending it
+     * through the broker.
+     *
+     * @param event     Event message to be dispatched
+     * @param listeners A list of listeners for this given message
+     */
+    private void dispatchLocally(MotechEvent event, Set<EventListener> listeners) {
+        UUID id = (event.getId() == null) ? UUID.randomUUID() : event.getId();
+
+        for (EventListener listener : listeners) {
+            Map<String, Object> parameters = new HashMap<>(event.getParameters());
+            parameters.put(MESSAGE_DESTINATION, listener.getIdentifier());
+            MotechEvent localEvent = new MotechEvent(event.getSubject(), parameters);
+            localEvent.setId(id);
+            localEventDispatcher.dispatch(listener, localEvent);
+        }
+    }
+
+    /**
+     * Sends a given message as a single message with all of the listeners as message
+     * destinations. The receiving instance splits it between the listeners.
+     *
+     * @param event     Event message to be sent
+     * @param listeners A list of listeners for this given message that will be used as message destinations
+     */
+    private void batchEvent(MotechEvent event, Set<EventListener> listeners) {
+        List<String> destinations = new ArrayList<>(listeners.size());
+        for (EventListener listener : listeners) {
+            destinations.add(listener.getIdentifier());
+        }
+
+        Map<String, Object> parameters = new HashMap<>(event.getParameters());
+        parameters.put(MESSAGE_DESTINATIONS, destinations);
+        outboundEventGateway.sendEventMessage(new MotechEvent(event.getSubject(), parameters));
+    }
+
     private EventListener getEventListener(MotechEvent event, String identifier) {
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
@@ -0,0 +1,245 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the listeners of broadcast events in parallel. Every listener has its own lanes, each handled by a single
+ * thread, which stops when the lane is idle. The lane of the listener is chosen using the ordering key of the event,
+ * which is the value of the configured event parameter, or the subject if there is no such parameter. A listener
+ * therefore handles events with the same ordering key in the order they were received, and a slow listener only
+ * delays its own events with keys sharing the lane. Every listener can have a limited number of pending events,
+ * so that a slow listener cannot exhaust the memory. When the limit is reached, the thread receiving broadcast events waits for the listener to catch up,
+ * for a limited time, after which the event is rejected and the message carrying it is rolled back. Discarding
+ * the event for the listeners which are behind, instead of rejecting it, must be enabled explicitly.
+ * <p>
+ * The message carrying a broadcast event is committed as soon as its handling is scheduled, so pending events are
+ * lost if the instance stops before handling them. This matches the guarantees of broadcast events, which are only
+ * received by the instances running when they are sent, and are discarded after failing the maximum number of
+ * retries.
+ */
+@Component
+public class TopicEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicEventDispatcher.class);
+    private static final long LANE_KEEP_ALIVE_SECONDS = 60;
+
+    private MotechEventConfig motechEventConfig;
+
+    private final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("motech-topic-event-%d")
+            .setDaemon(true).build();
+    private ConcurrentMap<String, ExecutorService[]> lanes = new ConcurrentHashMap<>();
+    private ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    @Autowired
+    public TopicEventDispatcher(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Schedules handling of the event by each of the given listeners. The calling thread waits until every listener
+     * has room for the event, for at most the configured time. If the time passes and discarding is not enabled, none
+     * of the listeners get the event and a {@link TopicEventRejectedException} is thrown, so that the message carrying
+     * it is rolled back without being handled twice by any listener. If the dispatcher was shut down, the handlers
+     * are executed in the calling thread.
+     *
+     * @param event the event being handled, used for choosing the lanes
+     * @param handlers the code handling the event, by listener
+     * @return the identifiers of listeners the event was discarded for, because they reached their limit of pending
+     * events, never empty only if discarding is enabled
+     * @throws TopicEventRejectedException if a listener had no room for the event in time and discarding is disabled
+     * @see MotechEventConfig#getTopicListenerMaxWait()
+     * @see MotechEventConfig#isTopicDiscardOverflow()
+     */
+    public List<String> dispatch(MotechEvent event, Map<EventListener, Runnable> handlers) {
+        if (stopped) {
+            for (Runnable handler : handlers.values()) {
+                handler.run();
+            }
+            return Collections.emptyList();
+        }
+
+        Map<EventListener, Semaphore> reserved = new LinkedHashMap<>();
+        List<String> full = new ArrayList<>();
+        reserve(handlers.keySet(), reserved, full);
+
+        if (!full.isEmpty() && !motechEventConfig.isTopicDiscardOverflow()) {
+            for (Semaphore pending : reserved.values()) {
+                pending.release();
+            }
+            throw new TopicEventRejectedException(event.getSubject(), full);
+        }
+
+        for (Map.Entry<EventListener, Semaphore> entry : reserved.entrySet()) {
+            execute(entry.getKey(), event, handlers.get(entry.getKey()), entry.getValue());
+        }
+
+        return full;
+    }
+
+    /**
+     * Returns the number of events waiting to be handled, or being handled, by each listener.
+     *
+     * @return the map of listener identifiers to the number of pending events
+     */
+    public Map<String, Integer> getPendingEvents() {
+        int maxPending = motechEventConfig.getTopicListenerMaxPending();
+
+        Map<String, Integer> pendingEvents = new HashMap<>();
+        for (Map.Entry<String, Semaphore> entry : permits.entrySet()) {
+            pendingEvents.put(entry.getKey(), maxPending - entry.getValue().availablePermits());
+        }
+
+        return Collections.unmodifiableMap(pendingEvents);
+    }
+
+    /**
+     * Stops the lanes. Events that are already scheduled are still handled.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopped = true;
+        for (ExecutorService[] listenerLanes : lanes.values()) {
+            for (ExecutorService lane : listenerLanes) {
+                lane.shutdown();
+            }
+        }
+        lanes.clear();
+    }
+
+    private void reserve(Collection<EventListener> listeners, Map<EventListener, Semaphore> reserved,
+                         List<String> full) {
+        long deadline = System.currentTimeMillis() + motechEventConfig.getTopicListenerMaxWait();
+        boolean interrupted = false;
+
+        for (EventListener listener : listeners) {
+            Semaphore pending = getPermits(listener.getIdentifier());
+            boolean acquired = pending.tryAcquire();
+
+            if (!acquired && !interrupted) {
+                try {
+                    long timeout = Math.max(deadline - System.currentTimeMillis(), 0);
+                    acquired = pending.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (acquired) {
+                reserved.put(listener, pending);
+            } else {
+                full.add(listener.getIdentifier());
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void execute(EventListener listener, final MotechEvent event, final Runnable handler,
+                         final Semaphore pending) {
+        ExecutorService lane = getLane(listener, event);
+        if (lane == null) {
+            pending.release();
+            handler.run();
+            return;
+        }
+
+        try {
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handler.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Error while handling topic event {}", event.getSubject(), e);
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            LOGGER.warn("Topic dispatcher is shut down, handling event {} in the calling thread", event.getSubject());
+            handler.run();
+        }
+    }
+
+    private ExecutorService getLane(EventListener listener, MotechEvent event) {
+        ExecutorService[] listenerLanes = getLanes(listener.getIdentifier());
+        if (listenerLanes == null) {
+            return null;
+        }
+
+        int hash = getOrderingKey(event).hashCode();
+        return listenerLanes[(hash & Integer.MAX_VALUE) % listenerLanes.length];
+    }
+
+    private Object getOrderingKey(MotechEvent event) {
+        String orderingKey = motechEventConfig.getTopicOrderingKey();
+        Object value = StringUtils.isBlank(orderingKey) ? null : event.getParameters().get(orderingKey);
+        return (value == null) ? event.getSubject() : value;
+    }
+
+    private Semaphore getPermits(String listenerId) {
+        Semaphore semaphore = permits.get(listenerId);
+        if (semaphore == null) {
+            permits.putIfAbsent(listenerId, new Semaphore(motechEventConfig.getTopicListenerMaxPending()));
+            semaphore = permits.get(listenerId);
+        }
+        return semaphore;
+    }
+
+    private ExecutorService[] getLanes(String listenerId) {
+        ExecutorService[] listenerLanes = lanes.get(listenerId);
+        return (listenerLanes == null) ? createLanes(listenerId) : listenerLanes;
+    }
+
+    private synchronized ExecutorService[] createLanes(String listenerId) {
+        if (stopped) {
+            return null;
+        }
+
+        ExecutorService[] listenerLanes = lanes.get(listenerId);
+        if (listenerLanes == null) {
+            int poolSize = motechEventConfig.getTopicPoolSize();
+
+            listenerLanes = new ExecutorService[poolSize];
+            for (int i = 0; i < poolSize; ++i) {
+                ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, LANE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), threadFactory);
+                lane.allowCoreThreadTimeOut(true);
+                listenerLanes[i] = lane;
+            }
+
+            lanes.put(listenerId, listenerLanes);
+        }
+        return listenerLanes;
+    }
+}
@@ -0,0 +1,19 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.commons.api.MotechException;
+
+import java.util.List;
+
+/**
+ * Thrown when a broadcast event is rejected, because some of its listeners did not catch up with their pending
+ * events in time. None of the listeners get the event, so the message carrying it can be safely rolled back.
+ */
+public class TopicEventRejectedException extends MotechException {
+
+    private static final long serialVersionUID = -2634085146120893152L;
+
+    public TopicEventRejectedException(String subject, List<String> listenerIdentifiers) {
+        super(String.format("Topic event %s rejected, too many events are waiting for the listeners: %s",
+                subject, listenerIdentifiers));
+    }
+}
@@ -0,0 +1,408 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.chrono.ISOChronology;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact binary <code>MotechEvent</code> codec. Every parameter value is written with a one byte type tag
+ * followed by its value, integers and lengths are written as variable length numbers. Strings, primitive
+ * wrappers, Joda <code>DateTime</code> and <code>LocalDate</code>, <code>Date</code>, <code>UUID</code> and the
+ * standard <code>java.util</code> lists, sets and maps are written natively, any other serializable value
+ * falls back to Java serialization, so that it is decoded into the same class.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    public static final String NAME = "binary";
+
+    private static final int MAGIC = 0x4D;
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int FLOAT = 5;
+    private static final int TRUE = 6;
+    private static final int FALSE = 7;
+    private static final int SHORT = 8;
+    private static final int BYTE = 9;
+    private static final int CHARACTER = 10;
+    private static final int DATE_TIME = 11;
+    private static final int LOCAL_DATE = 12;
+    private static final int DATE = 13;
+    private static final int UUID_VALUE = 14;
+    private static final int ARRAY_LIST = 15;
+    private static final int HASH_SET = 16;
+    private static final int LINKED_HASH_SET = 17;
+    private static final int HASH_MAP = 18;
+    private static final int LINKED_HASH_MAP = 19;
+    private static final int SERIALIZED = 20;
+
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUATION_BIT = 0x80;
+    private static final int SEVEN = 7;
+    private static final int MAX_VARINT_SHIFT = 63;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(MotechEvent motechEvent) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+
+            UUID id = motechEvent.getId();
+            if (id == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+
+            writeString(out, motechEvent.getSubject());
+
+            Map<String, Object> parameters = motechEvent.getParameters();
+            writeVarLong(out, parameters.size());
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new MotechEventCodecException("Unable to encode event " + motechEvent, e);
+        }
+    }
+
+    @Override
+    public MotechEvent decode(byte[] bytes) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            int magic = in.readUnsignedByte();
+            int version = in.readUnsignedByte();
+            if (magic != MAGIC || version != VERSION) {
+                throw new MotechEventCodecException(String.format("Unsupported event format: %d, version %d",
+                        magic, version));
+            }
+
+            UUID id = null;
+            if (in.readBoolean()) {
+                id = new UUID(in.readLong(), in.readLong());
+            }
+
+            String subject = readString(in);
+
+            int size = readLength(in);
+            Map<String, Object> parameters = new HashMap<>();
+            for (int i = 0; i < size; ++i) {
+                String key = readString(in);
+                parameters.put(key, readValue(in));
+            }
+
+            MotechEvent motechEvent = new MotechEvent(subject, parameters);
+            motechEvent.setId(id);
+
+            return motechEvent;
+        } catch (IOException e) {
+            throw new MotechEventCodecException("Unable to decode event", e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (isIsoDateTime(value)) {
+            DateTime dateTime = (DateTime) value;
+            out.writeByte(DATE_TIME);
+            writeVarLong(out, zigZag(dateTime.getMillis()));
+            writeString(out, dateTime.getZone().getID());
+        } else if (isIsoLocalDate(value)) {
+            LocalDate localDate = (LocalDate) value;
+            out.writeByte(LOCAL_DATE);
+            writeVarLong(out, zigZag(localDate.getYear()));
+            out.writeByte(localDate.getMonthOfYear());
+            out.writeByte(localDate.getDayOfMonth());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            writeVarLong(out, zigZag(((Date) value).getTime()));
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            out.writeByte(UUID_VALUE);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else if (value.getClass() == ArrayList.class) {
+            out.writeByte(ARRAY_LIST);
+            writeCollection(out, (Collection<?>) value);
+        } else if (value.getClass() == HashSet.class) {
+            out.writeByte(HASH_SET);
+            writeCollection(out, (Collection<?>) value);
+        } else if (value.getClass() == LinkedHashSet.class) {
+            out.writeByte(LINKED_HASH_SET);
+            writeCollection(out, (Collection<?>) value);
+        } else if (value.getClass() == HashMap.class) {
+            out.writeByte(HASH_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value.getClass() == LinkedHashMap.class) {
+            out.writeByte(LINKED_HASH_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof Serializable) {
+            out.writeByte(SERIALIZED);
+            writeSerialized(out, value);
+        } else {
+            throw new MotechEventCodecException("Unable to encode value of type " + value.getClass().getName());
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case CHARACTER:
+                return in.readChar();
+            case DATE_TIME:
+                long millis = unZigZag(readVarLong(in));
+                return new DateTime(millis, DateTimeZone.forID(readString(in)));
+            case LOCAL_DATE:
+                int year = (int) unZigZag(readVarLong(in));
+                return new LocalDate(year, in.readUnsignedByte(), in.readUnsignedByte());
+            case DATE:
+                return new Date(unZigZag(readVarLong(in)));
+            case UUID_VALUE:
+                return new UUID(in.readLong(), in.readLong());
+            case ARRAY_LIST:
+                return readCollection(in, new ArrayList<>());
+            case HASH_SET:
+                return readCollection(in, new HashSet<>());
+            case LINKED_HASH_SET:
+                return readCollection(in, new LinkedHashSet<>());
+            case HASH_MAP:
+                return readMap(in, new HashMap<>());
+            case LINKED_HASH_MAP:
+                return readMap(in, new LinkedHashMap<>());
+            case SERIALIZED:
+                return readSerialized(in);
+            default:
+                throw new MotechEventCodecException("Unknown value type: " + tag);
+        }
+    }
+
+    private void writeCollection(DataOutputStream out, Collection<?> collection) throws IOException {
+        writeVarLong(out, collection.size());
+        for (Object element : collection) {
+            writeValue(out, element);
+        }
+    }
+
+    private <T extends Collection<Object>> T readCollection(DataInputStream in, T collection) throws IOException {
+        int size = readLength(in);
+        for (int i = 0; i < size; ++i) {
+            collection.add(readValue(in));
+        }
+        return collection;
+    }
+
+    private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        writeVarLong(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private <T extends Map<Object, Object>> T readMap(DataInputStream in, T map) throws IOException {
+        int size = readLength(in);
+        for (int i = 0; i < size; ++i) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private void writeSerialized(DataOutputStream out, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(value);
+        }
+        writeVarLong(out, bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private Object readSerialized(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+
+        try (ObjectInputStream objectIn = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectIn.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new MotechEventCodecException("Unable to decode serialized value", e);
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new MotechEventCodecException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            out.writeByte((int) ((remaining & SEVEN_BITS) | CONTINUATION_BIT));
+            remaining >>>= SEVEN;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    private long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > MAX_VARINT_SHIFT) {
+                throw new MotechEventCodecException("Malformed variable length number");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & SEVEN_BITS) << shift;
+            shift += SEVEN;
+        } while ((b & CONTINUATION_BIT) != 0);
+        return value;
+    }
+
+    private long zigZag(long value) {
+        return (value << 1) ^ (value >> MAX_VARINT_SHIFT);
+    }
+
+    private long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private boolean isIsoDateTime(Object value) {
+        return value.getClass() == DateTime.class
+                && ((DateTime) value).getChronology() == ISOChronology.getInstance(((DateTime) value).getZone());
+    }
+
+    private boolean isIsoLocalDate(Object value) {
+        return value.getClass() == LocalDate.class
+                && ((LocalDate) value).getChronology() == ISOChronology.getInstanceUTC();
+    }
+
+    /**
+     * Resolves classes of serialized values with the context class loader first, since the classes are usually
+     * defined in the bundles that sent or handle the event.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Converts <code>MotechEvent</code> to and from the bytes sent to the JMS broker. The codec used for sending
+ * events is selected in the event configuration, messages are decoded with the codec they were encoded with.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Returns the name of the codec. It is stored with every encoded message, so it should never change.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Encodes the given event.
+     *
+     * @param motechEvent the event to be encoded
+     * @return the encoded event
+     * @throws MotechEventCodecException if the event could not be encoded
+     */
+    byte[] encode(MotechEvent motechEvent);
+
+    /**
+     * Decodes the event from the given bytes.
+     *
+     * @param bytes the encoded event
+     * @return the decoded event
+     * @throws MotechEventCodecException if the event could not be decoded
+     */
+    MotechEvent decode(byte[] bytes);
+}
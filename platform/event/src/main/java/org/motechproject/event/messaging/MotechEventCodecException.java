@@ -0,0 +1,19 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.commons.api.MotechException;
+
+/**
+ * Thrown when a <code>MotechEvent</code> cannot be encoded or decoded by a {@link MotechEventCodec}.
+ */
+public class MotechEventCodecException extends MotechException {
+
+    private static final long serialVersionUID = 4150398146201245843L;
+
+    public MotechEventCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public MotechEventCodecException(String message) {
+        super(message);
+    }
+}
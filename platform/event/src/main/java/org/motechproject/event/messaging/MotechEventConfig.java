@@ -15,6 +15,39 @@ public class MotechEventConfig {
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.message.batch.dispatch:false}")
+    private boolean batchDispatch;
+
+    @Value("${motech.message.codec:}")
+    private String messageCodec;
+
+    @Value("${motech.message.topic.parallel:false}")
+    private boolean topicParallel;
+
+    @Value("${motech.message.topic.pool.size:0}")
+    private int topicPoolSize;
+
+    @Value("${motech.message.topic.ordering.key:}")
+    private String topicOrderingKey;
+
+    @Value("${motech.message.topic.listener.max.pending:100}")
+    private int topicListenerMaxPending;
+
+    @Value("${motech.message.topic.listener.max.wait:30000}")
+    private long topicListenerMaxWait;
+
+    @Value("${motech.message.topic.discard.overflow:false}")
+    private boolean topicDiscardOverflow;
+
+    @Value("${motech.message.local.dispatch:false}")
+    private boolean localDispatch;
+
+    @Value("${motech.message.local.dispatch.pool.size:4}")
+    private int localDispatchPoolSize;
+
+    @Value("${motech.message.local.dispatch.queue.size:1000}")
+    private int localDispatchQueueSize;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +69,122 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns whether events with more than one listener should be sent to the queue as a single message
+     * carrying all listener identifiers, instead of one message per listener. The receiving instance then
+     * fans the event out to the listeners locally.
+     *
+     * @return true if batched dispatch is enabled, false otherwise
+     */
+    public boolean isBatchDispatch() {
+        return batchDispatch;
+    }
+
+    /**
+     * Returns the name of the codec used for encoding events sent to the broker, for example <code>binary</code>.
+     * If blank, events are sent using Java serialization.
+     *
+     * @return the name of the codec
+     * @see MotechEventCodec
+     */
+    public String getMessageCodec() {
+        return messageCodec;
+    }
+
+    /**
+     * Returns whether events sent to the queue should be handed directly to the listeners registered
+     * in this instance, instead of going through the JMS broker. This should only be enabled for
+     * single instance deployments, broadcast events always go through the broker.
+     *
+     * @return true if local dispatch is enabled, false otherwise
+     */
+    public boolean isLocalDispatch() {
+        return localDispatch;
+    }
+
+    /**
+     * Returns the number of threads handling locally dispatched events.
+     *
+     * @return the size of the local dispatch pool
+     */
+    public int getLocalDispatchPoolSize() {
+        return localDispatchPoolSize;
+    }
+
+    /**
+     * Returns the number of locally dispatched events that can wait for a free thread. When the
+     * limit is reached, the publishing thread handles the event itself.
+     *
+     * @return the capacity of the local dispatch queue
+     */
+    public int getLocalDispatchQueueSize() {
+        return localDispatchQueueSize;
+    }
+
+    /**
+     * Returns whether listeners of broadcast events should be run in parallel. Events are still
+     * handled in order by each listener, for the same ordering key.
+     *
+     * @return true if topic events are handled in parallel, false otherwise
+     * @see #getTopicOrderingKey()
+     */
+    public boolean isTopicParallel() {
+        return topicParallel;
+    }
+
+    /**
+     * Returns the number of threads handling broadcast events for each listener. Every thread serves a lane of
+     * ordering keys, so events of a listener with keys sharing a lane wait for each other, while other listeners
+     * are not affected. Idle threads are stopped. Defaults to the number of available processors.
+     *
+     * @return the size of the topic dispatch pool of a listener
+     */
+    public int getTopicPoolSize() {
+        return (topicPoolSize > 0) ? topicPoolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns the name of the event parameter, which value decides the order of handling broadcast events.
+     * Events with the same value are handled by a listener in the order they were received. If blank, or
+     * the event has no such parameter, the subject of the event is used.
+     *
+     * @return the name of the ordering parameter
+     */
+    public String getTopicOrderingKey() {
+        return topicOrderingKey;
+    }
+
+    /**
+     * Returns the maximum number of broadcast events waiting to be handled by a single listener. When the
+     * limit is reached, receiving further broadcast events waits until the listener catches up.
+     *
+     * @return the maximum number of pending events per listener
+     * @see #getTopicListenerMaxWait()
+     */
+    public int getTopicListenerMaxPending() {
+        return topicListenerMaxPending;
+    }
+
+    /**
+     * Returns how long (in milliseconds) a broadcast event waits for its listeners to get below their limit of
+     * pending events. After that time the event is rejected and the message carrying it is rolled back, unless
+     * discarding is enabled.
+     *
+     * @return the maximum time of waiting for the listeners
+     * @see #isTopicDiscardOverflow()
+     */
+    public long getTopicListenerMaxWait() {
+        return topicListenerMaxWait;
+    }
+
+    /**
+     * Returns whether a broadcast event should be discarded for the listeners that did not get below their limit
+     * of pending events in time, instead of being rejected. Disabled by default.
+     *
+     * @return true if the events are discarded for the listeners which are behind, false otherwise
+     */
+    public boolean isTopicDiscardOverflow() {
+        return topicDiscardOverflow;
+    }
 }
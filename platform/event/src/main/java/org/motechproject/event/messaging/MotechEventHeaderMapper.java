@@ -1,7 +1,6 @@
 package org.motechproject.event.messaging;
 
 import org.apache.activemq.ScheduledMessage;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.log4j.Logger;
 import org.motechproject.event.MotechEvent;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +9,7 @@ import org.springframework.integration.jms.DefaultJmsHeaderMapper;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.ObjectMessage;
 
 /**
  * Sets the <code>AMQ_SCHEDULED_DELAY</code> header of the JMS message being sent based on the <code>MotechEventConfig</code>.
@@ -32,14 +32,28 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
         try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
-            Boolean isFailedMessage = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+            Boolean isFailedMessage;
+            long redeliveryCount;
+            String description;
+
+            if (message instanceof ObjectMessage) {
+                MotechEvent motechEvent = (MotechEvent) ((ObjectMessage) message).getObject();
+                isFailedMessage = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+                redeliveryCount = motechEvent.getMessageRedeliveryCount();
+                description = motechEvent.toString();
+            } else if (message.propertyExists(MotechEventMessageConverter.CODEC_PROPERTY)) {
+                // encoded by a codec, the values are copied to the message properties by MotechEventMessageConverter
+                isFailedMessage = (Boolean) message.getObjectProperty(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+                redeliveryCount = message.getIntProperty(MotechEvent.PARAM_REDELIVERY_COUNT);
+                description = "event encoded with " + message.getStringProperty(MotechEventMessageConverter.CODEC_PROPERTY);
+            } else {
+                return;
+            }
 
             if (isFailedMessage != null && isFailedMessage) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
                 Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
                         ((Math.pow(2, redeliveryCount - 1)));
-                LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
+                LOGGER.debug("Redelivering " + description + " after " + delay + " millis.");
                 message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
             }
         } catch (JMSException e) {
@@ -0,0 +1,93 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts <code>MotechEvent</code> to the JMS message using the codec selected in the <code>MotechEventConfig</code>.
+ * Events encoded with a codec are sent as a <code>BytesMessage</code> with the name of the codec stored in the
+ * <code>motechEventCodec</code> property. Without a codec, events are sent as an <code>ObjectMessage</code>, as are
+ * any other payloads. Incoming messages are decoded according to their own format, so messages that were already
+ * on the queue when the codec was changed are still handled.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    public static final String CODEC_PROPERTY = "motechEventCodec";
+
+    private final SimpleMessageConverter simpleMessageConverter = new SimpleMessageConverter();
+    private final Map<String, MotechEventCodec> codecs = new HashMap<>();
+
+    @Autowired
+    private MotechEventConfig motechEventConfig;
+
+    public MotechEventMessageConverter() {
+        addCodec(new BinaryMotechEventCodec());
+    }
+
+    /**
+     * Registers an additional codec, which can then be selected in the configuration.
+     *
+     * @param codec the codec to be registered
+     */
+    public final void addCodec(MotechEventCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        MotechEventCodec codec = getCodec(motechEventConfig.getMessageCodec());
+
+        if (object instanceof MotechEvent && codec != null) {
+            MotechEvent motechEvent = (MotechEvent) object;
+
+            BytesMessage message = session.createBytesMessage();
+            message.writeBytes(codec.encode(motechEvent));
+            message.setStringProperty(CODEC_PROPERTY, codec.getName());
+
+            // allows setting the redelivery delay without decoding the body
+            if (motechEvent.getParameters().containsKey(MotechEvent.PARAM_INVALID_MOTECH_EVENT)) {
+                message.setObjectProperty(MotechEvent.PARAM_INVALID_MOTECH_EVENT,
+                        motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT));
+            }
+            message.setIntProperty(MotechEvent.PARAM_REDELIVERY_COUNT, motechEvent.getMessageRedeliveryCount());
+
+            return message;
+        }
+
+        return simpleMessageConverter.toMessage(object, session);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        String codecName = message.getStringProperty(CODEC_PROPERTY);
+
+        if (codecName != null && message instanceof BytesMessage) {
+            MotechEventCodec codec = getCodec(codecName);
+            if (codec == null) {
+                throw new MessageConversionException("No codec registered with name: " + codecName);
+            }
+
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+
+            return codec.decode(bytes);
+        }
+
+        return simpleMessageConverter.fromMessage(message);
+    }
+
+    private MotechEventCodec getCodec(String name) {
+        return (name == null) ? null : codecs.get(name);
+    }
+}
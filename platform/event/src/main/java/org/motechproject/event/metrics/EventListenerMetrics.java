@@ -0,0 +1,115 @@
+package org.motechproject.event.metrics;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of handling events with a given subject by a single event listener. Latencies are given in
+ * milliseconds, percentiles are approximations with the precision of a power of two.
+ */
+public class EventListenerMetrics implements Serializable {
+
+    private static final long serialVersionUID = -2375095683719326516L;
+
+    private String subject;
+    private String listenerIdentifier;
+    private long handledCount;
+    private long failedCount;
+    private long redeliveredCount;
+    private long discardedCount;
+    private double averageLatency;
+    private double maxLatency;
+    private double latency95th;
+    private double latency99th;
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getListenerIdentifier() {
+        return listenerIdentifier;
+    }
+
+    public void setListenerIdentifier(String listenerIdentifier) {
+        this.listenerIdentifier = listenerIdentifier;
+    }
+
+    /**
+     * @return the number of events successfully handled by the listener
+     */
+    public long getHandledCount() {
+        return handledCount;
+    }
+
+    public void setHandledCount(long handledCount) {
+        this.handledCount = handledCount;
+    }
+
+    /**
+     * @return the number of times the listener threw an exception
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * @return the number of failed events that were scheduled for another delivery
+     */
+    public long getRedeliveredCount() {
+        return redeliveredCount;
+    }
+
+    public void setRedeliveredCount(long redeliveredCount) {
+        this.redeliveredCount = redeliveredCount;
+    }
+
+    /**
+     * @return the number of events discarded after reaching the maximum redelivery count
+     */
+    public long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    public void setDiscardedCount(long discardedCount) {
+        this.discardedCount = discardedCount;
+    }
+
+    public double getAverageLatency() {
+        return averageLatency;
+    }
+
+    public void setAverageLatency(double averageLatency) {
+        this.averageLatency = averageLatency;
+    }
+
+    public double getMaxLatency() {
+        return maxLatency;
+    }
+
+    public void setMaxLatency(double maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    public double getLatency95th() {
+        return latency95th;
+    }
+
+    public void setLatency95th(double latency95th) {
+        this.latency95th = latency95th;
+    }
+
+    public double getLatency99th() {
+        return latency99th;
+    }
+
+    public void setLatency99th(double latency99th) {
+        this.latency99th = latency99th;
+    }
+}
@@ -0,0 +1,36 @@
+package org.motechproject.event.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives access to the statistics of handling events by the event listeners registered in this MOTECH instance.
+ * The statistics are also exposed through JMX, under the {@link #OBJECT_NAME} name.
+ */
+public interface EventMetricsService {
+
+    /**
+     * The JMX object name of the event metrics.
+     */
+    String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    /**
+     * Returns the statistics for every pair of event subject and listener that handled at least one event.
+     *
+     * @return the list of listener statistics
+     */
+    List<EventListenerMetrics> getListenerMetrics();
+
+    /**
+     * Returns the number of broadcast events waiting to be handled, or being handled, by each listener. Events
+     * are only counted when listeners of broadcast events run in parallel.
+     *
+     * @return the map of listener identifiers to the number of pending broadcast events
+     */
+    Map<String, Integer> getPendingTopicEvents();
+
+    /**
+     * Clears all statistics gathered so far.
+     */
+    void reset();
+}
@@ -0,0 +1,43 @@
+package org.motechproject.event.metrics.impl;
+
+/**
+ * Used by the event relay and the dispatchers for recording the results of handling events by listeners.
+ * It is internal to the event module, the gathered statistics are exposed through
+ * {@link org.motechproject.event.metrics.EventMetricsService}.
+ */
+public interface EventMetricsRecorder {
+
+    /**
+     * Records an event successfully handled by the listener.
+     *
+     * @param subject the subject of the event
+     * @param listenerIdentifier the identifier of the listener
+     * @param nanos the time it took the listener to handle the event, in nanoseconds
+     */
+    void recordHandled(String subject, String listenerIdentifier, long nanos);
+
+    /**
+     * Records an exception thrown by the listener while handling the event.
+     *
+     * @param subject the subject of the event
+     * @param listenerIdentifier the identifier of the listener
+     * @param nanos the time it took before the exception was thrown, in nanoseconds
+     */
+    void recordFailed(String subject, String listenerIdentifier, long nanos);
+
+    /**
+     * Records a failed event being scheduled for another delivery to the listener.
+     *
+     * @param subject the subject of the event
+     * @param listenerIdentifier the identifier of the listener
+     */
+    void recordRedelivered(String subject, String listenerIdentifier);
+
+    /**
+     * Records a failed event being discarded, after reaching the maximum redelivery count.
+     *
+     * @param subject the subject of the event
+     * @param listenerIdentifier the identifier of the listener
+     */
+    void recordDiscarded(String subject, String listenerIdentifier);
+}
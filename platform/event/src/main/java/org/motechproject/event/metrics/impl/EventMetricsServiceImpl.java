@@ -0,0 +1,175 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.listener.impl.TopicEventDispatcher;
+import org.motechproject.event.metrics.EventListenerMetrics;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of the {@link EventMetricsService} and {@link EventMetricsRecorder} interfaces. Recording does not
+ * take any locks. Statistics are kept for a limited number of subject and listener pairs, since listeners using
+ * wildcards can receive events with any number of subjects. Once the limit is reached, events with new subjects
+ * are counted together for each listener, under the {@link #OTHER_SUBJECTS} subject.
+ */
+@Service("eventMetricsService")
+public class EventMetricsServiceImpl implements EventMetricsService, EventMetricsRecorder {
+
+    /**
+     * The subject under which events are counted once the limit of tracked subjects is reached.
+     */
+    public static final String OTHER_SUBJECTS = "*";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventMetricsServiceImpl.class);
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final int maxEntries;
+    private final AtomicInteger entries = new AtomicInteger();
+    private ConcurrentMap<String, ConcurrentMap<String, ListenerStatistics>> statistics = new ConcurrentHashMap<>();
+    private TopicEventDispatcher topicEventDispatcher;
+
+    public EventMetricsServiceImpl() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public EventMetricsServiceImpl(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public void recordHandled(String subject, String listenerIdentifier, long nanos) {
+        getStatistics(subject, listenerIdentifier).recordHandled(nanos);
+    }
+
+    @Override
+    public void recordFailed(String subject, String listenerIdentifier, long nanos) {
+        getStatistics(subject, listenerIdentifier).recordFailed(nanos);
+    }
+
+    @Override
+    public void recordRedelivered(String subject, String listenerIdentifier) {
+        getStatistics(subject, listenerIdentifier).recordRedelivered();
+    }
+
+    @Override
+    public void recordDiscarded(String subject, String listenerIdentifier) {
+        getStatistics(subject, listenerIdentifier).recordDiscarded();
+    }
+
+    @Override
+    public List<EventListenerMetrics> getListenerMetrics() {
+        List<EventListenerMetrics> metrics = new ArrayList<>();
+
+        for (Map.Entry<String, ConcurrentMap<String, ListenerStatistics>> subjectEntry : statistics.entrySet()) {
+            for (Map.Entry<String, ListenerStatistics> listenerEntry : subjectEntry.getValue().entrySet()) {
+                metrics.add(listenerEntry.getValue().toMetrics(subjectEntry.getKey(), listenerEntry.getKey()));
+            }
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public Map<String, Integer> getPendingTopicEvents() {
+        return (topicEventDispatcher == null) ? Collections.<String, Integer>emptyMap()
+                : topicEventDispatcher.getPendingEvents();
+    }
+
+    @Override
+    public void reset() {
+        statistics.clear();
+        entries.set(0);
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            // the bean from a previous start of the bundle might still be registered
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+
+            mBeanServer.registerMBean(new StandardMBean(this, EventMetricsService.class, true), objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the event metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the event metrics MBean", e);
+        }
+    }
+
+    @Autowired
+    public void setTopicEventDispatcher(TopicEventDispatcher topicEventDispatcher) {
+        this.topicEventDispatcher = topicEventDispatcher;
+    }
+
+    private ListenerStatistics getStatistics(String subject, String listenerIdentifier) {
+        ConcurrentMap<String, ListenerStatistics> subjectStatistics = statistics.get(subject);
+        ListenerStatistics listenerStatistics = (subjectStatistics == null) ? null
+                : subjectStatistics.get(listenerIdentifier);
+
+        if (listenerStatistics != null) {
+            return listenerStatistics;
+        } else if (OTHER_SUBJECTS.equals(subject) || entries.get() < maxEntries) {
+            return createStatistics(subject, listenerIdentifier);
+        }
+
+        LOGGER.debug("Limit of {} tracked listener statistics reached, counting {} under {}", maxEntries, subject,
+                OTHER_SUBJECTS);
+        return createStatistics(OTHER_SUBJECTS, listenerIdentifier);
+    }
+
+    private ListenerStatistics createStatistics(String subject, String listenerIdentifier) {
+        ConcurrentMap<String, ListenerStatistics> subjectStatistics = statistics.get(subject);
+        if (subjectStatistics == null) {
+            ConcurrentMap<String, ListenerStatistics> created = new ConcurrentHashMap<>();
+            subjectStatistics = statistics.putIfAbsent(subject, created);
+            if (subjectStatistics == null) {
+                subjectStatistics = created;
+            }
+        }
+
+        ListenerStatistics listenerStatistics = subjectStatistics.get(listenerIdentifier);
+        if (listenerStatistics == null) {
+            ListenerStatistics created = new ListenerStatistics();
+            listenerStatistics = subjectStatistics.putIfAbsent(listenerIdentifier, created);
+            if (listenerStatistics == null) {
+                listenerStatistics = created;
+                entries.incrementAndGet();
+            }
+        }
+
+        return listenerStatistics;
+    }
+}
@@ -0,0 +1,102 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.EventListenerMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free accumulator of the statistics for a single subject and listener. Latencies are kept in a histogram
+ * with buckets for every power of two microseconds.
+ */
+class ListenerStatistics {
+
+    private static final int BUCKETS = 40;
+    private static final double PERCENTILE_95 = 0.95;
+    private static final double PERCENTILE_99 = 0.99;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    void recordHandled(long nanos) {
+        handled.increment();
+        recordLatency(nanos);
+    }
+
+    void recordFailed(long nanos) {
+        failed.increment();
+        recordLatency(nanos);
+    }
+
+    void recordRedelivered() {
+        redelivered.increment();
+    }
+
+    void recordDiscarded() {
+        discarded.increment();
+    }
+
+    EventListenerMetrics toMetrics(String subject, String listenerIdentifier) {
+        EventListenerMetrics metrics = new EventListenerMetrics();
+
+        metrics.setSubject(subject);
+        metrics.setListenerIdentifier(listenerIdentifier);
+        metrics.setHandledCount(handled.sum());
+        metrics.setFailedCount(failed.sum());
+        metrics.setRedeliveredCount(redelivered.sum());
+        metrics.setDiscardedCount(discarded.sum());
+
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            buckets[i] = histogram.get(i);
+            count += buckets[i];
+        }
+
+        if (count > 0) {
+            metrics.setAverageLatency(totalNanos.sum() / count / NANOS_PER_MILLI);
+            metrics.setMaxLatency(maxNanos.get() / NANOS_PER_MILLI);
+            metrics.setLatency95th(percentile(buckets, count, PERCENTILE_95));
+            metrics.setLatency99th(percentile(buckets, count, PERCENTILE_99));
+        }
+
+        return metrics;
+    }
+
+    private void recordLatency(long nanos) {
+        totalNanos.add(nanos);
+        histogram.incrementAndGet(bucket(nanos));
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    private int bucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private double percentile(long[] buckets, long count, double percentile) {
+        long threshold = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += buckets[i];
+            if (seen >= threshold) {
+                // upper bound of the bucket
+                return TimeUnit.MICROSECONDS.toNanos(1L << i) / NANOS_PER_MILLI;
+            }
+        }
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+}
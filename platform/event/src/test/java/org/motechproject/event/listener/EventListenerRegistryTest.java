@@ -246,6 +246,68 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void testRegisteringListenerUpdatesResolvedSubject() {
+        EventListener sel = new SampleEventListener();
+        EventListener sel2 = new FooEventListener();
+        registry.registerListener(sel, "org.motechproject.server.someevent");
+
+        assertEquals(1, registry.getListeners("org.motechproject.server.someevent").size());
+
+        registry.registerListener(sel2, "org.motechproject.server.*");
+
+        Set<EventListener> el = registry.getListeners("org.motechproject.server.someevent");
+        assertEquals(2, el.size());
+        assertTrue(el.contains(sel2));
+    }
+
+    @Test
+    public void testRemovingListenerUpdatesResolvedSubject() {
+        EventListener sel = new SampleEventListener();
+        registry.registerListener(sel, "org.motechproject.server.*");
+
+        assertTrue(registry.hasListener("org.motechproject.server.someevent"));
+
+        registry.clearListenersForBean("TestEventListener");
+
+        assertFalse(registry.hasListener("org.motechproject.server.someevent"));
+        assertTrue(registry.getListeners("org.motechproject.server.someevent").isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResolvedListenersCannotBeModified() {
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.someevent");
+
+        registry.getListeners("org.motechproject.server.someevent").add(new FooEventListener());
+    }
+
+    @Test
+    public void testResolvedListenersMatchListenerTree() {
+        EventListenerTree tree = new EventListenerTree();
+        EventListener sel = new SampleEventListener();
+        EventListener sel2 = new FooEventListener();
+
+        for (int i = 0; i < 1000; i++) {
+            String subject = "org.motechproject.module" + (i % 10) + ".event" + i;
+            registry.registerListener(sel, subject);
+            tree.addListener(sel, subject);
+        }
+        for (int i = 0; i < 10; i += 3) {
+            String subject = "org.motechproject.module" + i + ".*";
+            registry.registerListener(sel2, subject);
+            tree.addListener(sel2, subject);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            String subject = "org.motechproject.module" + (i % 10) + ".event" + i;
+            assertEquals(tree.getListeners(subject), registry.getListeners(subject));
+            assertEquals(tree.getListeners(subject), registry.getListeners(subject));
+
+            String unknownSubject = "org.motechproject.module" + (i % 10) + ".other" + i;
+            assertEquals(tree.getListeners(unknownSubject), registry.getListeners(unknownSubject));
+        }
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
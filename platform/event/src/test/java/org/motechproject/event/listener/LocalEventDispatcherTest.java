@@ -0,0 +1,144 @@
+package org.motechproject.event.listener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.domain.BuggyListener;
+import org.motechproject.event.domain.TrackingListener;
+import org.motechproject.event.listener.impl.LocalEventDispatcher;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.metrics.impl.EventMetricsServiceImpl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalEventDispatcherTest {
+
+    private static final String SUBJECT = "org.motechproject.server.someevent";
+    private static final long TIMEOUT = 5000L;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private LocalEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        when(motechEventConfig.getLocalDispatchPoolSize()).thenReturn(2);
+        when(motechEventConfig.getLocalDispatchQueueSize()).thenReturn(10);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(0L);
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+
+        dispatcher = new LocalEventDispatcher(motechEventConfig, new EventMetricsServiceImpl());
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldHandleEventInWorkerThread() throws InterruptedException {
+        TrackingListener listener = new TrackingListener("tracking-listener");
+
+        dispatcher.dispatch(listener, new MotechEvent(SUBJECT));
+
+        waitForCount(listener, 1);
+        assertEquals(1, listener.getCount());
+    }
+
+    @Test
+    public void shouldRetryFailedEvent() throws InterruptedException {
+        BuggyListener listener = new BuggyListener(2);
+        MotechEvent event = new MotechEvent(SUBJECT);
+
+        dispatcher.dispatch(listener, event);
+
+        waitForCount(listener, 3);
+        assertEquals(3, listener.getCount());
+        assertEquals(2, event.getMessageRedeliveryCount());
+    }
+
+    @Test
+    public void shouldDiscardEventAfterMaxRedeliveryCount() throws InterruptedException {
+        BuggyListener listener = new BuggyListener(5);
+        MotechEvent event = new MotechEvent(SUBJECT);
+
+        dispatcher.dispatch(listener, event);
+
+        waitForCount(listener, 3);
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!event.getParameters().containsKey(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue((Boolean) event.getParameters().get(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT));
+        assertEquals(3, listener.getCount());
+    }
+
+    @Test
+    public void shouldHandleEventInCallingThreadAfterShutdown() {
+        TrackingListener listener = new TrackingListener("tracking-listener");
+        dispatcher.shutdown();
+
+        dispatcher.dispatch(listener, new MotechEvent(SUBJECT));
+
+        assertEquals(1, listener.getCount());
+    }
+
+    @Test
+    public void shouldHandleEventInCallingThreadWhenQueueIsFull() throws InterruptedException {
+        when(motechEventConfig.getLocalDispatchPoolSize()).thenReturn(1);
+        when(motechEventConfig.getLocalDispatchQueueSize()).thenReturn(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread[] handlingThread = new Thread[1];
+
+        EventListener blockingListener = new TrackingListener("blocking-listener") {
+            @Override
+            public void handle(MotechEvent event) {
+                super.handle(event);
+                try {
+                    release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        EventListener recordingListener = new TrackingListener("recording-listener") {
+            @Override
+            public void handle(MotechEvent event) {
+                super.handle(event);
+                handlingThread[0] = Thread.currentThread();
+            }
+        };
+
+        try {
+            // the first event occupies the only worker, the second one fills the queue
+            dispatcher.dispatch(blockingListener, new MotechEvent(SUBJECT));
+            dispatcher.dispatch(blockingListener, new MotechEvent(SUBJECT));
+            dispatcher.dispatch(recordingListener, new MotechEvent(SUBJECT));
+        } finally {
+            release.countDown();
+        }
+
+        assertSame(Thread.currentThread(), handlingThread[0]);
+    }
+
+    private void waitForCount(TrackingListener listener, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (listener.getCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
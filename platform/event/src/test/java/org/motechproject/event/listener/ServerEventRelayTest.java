@@ -12,24 +12,37 @@ import org.mockito.stubbing.Answer;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.domain.BuggyListener;
 import org.motechproject.event.listener.impl.EventListenerRegistry;
+import org.motechproject.event.listener.impl.LocalEventDispatcher;
 import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.listener.impl.TopicEventDispatcher;
+import org.motechproject.event.listener.impl.TopicEventRejectedException;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.metrics.EventListenerMetrics;
+import org.motechproject.event.metrics.impl.EventMetricsServiceImpl;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -40,6 +53,7 @@ import static org.mockito.Mockito.when;
 public class ServerEventRelayTest {
 
     public static final String MESSAGE_DESTINATION = "message-destination";
+    public static final String MESSAGE_DESTINATIONS = "message-destinations";
     public static final String LISTENER_IDENTIFIER = "test-identifier";
     public static final String SECONDARY_LISTENER_IDENTIFIER = "secondary-test-identifier";
     public static final String SUBJECT = "org.motechproject.server.someevent";
@@ -62,11 +76,25 @@ public class ServerEventRelayTest {
     @Mock
     private EventListenerRegistry registry;
 
+    @Mock
+    private LocalEventDispatcher localEventDispatcher;
+
+    private TopicEventDispatcher topicEventDispatcher;
+
+    private EventMetricsServiceImpl eventMetricsService;
+
     private ServerEventRelay eventRelay;
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin);
+        when(motechEventConfig.getTopicPoolSize()).thenReturn(2);
+        when(motechEventConfig.getTopicListenerMaxPending()).thenReturn(10);
+        topicEventDispatcher = new TopicEventDispatcher(motechEventConfig);
+
+        eventMetricsService = new EventMetricsServiceImpl();
+
+        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin, localEventDispatcher,
+                topicEventDispatcher, eventMetricsService);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -80,6 +108,19 @@ public class ServerEventRelayTest {
         verify(eventListener).handle(motechEvent);
     }
 
+    @Test
+    public void shouldRecordHandledQueueEvent() throws Exception {
+        MotechEvent motechEvent = createEvent(LISTENER_IDENTIFIER);
+        setUpListeners(SUBJECT, eventListener);
+        eventRelay.relayQueueEvent(motechEvent);
+
+        EventListenerMetrics metrics = eventMetricsService.getListenerMetrics().get(0);
+        assertEquals(SUBJECT, metrics.getSubject());
+        assertEquals(LISTENER_IDENTIFIER, metrics.getListenerIdentifier());
+        assertEquals(1, metrics.getHandledCount());
+        assertEquals(0, metrics.getFailedCount());
+    }
+
     @Test
     public void testRelayToSingleListenerWithoutMessageDestination() throws Exception {
         MotechEvent motechEvent = createEvent();
@@ -105,6 +146,123 @@ public class ServerEventRelayTest {
         assertThat(capturedEvent.getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
     }
 
+    @Test
+    public void shouldSendSingleMessageForAllListenersWhenBatchDispatchIsEnabled() throws Exception {
+        when(motechEventConfig.isBatchDispatch()).thenReturn(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+
+        MotechEvent capturedEvent = argumentCaptor.getValue();
+        assertEquals(Arrays.asList(LISTENER_IDENTIFIER, SECONDARY_LISTENER_IDENTIFIER),
+                capturedEvent.getParameters().get(MESSAGE_DESTINATIONS));
+        assertFalse(capturedEvent.getParameters().containsKey(MESSAGE_DESTINATION));
+        assertFalse(motechEvent.getParameters().containsKey(MESSAGE_DESTINATIONS));
+    }
+
+    @Test
+    public void shouldNotBatchEventWithSingleListener() throws Exception {
+        when(motechEventConfig.isBatchDispatch()).thenReturn(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener);
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+    }
+
+    @Test
+    public void shouldRelayBatchedEventToEachListener() throws Exception {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        MotechEvent motechEvent = createEvent();
+        motechEvent.getParameters().put(MESSAGE_DESTINATIONS, Arrays.asList(LISTENER_IDENTIFIER, SECONDARY_LISTENER_IDENTIFIER));
+
+        eventRelay.relayQueueEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+        assertFalse(argumentCaptor.getValue().getParameters().containsKey(MESSAGE_DESTINATIONS));
+
+        verify(secondaryEventListener).handle(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldRedeliverBatchedEventOnlyToFailedListener() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        BuggyListener buggyListener = new BuggyListener(1);
+        setUpListeners(SUBJECT, eventListener, buggyListener);
+        MotechEvent motechEvent = createEvent();
+        motechEvent.getParameters().put(MESSAGE_DESTINATIONS, Arrays.asList(buggyListener.getIdentifier(), LISTENER_IDENTIFIER));
+
+        eventRelay.relayQueueEvent(motechEvent);
+
+        verify(eventListener).handle(any(MotechEvent.class));
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+        MotechEvent redelivered = argumentCaptor.getValue();
+        assertThat(redelivered.getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) buggyListener.getIdentifier()));
+        assertFalse(redelivered.getParameters().containsKey(MESSAGE_DESTINATIONS));
+        assertEquals(1, redelivered.getMessageRedeliveryCount());
+        assertEquals(0, motechEvent.getMessageRedeliveryCount());
+    }
+
+    @Test
+    public void shouldDiscardBatchedEventOnlyForListenerThatReachedMaxRedeliveryCount() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(0);
+        BuggyListener buggyListener = new BuggyListener(1);
+        setUpListeners(SUBJECT, eventListener, buggyListener);
+        MotechEvent motechEvent = createEvent();
+        motechEvent.getParameters().put(MESSAGE_DESTINATIONS, Arrays.asList(buggyListener.getIdentifier(), LISTENER_IDENTIFIER));
+
+        eventRelay.relayQueueEvent(motechEvent);
+
+        verify(eventListener).handle(any(MotechEvent.class));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        for (EventListenerMetrics metrics : eventMetricsService.getListenerMetrics()) {
+            boolean buggy = buggyListener.getIdentifier().equals(metrics.getListenerIdentifier());
+            assertEquals(buggy ? 1 : 0, metrics.getDiscardedCount());
+        }
+    }
+
+    @Test
+    public void shouldDispatchEventLocallyWhenLocalDispatchIsEnabled() throws Exception {
+        when(motechEventConfig.isLocalDispatch()).thenReturn(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(localEventDispatcher).dispatch(eq(eventListener), argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+        assertNotNull(argumentCaptor.getValue().getId());
+
+        verify(localEventDispatcher).dispatch(eq(secondaryEventListener), argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
+
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+        assertFalse(motechEvent.getParameters().containsKey(MESSAGE_DESTINATION));
+    }
+
+    @Test
+    public void shouldBroadcastThroughBrokerWhenLocalDispatchIsEnabled() throws Exception {
+        when(motechEventConfig.isLocalDispatch()).thenReturn(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener);
+        eventRelay.broadcastEventMessage(motechEvent);
+
+        verify(outboundEventGateway).broadcastEventMessage(motechEvent);
+        verify(localEventDispatcher, never()).dispatch(any(EventListener.class), any(MotechEvent.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRelayNullQueueEvent() throws Exception {
         eventRelay.relayQueueEvent(null);
@@ -125,6 +283,13 @@ public class ServerEventRelayTest {
         eventRelay.relayQueueEvent(event);
 
         assertThat(event.getParameters().get(MESSAGE_DESTINATION).toString(), is(buggyListener.getIdentifier()));
+
+        EventListenerMetrics metrics = eventMetricsService.getListenerMetrics().get(0);
+        assertEquals(buggyListener.getIdentifier(), metrics.getListenerIdentifier());
+        assertEquals(0, metrics.getHandledCount());
+        assertEquals(1, metrics.getFailedCount());
+        assertEquals(1, metrics.getRedeliveredCount());
+        assertEquals(0, metrics.getDiscardedCount());
     }
 
     @Test
@@ -184,6 +349,148 @@ public class ServerEventRelayTest {
         eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
         verify(eventListener, times(3)).handle(any(MotechEvent.class));
         assertFalse(handled.getValue());
+
+        EventListenerMetrics metrics = eventMetricsService.getListenerMetrics().get(0);
+        assertEquals(SUBJECT, metrics.getSubject());
+        assertEquals(3, metrics.getFailedCount());
+        assertEquals(2, metrics.getRedeliveredCount());
+        assertEquals(1, metrics.getDiscardedCount());
+    }
+
+    @Test
+    public void shouldHandleTopicEventInParallelAndInOrder() throws Exception {
+        when(motechEventConfig.isTopicParallel()).thenReturn(true);
+        when(motechEventConfig.getTopicOrderingKey()).thenReturn("patientId");
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                MotechEvent event = (MotechEvent) invocationOnMock.getArguments()[0];
+                threads.add(Thread.currentThread());
+                handled.add((Integer) event.getParameters().get("sequence"));
+                latch.countDown();
+                return null;
+            }
+        }).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("patientId", "patient");
+            params.put("sequence", i);
+            eventRelay.relayTopicEvent(new MotechEvent(SUBJECT, params));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1), handled);
+        assertFalse(threads.contains(Thread.currentThread()));
+        topicEventDispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldNotHoldBackOtherListenersBehindSlowListener() throws Exception {
+        when(motechEventConfig.isTopicParallel()).thenReturn(true);
+        when(motechEventConfig.getTopicPoolSize()).thenReturn(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(eventListener).handle(any(MotechEvent.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                handled.countDown();
+                return null;
+            }
+        }).when(secondaryEventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        try {
+            eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+
+        topicEventDispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldDiscardTopicEventWhenListenerHasTooManyPendingEventsAndDiscardingIsEnabled() throws Exception {
+        when(motechEventConfig.isTopicParallel()).thenReturn(true);
+        when(motechEventConfig.getTopicListenerMaxPending()).thenReturn(1);
+        when(motechEventConfig.isTopicDiscardOverflow()).thenReturn(true);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        try {
+            eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+            assertEquals(Integer.valueOf(1), topicEventDispatcher.getPendingEvents().get(LISTENER_IDENTIFIER));
+        } finally {
+            release.countDown();
+        }
+
+        EventListenerMetrics metrics = eventMetricsService.getListenerMetrics().get(0);
+        assertEquals(1, metrics.getDiscardedCount());
+        topicEventDispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldRejectTopicEventForAllListenersWhenOneHasTooManyPendingEvents() throws Exception {
+        when(motechEventConfig.isTopicParallel()).thenReturn(true);
+        when(motechEventConfig.getTopicListenerMaxPending()).thenReturn(1);
+        when(motechEventConfig.getTopicListenerMaxWait()).thenReturn(50L);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        try {
+            eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            setUpListeners(SUBJECT, secondaryEventListener, eventListener);
+            try {
+                eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+                fail("The event should have been rejected");
+            } catch (TopicEventRejectedException e) {
+                assertThat(e.getMessage(), Matchers.containsString(LISTENER_IDENTIFIER));
+            }
+
+            // the listener which had room for the event gives it back
+            assertEquals(Integer.valueOf(0), topicEventDispatcher.getPendingEvents().get(SECONDARY_LISTENER_IDENTIFIER));
+            assertEquals(Integer.valueOf(1), topicEventDispatcher.getPendingEvents().get(LISTENER_IDENTIFIER));
+        } finally {
+            release.countDown();
+        }
+
+        verify(secondaryEventListener, never()).handle(any(MotechEvent.class));
+        verify(eventListener, times(1)).handle(any(MotechEvent.class));
+        topicEventDispatcher.shutdown();
     }
 
     @Test
@@ -0,0 +1,126 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private static final String SUBJECT = "org.motechproject.sms.inbound";
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldEncodeAndDecodeEvent() {
+        Map<Object, Object> nested = new LinkedHashMap<>();
+        nested.put("key", "value");
+        nested.put(1, Arrays.asList("fixed", "size"));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "żółw");
+        parameters.put("integer", -42);
+        parameters.put("long", Long.MAX_VALUE);
+        parameters.put("double", 3.14);
+        parameters.put("float", 2.5f);
+        parameters.put("boolean", true);
+        parameters.put("short", (short) 7);
+        parameters.put("byte", (byte) -1);
+        parameters.put("character", 'c');
+        parameters.put("null", null);
+        parameters.put("dateTime", new DateTime(2014, 10, 5, 12, 30, DateTimeZone.forID("Asia/Kolkata")));
+        parameters.put("localDate", new LocalDate(2014, 10, 5));
+        parameters.put("date", new Date(1412500000000L));
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("list", new ArrayList<>(Arrays.asList(1, "two", 3L)));
+        parameters.put("linkedList", new LinkedList<>(Arrays.asList(1, 2)));
+        parameters.put("set", new HashSet<>(Arrays.asList("a", "b")));
+        parameters.put("map", nested);
+        parameters.put("bigDecimal", new BigDecimal("10.25"));
+
+        MotechEvent event = new MotechEvent(SUBJECT, parameters);
+        event.setId(UUID.randomUUID());
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            if (entry.getValue() != null) {
+                assertEquals(entry.getKey(), entry.getValue().getClass(),
+                        decoded.getParameters().get(entry.getKey()).getClass());
+            }
+        }
+    }
+
+    @Test
+    public void shouldEncodeEventWithoutId() {
+        MotechEvent event = new MotechEvent(SUBJECT);
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertNull(decoded.getId());
+        assertEquals(SUBJECT, decoded.getSubject());
+        assertTrue(decoded.getParameters().isEmpty());
+    }
+
+    @Test(expected = MotechEventCodecException.class)
+    public void shouldRejectUnknownFormat() {
+        codec.decode(new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void shouldBeSmallerThanJavaSerialization() throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("phoneNumber", "+919999999999");
+        parameters.put("message", "Your next appointment is tomorrow");
+        parameters.put("timestamp", new DateTime());
+        parameters.put("externalId", "patient-12345");
+        parameters.put(MotechEvent.PARAM_REDELIVERY_COUNT, 0);
+
+        MotechEvent event = new MotechEvent(SUBJECT, parameters);
+        event.setId(UUID.randomUUID());
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(event);
+        }
+
+        int binarySize = codec.encode(event).length;
+        assertTrue(String.format("binary: %d, serialized: %d", binarySize, serialized.size()),
+                binarySize * 2 < serialized.size());
+    }
+
+    @Test
+    public void shouldEncodeLargeNumbers() {
+        List<Object> numbers = new ArrayList<>();
+        numbers.addAll(Arrays.<Object>asList(Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, 127, 128));
+        numbers.addAll(Arrays.<Object>asList(Long.MIN_VALUE, Long.MAX_VALUE, 0L, -1L));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("numbers", numbers);
+        MotechEvent event = new MotechEvent(SUBJECT, parameters);
+
+        assertEquals(numbers, codec.decode(codec.encode(event)).getParameters().get("numbers"));
+    }
+}
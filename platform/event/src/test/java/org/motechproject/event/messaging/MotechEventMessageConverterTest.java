@@ -0,0 +1,101 @@
+package org.motechproject.event.messaging;
+
+import junitx.util.PrivateAccessor;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechEventMessageConverterTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private Session session;
+
+    private MotechEventMessageConverter converter;
+
+    @Before
+    public void setUp() throws Exception {
+        converter = new MotechEventMessageConverter();
+        PrivateAccessor.setField(converter, "motechEventConfig", motechEventConfig);
+
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+        when(session.createObjectMessage(any(Serializable.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ActiveMQObjectMessage message = new ActiveMQObjectMessage();
+                message.setObject((Serializable) invocation.getArguments()[0]);
+                return message;
+            }
+        });
+    }
+
+    @Test
+    public void shouldSendEventAsObjectMessageWithoutCodec() throws Exception {
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof ActiveMQObjectMessage);
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldSendEventAsBytesMessageWithBinaryCodec() throws Exception {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        MotechEvent event = createEvent();
+        event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, true);
+        event.incrementMessageRedeliveryCount();
+
+        Message message = converter.toMessage(event, session);
+        ((ActiveMQBytesMessage) message).reset();
+
+        assertTrue(message instanceof ActiveMQBytesMessage);
+        assertEquals(BinaryMotechEventCodec.NAME, message.getStringProperty(MotechEventMessageConverter.CODEC_PROPERTY));
+        assertEquals(Boolean.TRUE, message.getObjectProperty(MotechEvent.PARAM_INVALID_MOTECH_EVENT));
+        assertEquals(1, message.getIntProperty(MotechEvent.PARAM_REDELIVERY_COUNT));
+
+        MotechEvent decoded = (MotechEvent) converter.fromMessage(message);
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+    }
+
+    @Test
+    public void shouldReadObjectMessagesWhenCodecIsSelected() throws Exception {
+        MotechEvent event = createEvent();
+        Message message = converter.toMessage(event, session);
+
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("phoneNumber", "+919999999999");
+        MotechEvent event = new MotechEvent("org.motechproject.sms.inbound", parameters);
+        event.setId(UUID.randomUUID());
+        return event;
+    }
+}
@@ -0,0 +1,130 @@
+package org.motechproject.event.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.listener.impl.TopicEventDispatcher;
+import org.motechproject.event.metrics.impl.EventMetricsServiceImpl;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventMetricsServiceImplTest {
+
+    private static final String SUBJECT = "org.motechproject.server.someevent";
+    private static final String LISTENER = "test-listener";
+
+    private EventMetricsServiceImpl eventMetricsService;
+
+    @Before
+    public void setUp() {
+        eventMetricsService = new EventMetricsServiceImpl();
+    }
+
+    @Test
+    public void shouldAccumulateCountsPerSubjectAndListener() {
+        eventMetricsService.recordHandled(SUBJECT, LISTENER, TimeUnit.MILLISECONDS.toNanos(2));
+        eventMetricsService.recordHandled(SUBJECT, LISTENER, TimeUnit.MILLISECONDS.toNanos(4));
+        eventMetricsService.recordFailed(SUBJECT, LISTENER, TimeUnit.MILLISECONDS.toNanos(6));
+        eventMetricsService.recordRedelivered(SUBJECT, LISTENER);
+        eventMetricsService.recordDiscarded(SUBJECT, LISTENER);
+        eventMetricsService.recordHandled(SUBJECT, "other-listener", 1);
+
+        List<EventListenerMetrics> metricsList = eventMetricsService.getListenerMetrics();
+        assertEquals(2, metricsList.size());
+
+        EventListenerMetrics metrics = find(metricsList, LISTENER);
+        assertEquals(SUBJECT, metrics.getSubject());
+        assertEquals(2, metrics.getHandledCount());
+        assertEquals(1, metrics.getFailedCount());
+        assertEquals(1, metrics.getRedeliveredCount());
+        assertEquals(1, metrics.getDiscardedCount());
+        assertEquals(4.0, metrics.getAverageLatency(), 0.001);
+        assertEquals(6.0, metrics.getMaxLatency(), 0.001);
+        assertTrue(metrics.getLatency99th() >= 6.0);
+        assertTrue(metrics.getLatency99th() < 12.0);
+    }
+
+    @Test
+    public void shouldCountNewSubjectsTogetherOnceLimitIsReached() {
+        eventMetricsService = new EventMetricsServiceImpl(2);
+
+        eventMetricsService.recordHandled("subject1", LISTENER, 1);
+        eventMetricsService.recordHandled("subject2", LISTENER, 1);
+        eventMetricsService.recordHandled("subject3", LISTENER, 1);
+        eventMetricsService.recordHandled("subject4", LISTENER, 1);
+        eventMetricsService.recordHandled("subject1", LISTENER, 1);
+
+        Map<String, Long> handledBySubject = new HashMap<>();
+        for (EventListenerMetrics metrics : eventMetricsService.getListenerMetrics()) {
+            handledBySubject.put(metrics.getSubject(), metrics.getHandledCount());
+        }
+
+        assertEquals(3, handledBySubject.size());
+        assertEquals(Long.valueOf(2), handledBySubject.get("subject1"));
+        assertEquals(Long.valueOf(1), handledBySubject.get("subject2"));
+        assertEquals(Long.valueOf(2), handledBySubject.get(EventMetricsServiceImpl.OTHER_SUBJECTS));
+    }
+
+    @Test
+    public void shouldReturnPendingTopicEventsOfDispatcher() {
+        TopicEventDispatcher topicEventDispatcher = mock(TopicEventDispatcher.class);
+        when(topicEventDispatcher.getPendingEvents()).thenReturn(Collections.singletonMap(LISTENER, 3));
+
+        assertTrue(eventMetricsService.getPendingTopicEvents().isEmpty());
+
+        eventMetricsService.setTopicEventDispatcher(topicEventDispatcher);
+
+        assertEquals(Integer.valueOf(3), eventMetricsService.getPendingTopicEvents().get(LISTENER));
+    }
+
+    @Test
+    public void shouldResetMetrics() {
+        eventMetricsService.recordHandled(SUBJECT, LISTENER, 1);
+
+        eventMetricsService.reset();
+
+        assertTrue(eventMetricsService.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldExposeMetricsThroughJmx() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(EventMetricsService.OBJECT_NAME);
+
+        eventMetricsService.registerMBean();
+        try {
+            eventMetricsService.recordHandled(SUBJECT, LISTENER, 1);
+
+            CompositeData[] metrics = (CompositeData[]) mBeanServer.getAttribute(objectName, "ListenerMetrics");
+            assertEquals(1, metrics.length);
+            assertEquals(LISTENER, metrics[0].get("listenerIdentifier"));
+            assertEquals(1L, metrics[0].get("handledCount"));
+        } finally {
+            eventMetricsService.unregisterMBean();
+        }
+
+        assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+    private EventListenerMetrics find(List<EventListenerMetrics> metricsList, String listenerIdentifier) {
+        for (EventListenerMetrics metrics : metricsList) {
+            if (listenerIdentifier.equals(metrics.getListenerIdentifier())) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+}
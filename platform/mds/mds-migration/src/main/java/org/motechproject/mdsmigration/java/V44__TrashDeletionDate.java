@@ -0,0 +1,9 @@
+package org.motechproject.mdsmigration.java;
+
+public class V44__TrashDeletionDate extends AbstractMDSMigration { // NO CHECKSTYLE Bad format of member name
+
+    @Override
+    public String getMigrationImplClassName() {
+        return "org.motechproject.mds.dbmigration.java." + this.getClass().getSimpleName();
+    }
+}
@@ -4,6 +4,8 @@ import org.motechproject.mds.config.ModuleSettings;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.domain.ImportExportBlueprint;
 import org.motechproject.mds.domain.ImportManifest;
+import org.motechproject.mds.dto.EntityCacheStatisticsDto;
+import org.motechproject.mds.service.EntityCacheService;
 import org.motechproject.mds.service.ImportExportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -39,6 +41,7 @@ public class SettingsController {
 
     private SettingsService settingsService;
     private ImportExportService importExportService;
+    private EntityCacheService entityCacheService;
 
     @RequestMapping(value = "/settings/importUploadFile", method = RequestMethod.POST)
     @PreAuthorize(Roles.HAS_SETTINGS_ACCESS)
@@ -105,6 +108,20 @@ public class SettingsController {
         return settingsService.getModuleSettings();
     }
 
+    @RequestMapping(value = "/settings/cache/statistics", method = RequestMethod.GET)
+    @ResponseBody
+    @PreAuthorize(Roles.HAS_SETTINGS_ACCESS)
+    public List<EntityCacheStatisticsDto> getCacheStatistics() {
+        return entityCacheService.getStatistics();
+    }
+
+    @RequestMapping(value = "/settings/cache/statistics", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize(Roles.HAS_SETTINGS_ACCESS)
+    public void clearCacheStatistics() {
+        entityCacheService.clearStatistics();
+    }
+
     @Autowired
     public void setSettingsService(SettingsService settingsService) {
         this.settingsService = settingsService;
@@ -114,4 +131,9 @@ public class SettingsController {
     public void setImportExportService(ImportExportService importExportService) {
         this.importExportService = importExportService;
     }
+
+    @Autowired
+    public void setEntityCacheService(EntityCacheService entityCacheService) {
+        this.entityCacheService = entityCacheService;
+    }
 }
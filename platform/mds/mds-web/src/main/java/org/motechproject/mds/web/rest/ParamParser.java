@@ -20,6 +20,8 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String AFTER = "after";
+    public static final String INCLUDE_TOTAL_COUNT = "includeTotalCount";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -43,9 +45,22 @@ public final class ParamParser {
         sortBy = requestParams.get(SORT_BY);
         orderDir = requestParams.get(ORDER_DIR);
 
-        order = buildOrder(sortBy, orderDir);
+        Long after = getAfter(requestParams);
 
-        return new QueryParams(page, pageSize, order);
+        QueryParams queryParams;
+        if (after != null) {
+            if (StringUtils.isNotBlank(sortBy) && !ID.equals(sortBy)) {
+                throw new InvalidParameterException("Paging after a given record is only supported when sorting by id");
+            }
+            queryParams = QueryParams.keyset(after, pageSize, Order.Direction.fromString(orderDir));
+        } else {
+            order = buildOrder(sortBy, orderDir);
+            queryParams = new QueryParams(page, pageSize, order);
+        }
+
+        queryParams.setCountTotal(getBoolean(requestParams, INCLUDE_TOTAL_COUNT, true));
+
+        return queryParams;
     }
 
     public static String getLookupName(Map<String, String> requestParams) {
@@ -66,23 +81,35 @@ public final class ParamParser {
     }
 
     public static Boolean getIncludeBlob(Map<String, String> requestParams) {
+        return getBoolean(requestParams, INCLUDE_BLOB, null);
+    }
+
+    private static Long getAfter(Map<String, String> requestParams) {
+        try {
+            return requestParams.containsKey(AFTER) ? Long.valueOf(requestParams.get(AFTER)) : null;
+        } catch (NumberFormatException e) {
+            throw new InvalidParameterException("Given cursor is not a number!", e);
+        }
+    }
+
+    private static Boolean getBoolean(Map<String, String> requestParams, String key, Boolean defaultVal) {
 
-        Boolean includeBlob = null;
+        Boolean result = defaultVal;
 
-        if (requestParams.containsKey(INCLUDE_BLOB)) {
+        if (requestParams.containsKey(key)) {
 
-            String value = requestParams.get(INCLUDE_BLOB);
+            String value = requestParams.get(key);
 
             if (value.toLowerCase().equals("true")) {
-                includeBlob = Boolean.TRUE;
+                result = Boolean.TRUE;
             } else if (value.toLowerCase().equals("false")) {
-                includeBlob = Boolean.FALSE;
+                result = Boolean.FALSE;
             } else {
-                throw new InvalidParameterException("The \"includeBlob\" is neither \"true\" nor \"false\"");
+                throw new InvalidParameterException(String.format("The \"%s\" is neither \"true\" nor \"false\"", key));
             }
         }
 
-        return includeBlob;
+        return result;
     }
 
     private static Integer getInteger(Map<String, String> requestParams, String key, Integer defaultVal) {
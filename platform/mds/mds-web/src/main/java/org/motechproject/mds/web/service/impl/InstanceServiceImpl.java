@@ -37,6 +37,7 @@ import org.motechproject.mds.helper.MdsBundleHelper;
 import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.query.InMemoryQueryFilter;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.EntityMetadataService;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.service.MotechDataService;
@@ -109,6 +110,7 @@ public class InstanceServiceImpl implements InstanceService {
     private static final Integer UI_REPRESENTATION_MAX_LENGTH = 80;
 
     private EntityService entityService;
+    private EntityMetadataService entityMetadataService;
     private BundleContext bundleContext;
     private HistoryService historyService;
     private TrashService trashService;
@@ -260,12 +262,11 @@ public class InstanceServiceImpl implements InstanceService {
 
         LookupDto lookup = getLookupByName(entityId, lookupName);
         List<FieldDto> fields = entityService.getEntityFields(entityId);
-        Map<String, FieldDto> fieldMap = entityService.getLookupFieldsMapping(entityId, lookupName);
 
         MotechDataService service = getServiceForEntity(entity);
 
         try {
-            LookupExecutor lookupExecutor = new LookupExecutor(service, lookup, fieldMap);
+            LookupExecutor lookupExecutor = getLookupExecutor(service, entityId, lookup);
 
             Object result = lookupExecutor.execute(lookupMap, queryParams);
 
@@ -318,12 +319,11 @@ public class InstanceServiceImpl implements InstanceService {
         validateCredentialsForReading(entity);
 
         LookupDto lookup = getLookupByName(entityId, lookupName);
-        Map<String, FieldDto> fieldMap = entityService.getLookupFieldsMapping(entityId, lookupName);
 
         MotechDataService service = getServiceForEntity(entity);
 
         try {
-            LookupExecutor lookupExecutor = new LookupExecutor(service, lookup, fieldMap);
+            LookupExecutor lookupExecutor = getLookupExecutor(service, entityId, lookup);
             return lookupExecutor.executeCount(lookupMap);
         } catch (RuntimeException e) {
             throw new LookupExecutionException(e);
@@ -366,6 +366,9 @@ public class InstanceServiceImpl implements InstanceService {
 
         Object instance = service.retrieve(ID_FIELD_NAME, instanceId);
 
+        // history recorded in the background must be stored before it is read
+        historyService.flush();
+
         List history = historyService.getHistoryForInstance(instance, queryParams);
         List<HistoryRecord> result = new ArrayList<>();
         for (Object o : history) {
@@ -382,6 +385,8 @@ public class InstanceServiceImpl implements InstanceService {
 
         Object instance = service.retrieve(ID_FIELD_NAME, instanceId);
 
+        historyService.flush();
+
         return historyService.countHistoryRecords(instance);
     }
 
@@ -393,6 +398,8 @@ public class InstanceServiceImpl implements InstanceService {
 
         Object instance = service.retrieve(ID_FIELD_NAME, instanceId);
 
+        historyService.flush();
+
         Object historyInstance = historyService.getSingleHistoryInstance(instance, historyId);
 
         return convertToHistoryRecord(historyInstance, entity, instanceId, service);
@@ -566,15 +573,27 @@ public class InstanceServiceImpl implements InstanceService {
     }
 
     private LookupDto getLookupByName(Long entityId, String lookupName) {
-        LookupDto lookup = entityService.getLookupByName(entityId, lookupName);
+        LookupDto lookup = (entityMetadataService == null)
+                ? entityService.getLookupByName(entityId, lookupName)
+                : entityMetadataService.getLookup(entityId, lookupName);
         if (lookup == null) {
             throw new LookupNotFoundException(entityId, lookupName);
         }
         return lookup;
     }
 
+    private LookupExecutor getLookupExecutor(MotechDataService service, Long entityId, LookupDto lookup) {
+        if (entityMetadataService == null) {
+            return new LookupExecutor(service, lookup,
+                    entityService.getLookupFieldsMapping(entityId, lookup.getLookupName()));
+        }
+        return entityMetadataService.getLookupExecutor(service, entityId, lookup.getLookupName());
+    }
+
     private EntityDto getEntity(Long entityId) {
-        EntityDto entityDto = entityService.getEntity(entityId);
+        EntityDto entityDto = (entityMetadataService == null)
+                ? entityService.getEntity(entityId)
+                : entityMetadataService.getEntity(entityId);
         if (entityDto == null) {
             throw new EntityNotFoundException(entityId);
         }
@@ -582,7 +601,9 @@ public class InstanceServiceImpl implements InstanceService {
     }
 
     private EntityDto getEntity(String entityClassName) {
-        EntityDto entityDto = entityService.getEntityByClassName(entityClassName);
+        EntityDto entityDto = (entityMetadataService == null)
+                ? entityService.getEntityByClassName(entityClassName)
+                : entityMetadataService.getEntity(entityClassName);
         if (entityDto == null) {
             throw new EntityNotFoundException(entityClassName);
         }
@@ -1121,6 +1142,11 @@ public class InstanceServiceImpl implements InstanceService {
         this.entityService = entityService;
     }
 
+    @Autowired(required = false)
+    public void setEntityMetadataService(EntityMetadataService entityMetadataService) {
+        this.entityMetadataService = entityMetadataService;
+    }
+
     @Autowired
     public void setTrashService(TrashService trashService) {
         this.trashService = trashService;
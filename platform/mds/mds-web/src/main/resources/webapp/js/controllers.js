@@ -4947,6 +4947,29 @@
                 });
         };
 
+        /**
+        * Loads the second-level cache statistics of entities
+        */
+        $scope.loadCacheStatistics = function () {
+            $http.get('../mds/settings/cache/statistics')
+            .success(function (data) {
+                $scope.cacheStatistics = data;
+            })
+            .error(function (response) {
+                handleResponse('mds.error', 'mds.cache.error', response);
+            });
+        };
+
+        $scope.clearCacheStatistics = function () {
+            $http['delete']('../mds/settings/cache/statistics')
+            .success(function () {
+                $scope.cacheStatistics = [];
+            })
+            .error(function (response) {
+                handleResponse('mds.error', 'mds.cache.error', response);
+            });
+        };
+
         $scope.isAllEntitiesChecked = function(entities, include, canInclude) {
             var i, excludedCount = 0;
             for (i = 0; i < entities.length; i += 1) {
@@ -3,11 +3,13 @@ package org.motechproject.mds.web.rest;
 import org.junit.Test;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.web.ex.InvalidParameterException;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -39,6 +41,8 @@ public class ParamParserTest {
         queryParams = ParamParser.buildQueryParams(requestParams);
 
         assertTrue(queryParams.getOrderList().isEmpty());
+        assertFalse(queryParams.isKeysetSet());
+        assertTrue(queryParams.isCountTotal());
 
         // default order direction
 
@@ -52,6 +56,35 @@ public class ParamParserTest {
         assertEquals(Order.Direction.ASC, queryParams.getOrderList().get(0).getDirection());
     }
 
+    @Test
+    public void shouldBuildKeysetQueryParams() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("after", "240");
+        requestParams.put("pageSize", "50");
+        requestParams.put("order", "desc");
+        requestParams.put("includeTotalCount", "false");
+
+        QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isKeysetSet());
+        assertEquals(Long.valueOf(240), queryParams.getAfter());
+        assertEquals(Integer.valueOf(1), queryParams.getPage());
+        assertEquals(Integer.valueOf(50), queryParams.getPageSize());
+        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals("id", queryParams.getOrderList().get(0).getField());
+        assertEquals(Order.Direction.DESC, queryParams.getOrderList().get(0).getDirection());
+        assertFalse(queryParams.isCountTotal());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldNotAllowKeysetPagingWhenSortingByOtherField() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("after", "240");
+        requestParams.put("sort", "someColumn");
+
+        ParamParser.buildQueryParams(requestParams);
+    }
+
     @Test
     public void shouldGetLookupName() {
         Map<String, String> requestParams = new HashMap<>();
@@ -20,8 +20,10 @@ import org.motechproject.mds.ex.entity.EntityInstancesNonEditableException;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.ex.object.ObjectNotFoundException;
 import org.motechproject.mds.ex.object.ObjectUpdateException;
+import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.DefaultMotechDataService;
+import org.motechproject.mds.service.EntityMetadataService;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TrashService;
@@ -62,6 +64,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -320,6 +323,37 @@ public class InstanceServiceTest {
         assertEquals(2, count);
     }
 
+    @Test
+    public void shouldExecuteLookupsUsingCachedMetadata() {
+        mockSampleFields();
+        mockEntity();
+        mockLookups();
+        mockLookupService();
+
+        LookupDto lookup = entityService.getLookupByName(ENTITY_ID, TestDataService.LOOKUP_1_NAME);
+        LookupExecutor executor = new LookupExecutor(new TestDataService(), lookup,
+                entityService.getLookupFieldsMapping(ENTITY_ID, TestDataService.LOOKUP_1_NAME));
+
+        EntityMetadataService entityMetadataService = mock(EntityMetadataService.class);
+        when(entityMetadataService.getEntity(ENTITY_ID)).thenReturn(entity);
+        when(entityMetadataService.getLookup(ENTITY_ID, TestDataService.LOOKUP_1_NAME)).thenReturn(lookup);
+        when(entityMetadataService.getLookupExecutor(any(MotechDataService.class), eq(ENTITY_ID),
+                eq(TestDataService.LOOKUP_1_NAME))).thenReturn(executor);
+        ((InstanceServiceImpl) instanceService).setEntityMetadataService(entityMetadataService);
+
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put("strField", TestDataService.LOOKUP_1_EXPECTED_PARAM);
+
+        long count = instanceService.countRecordsByLookup(ENTITY_ID, TestDataService.LOOKUP_1_NAME, lookupMap);
+
+        assertEquals(1L, count);
+        verify(entityMetadataService).getLookupExecutor(any(MotechDataService.class), eq(ENTITY_ID),
+                eq(TestDataService.LOOKUP_1_NAME));
+        verify(entityService, never()).getEntity(ENTITY_ID);
+        verify(entityService, times(1)).getLookupByName(ENTITY_ID, TestDataService.LOOKUP_1_NAME);
+        verify(entityService, times(1)).getLookupFieldsMapping(ENTITY_ID, TestDataService.LOOKUP_1_NAME);
+    }
+
     @Test
     public void shouldUseCorrectClassLoaderWhenCreatingInstances() throws ClassNotFoundException {
         mockSampleFields();
@@ -13,6 +13,7 @@ import org.motechproject.mds.javassist.MotechClassPool;
 import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.service.impl.EntityMetadataCache;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.osgi.web.util.OSGiServiceUtils;
 import org.osgi.framework.Bundle;
@@ -42,6 +43,7 @@ public class MDSDataProvider extends AbstractDataProvider {
     private BundleContext bundleContext;
     private ServiceRegistration serviceRegistration;
     private EntityService entityService;
+    private EntityMetadataCache metadataCache;
 
     @Autowired
     public MDSDataProvider(ResourceLoader resourceLoader) {
@@ -87,9 +89,10 @@ public class MDSDataProvider extends AbstractDataProvider {
         Object obj = null;
 
         LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
+        EntityDto entity = getEntity(type);
         if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
+            lookup = (metadataCache == null) ? entityService.getLookupByName(entity.getId(), lookupName)
+                    : metadataCache.getLookup(entity.getId(), lookupName);
         }
 
         if (entity != null && lookup != null) {
@@ -97,9 +100,13 @@ public class MDSDataProvider extends AbstractDataProvider {
             MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
 
             if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
-
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
+                LookupExecutor executor;
+                if (metadataCache == null) {
+                    Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+                    executor = new LookupExecutor(service, lookup, fieldsByName);
+                } else {
+                    executor = metadataCache.getLookupExecutor(service, entity.getId(), lookupName);
+                }
 
                 obj = executor.execute(lookupMap);
             } else {
@@ -151,7 +158,7 @@ public class MDSDataProvider extends AbstractDataProvider {
 
     @Override
     public boolean supports(String type) {
-        return entityService.getEntityByClassName(type) != null;
+        return getEntity(type) != null;
     }
 
     @Override
@@ -172,6 +179,10 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
     }
 
+    private EntityDto getEntity(String type) {
+        return (metadataCache == null) ? entityService.getEntityByClassName(type) : metadataCache.getEntity(type);
+    }
+
     private void registerDataProvider() {
         Resource resource = resourceLoader.getResource("task-data-provider.json");
         if (resource != null) {
@@ -193,4 +204,9 @@ public class MDSDataProvider extends AbstractDataProvider {
     public void setEntityService(EntityService entityService) {
         this.entityService = entityService;
     }
+
+    @Autowired(required = false)
+    public void setMetadataCache(EntityMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
 }
@@ -33,9 +33,11 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
+import java.util.Date;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.uncapitalize;
+import static org.motechproject.mds.util.Constants.Util.DELETION_DATE_FIELD_NAME;
 
 /**
  * The <code>EntityBuilderImpl</code> is used to build classes for a given entity.
@@ -137,6 +139,9 @@ public class EntityBuilderImpl implements EntityBuilder {
                 case TRASH:
                     // this field contains information about the schema version of an entity
                     addProperty(declaring, Long.class.getName(), "schemaVersion", null);
+
+                    // this field contains the time when the instance was moved to the trash
+                    addProperty(declaring, Date.class.getName(), DELETION_DATE_FIELD_NAME, null);
                     break;
                 default:
             }
@@ -106,6 +106,7 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         cmd.setDetachable(true);
         cmd.setIdentityType(IdentityType.APPLICATION);
         cmd.setPersistenceModifier(ClassPersistenceModifier.PERSISTENCE_CAPABLE);
+        cmd.setCacheable(entity.isCacheable());
 
         addInheritanceMetadata(cmd, definition);
 
@@ -133,6 +134,8 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         cmd.setDetachable(true);
         cmd.setIdentityType(IdentityType.APPLICATION);
         cmd.setPersistenceModifier(ClassPersistenceModifier.PERSISTENCE_CAPABLE);
+        // history and trash instances are not retrieved by their id often enough to be worth caching
+        cmd.setCacheable(false);
 
         InheritanceMetadata imd = cmd.newInheritanceMetadata();
         imd.setCustomStrategy("complete-table");
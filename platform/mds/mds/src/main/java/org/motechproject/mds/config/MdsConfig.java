@@ -27,6 +27,10 @@ public class MdsConfig {
     private static final String FLYWAY_JAVA_MIGRATION_PATH = "org/motechproject/mdsmigration/java";
     private static final String FLYWAY_DEFAULT_MIGRATION_PATH = "db/migration/default";
 
+    private static final String L2_CACHE_TYPE = "datanucleus.cache.level2.type";
+    private static final String L2_CACHE_MODE = "datanucleus.cache.level2.mode";
+    private static final String VALIDATE_WHEN_CACHED = "datanucleus.findObject.validateWhenCached";
+
     private Map<String, Properties> config = new HashMap<>();
 
     private SqlDBManager sqlDBManager;
@@ -105,11 +109,26 @@ public class MdsConfig {
         properties.putAll(coreConfigurationService.loadDatanucleusConfig());
         properties.remove("javax.jdo.option.Optimistic");
         properties.remove("datanucleus.flush.mode");
+        // the second-level cache settings are meant for the instances of entities
+        properties.remove(L2_CACHE_MODE);
+        properties.remove(VALIDATE_WHEN_CACHED);
         return properties;
     }
 
+    /**
+     * Returns the DataNucleus properties of the entities. Unless configured otherwise, only the instances of
+     * entities marked as cacheable are kept in the second-level cache, and cached instances found by their
+     * id are not validated against the database.
+     *
+     * @return the DataNucleus properties
+     */
     public Properties getDataNucleusProperties() {
-        return coreConfigurationService.loadDatanucleusConfig();
+        Properties properties = new Properties();
+        properties.putAll(coreConfigurationService.loadDatanucleusConfig());
+        properties.putIfAbsent(L2_CACHE_TYPE, "soft");
+        properties.putIfAbsent(L2_CACHE_MODE, "ENABLE_SELECTIVE");
+        properties.putIfAbsent(VALIDATE_WHEN_CACHED, "false");
+        return properties;
     }
 
     public String[] getFlywayLocations() {
@@ -0,0 +1,87 @@
+package org.motechproject.mds.dbmigration.java;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.EntityType;
+import org.motechproject.mds.helper.ClassTableName;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.Constants;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds the deletion date column to the trash tables of entities. Previously the trash was emptied based on
+ * the modification date of the trash instances, which for instances deleted before the retention period was
+ * introduced is the time of their last change. The deletion time of those instances is unknown, so they get
+ * the time of this migration, which keeps them in the trash for at least the whole retention period.
+ */
+public class V44__TrashDeletionDate { // NO CHECKSTYLE Bad format of member name
+
+    private static final String POSTGRES = "PostgreSQL";
+
+    private boolean isPostgres;
+
+    public void migrate(JdbcTemplate jdbcTemplate) throws SQLException {
+        String className = "className";
+        String tableNameColumn = "tableName";
+
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            isPostgres = StringUtils.equals(metaData.getDatabaseProductName(), POSTGRES);
+
+            String sqlEntities = String.format("SELECT %s, module, namespace, %s FROM %s",
+                    enquoteIfPostgres(className), enquoteIfPostgres(tableNameColumn), enquoteIfPostgres("Entity"));
+
+            for (Map<String, Object> entity : jdbcTemplate.queryForList(sqlEntities)) {
+                String tableName = ClassTableName.getTableName(
+                        ClassName.getTrashClassName((String) entity.get(className)),
+                        (String) entity.get("module"),
+                        (String) entity.get("namespace"),
+                        (String) entity.get(tableNameColumn),
+                        EntityType.TRASH);
+
+                Set<String> columns = getColumns(metaData, connection.getCatalog(), tableName);
+
+                // the trash table is created along with the entity schema, so it might not exist yet
+                if (!columns.isEmpty()) {
+                    addDeletionDate(jdbcTemplate, tableName, columns);
+                }
+            }
+        }
+    }
+
+    private void addDeletionDate(JdbcTemplate jdbcTemplate, String tableName, Set<String> columns) {
+        String table = enquoteIfPostgres(tableName);
+        String column = enquoteIfPostgres(Constants.Util.DELETION_DATE_FIELD_NAME);
+
+        if (!columns.contains(Constants.Util.DELETION_DATE_FIELD_NAME.toLowerCase())) {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s ADD %s %s NULL", table, column,
+                    isPostgres ? "timestamp" : "datetime"));
+        }
+
+        jdbcTemplate.update(String.format("UPDATE %s SET %s = CURRENT_TIMESTAMP WHERE %s IS NULL",
+                table, column, column));
+    }
+
+    private Set<String> getColumns(DatabaseMetaData metaData, String catalog, String tableName) throws SQLException {
+        Set<String> columns = new HashSet<>();
+
+        try (ResultSet resultSet = metaData.getColumns(catalog, null, tableName, null)) {
+            while (resultSet.next()) {
+                columns.add(resultSet.getString("COLUMN_NAME").toLowerCase());
+            }
+        }
+
+        return columns;
+    }
+
+    private String enquoteIfPostgres(String name) {
+        return isPostgres ? String.format("\"%s\"", name) : name;
+    }
+}
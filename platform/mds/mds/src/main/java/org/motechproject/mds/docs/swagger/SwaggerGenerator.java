@@ -45,6 +45,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.AFTER_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.AFTER_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.API_DESCRIPTION_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ARRAY_TYPE;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.BASE_PATH_KEY;
@@ -59,6 +61,7 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.HTTP;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_PATHVAR;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_BLOB_PARAM;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_TOTAL_COUNT_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT32_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT64_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INTEGER_TYPE;
@@ -92,6 +95,7 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.SORT_BY_
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.SORT_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.STRING_TYPE;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.TITLE_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.TOTAL_COUNT_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.UPDATE_BODY_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.UPDATE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.UPDATE_ID_KEY;
@@ -350,6 +354,8 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         parameters.add(pageSizeParameter(locale));
         parameters.add(sortParameter(restExposedFields, locale));
         parameters.add(orderParameter(locale));
+        parameters.add(afterParameter(locale));
+        parameters.add(includeTotalCountParameter(locale));
         if (hasBlobField(restExposedFields)) {
             parameters.add(includeBlobParameter(locale));
         }
@@ -407,6 +413,17 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         return orderParameter;
     }
 
+    private Parameter afterParameter(Locale locale) {
+        return queryParameter(AFTER_PARAM, msg(locale, AFTER_DESC_KEY), INTEGER_TYPE, INT64_FORMAT);
+    }
+
+    private Parameter includeTotalCountParameter(Locale locale) {
+        Parameter includeTotalCountParameter = queryParameter(INCLUDE_TOTAL_COUNT_PARAM, msg(locale, TOTAL_COUNT_DESC_KEY),
+                STRING_TYPE);
+        includeTotalCountParameter.setEnumValues(Arrays.asList("true", "false"));
+        return includeTotalCountParameter;
+    }
+
     private Parameter includeBlobParameter(Locale locale) {
         Parameter includeBlobParameter = queryParameter(INCLUDE_BLOB_PARAM, msg(locale, BLOB_DESC_KEY), STRING_TYPE);
         includeBlobParameter.setEnumValues(Arrays.asList("true", "false"));
@@ -563,6 +580,7 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         properties.put("totalCount", new Property(INTEGER_TYPE, INT64_FORMAT));
         properties.put("page", new Property(INTEGER_TYPE, INT32_FORMAT));
         properties.put("pageSize", new Property(INTEGER_TYPE, INT32_FORMAT));
+        properties.put("next", new Property(INTEGER_TYPE, INT64_FORMAT));
 
         final List<String> required = new ArrayList<>();
         required.add("totalCount");
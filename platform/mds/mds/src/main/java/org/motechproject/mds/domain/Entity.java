@@ -221,6 +221,11 @@ public class Entity {
     }
 
 
+    @NotPersistent
+    public boolean isCacheable() {
+        return tracking != null && tracking.isCacheable();
+    }
+
     @NotPersistent
     public boolean isAllowCreateEvent() {
         if (tracking != null) {
@@ -45,6 +45,9 @@ public class Tracking {
     @Persistent
     private boolean nonEditable;
 
+    @Persistent
+    private boolean cacheable;
+
     public Tracking() {
         this(null);
     }
@@ -65,6 +68,7 @@ public class Tracking {
         dto.setAllowDeleteEvent(allowDeleteEvent);
         dto.setModifiedByUser(modifiedByUser);
         dto.setNonEditable(nonEditable);
+        dto.setCacheable(cacheable);
 
         return dto;
     }
@@ -76,6 +80,7 @@ public class Tracking {
         recordHistory = trackingDto.isRecordHistory();
         modifiedByUser = trackingDto.isModifiedByUser();
         nonEditable = trackingDto.isNonEditable();
+        cacheable = trackingDto.isCacheable();
     }
 
     public Long getId() {
@@ -142,6 +147,14 @@ public class Tracking {
         this.nonEditable = nonEditable;
     }
 
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
     public Tracking copy() {
         Tracking copy = new Tracking();
 
@@ -151,13 +164,14 @@ public class Tracking {
         copy.setAllowDeleteEvent(allowDeleteEvent);
         copy.setModifiedByUser(modifiedByUser);
         copy.setNonEditable(nonEditable);
+        copy.setCacheable(cacheable);
 
         return copy;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, nonEditable);
+        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, nonEditable, cacheable);
     }
 
     @Override
@@ -176,6 +190,7 @@ public class Tracking {
                 Objects.equals(this.allowCreateEvent, other.allowCreateEvent) &&
                 Objects.equals(this.allowUpdateEvent, other.allowUpdateEvent) &&
                 Objects.equals(this.allowDeleteEvent, other.allowDeleteEvent) &&
-                Objects.equals(this.nonEditable, other.nonEditable);
+                Objects.equals(this.nonEditable, other.nonEditable) &&
+                Objects.equals(this.cacheable, other.cacheable);
     }
 }
@@ -0,0 +1,57 @@
+package org.motechproject.mds.dto;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of the second-level cache for a single entity. Every retrieval of an instance by its id counts
+ * either as a hit, when the instance was found in the cache, or as a miss, when it was loaded from the database.
+ */
+public class EntityCacheStatisticsDto implements Serializable {
+    private static final long serialVersionUID = -5026719528351472790L;
+
+    private String className;
+    private long hits;
+    private long misses;
+
+    public EntityCacheStatisticsDto() {
+        this(null, 0, 0);
+    }
+
+    public EntityCacheStatisticsDto(String className, long hits, long misses) {
+        this.className = className;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    /**
+     * @return the part of the retrievals that were served from the cache, between 0 and 1
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -16,6 +16,7 @@ public class TrackingDto {
     private boolean allowDeleteEvent;
     private boolean modifiedByUser;
     private boolean nonEditable;
+    private boolean cacheable;
 
     public TrackingDto() {
         this(false, true, true, true, false, false);
@@ -84,6 +85,14 @@ public class TrackingDto {
         this.nonEditable = nonEditable;
     }
 
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
     /**
      * {@inheritDoc}
      */
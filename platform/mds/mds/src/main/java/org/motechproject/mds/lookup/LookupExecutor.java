@@ -16,7 +16,9 @@ import org.motechproject.mds.util.MDSClassLoader;
 import org.motechproject.mds.util.TypeHelper;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +29,10 @@ import java.util.Set;
  * by the REST api and the Databrowser UI for executing lookups based
  * on only metadata. The dataservice and metadata must be provided during
  * construction.
+ * <p>
+ * The lookup is compiled on its first execution: the conversion of each parameter and the
+ * lookup methods of the data service are resolved once and reused by later executions, so
+ * executors should be kept for as long as the data service and the lookup don't change.
  */
 public class LookupExecutor {
 
@@ -36,6 +42,12 @@ public class LookupExecutor {
     private final Class entityClass;
     private final ClassLoader classLoader;
 
+    private volatile LookupArgument[] arguments;
+    private volatile Class[] argTypes;
+    private volatile Method lookupMethod;
+    private volatile Method lookupMethodWithParams;
+    private volatile Method countMethod;
+
     public LookupExecutor(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
         this.dataService = dataService;
         this.lookup = lookup;
@@ -49,66 +61,134 @@ public class LookupExecutor {
     }
 
     public Object execute(Map<String, ?> lookupMap, QueryParams queryParams) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
-
-        if (queryParams != null) {
-            args.add(queryParams);
-            argTypes.add(QueryParams.class);
-        }
+        Object[] args = getLookupArgs(lookupMap, queryParams != null);
 
         try {
-            return MethodUtils.invokeMethod(dataService, lookup.getMethodName(),
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
+            Method method;
+            if (queryParams == null) {
+                method = lookupMethod;
+                if (method == null) {
+                    method = findMethod(lookup.getMethodName(), argTypes);
+                    lookupMethod = method;
+                }
+            } else {
+                args[args.length - 1] = queryParams;
+
+                method = lookupMethodWithParams;
+                if (method == null) {
+                    Class[] types = Arrays.copyOf(argTypes, argTypes.length + 1);
+                    types[argTypes.length] = QueryParams.class;
+
+                    method = findMethod(lookup.getMethodName(), types);
+                    lookupMethodWithParams = method;
+                }
+            }
+
+            return method.invoke(dataService, args);
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(), e);
         }
     }
 
     public long executeCount(Map<String, ?> lookupMap) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
-
-        String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
+        Object[] args = getLookupArgs(lookupMap, false);
 
         try {
-            return (long) MethodUtils.invokeMethod(dataService, countMethodName,
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
+            Method method = countMethod;
+            if (method == null) {
+                method = findMethod(LookupName.lookupCountMethod(lookup.getMethodName()), argTypes);
+                countMethod = method;
+            }
+
+            return (long) method.invoke(dataService, args);
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName(), e);
         }
     }
 
+    /**
+     * Returns the data service on which this executor executes the lookup.
+     *
+     * @return the data service
+     */
+    public MotechDataService getDataService() {
+        return dataService;
+    }
 
-    private List<Object> getLookupArgs(Map<String, ?> paramMap) {
-        List<Object> args = new ArrayList<>();
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-            if (field == null) {
-                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-            }
+    private Method findMethod(String methodName, Class[] types) throws NoSuchMethodException {
+        Method method = MethodUtils.getMatchingAccessibleMethod(dataService.getClass(), methodName, types);
 
-            Object val = paramMap.get(lookupField.getLookupFieldName());
+        if (method == null) {
+            throw new NoSuchMethodException("No such accessible method: " + methodName + "() on object: "
+                    + dataService.getClass().getName());
+        }
 
-            String typeClass = getTypeClass(field);
-            String genericType = getGenericTypeClass(field);
+        return method;
+    }
 
-            Object arg;
-            if (lookupField.getType() == LookupFieldType.RANGE) {
-                arg = TypeHelper.toRange(val, typeClass);
-            } else if (lookupField.getType() == LookupFieldType.SET) {
-                arg = TypeHelper.toSet(val, typeClass, classLoader);
-            } else {
-                arg = TypeHelper.parse(val, lookupField.isUseGenericParam() ? genericType : typeClass, classLoader);
-            }
+    private Object[] getLookupArgs(Map<String, ?> paramMap, boolean withQueryParams) {
+        LookupArgument[] compiled = getArguments();
 
-            args.add(arg);
+        Object[] args = new Object[withQueryParams ? compiled.length + 1 : compiled.length];
+        for (int i = 0; i < compiled.length; ++i) {
+            args[i] = compiled[i].convert(paramMap.get(compiled[i].name));
         }
+
         return args;
     }
 
+    private LookupArgument[] getArguments() {
+        LookupArgument[] compiled = arguments;
+
+        if (compiled == null) {
+            List<LookupFieldDto> lookupFields = lookup.getLookupFields();
+            compiled = new LookupArgument[lookupFields.size()];
+
+            for (int i = 0; i < compiled.length; ++i) {
+                compiled[i] = compileArgument(lookupFields.get(i));
+            }
+
+            Class[] types = new Class[compiled.length];
+            for (int i = 0; i < compiled.length; ++i) {
+                types[i] = compiled[i].argType;
+            }
+
+            argTypes = types;
+            arguments = compiled;
+        }
+
+        return compiled;
+    }
+
+    private LookupArgument compileArgument(LookupFieldDto lookupField) {
+        FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
+        if (field == null) {
+            throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
+        }
+
+        String typeClass = getTypeClass(field);
+
+        switch (lookupField.getType()) {
+            case RANGE:
+                return new LookupArgument(lookupField, typeClass, Range.class);
+            case SET:
+                return new LookupArgument(lookupField, typeClass, Set.class);
+            default:
+                String parseType = lookupField.isUseGenericParam() ? getGenericTypeClass(field) : typeClass;
+                String typeClassName = getTypeClassName(lookupField, field);
+
+                try {
+                    ClassLoader safeClassLoader = null == classLoader
+                            ? MDSClassLoader.getInstance()
+                            : classLoader;
+
+                    return new LookupArgument(lookupField, parseType, safeClassLoader.loadClass(typeClassName));
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Type not found " + typeClassName, e);
+                }
+        }
+    }
+
     private String getTypeClass(FieldDto field) {
         String typeClass = null;
 
@@ -136,41 +216,6 @@ public class LookupExecutor {
         return genericType;
     }
 
-    private List<Class> buildArgTypes() {
-        List<Class> argTypes = new ArrayList<>();
-
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-
-            switch (lookupField.getType()) {
-                case RANGE:
-                    argTypes.add(Range.class);
-                    break;
-                case SET:
-                    argTypes.add(Set.class);
-                    break;
-                default:
-                    FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-                    if (field == null) {
-                        throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-                    }
-
-                    String typeClassName = getTypeClassName(lookupField, field);
-
-                    try {
-                        ClassLoader safeClassLoader = null == classLoader
-                                ? MDSClassLoader.getInstance()
-                                : classLoader;
-
-                        argTypes.add(safeClassLoader.loadClass(typeClassName));
-                    } catch (ClassNotFoundException e) {
-                        throw new IllegalStateException("Type not found " + typeClassName, e);
-                    }
-            }
-        }
-
-        return argTypes;
-    }
-
     private String getTypeClassName(LookupFieldDto lookupField, FieldDto field) {
         String typeClassName = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
 
@@ -186,4 +231,37 @@ public class LookupExecutor {
 
         return typeClassName;
     }
+
+    /**
+     * The conversion of a single lookup parameter into the argument of the lookup method.
+     */
+    private final class LookupArgument {
+        private final String name;
+        private final LookupFieldType type;
+        private final String typeClass;
+        private final Class argType;
+        private final boolean passThrough;
+
+        private LookupArgument(LookupFieldDto lookupField, String typeClass, Class argType) {
+            this.name = lookupField.getLookupFieldName();
+            this.type = lookupField.getType();
+            this.typeClass = typeClass;
+            this.argType = argType;
+            // values of the exact argument type are passed as they are, except collections which are always copied
+            this.passThrough = type == LookupFieldType.VALUE && argType.getName().equals(typeClass)
+                    && !Collection.class.isAssignableFrom(argType);
+        }
+
+        private Object convert(Object val) {
+            if (type == LookupFieldType.RANGE) {
+                return TypeHelper.toRange(val, typeClass);
+            } else if (type == LookupFieldType.SET) {
+                return TypeHelper.toSet(val, typeClass, classLoader);
+            } else if (passThrough && argType.isInstance(val)) {
+                return val;
+            } else {
+                return TypeHelper.parse(val, typeClass, classLoader);
+            }
+        }
+    }
 }
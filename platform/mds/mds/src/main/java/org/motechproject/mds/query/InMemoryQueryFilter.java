@@ -4,6 +4,7 @@ import org.apache.commons.beanutils.BeanComparator;
 import org.apache.commons.collections.comparators.ReverseComparator;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
 import org.springframework.util.comparator.CompoundComparator;
 
 import java.util.ArrayList;
@@ -36,6 +37,11 @@ public final class InMemoryQueryFilter {
 
         List<T> result = order(objects, orderList);
 
+        // with keyset paging, the page starts after the record with the given id
+        if (queryParams.isKeysetSet()) {
+            result = following(result, queryParams);
+        }
+
         // paginate if required
         if (queryParams.isPagingSet()) {
             result = paginate(result, queryParams.getPage(), queryParams.getPageSize());
@@ -76,6 +82,36 @@ public final class InMemoryQueryFilter {
         return result;
     }
 
+    /**
+     * Returns the objects following the keyset cursor from the provided query params, keeping their order.
+     * @param list the ordered list of objects
+     * @param queryParams the query params with the keyset cursor
+     * @param <T> the type of the collection
+     * @return a new list with the objects, which ids come after the cursor in the ordering by id
+     */
+    private static <T> List<T> following(List<T> list, QueryParams queryParams) {
+        boolean descending = false;
+        for (Order order : queryParams.getOrderList()) {
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                descending = order.getDirection() == Order.Direction.DESC;
+                break;
+            }
+        }
+
+        long after = queryParams.getAfter();
+        List<T> result = new ArrayList<>();
+
+        for (T object : list) {
+            Number id = (Number) PropertyUtil.safeGetProperty(object, Constants.Util.ID_FIELD_NAME);
+
+            if (id != null && (descending ? id.longValue() < after : id.longValue() > after)) {
+                result.add(object);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Paginates the provided list, using {@link List#subList(int, int)}. If no objects fall into the provided
      * limits (the start index is larger then the list size) an empty list will be returned. If the end index goes
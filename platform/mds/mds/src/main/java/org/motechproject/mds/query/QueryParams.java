@@ -11,6 +11,11 @@ import java.util.List;
 /**
  * Utility class containing parameters which control order and size of query results.
  * Used mainly for paging/ordering queries from the UI.
+ * <p>
+ * Apart from the usual paging by page number, the parameters can describe keyset paging, created using
+ * {@link #keyset(Long, Integer, Order.Direction)}. With keyset paging the records are ordered by id and the page
+ * starts right after the record with the given id, so retrieving a page doesn't require skipping all records from
+ * the previous pages.
  */
 public class QueryParams implements Serializable {
     private static final long serialVersionUID = 8635166802886633897L;
@@ -18,6 +23,9 @@ public class QueryParams implements Serializable {
     private final Integer page;
     private final Integer pageSize;
     private final List<Order> orderList;
+    private final Long after;
+
+    private boolean countTotal = true;
 
     /**
      * Constant query parameter, that orders records ascending by ID.
@@ -76,9 +84,14 @@ public class QueryParams implements Serializable {
      * @param orderList the list of order instructions that will be applied to the query
      */
     public QueryParams(Integer page, Integer pageSize, List<Order> orderList) {
+        this(page, pageSize, orderList, null);
+    }
+
+    private QueryParams(Integer page, Integer pageSize, List<Order> orderList, Long after) {
         this.page = page;
         this.pageSize = pageSize;
         this.orderList = (orderList == null) ? new ArrayList<Order>() : orderList;
+        this.after = after;
     }
 
     public Integer getPage() {
@@ -93,6 +106,30 @@ public class QueryParams implements Serializable {
         return orderList;
     }
 
+    /**
+     * Returns the id of the record after which the page starts, used with keyset paging.
+     *
+     * @return the id of the last record of the previous page, null if keyset paging is not used
+     */
+    public Long getAfter() {
+        return after;
+    }
+
+    /**
+     * Returns whether the total number of matching records should be counted, along with retrieving the page.
+     * Counting the records is an additional query, which can be skipped by callers that don't need the total,
+     * for example ones using keyset paging.
+     *
+     * @return true if the total number of records should be counted, true by default
+     */
+    public boolean isCountTotal() {
+        return countTotal;
+    }
+
+    public void setCountTotal(boolean countTotal) {
+        this.countTotal = countTotal;
+    }
+
     public boolean isOrderSet() {
         return !orderList.isEmpty();
     }
@@ -101,6 +138,10 @@ public class QueryParams implements Serializable {
         return page != null && pageSize != null;
     }
 
+    public boolean isKeysetSet() {
+        return after != null;
+    }
+
     public void addOrder(Order order) {
         orderList.add(order);
     }
@@ -133,4 +174,22 @@ public class QueryParams implements Serializable {
     public static QueryParams descOrder(String field) {
         return new QueryParams(new Order(field, Order.Direction.DESC));
     }
+
+    /**
+     * Creates query parameters for keyset paging. The records are ordered by id, in the given direction, and the page
+     * contains the records which follow the record with the given id in that order.
+     *
+     * @param after the id of the last record of the previous page, null for the first page
+     * @param pageSize amount of entries to include, per page
+     * @param direction the direction in which the records are ordered by id, ascending if null
+     * @return query parameters, describing a single page of records
+     */
+    public static QueryParams keyset(Long after, Integer pageSize, Order.Direction direction) {
+        Order order = new Order(Constants.Util.ID_FIELD_NAME, direction == null ? Order.Direction.ASC : direction);
+
+        List<Order> orderList = new ArrayList<>();
+        orderList.add(order);
+
+        return new QueryParams(1, pageSize, orderList, after);
+    }
 }
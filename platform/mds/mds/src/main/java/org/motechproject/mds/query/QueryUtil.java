@@ -4,6 +4,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.filter.Filters;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 
 import javax.jdo.Query;
 import java.util.ArrayList;
@@ -11,6 +12,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 import static org.motechproject.mds.util.SecurityUtil.getUsername;
 
 /**
@@ -49,6 +51,30 @@ public final class QueryUtil {
         }
     }
 
+    /**
+     * Returns the property which restricts the results of a query to the records following the keyset cursor from
+     * the given query parameters. The property must be used together with the ordering from these parameters.
+     *
+     * @param queryParams the query parameters, might be null
+     * @return the property comparing the id of records with the cursor, null if keyset paging is not used
+     * @see QueryParams#keyset(Long, Integer, Order.Direction)
+     */
+    public static Property keysetProperty(QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isKeysetSet()) {
+            return null;
+        }
+
+        String operator = ">";
+        for (Order order : queryParams.getOrderList()) {
+            if (ID_FIELD_NAME.equals(order.getField())) {
+                operator = (order.getDirection() == Order.Direction.DESC) ? "<" : ">";
+                break;
+            }
+        }
+
+        return new CustomOperatorProperty<>(ID_FIELD_NAME, queryParams.getAfter(), Long.class.getName(), operator);
+    }
+
     public static void useFilters(Query query, Filters filters) {
         if (query == null) {
             throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
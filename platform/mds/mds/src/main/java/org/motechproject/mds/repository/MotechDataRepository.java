@@ -112,9 +112,11 @@ public abstract class MotechDataRepository<T> {
     }
 
     public List<T> retrieveAll(QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(new String[0], new Object[0], restriction);
+        List<Property> properties = withKeyset(new ArrayList<Property>(), queryParams);
+
+        Query query = createQuery(properties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
-        Collection collection = (Collection) QueryExecutor.execute(query, restriction);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties.toArray(), restriction);
 
         return new ArrayList<T>(collection);
     }
@@ -146,14 +148,26 @@ public abstract class MotechDataRepository<T> {
         return !retrieveAll(properties, values, null).isEmpty();
     }
 
+    public Collection<T> createAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public T update(T object) {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public Collection<T> updateAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -211,6 +225,19 @@ public abstract class MotechDataRepository<T> {
         return query;
     }
 
+    private List<Property> withKeyset(List<Property> properties, QueryParams queryParams) {
+        Property keysetProperty = QueryUtil.keysetProperty(queryParams);
+
+        if (keysetProperty == null) {
+            return properties;
+        }
+
+        List<Property> copy = new ArrayList<>(properties);
+        copy.add(keysetProperty);
+
+        return copy;
+    }
+
     private Query queryForFilters(Filters filters, QueryParams queryParams, InstanceSecurityRestriction restriction) {
         Query query = createQuery(new String[0], new Object[0], restriction);
         QueryUtil.setQueryParams(query, queryParams);
@@ -228,10 +255,12 @@ public abstract class MotechDataRepository<T> {
     }
 
     public List<T> retrieveAll(List<Property> properties, QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, restriction);
+        List<Property> queryProperties = withKeyset(properties, queryParams);
+
+        Query query = createQuery(queryProperties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryProperties);
 
         return new ArrayList<T>(collection);
     }
@@ -1,5 +1,6 @@
 package org.motechproject.mds.rest;
 
+import com.google.common.collect.Iterables;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -25,6 +26,8 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 
 import javax.annotation.PostConstruct;
@@ -102,8 +105,9 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
             }
         }
 
-        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(), queryParams,
-                RestProjection.createProjectionCollection(values, restFields, blobFields));
+        long totalCount = queryParams.isCountTotal() ? dataService.count() : RestMetadata.TOTAL_COUNT_SKIPPED;
+
+        return restResponse(values, totalCount, queryParams);
     }
 
     @Override
@@ -182,8 +186,11 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
                         getBlobs(value);
                     }
                 }
-                return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, executor.executeCount(lookupMap),
-                        queryParams, RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                long totalCount = queryParams.isCountTotal()
+                        ? executor.executeCount(lookupMap)
+                        : RestMetadata.TOTAL_COUNT_SKIPPED;
+
+                return restResponse((Collection<T>) result, totalCount, queryParams);
             } else {
                 if (result == null) {
                     throw new RestNoLookupResultException("No result for lookup:" + lookupName);
@@ -201,6 +208,25 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private RestResponse restResponse(Collection<T> values, long totalCount, QueryParams queryParams) {
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace, totalCount,
+                queryParams, RestProjection.createProjectionCollection(values, restFields, blobFields));
+
+        // a full page ordered by id can be followed by the next one, using the last id as the keyset cursor
+        if (isOrderedById(queryParams) && queryParams.getPageSize() != null && !values.isEmpty()
+                && values.size() >= queryParams.getPageSize()) {
+            T last = Iterables.getLast(values);
+            response.getMetadata().setNext((Long) PropertyUtil.safeGetProperty(last, Constants.Util.ID_FIELD_NAME));
+        }
+
+        return response;
+    }
+
+    private boolean isOrderedById(QueryParams queryParams) {
+        List<Order> orderList = queryParams.getOrderList();
+        return orderList.size() == 1 && Constants.Util.ID_FIELD_NAME.equals(orderList.get(0).getField());
+    }
+
     private void getBlobs(T value) {
         for (String field : blobFields) {
             PropertyUtil.safeSetProperty(value, field, dataService.getDetachedField(value, field));
@@ -12,6 +12,11 @@ import org.motechproject.mds.query.QueryParams;
  */
 public class RestMetadata {
 
+    /**
+     * The value of the total count, used when counting the instances was skipped.
+     */
+    public static final long TOTAL_COUNT_SKIPPED = -1;
+
     private String entity;
 
     private String className;
@@ -26,6 +31,8 @@ public class RestMetadata {
 
     private int pageSize;
 
+    private Long next;
+
     /**
      * Default constructor.
      */
@@ -109,7 +116,8 @@ public class RestMetadata {
     }
 
     /**
-     * @return the total count of instances that match the search conditions
+     * @return the total count of instances that match the search conditions, {@link #TOTAL_COUNT_SKIPPED} if
+     * the instances were not counted
      */
     public long getTotalCount() {
         return totalCount;
@@ -149,4 +157,19 @@ public class RestMetadata {
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * @return the keyset cursor of the next page, null if there is no next page or the instances were not
+     * ordered by id
+     */
+    public Long getNext() {
+        return next;
+    }
+
+    /**
+     * @param next the keyset cursor of the next page
+     */
+    public void setNext(Long next) {
+        this.next = next;
+    }
 }
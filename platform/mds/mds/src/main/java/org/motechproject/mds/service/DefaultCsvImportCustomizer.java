@@ -4,10 +4,24 @@ package org.motechproject.mds.service;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.PropertyBuilder;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.PropertyUtil;
 
+import javax.jdo.Query;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
 
 /**
  * This is a basic implementation of {@link org.motechproject.mds.service.CsvImportCustomizer}.
@@ -20,13 +34,65 @@ public class DefaultCsvImportCustomizer implements CsvImportCustomizer {
         String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
 
         if (StringUtils.isNotBlank(id)) {
-            Object object = dataService.findById(Long.valueOf(id));
-            if (object == null){
-                throw new CsvImportException("Unable to update, no instance with id = " + id);
-            } else {
-                return object;
+            return checkFound(dataService.findById(Long.valueOf(id)), id);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the instances referenced by the id column of the given rows, using a single query.
+     * Rows without an id, or with an id which is not a number, are skipped.
+     *
+     * @param rows the imported rows
+     * @param dataService the data service of an entity
+     * @return the found instances, mapped by their ids
+     */
+    public Map<Long, Object> findExistingInstances(Collection<Map<String, String>> rows, MotechDataService dataService) {
+        final Set<Long> ids = new HashSet<>();
+
+        for (Map<String, String> row : rows) {
+            String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+
+            if (StringUtils.isNotBlank(id) && StringUtils.isNumeric(id.trim())) {
+                ids.add(Long.valueOf(id.trim()));
             }
         }
+
+        Map<Long, Object> instances = new HashMap<>();
+
+        if (!ids.isEmpty()) {
+            Collection<?> found = (Collection<?>) dataService.executeQuery(new QueryExecution<Collection<?>>() {
+                @Override
+                public Collection<?> execute(Query query, InstanceSecurityRestriction restriction) {
+                    Property property = PropertyBuilder.create(Constants.Util.ID_FIELD_NAME, ids, Long.class);
+                    QueryUtil.useFilter(query, asList(property), restriction);
+
+                    return (Collection<?>) QueryExecutor.executeWithArray(query, new Object[]{ids}, restriction);
+                }
+            });
+
+            for (Object instance : found) {
+                instances.put((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME), instance);
+            }
+        }
+
+        return instances;
+    }
+
+    /**
+     * Returns the instance referenced by the id column of the given row, out of the instances retrieved
+     * earlier by {@link #findExistingInstances(Collection, MotechDataService)}.
+     *
+     * @param row the imported row containing fields of an instance
+     * @param existingInstances the instances retrieved for the chunk of rows, mapped by their ids
+     * @return single instance or null if the row has no id
+     */
+    public Object findExistingInstance(Map<String, String> row, Map<Long, Object> existingInstances) {
+        String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+
+        if (StringUtils.isNotBlank(id)) {
+            return checkFound(existingInstances.get(Long.valueOf(id.trim())), id);
+        }
         return null;
     }
 
@@ -56,4 +122,11 @@ public class DefaultCsvImportCustomizer implements CsvImportCustomizer {
 
         return matchingDisplayNameField != null ? matchingDisplayNameField : matchingNameField;
     }
+
+    private Object checkFound(Object object, String id) {
+        if (object == null) {
+            throw new CsvImportException("Unable to update, no instance with id = " + id);
+        }
+        return object;
+    }
 }
@@ -1,6 +1,7 @@
 package org.motechproject.mds.service;
 
 import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.event.CrudEventType;
@@ -9,6 +10,7 @@ import org.motechproject.mds.ex.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
 import org.motechproject.mds.util.StateManagerUtil;
 import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.PropertyBuilder;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
@@ -33,21 +35,30 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.Query;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import static org.apache.commons.lang.StringUtils.defaultIfBlank;
 import static org.motechproject.commons.date.util.DateUtil.now;
+import static org.motechproject.mds.event.CrudEventBuilder.buildBulkEventParams;
 import static org.motechproject.mds.event.CrudEventBuilder.buildEventParams;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
 import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
 import static org.motechproject.mds.event.CrudEventType.CREATE;
 import static org.motechproject.mds.event.CrudEventType.DELETE;
 import static org.motechproject.mds.event.CrudEventType.UPDATE;
+import static org.motechproject.mds.util.Constants.Config.MDS_BULK_CHUNK_SIZE;
+import static org.motechproject.mds.util.Constants.Config.MDS_BULK_INSTANCE_EVENTS;
 import static org.motechproject.mds.util.Constants.Util.CREATOR_FIELD_NAME;
 import static org.motechproject.mds.util.Constants.Util.MODIFICATION_DATE_FIELD_NAME;
 import static org.motechproject.mds.util.Constants.Util.MODIFIED_BY_FIELD_NAME;
@@ -66,6 +77,13 @@ import static org.motechproject.mds.util.SecurityUtil.getUsername;
 @Service
 public abstract class DefaultMotechDataService<T> implements MotechDataService<T> {
 
+    /**
+     * The default number of instances persisted in a single transaction by the bulk operations.
+     *
+     * @see Constants.Config#MDS_BULK_CHUNK_SIZE
+     */
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 500;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private MotechDataRepository<T> repository;
@@ -74,19 +92,24 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private AllEntities allEntities;
     private EntityService entityService;
     private OsgiEventProxy osgiEventProxy;
+    private EntityCacheService entityCacheService;
+    private MdsConfig mdsConfig;
     private SecurityMode securityMode;
     private Long schemaVersion;
     private Long entityId;
-    private List<Field> comboboxStringFields;
+    private List<String> comboboxStringFields;
     private JdoTransactionManager transactionManager;
     private boolean recordHistory;
     private boolean allowCreateEvent;
     private boolean allowUpdateEvent;
     private boolean allowDeleteEvent;
+    private boolean cacheable;
     private String module;
     private String entityName;
     private String namespace;
     private Field versionField;
+    private int bulkChunkSize = DEFAULT_BULK_CHUNK_SIZE;
+    private boolean bulkInstanceEvents;
 
     @PostConstruct
     public void initializeSecurityState() {
@@ -105,10 +128,16 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         allowCreateEvent = entity.isAllowCreateEvent();
         allowUpdateEvent = entity.isAllowUpdateEvent();
         allowDeleteEvent = entity.isAllowDeleteEvent();
+        cacheable = entity.isCacheable();
         module = entity.getModule();
         entityName = entity.getName();
         namespace = entity.getNamespace();
 
+        Properties properties = (mdsConfig == null) ? null : mdsConfig.asProperties();
+        bulkChunkSize = readBulkChunkSize(properties);
+        bulkInstanceEvents = properties != null
+                && Boolean.parseBoolean(StringUtils.trim(properties.getProperty(MDS_BULK_INSTANCE_EVENTS)));
+
         // we need the field types for handling lookups with null values
         Map<String, String> fieldTypeMap = new HashMap<>();
         for (Field field : entity.getFields()) {
@@ -148,6 +177,40 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        List<T> createdInstances = new ArrayList<>(objects.size());
+
+        for (final List<T> chunk : toChunks(objects)) {
+            List<T> createdChunk = doInTransaction(new TransactionCallback<List<T>>() {
+                @Override
+                public List<T> doInTransaction(TransactionStatus status) {
+                    List<T> created = new ArrayList<>(repository.createAll(chunk));
+
+                    if (!getComboboxStringFields().isEmpty()) {
+                        updateComboList(chunk);
+                    }
+
+                    if (recordHistory) {
+                        historyService.recordAll(created);
+                    }
+
+                    return created;
+                }
+            });
+
+            createdInstances.addAll(createdChunk);
+
+            if (allowCreateEvent) {
+                sendBulkEvent(getIds(createdChunk), CREATE);
+            }
+        }
+
+        return createdInstances;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
@@ -190,6 +253,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
             public void afterCommit() {
+                evictFromCache(Collections.singletonList((Long) getId(updatedInstance)));
+
                 if (allowUpdateEvent) {
                     sendEvent((Long) getId(updatedInstance), UPDATE);
                 }
@@ -199,6 +264,44 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return updatedInstance;
     }
 
+    @Override
+    public List<T> updateAll(Collection<T> objects) {
+        List<T> updatedInstances = new ArrayList<>(objects.size());
+
+        for (final List<T> chunk : toChunks(objects)) {
+            List<T> updatedChunk = doInTransaction(new TransactionCallback<List<T>>() {
+                @Override
+                public List<T> doInTransaction(TransactionStatus status) {
+                    for (T object : chunk) {
+                        validateCredentials(object);
+                        updateModificationData(object);
+                    }
+
+                    List<T> updated = new ArrayList<>(repository.updateAll(chunk));
+
+                    if (!getComboboxStringFields().isEmpty()) {
+                        updateComboList(chunk);
+                    }
+
+                    if (recordHistory) {
+                        historyService.recordAll(updated);
+                    }
+
+                    return updated;
+                }
+            });
+
+            updatedInstances.addAll(updatedChunk);
+            evictAfterCommit(getIds(updatedChunk));
+
+            if (allowUpdateEvent) {
+                sendBulkEvent(getIds(updatedChunk), UPDATE);
+            }
+        }
+
+        return updatedInstances;
+    }
+
     @Override
     @Transactional
     public T createOrUpdate (final T object) {
@@ -247,6 +350,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
             public void afterCommit() {
+                evictFromCache(Collections.singletonList((Long) getId(finalFromDbInstance)));
+
                 if (allowUpdateEvent) {
                     sendEvent((Long) getId(finalFromDbInstance), UPDATE);
                 }
@@ -292,6 +397,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             }
         });
 
+        evictAfterCommit(Collections.singletonList(deletedInstanceId));
+
         if (allowDeleteEvent) {
             sendEvent(deletedInstanceId, DELETE);
         }
@@ -357,6 +464,64 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void deleteAll() {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         repository.delete(new String[0], new Object[0], securityRestriction);
+
+        if (isCached()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    entityCacheService.evictAll(getClassType());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<T> objects) {
+        for (final List<T> chunk : toChunks(objects)) {
+            List<Long> deletedIds = doInTransaction(new TransactionCallback<List<Long>>() {
+                @Override
+                public List<Long> doInTransaction(TransactionStatus status) {
+                    Set<Long> chunkIds = new LinkedHashSet<>(chunk.size());
+
+                    for (T object : chunk) {
+                        if (object == null) {
+                            throw new IllegalArgumentException("Unable to delete null object");
+                        }
+
+                        validateCredentials(object);
+                        chunkIds.add((Long) getId(object));
+                    }
+
+                    // the instances are retrieved using the current pm, with a single query
+                    List<T> existing = repository.retrieveAll(Collections.singletonList(
+                            PropertyBuilder.create(Constants.Util.ID_FIELD_NAME, chunkIds, Long.class)),
+                            validateCredentials());
+                    Set<Long> existingIds = new HashSet<>(getIds(existing));
+
+                    List<T> deleted = new ArrayList<>(existing.size());
+                    for (T object : chunk) {
+                        if (existingIds.remove(getId(object))) {
+                            deleted.add(object);
+                        }
+                    }
+
+                    if (trashService.isTrashMode()) {
+                        trashService.moveAllToTrash(deleted, schemaVersion, recordHistory);
+                    } else if (recordHistory) {
+                        historyService.removeAll(deleted);
+                    }
+
+                    repository.deleteAll(existing);
+                    return getIds(existing);
+                }
+            });
+
+            evictAfterCommit(deletedIds);
+
+            if (allowDeleteEvent) {
+                sendBulkEvent(deletedIds, DELETE);
+            }
+        }
     }
 
     @Override
@@ -386,7 +551,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         if (id == null) {
             return null;
         }
-        return retrieve(Constants.Util.ID_FIELD_NAME, id);
+        return isCached() ? findCachedById(id) : retrieve(Constants.Util.ID_FIELD_NAME, id);
     }
 
     @Override
@@ -457,15 +622,27 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     }
 
     private void updateComboList(T instance) {
-        Entity entity = allEntities.retrieveById(entityId);
+        updateComboList(Collections.singletonList(instance));
+    }
+
+    private void updateComboList(Collection<T> instances) {
         Map<String, Collection> fieldUpdateMap = new HashMap<>();
 
-        for (Field listField : entity.getStringComboboxFields()) {
-            Object value = PropertyUtil.safeGetProperty(instance, listField.getName());
+        for (String fieldName : getComboboxStringFields()) {
+            Collection<Object> values = new ArrayList<>();
+
+            for (T instance : instances) {
+                Object value = PropertyUtil.safeGetProperty(instance, fieldName);
+
+                if (value instanceof Collection) {
+                    values.addAll((Collection) value);
+                } else if (value != null) {
+                    values.add(value);
+                }
+            }
 
-            if (value != null) {
-                Collection valAsColl = (value instanceof Collection) ? (Collection) value : Arrays.asList(value);
-                fieldUpdateMap.put(listField.getName(), valAsColl);
+            if (!values.isEmpty()) {
+                fieldUpdateMap.put(fieldName, values);
             }
         }
 
@@ -474,20 +651,135 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
-    private List<Field> getComboboxStringFields() {
+    // the combobox fields can change only along with the schema, which regenerates this service
+    private List<String> getComboboxStringFields() {
         if (comboboxStringFields == null) {
-            comboboxStringFields = allEntities.retrieveById(entityId).getStringComboboxFields();
+            List<String> fieldNames = new ArrayList<>();
+            for (Field field : allEntities.retrieveById(entityId).getStringComboboxFields()) {
+                fieldNames.add(field.getName());
+            }
+            comboboxStringFields = fieldNames;
         }
 
         return comboboxStringFields;
     }
 
+    // instances retrieved by their id can be served from the second-level cache, unlike the query results
+    private T findCachedById(Long id) {
+        entityCacheService.recordLookup(getClassType(),
+                repository.getPersistenceManager().newObjectIdInstance(getClassType(), id));
+
+        T instance;
+        try {
+            instance = repository.retrieve(id);
+        } catch (JDOObjectNotFoundException e) {
+            instance = null;
+        }
+
+        validateCredentials(instance);
+
+        return instance;
+    }
+
+    private boolean isCached() {
+        return cacheable && entityCacheService != null;
+    }
+
+    private void evictFromCache(List<Long> ids) {
+        if (isCached() && !ids.isEmpty()) {
+            entityCacheService.evict(getClassType(), ids);
+        }
+    }
+
+    private void evictAfterCommit(final List<Long> ids) {
+        if (!isCached()) {
+            return;
+        }
+
+        // if the operation is a part of a wider transaction, the instances could be cached again until it is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictFromCache(ids);
+                }
+            });
+        } else {
+            evictFromCache(ids);
+        }
+    }
+
+    private int readBulkChunkSize(Properties properties) {
+        String chunkSize = (properties == null) ? null : StringUtils.trim(properties.getProperty(MDS_BULK_CHUNK_SIZE));
+
+        return StringUtils.isNumeric(chunkSize) && StringUtils.isNotEmpty(chunkSize) && !"0".equals(chunkSize)
+                ? Integer.parseInt(chunkSize) : DEFAULT_BULK_CHUNK_SIZE;
+    }
+
     private void sendEvent(Long id, CrudEventType action) {
         String subject = createSubject(module, namespace, entityName, action);
         Map<String, Object> params = buildEventParams(module, namespace, entityName, getClassType().getName(), id);
         osgiEventProxy.sendEvent(subject, params);
     }
 
+    private List<List<T>> toChunks(Collection<T> objects) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(Math.min(objects.size(), bulkChunkSize));
+
+        for (T object : objects) {
+            chunk.add(object);
+
+            if (chunk.size() >= bulkChunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(bulkChunkSize);
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    private List<Long> getIds(List<T> instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+        for (T instance : instances) {
+            ids.add((Long) getId(instance));
+        }
+        return ids;
+    }
+
+    private void sendBulkEvent(final List<Long> ids, final CrudEventType action) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        // if the bulk operation is a part of a wider transaction, we wait until it is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    publishBulkEvent(ids, action);
+                }
+            });
+        } else {
+            publishBulkEvent(ids, action);
+        }
+    }
+
+    private void publishBulkEvent(List<Long> ids, CrudEventType action) {
+        if (bulkInstanceEvents) {
+            for (Long id : ids) {
+                sendEvent(id, action);
+            }
+        } else {
+            String subject = createBulkSubject(module, namespace, entityName, action);
+            Map<String, Object> params = buildBulkEventParams(module, namespace, entityName, getClassType().getName(), ids);
+            osgiEventProxy.sendEvent(subject, params);
+        }
+    }
+
     protected Object getId(T instance) {
         return PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
     }
@@ -530,6 +822,16 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         this.osgiEventProxy = osgiEventProxy;
     }
 
+    @Autowired(required = false)
+    public void setEntityCacheService(EntityCacheService entityCacheService) {
+        this.entityCacheService = entityCacheService;
+    }
+
+    @Autowired(required = false)
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
+
     @Autowired
     @Qualifier("transactionManager")
     public void setTransactionManager(JdoTransactionManager transactionManager) {
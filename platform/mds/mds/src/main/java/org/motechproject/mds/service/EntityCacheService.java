@@ -0,0 +1,57 @@
+package org.motechproject.mds.service;
+
+import org.motechproject.mds.dto.EntityCacheStatisticsDto;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>EntityCacheService</code> manages the second-level cache of the instances of entities, which are
+ * marked as cacheable in their advanced settings. Instances evicted from the cache on this MOTECH instance are
+ * evicted on the other MOTECH instances as well, so that none of them keeps a stale copy after a change.
+ */
+public interface EntityCacheService {
+
+    /**
+     * The subject of the event used for evicting instances on the other MOTECH instances.
+     */
+    String EVICT_ENTITY_CACHE = "org_motechproject_mds_evict_entity_cache";
+
+    /**
+     * Counts a retrieval of the instance with the given id as a hit or a miss of the cache, depending on whether
+     * the instance is cached at the moment. The object id is taken from the caller, who already holds the
+     * persistence manager used for the retrieval.
+     *
+     * @param entityClass the class of the entity
+     * @param objectId the JDO object id of the instance, as returned by
+     *                 {@link javax.jdo.PersistenceManager#newObjectIdInstance(Class, Object)}
+     */
+    void recordLookup(Class<?> entityClass, Object objectId);
+
+    /**
+     * Evicts the instances with the given ids from the cache, on this and on the other MOTECH instances.
+     *
+     * @param entityClass the class of the entity
+     * @param ids the ids of the instances
+     */
+    void evict(Class<?> entityClass, Collection<?> ids);
+
+    /**
+     * Evicts all instances of the given entity from the cache, on this and on the other MOTECH instances.
+     *
+     * @param entityClass the class of the entity
+     */
+    void evictAll(Class<?> entityClass);
+
+    /**
+     * Returns the cache statistics of the entities retrieved since the statistics were last cleared.
+     *
+     * @return the statistics, one for each entity
+     */
+    List<EntityCacheStatisticsDto> getStatistics();
+
+    /**
+     * Resets the cache statistics of all entities.
+     */
+    void clearStatistics();
+}
@@ -0,0 +1,62 @@
+package org.motechproject.mds.service;
+
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.lookup.LookupExecutor;
+
+import java.util.Map;
+
+/**
+ * The <code>EntityMetadataService</code> gives read access to the cached definitions of entities and their lookups.
+ * It should be used on the data path, where the definitions are read on every call, instead of the
+ * {@link EntityService}, which queries the schema tables. The cache is invalidated whenever the schema is changed
+ * through the {@link EntityService}. The returned objects are shared, so they must not be modified by the callers.
+ */
+public interface EntityMetadataService {
+
+    /**
+     * Returns the entity with the given class name.
+     *
+     * @param className  the class name of the entity
+     * @return the entity, null if it doesn't exist
+     */
+    EntityDto getEntity(String className);
+
+    /**
+     * Returns the entity with the given id.
+     *
+     * @param entityId  the id of the entity
+     * @return the entity, null if it doesn't exist
+     */
+    EntityDto getEntity(Long entityId);
+
+    /**
+     * Returns the lookup with the given name, defined for the given entity.
+     *
+     * @param entityId  the id of the entity
+     * @param lookupName  the name of the lookup
+     * @return the lookup, null if it doesn't exist
+     */
+    LookupDto getLookup(Long entityId, String lookupName);
+
+    /**
+     * Returns the fields used by the given lookup, mapped by the names used in the lookup.
+     *
+     * @param entityId  the id of the entity
+     * @param lookupName  the name of the lookup
+     * @return the mapping of lookup field names to fields
+     * @see EntityService#getLookupFieldsMapping(Long, String)
+     */
+    Map<String, FieldDto> getLookupFieldsMapping(Long entityId, String lookupName);
+
+    /**
+     * Returns the executor of the given lookup, bound to the given data service.
+     *
+     * @param dataService  the data service of the entity
+     * @param entityId  the id of the entity
+     * @param lookupName  the name of the lookup
+     * @return the lookup executor
+     */
+    LookupExecutor getLookupExecutor(MotechDataService dataService, Long entityId, String lookupName);
+}
@@ -2,6 +2,7 @@ package org.motechproject.mds.service;
 
 import org.motechproject.mds.query.QueryParams;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,6 +21,14 @@ public interface HistoryService {
      */
     void record(Object instance);
 
+    /**
+     * Records changes made on the given instances of an entity, in the same way as {@link #record(Object)}.
+     * The historical data of all the instances is stored at once.
+     *
+     * @param instances instances created from the same entity definition.
+     */
+    void recordAll(Collection<?> instances);
+
     /**
      * Removes all historical data with information what changes were made on the given instance
      * of entity.
@@ -28,6 +37,14 @@ public interface HistoryService {
      */
     void remove(Object instance);
 
+    /**
+     * Removes all historical data of the given instances of an entity, in the same way as
+     * {@link #remove(Object)}, using a single query.
+     *
+     * @param instances instances created from the same entity definition.
+     */
+    void removeAll(Collection<?> instances);
+
     /**
      * Sets the trash flag for historical data related with the given instance object.
      *
@@ -36,6 +53,15 @@ public interface HistoryService {
      */
     void setTrashFlag(Object instance, Object trash, boolean flag);
 
+    /**
+     * Marks the historical data of the given instances as moved to trash, in the same way as
+     * {@link #setTrashFlag(Object, Object, boolean)} with the flag set, using a single query.
+     *
+     * @param instances instances created from the same entity definition.
+     * @param trashes   the trash instances of the given instances, in the same order.
+     */
+    void setTrashFlags(List<?> instances, List<?> trashes);
+
     /**
      * Returns the historical data for the given instance. This method return historical data only
      * for objects that are not in the MDS trash. For trash instances the return value will be
@@ -64,4 +90,14 @@ public interface HistoryService {
      * @return a number of historical revisions of the instance
      */
     long countHistoryRecords(Object instance);
+
+    /**
+     * Waits until the history recorded so far is stored in the database. The history is stored right away,
+     * in the transaction that changed the instance, unless the asynchronous recording of history is enabled.
+     * In that case the wait is limited in time, and it is not done at all inside a transaction, since the
+     * queued writes might need the locks held by that transaction.
+     *
+     * @return true if the history recorded so far is stored, false otherwise
+     */
+    boolean flush();
 }
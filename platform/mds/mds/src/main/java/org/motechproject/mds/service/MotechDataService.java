@@ -6,6 +6,7 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +28,19 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS. The instances are persisted in chunks, each chunk in a separate
+     * transaction (unless called within an existing transaction), and a single CRUD event is sent for
+     * each chunk. The size of the chunks is set by the
+     * {@link org.motechproject.mds.util.Constants.Config#MDS_BULK_CHUNK_SIZE} option. If the
+     * {@link org.motechproject.mds.util.Constants.Config#MDS_BULK_INSTANCE_EVENTS} option is set, an event
+     * is sent for every instance instead.
+     *
+     * @param objects instances to create
+     * @return created instances
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -60,6 +74,17 @@ public interface MotechDataService<T> {
      */
     T update(T object);
 
+    /**
+     * Updates the given instances in MDS. The instances are persisted in chunks, each chunk in a separate
+     * transaction (unless called within an existing transaction), and a single CRUD event is sent for
+     * each chunk, or an event for every instance if the
+     * {@link org.motechproject.mds.util.Constants.Config#MDS_BULK_INSTANCE_EVENTS} option is set.
+     *
+     * @param objects instances to update
+     * @return updated instances
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Updates the given instance in MDS if it exists (checks the presence of the instances id to verify that)
      * or creates a new one if it doesn't.
@@ -169,6 +194,16 @@ public interface MotechDataService<T> {
      */
     void deleteAll();
 
+    /**
+     * Deletes the given instances from MDS. The instances are deleted in chunks, each chunk in a separate
+     * transaction (unless called within an existing transaction), and a single CRUD event is sent for
+     * each chunk, or an event for every instance if the
+     * {@link org.motechproject.mds.util.Constants.Config#MDS_BULK_INSTANCE_EVENTS} option is set.
+     *
+     * @param objects instances to delete
+     */
+    void deleteAll(Collection<T> objects);
+
     /**
      * Allows to execute custom query in MDS. Users are supposed to implement the {@link QueryExecution}
      * interface and override its {@link QueryExecution#execute(javax.jdo.Query, org.motechproject.mds.util.InstanceSecurityRestriction)}
@@ -30,6 +30,16 @@ public interface TrashService {
      */
     void moveToTrash(Object instance, Long schemaVersion, boolean recordHistory);
 
+    /**
+     * Moves the given instances of an entity to the trash, in the same way as
+     * {@link #moveToTrash(Object, Long, boolean)}. The trash instances are stored at once.
+     *
+     * @param instances instances created from the same entity definition.
+     * @param schemaVersion the current schema version of the entity
+     * @param recordHistory true if entity has active history recording ; otherwise false
+     */
+    void moveAllToTrash(Collection<?> instances, Long schemaVersion, boolean recordHistory);
+
     /**
      * Return instance with given id from trash.
      *
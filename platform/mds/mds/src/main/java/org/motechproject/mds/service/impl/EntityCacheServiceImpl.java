@@ -0,0 +1,273 @@
+package org.motechproject.mds.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.datanucleus.api.jdo.JDODataStoreCache;
+import org.motechproject.mds.config.MdsConfig;
+import org.motechproject.mds.dto.EntityCacheStatisticsDto;
+import org.motechproject.mds.service.EntityCacheService;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.motechproject.mds.util.Constants.Config.MDS_CACHE_TIME_TO_LIVE;
+
+/**
+ * Default implementation of the {@link EntityCacheService} interface, working on the second-level cache of the
+ * persistence manager factory of the entities bundle. Evictions are broadcast to the other MOTECH instances
+ * through the {@link OsgiEventProxy}; events sent by this instance are ignored when they come back. If the
+ * {@link org.motechproject.mds.util.Constants.Config#MDS_CACHE_TIME_TO_LIVE} option is set, the whole cache
+ * is cleared periodically, so that no instance is kept longer than that time.
+ */
+public class EntityCacheServiceImpl implements EntityCacheService, EventHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityCacheServiceImpl.class);
+
+    private static final String CLASS_NAME_EVENT_PARAM = "class_name";
+    private static final String IDS_EVENT_PARAM = "ids";
+    private static final String ORIGIN_EVENT_PARAM = "origin";
+
+    private final String origin = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, Class<?>> entityClasses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counters> statistics = new ConcurrentHashMap<>();
+
+    private PersistenceManagerFactory persistenceManagerFactory;
+    private OsgiEventProxy osgiEventProxy;
+    private MdsConfig mdsConfig;
+    private BundleContext bundleContext;
+    private ScheduledExecutorService expiryExecutor;
+
+    /**
+     * Starts clearing the cache periodically, if the time to live of the cached instances is set.
+     */
+    @PostConstruct
+    public void startExpiry() {
+        Properties properties = (mdsConfig == null) ? null : mdsConfig.asProperties();
+        String timeToLive = (properties == null) ? null : StringUtils.trim(properties.getProperty(MDS_CACHE_TIME_TO_LIVE));
+
+        if (StringUtils.isNumeric(timeToLive) && StringUtils.isNotEmpty(timeToLive) && Long.parseLong(timeToLive) > 0) {
+            long seconds = Long.parseLong(timeToLive);
+
+            expiryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "mds-entity-cache-expiry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            expiryExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        persistenceManagerFactory.getDataStoreCache().evictAll();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Unable to clear the cache of entities", e);
+                    }
+                }
+            }, seconds, seconds, TimeUnit.SECONDS);
+
+            LOGGER.info("Cached instances of entities will be kept for {} seconds", seconds);
+        }
+    }
+
+    /**
+     * Stops clearing the cache periodically.
+     */
+    @PreDestroy
+    public void stopExpiry() {
+        if (expiryExecutor != null) {
+            expiryExecutor.shutdownNow();
+            expiryExecutor = null;
+        }
+    }
+
+    @Override
+    public void recordLookup(Class<?> entityClass, Object objectId) {
+        register(entityClass);
+
+        JDODataStoreCache cache = (JDODataStoreCache) persistenceManagerFactory.getDataStoreCache();
+        boolean cached = cache.getLevel2Cache().containsOid(objectId);
+
+        Counters counters = getCounters(entityClass.getName());
+        if (cached) {
+            counters.hits.incrementAndGet();
+        } else {
+            counters.misses.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void evict(Class<?> entityClass, Collection<?> ids) {
+        register(entityClass);
+        evictLocally(entityClass, ids);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(IDS_EVENT_PARAM, new ArrayList<>(ids));
+
+        broadcast(entityClass, params);
+    }
+
+    @Override
+    public void evictAll(Class<?> entityClass) {
+        register(entityClass);
+        persistenceManagerFactory.getDataStoreCache().evictAll(false, entityClass);
+
+        broadcast(entityClass, new HashMap<String, Object>());
+    }
+
+    @Override
+    public List<EntityCacheStatisticsDto> getStatistics() {
+        List<EntityCacheStatisticsDto> result = new ArrayList<>(statistics.size());
+
+        for (Map.Entry<String, Counters> entry : statistics.entrySet()) {
+            Counters counters = entry.getValue();
+            result.add(new EntityCacheStatisticsDto(entry.getKey(), counters.hits.get(), counters.misses.get()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void clearStatistics() {
+        statistics.clear();
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        switch (event.getTopic()) {
+            case EVICT_ENTITY_CACHE:
+                handleEviction(event);
+                break;
+            default:
+                throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+    }
+
+    private void handleEviction(Event event) {
+        if (origin.equals(event.getProperty(ORIGIN_EVENT_PARAM))) {
+            return;
+        }
+
+        String className = (String) event.getProperty(CLASS_NAME_EVENT_PARAM);
+        Collection<?> ids = (Collection<?>) event.getProperty(IDS_EVENT_PARAM);
+        Class<?> entityClass = resolveClass(className);
+
+        if (entityClass == null) {
+            // the other instance runs a different schema, this one has nothing cached for the class
+            LOGGER.debug("Ignoring the eviction of {}, which is not an entity on this instance", className);
+        } else if (ids == null) {
+            persistenceManagerFactory.getDataStoreCache().evictAll(false, entityClass);
+        } else {
+            evictLocally(entityClass, ids);
+        }
+    }
+
+    private void evictLocally(Class<?> entityClass, Collection<?> ids) {
+        List<Object> oids = new ArrayList<>(ids.size());
+
+        PersistenceManager pm = persistenceManagerFactory.getPersistenceManager();
+        try {
+            for (Object id : ids) {
+                oids.add(pm.newObjectIdInstance(entityClass, id));
+            }
+        } finally {
+            pm.close();
+        }
+
+        persistenceManagerFactory.getDataStoreCache().evictAll(oids);
+    }
+
+    private void broadcast(Class<?> entityClass, Map<String, Object> params) {
+        params.put(CLASS_NAME_EVENT_PARAM, entityClass.getName());
+        params.put(ORIGIN_EVENT_PARAM, origin);
+
+        osgiEventProxy.broadcastEvent(EVICT_ENTITY_CACHE, params, true);
+    }
+
+    private void register(Class<?> entityClass) {
+        entityClasses.putIfAbsent(entityClass.getName(), entityClass);
+    }
+
+    // the class was not used here yet, but its instances could have been cached by queries
+    private Class<?> resolveClass(String className) {
+        Class<?> entityClass = entityClasses.get(className);
+
+        if (entityClass == null && className != null && bundleContext != null) {
+            try {
+                ClassLoader entitiesClassLoader = bundleContext.getBundle().adapt(BundleWiring.class).getClassLoader();
+                entityClass = entitiesClassLoader.loadClass(className);
+                register(entityClass);
+            } catch (ClassNotFoundException e) {
+                LOGGER.debug("The class {} is not available in the entities bundle", className, e);
+            }
+        }
+
+        return entityClass;
+    }
+
+    private Counters getCounters(String className) {
+        Counters counters = statistics.get(className);
+
+        if (counters == null) {
+            Counters created = new Counters();
+            counters = statistics.putIfAbsent(className, created);
+
+            if (counters == null) {
+                counters = created;
+            }
+        }
+
+        return counters;
+    }
+
+    @Autowired
+    @Qualifier("persistenceManagerFactory")
+    public void setPersistenceManagerFactory(PersistenceManagerFactory persistenceManagerFactory) {
+        this.persistenceManagerFactory = persistenceManagerFactory;
+    }
+
+    @Autowired
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
+    }
+
+    @Autowired(required = false)
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    @Autowired(required = false)
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
+
+    private static final class Counters {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+    }
+}
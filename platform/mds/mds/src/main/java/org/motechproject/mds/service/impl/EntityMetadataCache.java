@@ -0,0 +1,234 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.service.EntityMetadataService;
+import org.motechproject.mds.service.EntityService;
+import org.motechproject.mds.service.MotechDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-mostly cache of the committed entity definitions, used on the data path (lookups executed by the data
+ * provider and the lookup service) instead of querying the schema tables on every call. Entities are kept by their
+ * id and class name, together with their lookups, the field mappings of these lookups and the compiled lookup
+ * executors. The cache is populated
+ * when the entities bundle is generated and filled lazily afterwards.
+ * <p>
+ * The cache is versioned. Every change of the entity schema done through the {@link EntityService} invalidates the
+ * cache and increments its version, both right away and after the transaction completes. Values loaded while the
+ * version changed are not stored. The returned objects are shared, so they must not be modified by the callers.
+ */
+@Component
+public class EntityMetadataCache implements EntityMetadataService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityMetadataCache.class);
+
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentMap<Long, EntityMetadata> entitiesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, EntityMetadata> entitiesByClassName = new ConcurrentHashMap<>();
+
+    private EntityService entityService;
+
+    @Override
+    public EntityDto getEntity(String className) {
+        EntityMetadata metadata = entitiesByClassName.get(className);
+
+        if (metadata == null) {
+            long loadVersion = version.get();
+            metadata = store(entityService.getEntityByClassName(className), loadVersion);
+        }
+
+        return (metadata == null) ? null : metadata.entity;
+    }
+
+    @Override
+    public EntityDto getEntity(Long entityId) {
+        EntityMetadata metadata = getMetadata(entityId);
+        return (metadata == null) ? null : metadata.entity;
+    }
+
+    @Override
+    public LookupDto getLookup(Long entityId, String lookupName) {
+        EntityMetadata metadata = getMetadata(entityId);
+
+        if (metadata == null) {
+            return entityService.getLookupByName(entityId, lookupName);
+        }
+
+        LookupDto lookup = metadata.lookups.get(lookupName);
+
+        if (lookup == null) {
+            long loadVersion = version.get();
+            lookup = entityService.getLookupByName(entityId, lookupName);
+
+            if (lookup != null && loadVersion == version.get()) {
+                metadata.lookups.put(lookupName, lookup);
+            }
+        }
+
+        return lookup;
+    }
+
+    @Override
+    public Map<String, FieldDto> getLookupFieldsMapping(Long entityId, String lookupName) {
+        EntityMetadata metadata = getMetadata(entityId);
+
+        if (metadata == null) {
+            return entityService.getLookupFieldsMapping(entityId, lookupName);
+        }
+
+        Map<String, FieldDto> mapping = metadata.lookupFields.get(lookupName);
+
+        if (mapping == null) {
+            long loadVersion = version.get();
+            mapping = Collections.unmodifiableMap(entityService.getLookupFieldsMapping(entityId, lookupName));
+
+            if (loadVersion == version.get()) {
+                metadata.lookupFields.put(lookupName, mapping);
+            }
+        }
+
+        return mapping;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Executors are kept along with the definitions of the entity, so that the lookup is compiled once. An
+     * executor bound to another instance of the data service, for example one from before the regeneration of
+     * the entities bundle, is replaced.
+     */
+    @Override
+    public LookupExecutor getLookupExecutor(MotechDataService dataService, Long entityId, String lookupName) {
+        EntityMetadata metadata = getMetadata(entityId);
+        LookupExecutor executor = (metadata == null) ? null : metadata.lookupExecutors.get(lookupName);
+
+        if (executor == null || executor.getDataService() != dataService) {
+            executor = new LookupExecutor(dataService, getLookup(entityId, lookupName),
+                    getLookupFieldsMapping(entityId, lookupName));
+
+            if (metadata != null) {
+                metadata.lookupExecutors.put(lookupName, executor);
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * Returns the current version of the cache. The version is incremented each time the cache is invalidated.
+     *
+     * @return the version of the cache
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Removes all entries from the cache. If there is an active transaction, the cache is invalidated once again
+     * after it completes, so that the definitions read before the commit are not kept.
+     */
+    public void invalidate() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the content of the cache with the current definitions of all entities and their lookups.
+     */
+    public void reload() {
+        clear();
+
+        long loadVersion = version.get();
+        List<EntityDto> entities = entityService.listEntities();
+
+        for (EntityDto entity : entities) {
+            EntityMetadata metadata = store(entity, loadVersion);
+
+            if (metadata != null) {
+                for (LookupDto lookup : entityService.getEntityLookups(entity.getId())) {
+                    metadata.lookups.put(lookup.getLookupName(), lookup);
+                }
+            }
+        }
+
+        LOGGER.debug("Loaded the definitions of {} entities into the metadata cache", entities.size());
+    }
+
+    private EntityMetadata getMetadata(Long entityId) {
+        EntityMetadata metadata = entitiesById.get(entityId);
+
+        if (metadata == null) {
+            long loadVersion = version.get();
+            metadata = store(entityService.getEntity(entityId), loadVersion);
+        }
+
+        return metadata;
+    }
+
+    private EntityMetadata store(EntityDto entity, long loadVersion) {
+        if (entity == null) {
+            return null;
+        }
+
+        EntityMetadata metadata = new EntityMetadata(entity);
+        boolean cacheable = entity.getId() != null && entity.getClassName() != null;
+
+        // the definitions loaded before the last invalidation are returned, but not kept
+        if (cacheable && loadVersion == version.get()) {
+            entitiesById.put(entity.getId(), metadata);
+            entitiesByClassName.put(entity.getClassName(), metadata);
+
+            if (loadVersion != version.get()) {
+                entitiesById.remove(entity.getId(), metadata);
+                entitiesByClassName.remove(entity.getClassName(), metadata);
+            }
+        }
+
+        return metadata;
+    }
+
+    private void clear() {
+        version.incrementAndGet();
+        entitiesById.clear();
+        entitiesByClassName.clear();
+    }
+
+    @Autowired
+    public void setEntityService(EntityService entityService) {
+        this.entityService = entityService;
+    }
+
+    private static final class EntityMetadata {
+        private final EntityDto entity;
+        private final ConcurrentMap<String, LookupDto> lookups = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Map<String, FieldDto>> lookupFields = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LookupExecutor> lookupExecutors = new ConcurrentHashMap<>();
+
+        private EntityMetadata(EntityDto entity) {
+            this.entity = entity;
+        }
+    }
+}
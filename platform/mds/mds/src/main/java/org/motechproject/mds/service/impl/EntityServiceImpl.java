@@ -108,6 +108,7 @@ public class EntityServiceImpl implements EntityService {
     private BundleContext bundleContext;
     private EntityValidator entityValidator;
     private ComboboxDataMigrationHelper comboboxDataMigrationHelper;
+    private EntityMetadataCache metadataCache;
 
     @Override
     @Transactional
@@ -158,6 +159,8 @@ public class EntityServiceImpl implements EntityService {
         }
 
         if (doEntityUpdate) {
+            // this is called on the data path, so the cache is only invalidated when the definition changes
+            invalidateMetadataCache();
             allEntities.updateAndIncrementVersion(entity);
         }
     }
@@ -165,6 +168,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void incrementVersion(Long entityId) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
         entity.incrementVersion();
@@ -427,6 +432,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public List<String> commitChanges(Long entityId, String changesOwner) {
+        invalidateMetadataCache();
+
         List<String> modulesToRefresh = new ArrayList<>();
         EntityDraft draft = getEntityDraft(entityId, changesOwner);
         if (draft.isOutdated()) {
@@ -643,6 +650,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateRestOptions(Long entityId, RestOptionsDto restOptionsDto) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -652,6 +661,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateTracking(Long entityId, TrackingDto trackingDto) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -679,6 +690,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addLookups(Long entityId, Collection<LookupDto> lookups) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -767,6 +780,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void deleteEntity(Long entityId) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertWritableEntity(entity, entityId);
@@ -1067,6 +1082,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addFields(Long entityId, Collection<FieldDto> fields) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
@@ -1164,6 +1181,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addFilterableFields(EntityDto entityDto, Collection<String> fieldNames) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1216,6 +1235,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addNonEditableFields(EntityDto entityDto, Map<String, Boolean> nonEditableFields) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1239,6 +1260,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addDisplayedFields(EntityDto entityDto, Map<String, Long> positions) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1275,6 +1298,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateSecurityOptions(Long entityId, SecurityMode securityMode, Set<String> securityMembers, SecurityMode readOnlySecurityMode, Set<String> readOnlySecurityMembers) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
@@ -1290,6 +1315,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateMaxFetchDepth(Long entityId, Integer maxFetchDepth) {
+        invalidateMetadataCache();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -1298,6 +1325,12 @@ public class EntityServiceImpl implements EntityService {
         allEntities.update(entity);
     }
 
+    private void invalidateMetadataCache() {
+        if (metadataCache != null) {
+            metadataCache.invalidate();
+        }
+    }
+
     private void assertEntityExists(Entity entity, Long entityId) {
         if (entity == null) {
             throw new EntityNotFoundException(entityId);
@@ -1432,4 +1465,9 @@ public class EntityServiceImpl implements EntityService {
     public void setComboboxDataMigrationHelper(ComboboxDataMigrationHelper comboboxDataMigrationHelper) {
         this.comboboxDataMigrationHelper = comboboxDataMigrationHelper;
     }
+
+    @Autowired(required = false)
+    public void setMetadataCache(EntityMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
 }
@@ -102,6 +102,7 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
     private EntitiesBundleMonitor monitor;
     private BundleContext bundleContext;
     private AllEntities allEntities;
+    private EntityMetadataCache metadataCache;
     private final Object lock = new Object();
     private boolean moduleRefreshed;
 
@@ -134,6 +135,11 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
             return;
         }
 
+        if (metadataCache != null) {
+            LOGGER.info("Loading entity definitions into the metadata cache");
+            metadataCache.reload();
+        }
+
         LOGGER.info("Updating mds data provider");
         mdsDataProvider.updateDataProvider();
 
@@ -672,6 +678,11 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
         this.allEntities = allEntities;
     }
 
+    @Autowired(required = false)
+    public void setMetadataCache(EntityMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     @Autowired
     public void setListenerRegistryService(JdoListenerRegistryService jdoListenerRegistryService) {
         this.jdoListenerRegistryService = jdoListenerRegistryService;
@@ -35,6 +35,9 @@ public class MdsLookupServiceImpl implements MDSLookupService {
     @Autowired
     private EntityService entityService;
 
+    @Autowired(required = false)
+    private EntityMetadataCache metadataCache;
+
     @Override
     public <T> T findOne(Class<T> entityClass, String lookupName, Map<String, ?> lookupParams) {
         return findOne(entityClass.getName(), lookupName, lookupParams);
@@ -131,6 +134,11 @@ public class MdsLookupServiceImpl implements MDSLookupService {
         MotechDataService dataService = OSGiServiceUtils.findService(bundleContext,
                 MotechClassPool.getInterfaceName(fullyQualifiedEntityClassName));
 
+        if (metadataCache != null) {
+            EntityDto entity = metadataCache.getEntity(fullyQualifiedEntityClassName);
+            return metadataCache.getLookupExecutor(dataService, entity.getId(), lookupName);
+        }
+
         EntityDto entity = entityService.getEntityByClassName(fullyQualifiedEntityClassName);
         LookupDto lookup = entityService.getLookupByName(entity.getId(), lookupName);
 
@@ -6,21 +6,32 @@ import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.ex.csv.DataExportException;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.TableWriter;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.TypeHelper;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,11 +42,17 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * Instances are written as they are read from the database, in batches, instead of being loaded all at once.
  */
 public abstract class AbstractMdsExporter {
 
     private static final char LIST_JOIN_CHAR = ',';
 
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
+    private static final String RESULT_CACHE_TYPE = "datanucleus.query.resultCacheType";
+    private static final String RESULT_SET_TYPE = "datanucleus.rdbms.query.resultSetType";
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -69,21 +86,72 @@ public abstract class AbstractMdsExporter {
         try {
             writer.writeHeader(orderedHeaders);
 
-            long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
+            if (StringUtils.isBlank(lookupName)) {
+                return (Long) dataService.executeQuery(new StreamingExport(writer, fieldMap, orderedHeaders, params,
+                        exportCustomizer));
+            } else {
+                return exportLookupResults(entity, writer, fieldMap, orderedHeaders, lookupName, params, lookupFields,
+                        exportCustomizer, dataService);
+            }
+        } catch (IOException e) {
+            throw new DataExportException("IO Error when writing data", e);
+        }
+    }
 
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, params);
+    private long exportLookupResults(Entity entity, TableWriter writer, Map<String, Field> fieldMap, String[] headers,
+                                     String lookupName, QueryParams params, Map<String, Object> lookupFields,
+                                     CsvExportCustomizer exportCustomizer, MotechDataService dataService)
+            throws IOException {
+        Map<String, String> row = new HashMap<>();
 
+        // a single page was requested, there is no need to split it
+        if (params != null && params.isPagingSet()) {
+            List<Object> instances = mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, params);
             for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
+                buildCsvRow(row, fieldMap, instance, headers, exportCustomizer);
+                writer.writeRow(row, headers);
+            }
+            return instances.size();
+        }
+
+        List<Order> orderList = new ArrayList<>();
+        if (params != null && params.isOrderSet()) {
+            orderList.addAll(params.getOrderList());
+        }
+        // the pages must not overlap, so the order has to be unique
+        if (params == null || !params.containsOrderOnField(Constants.Util.ID_FIELD_NAME)) {
+            orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+
+        long rowsExported = 0;
+        int page = 1;
+        List<Object> instances;
+
+        do {
+            QueryParams pageParams = new QueryParams(page++, EXPORT_BATCH_SIZE, orderList);
+            instances = mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, pageParams);
+
+            for (Object instance : instances) {
+                buildCsvRow(row, fieldMap, instance, headers, exportCustomizer);
+                writer.writeRow(row, headers);
                 rowsExported++;
             }
 
-            return rowsExported;
-        } catch (IOException e) {
-            throw new DataExportException("IO Error when writing data", e);
+            evict(dataService, instances);
+        } while (instances.size() >= EXPORT_BATCH_SIZE);
+
+        return rowsExported;
+    }
+
+    private void evict(MotechDataService dataService, final Collection<Object> instances) {
+        if (!instances.isEmpty()) {
+            dataService.executeQuery(new QueryExecution<Void>() {
+                @Override
+                public Void execute(Query query, InstanceSecurityRestriction restriction) {
+                    query.getPersistenceManager().evictAll(instances);
+                    return null;
+                }
+            });
         }
     }
 
@@ -160,4 +228,57 @@ public abstract class AbstractMdsExporter {
     protected MDSLookupService getMdsLookupService() {
         return mdsLookupService;
     }
+
+    /**
+     * Writes all instances of the entity, as they are read from the database cursor. The rows are fetched
+     * in batches and every written instance is evicted from the persistence manager, so the instances
+     * don't pile up in memory during the export.
+     */
+    private final class StreamingExport implements QueryExecution<Long> {
+
+        private final TableWriter writer;
+        private final Map<String, Field> fieldMap;
+        private final String[] headers;
+        private final QueryParams params;
+        private final CsvExportCustomizer exportCustomizer;
+
+        private StreamingExport(TableWriter writer, Map<String, Field> fieldMap, String[] headers, QueryParams params,
+                                CsvExportCustomizer exportCustomizer) {
+            this.writer = writer;
+            this.fieldMap = fieldMap;
+            this.headers = headers;
+            this.params = params;
+            this.exportCustomizer = exportCustomizer;
+        }
+
+        @Override
+        public Long execute(Query query, InstanceSecurityRestriction restriction) {
+            QueryUtil.useFilter(query, Collections.<Property>emptyList(), restriction);
+            QueryUtil.setQueryParams(query, params);
+
+            query.getFetchPlan().setFetchSize(EXPORT_BATCH_SIZE);
+            query.addExtension(RESULT_CACHE_TYPE, "none");
+            query.addExtension(RESULT_SET_TYPE, "forward-only");
+
+            PersistenceManager persistenceManager = query.getPersistenceManager();
+            Map<String, String> row = new HashMap<>();
+            long rowsExported = 0;
+
+            try {
+                for (Object instance : (Collection<?>) QueryExecutor.execute(query, restriction)) {
+                    buildCsvRow(row, fieldMap, instance, headers, exportCustomizer);
+                    writer.writeRow(row, headers);
+                    rowsExported++;
+
+                    persistenceManager.evict(instance);
+                }
+            } catch (IOException e) {
+                throw new DataExportException("IO Error when writing data", e);
+            } finally {
+                query.closeAll();
+            }
+
+            return rowsExported;
+        }
+    }
 }
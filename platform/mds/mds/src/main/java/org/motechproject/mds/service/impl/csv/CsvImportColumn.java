@@ -0,0 +1,200 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.domain.FieldMetadata;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.domain.Type;
+import org.motechproject.mds.ex.csv.CsvImportException;
+import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+
+/**
+ * A column of an imported CSV file, bound to the entity field into which its values are imported. Everything
+ * required for parsing the values of the column and the setter of the field are resolved once, when the import
+ * starts, so that the rows are imported without looking at the schema of the entity again.
+ */
+final class CsvImportColumn {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvImportColumn.class);
+
+    private enum Kind {
+        PLAIN, COMBOBOX, RELATIONSHIP, MAP
+    }
+
+    private final String header;
+    private final Method writeMethod;
+    private final ClassLoader entityClassLoader;
+    private final BundleContext bundleContext;
+    private final Kind kind;
+    private final Class<?> typeClass;
+
+    private boolean collection;
+    private String collectionClassName;
+    private String underlyingType;
+    private String relatedClassName;
+    private String mapKeyType;
+    private String mapValueType;
+
+    private MotechDataService relatedDataService;
+
+    CsvImportColumn(String header, Field field, Class<?> entityClass, BundleContext bundleContext) {
+        this.header = header;
+        this.writeMethod = findWriteMethod(entityClass, StringUtils.uncapitalize(field.getName()));
+        this.entityClassLoader = entityClass.getClassLoader();
+        this.bundleContext = bundleContext;
+
+        Type type = field.getType();
+        this.typeClass = type.getTypeClass();
+
+        if (type.isCombobox()) {
+            ComboboxHolder holder = new ComboboxHolder(field);
+            kind = Kind.COMBOBOX;
+            collection = holder.isCollection();
+            collectionClassName = holder.getTypeClassName();
+            underlyingType = holder.getUnderlyingType();
+        } else if (type.isRelationship()) {
+            RelationshipHolder holder = new RelationshipHolder(field);
+            kind = Kind.RELATIONSHIP;
+            collection = holder.isManyToMany() || holder.isOneToMany();
+            collectionClassName = holder.getCollectionClassName();
+            relatedClassName = holder.getRelatedClass();
+        } else if (type.isMap()) {
+            FieldMetadata keyMetadata = field.getMetadata(MAP_KEY_TYPE);
+            FieldMetadata valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
+            kind = Kind.MAP;
+            mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
+            mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
+        } else {
+            kind = Kind.PLAIN;
+        }
+    }
+
+    /**
+     * @return the header of the column in the CSV file
+     */
+    String getHeader() {
+        return header;
+    }
+
+    /**
+     * Parses the given value from the CSV file and sets it on the given instance.
+     *
+     * @param instance the instance being imported
+     * @param csvValue the value of this column in the CSV file
+     */
+    void setValue(Object instance, String csvValue) {
+        Object parsedValue = parseValue(csvValue);
+
+        try {
+            if (writeMethod == null) {
+                throw new NoSuchMethodException("No setter for the field mapped to the column " + header);
+            }
+            writeMethod.invoke(instance, parsedValue);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                    header, csvValue);
+            throw new CsvImportException(msg, e);
+        }
+    }
+
+    private Object parseValue(String csvValue) {
+        Object value;
+        switch (kind) {
+            case COMBOBOX:
+                value = collection
+                        ? TypeHelper.parse(csvValue, collectionClassName, underlyingType, entityClassLoader)
+                        : TypeHelper.parse(csvValue, underlyingType, entityClassLoader);
+                break;
+            case RELATIONSHIP:
+                value = parseRelationshipValue(csvValue);
+                break;
+            case MAP:
+                value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
+                break;
+            default:
+                value = TypeHelper.parse(csvValue, typeClass);
+                break;
+        }
+
+        // for strings, return a blank if the columns is in the file
+        if (value == null && String.class.equals(typeClass)) {
+            value = "";
+        }
+
+        return value;
+    }
+
+    private Object parseRelationshipValue(String csvValue) {
+        if (collection) {
+            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+
+            Collection<Object> relatedObjects = buildRelationshipCollection();
+            if (ids != null) {
+                for (Long id : ids) {
+                    Object relatedObj = getRelatedObject(id);
+                    if (relatedObj != null) {
+                        relatedObjects.add(relatedObj);
+                    }
+                }
+            }
+            return relatedObjects;
+        } else {
+            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
+            return getRelatedObject(id);
+        }
+    }
+
+    private Collection<Object> buildRelationshipCollection() {
+        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
+        if (collectionClass == null) {
+            return new ArrayList<>();
+        } else {
+            try {
+                return (Collection<Object>) collectionClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to parse collection type " + collectionClassName, e);
+            }
+        }
+    }
+
+    private Object getRelatedObject(Long id) {
+        if (relatedDataService == null) {
+            relatedDataService = DataServiceHelper.getDataService(bundleContext, relatedClassName);
+        }
+
+        Object obj = relatedDataService.findById(id);
+
+        if (obj == null) {
+            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                    relatedClassName, id);
+        }
+
+        return obj;
+    }
+
+    private static Method findWriteMethod(Class<?> entityClass, String propertyName) {
+        for (PropertyDescriptor descriptor : PropertyUtil.getPropertyDescriptors(entityClass)) {
+            if (propertyName.equals(descriptor.getName())) {
+                return descriptor.getWriteMethod();
+            }
+        }
+        return null;
+    }
+}
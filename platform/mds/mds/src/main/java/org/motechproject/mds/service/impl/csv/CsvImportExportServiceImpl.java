@@ -19,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -220,8 +221,9 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
 
         CrudEventBuilder.setEntityData(params, entityModule, entityNamespace, entityName, entityClassName);
 
-        params.put(Constants.MDSEvents.CSV_IMPORT_CREATED_IDS, importResults.getNewInstanceIDs());
-        params.put(Constants.MDSEvents.CSV_IMPORT_UPDATED_IDS, importResults.getUpdatedInstanceIDs());
+        // the events carry plain lists, the results keep the IDs in a compact form
+        params.put(Constants.MDSEvents.CSV_IMPORT_CREATED_IDS, new ArrayList<>(importResults.getNewInstanceIDs()));
+        params.put(Constants.MDSEvents.CSV_IMPORT_UPDATED_IDS, new ArrayList<>(importResults.getUpdatedInstanceIDs()));
         params.put(Constants.MDSEvents.CSV_IMPORT_CREATED_COUNT, importResults.newInstanceCount());
         params.put(Constants.MDSEvents.CSV_IMPORT_UPDATED_COUNT, importResults.updatedInstanceCount());
         params.put(Constants.MDSEvents.CSV_IMPORT_TOTAL_COUNT, importResults.totalNumberOfImportedInstances());
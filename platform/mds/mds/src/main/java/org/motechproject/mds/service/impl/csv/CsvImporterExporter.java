@@ -1,13 +1,9 @@
 package org.motechproject.mds.service.impl.csv;
 
-import org.apache.commons.lang.StringUtils;
-import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
-import org.motechproject.mds.domain.FieldMetadata;
-import org.motechproject.mds.domain.RelationshipHolder;
-import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
@@ -19,47 +15,60 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
-import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.orm.jdo.JdoTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.Serializable;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+import java.util.RandomAccess;
 
 /**
  * Component used for importing CSV records to the database.
- * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
+ * The reason for separating import logic is keeping the db transactions and sending the MOTECH event at completion separate.
+ * The file is read as a stream and imported in chunks of rows, each of them committed in its own transaction,
+ * so that neither the size of the transactions nor the number of rows held in memory grow with the size of the file.
  * This bean lives in the context of the generated MDS entities bundle.
  */
 public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    private static final int DEFAULT_IMPORT_CHUNK_SIZE = 500;
+
+    private int importChunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+
+    private JdoTransactionManager transactionManager;
+
     /**
      * Imports instances of the given entity to the database.
      * @param entityId the ID of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks
+     *                        committed before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, continueOnError);
+        return importCsv(entityId, null, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
@@ -68,13 +77,12 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param reader reader from which the csv file will be read
      * @param importCustomizer the customizer that will be used during instance import from rows
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks
+     *                        committed before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, importCustomizer, continueOnError);
+        return importCsv(entityId, null, reader, importCustomizer, continueOnError);
     }
 
     /**
@@ -82,13 +90,12 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param entityClassName the class name of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks
+     *                        committed before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final String entityClassName, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityClassName);
-        return importCsv(entity, reader, continueOnError);
+        return importCsv(null, entityClassName, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
@@ -225,64 +232,137 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, boolean continueOnError) {
-        return importCsv(entity, reader, new DefaultCsvImportCustomizer(), continueOnError);
-    }
-
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, CsvImportCustomizer importCustomizer,
-                                       boolean continueOnError) {
-        final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entity);
-
-        Map<String, Field> fieldCacheMap = new HashMap<>();
+    private CsvImportResults importCsv(final Long entityId, final String entityClassName, final Reader reader,
+                                       final CsvImportCustomizer importCustomizer, boolean continueOnError) {
+        if (transactionManager == null) {
+            LOGGER.warn("No transaction manager available, the chunks of the CSV import will not be committed " +
+                    "separately");
+        }
 
         try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            final String[] headers = csvMapReader.getHeader(true);
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
+            ImportPlan plan = doInTransaction(new TransactionCallback<ImportPlan>() {
+                @Override
+                public ImportPlan doInTransaction(TransactionStatus status) {
+                    Entity entity = (entityId != null) ? getEntity(entityId) : getEntity(entityClassName);
+                    return buildImportPlan(entity, headers, importCustomizer);
+                }
+            });
 
-            Map <Integer, String> exceptions = new HashMap<>();
+            ImportedIds newInstanceIDs = new ImportedIds();
+            ImportedIds updatedInstanceIDs = new ImportedIds();
+            Map<Integer, String> exceptions = new HashMap<>();
 
+            List<Map<String, String>> chunk = new ArrayList<>();
             Map<String, String> row;
             int rowNum = 0;
 
-            final String headers[] = csvMapReader.getHeader(true);
-
             while ((row = csvMapReader.read(headers)) != null) {
                 rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(row, headers, fieldCacheMap, entity.getFields(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
-
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
-                    }
+                chunk.add(row);
+
+                if (chunk.size() >= importChunkSize) {
+                    importChunk(plan, chunk, rowNum - chunk.size() + 1, importCustomizer, continueOnError,
+                            newInstanceIDs, updatedInstanceIDs, exceptions);
+                    chunk.clear();
                 }
             }
 
-            return new CsvImportResults(entity.toDto(), newInstanceIDs, updatedInstanceIDs, exceptions);
+            if (!chunk.isEmpty()) {
+                importChunk(plan, chunk, rowNum - chunk.size() + 1, importCustomizer, continueOnError,
+                        newInstanceIDs, updatedInstanceIDs, exceptions);
+            }
+
+            return new CsvImportResults(plan.entity, newInstanceIDs, updatedInstanceIDs, exceptions);
         } catch (IOException e) {
             throw new CsvImportException("IO Error when importing CSV", e);
         }
     }
 
-    private RowImportResult importInstanceFromRow(Map<String, String> row, String[] headers, Map<String, Field> fieldMap, List<Field> fields,
-                                              MotechDataService dataService, CsvImportCustomizer importCustomizer) {
+    private ImportPlan buildImportPlan(Entity entity, String[] headers, CsvImportCustomizer importCustomizer) {
+        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entity);
+        Class entityClass = dataService.getClassType();
+
+        List<CsvImportColumn> columns = new ArrayList<>(headers.length);
+
+        for (String header : headers) {
+            Field field = importCustomizer.findField(header, entity.getFields());
+
+            if (field == null) {
+                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                        header, entityClass.getName());
+            } else {
+                columns.add(new CsvImportColumn(header, field, entityClass, getBundleContext()));
+            }
+        }
+
+        return new ImportPlan(entity.toDto(), dataService, columns);
+    }
+
+    private void importChunk(final ImportPlan plan, final List<Map<String, String>> rows, final int firstRowNum,
+                             final CsvImportCustomizer importCustomizer, final boolean continueOnError,
+                             ImportedIds newInstanceIDs, ImportedIds updatedInstanceIDs,
+                             Map<Integer, String> exceptions) {
+        final ImportedIds chunkNewIDs = new ImportedIds();
+        final ImportedIds chunkUpdatedIDs = new ImportedIds();
+        final Map<Integer, String> chunkExceptions = new HashMap<>();
+
+        doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                // the default customizer retrieves the instances being updated with one query for the whole chunk,
+                // its subclasses could find them in another way, so they are asked for every row
+                Map<Long, Object> existingInstances = (importCustomizer.getClass() == DefaultCsvImportCustomizer.class)
+                        ? ((DefaultCsvImportCustomizer) importCustomizer).findExistingInstances(rows, plan.dataService)
+                        : null;
+
+                for (int i = 0; i < rows.size(); ++i) {
+                    try {
+                        // import a row
+                        RowImportResult rowImportResult = importInstanceFromRow(rows.get(i), plan, existingInstances,
+                                importCustomizer);
+                        Long id = rowImportResult.getId();
+
+                        // put its ID in the correct list
+                        if (rowImportResult.isNewInstance()) {
+                            chunkNewIDs.add(id);
+                        } else {
+                            chunkUpdatedIDs.add(id);
+                        }
+                    } catch (RuntimeException e) {
+                        if (continueOnError) {
+                            chunkExceptions.put(firstRowNum + i, e.getMessage());
+                        } else {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        });
+
+        // the results of the chunk are kept only once it is committed
+        newInstanceIDs.addAll(chunkNewIDs);
+        updatedInstanceIDs.addAll(chunkUpdatedIDs);
+        exceptions.putAll(chunkExceptions);
+
+        LOGGER.info("Imported {} rows of {} from CSV: {} instances created, {} updated, {} rows failed",
+                firstRowNum + rows.size() - 1, plan.entity.getClassName(), newInstanceIDs.size(),
+                updatedInstanceIDs.size(), exceptions.size());
+    }
+
+    private RowImportResult importInstanceFromRow(Map<String, String> row, ImportPlan plan,
+                                                  Map<Long, Object> existingInstances,
+                                                  CsvImportCustomizer importCustomizer) {
+        MotechDataService dataService = plan.dataService;
         Class entityClass = dataService.getClassType();
 
         boolean isNewInstance = true;
         Object instance;
         try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
+            instance = (existingInstances == null)
+                    ? importCustomizer.findExistingInstance(row, dataService)
+                    : ((DefaultCsvImportCustomizer) importCustomizer).findExistingInstance(row, existingInstances);
             if (instance == null) {
                 LOGGER.debug("Creating new {}", entityClass.getName());
                 instance = entityClass.newInstance();
@@ -294,27 +374,9 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
         }
 
-        for (String fieldName : headers) {
-            Field field = findField(fieldName, fields, fieldMap, importCustomizer);
-
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
-            }
-
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
-
-                Object parsedValue = parseValue(csvValue, field, entityClass.getClassLoader());
-
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
-                }
+        for (CsvImportColumn column : plan.columns) {
+            if (row.containsKey(column.getHeader())) {
+                column.setValue(instance, row.get(column.getHeader()));
             }
         }
 
@@ -330,96 +392,88 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return new RowImportResult(importedId, isNewInstance);
     }
 
-    private Field findField(String fieldName, List<Field> fields, Map<String, Field> fieldMap, CsvImportCustomizer importCustomizer) {
-        if (!fieldMap.containsKey(fieldName)) {
-            Field field = importCustomizer.findField(fieldName, fields);
-            fieldMap.put(fieldName, field);
+    private <R> R doInTransaction(TransactionCallback<R> callback) {
+        if (transactionManager == null) {
+            return callback.doInTransaction(null);
         }
-        return fieldMap.get(fieldName);
+        return new TransactionTemplate(transactionManager).execute(callback);
     }
 
-    private Object parseValue(String csvValue, Field field, ClassLoader entityCl) {
-        final Type type = field.getType();
-
-        Object value;
-        if (type.isCombobox()) {
-            value = parseComboboxValue(csvValue, field, entityCl);
-        } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
-        } else if (type.isMap()) {
-            FieldMetadata keyMetadata = field.getMetadata(MAP_KEY_TYPE);
-            FieldMetadata valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
-            String mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
-            String mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
-
-            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
-        } else {
-            value = TypeHelper.parse(csvValue, type.getTypeClass());
-        }
-
-        // for strings, return a blank if the columns is in the file
-        if (value == null && String.class.equals(type.getTypeClass())) {
-            value = "";
+    /**
+     * Sets the number of rows imported and committed in a single transaction.
+     *
+     * @param importChunkSize the size of a chunk, must be positive
+     */
+    public void setImportChunkSize(int importChunkSize) {
+        if (importChunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive");
         }
+        this.importChunkSize = importChunkSize;
+    }
 
-        return value;
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(JdoTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
     }
 
-    private Object parseComboboxValue(String csvValue, Field field, ClassLoader classLoader) {
-        ComboboxHolder comboboxHolder = new ComboboxHolder(field);
-        if (comboboxHolder.isCollection()) {
-            return TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(),
-                    comboboxHolder.getUnderlyingType(), classLoader);
-        } else {
-            return TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), classLoader);
+    /**
+     * The entity, its data service and the columns of the CSV file, resolved once for the whole import.
+     */
+    private static final class ImportPlan {
+        private final EntityDto entity;
+        private final MotechDataService dataService;
+        private final List<CsvImportColumn> columns;
+
+        private ImportPlan(EntityDto entity, MotechDataService dataService, List<CsvImportColumn> columns) {
+            this.entity = entity;
+            this.dataService = dataService;
+            this.columns = columns;
         }
     }
 
-    private Object parseRelationshipValue(String csvValue, Field field) {
-        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
-        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
-
-            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
-                    }
+    /**
+     * List of the IDs of imported instances, kept in a primitive array instead of boxed values.
+     */
+    private static final class ImportedIds extends AbstractList<Long> implements RandomAccess, Serializable {
+        private static final long serialVersionUID = -3817473650917543311L;
+
+        private long[] ids = new long[16];
+        private BitSet nulls;
+        private int size;
+
+        @Override
+        public boolean add(Long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            if (id == null) {
+                if (nulls == null) {
+                    nulls = new BitSet();
                 }
+                nulls.set(size);
+            } else {
+                ids[size] = id;
             }
-            return relatedObjects;
-        } else {
-            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
+
+            size++;
+            modCount++;
+            return true;
         }
-    }
 
-    private Collection<Object> buildRelationshipCollection(RelationshipHolder relationshipHolder) {
-        String collectionClassName = relationshipHolder.getCollectionClassName();
-        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
-        if (collectionClass == null) {
-            return new ArrayList<>();
-        } else {
-            try {
-                return (Collection<Object>) collectionClass.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new CsvImportException("Unable to parse collection type " + relationshipHolder.getCollectionClassName(), e);
+        @Override
+        public Long get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
             }
+            return (nulls != null && nulls.get(index)) ? null : ids[index];
         }
-    }
 
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
-
-        if (obj == null) {
-            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
-                    entityClass, id);
+        @Override
+        public int size() {
+            return size;
         }
-
-        return obj;
     }
 
     /**
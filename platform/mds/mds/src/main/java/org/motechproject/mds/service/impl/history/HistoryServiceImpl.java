@@ -1,8 +1,11 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.EntityType;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.PropertyBuilder;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.service.HistoryService;
@@ -12,22 +15,81 @@ import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_ASYNC;
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_BATCH_SIZE;
 import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 
 /**
  * Default implementation of {@link org.motechproject.mds.service.HistoryService} interface.
+ * If the {@link org.motechproject.mds.util.Constants.Config#MDS_HISTORY_ASYNC} option is set, the history
+ * records are written by a {@link HistoryWriter} after the changes of the instance are committed, instead of
+ * being written in the same transaction. Removing the history or moving it to the trash is then queued as well,
+ * behind the records it applies to, and reads see the queued records only after a {@link #flush()}. The queued
+ * records are kept in memory only, so they are lost if the server crashes before they are written. This mode is
+ * experimental and disabled by default, since it does not give the durability required from an audit trail.
  */
 public class HistoryServiceImpl extends BasePersistenceService implements HistoryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HistoryServiceImpl.class);
 
+    private static final int DEFAULT_BATCH_SIZE = 200;
+    private static final long FLUSH_TIMEOUT_MILLIS = 30000;
+
+    private MdsConfig mdsConfig;
+    private PlatformTransactionManager transactionManager;
+    private HistoryWriter historyWriter;
+
+    /**
+     * Starts the background history writer, if the asynchronous history recording is enabled.
+     */
+    @PostConstruct
+    public void startHistoryWriter() {
+        Properties properties = (mdsConfig == null) ? null : mdsConfig.asProperties();
+
+        if (properties != null && transactionManager != null
+                && Boolean.parseBoolean(StringUtils.trim(properties.getProperty(MDS_HISTORY_ASYNC)))) {
+            String batchSize = StringUtils.trim(properties.getProperty(MDS_HISTORY_BATCH_SIZE));
+
+            historyWriter = new HistoryWriter(getPersistenceManagerFactory(), transactionManager,
+                    StringUtils.isNumeric(batchSize) && !"0".equals(batchSize)
+                            ? Integer.parseInt(batchSize) : DEFAULT_BATCH_SIZE);
+            historyWriter.start();
+
+            LOGGER.warn("History of instances will be recorded asynchronously. This mode is experimental, history "
+                    + "records waiting to be written are lost if the server stops unexpectedly");
+        }
+    }
+
+    /**
+     * Writes the queued history records and stops the background history writer.
+     */
+    @PreDestroy
+    public void stopHistoryWriter() {
+        if (historyWriter != null) {
+            historyWriter.shutdown();
+        }
+    }
+
     @Override
     @Transactional
     public void record(Object instance) {
@@ -36,7 +98,11 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         if (null != historyClass) {
             LOGGER.debug("Recording history for: {}", instance.getClass().getName());
 
-            create(historyClass, instance, EntityType.HISTORY);
+            if (historyWriter == null) {
+                create(historyClass, instance, EntityType.HISTORY);
+            } else {
+                submitAfterCommit(Collections.singletonList(prepare(historyClass, instance, EntityType.HISTORY)));
+            }
 
             LOGGER.debug("Recorded history for: {}", instance.getClass().getName());
         }
@@ -44,50 +110,175 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
 
     @Override
     @Transactional
-    public void remove(Object instance) {
+    public void recordAll(Collection<?> instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
 
-        Class<?> historyClass = HistoryTrashClassHelper.getClass(ClassName.trimTrashHistorySuffix(
-                HistoryTrashClassHelper.getInstanceClassName(instance)), EntityType.HISTORY, getBundleContext());
+        Class<?> historyClass = HistoryTrashClassHelper.getClass(instances.iterator().next(), EntityType.HISTORY,
+                getBundleContext());
 
         if (null != historyClass) {
-            Long objId = getInstanceId(instance);
+            List<Object> historyInstances = new ArrayList<>(instances.size());
+            for (Object instance : instances) {
+                historyInstances.add(prepare(historyClass, instance, EntityType.HISTORY));
+            }
+
+            if (historyWriter == null) {
+                PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+                manager.makePersistentAll(historyInstances);
+            } else {
+                submitAfterCommit(historyInstances);
+            }
 
-            Query query = initQuery(historyClass);
-            query.deletePersistentAll(objId, false);
+            LOGGER.debug("Recorded history for {} instances of {}", instances.size(), historyClass.getName());
         }
     }
 
+    @Override
+    public boolean flush() {
+        if (historyWriter == null) {
+            return true;
+        }
+
+        // the transaction would hold its locks while waiting, and the writer might need them
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            LOGGER.warn("Not waiting for the history records to be written inside a transaction");
+            return false;
+        }
+
+        boolean flushed = historyWriter.flush(FLUSH_TIMEOUT_MILLIS);
+        if (!flushed) {
+            LOGGER.warn("The history records were not written in {} ms", FLUSH_TIMEOUT_MILLIS);
+        }
+
+        return flushed;
+    }
+
     @Override
     @Transactional
-    public void setTrashFlag(Object instance, Object trash, boolean flag) {
-        Class<?> historyClass = HistoryTrashClassHelper.getClass(instance, EntityType.HISTORY, getBundleContext());
+    public void remove(Object instance) {
+        final Class<?> historyClass = HistoryTrashClassHelper.getClass(ClassName.trimTrashHistorySuffix(
+                HistoryTrashClassHelper.getInstanceClassName(instance)), EntityType.HISTORY, getBundleContext());
 
         if (null != historyClass) {
-            PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
-            Long objId = getInstanceId(instance);
-            Long trashId = getInstanceId(trash);
+            final Long objId = getInstanceId(instance);
+
+            run(new HistoryWriter.Operation() {
+                @Override
+                public void execute() {
+                    Query query = initQuery(historyClass);
+                    query.deletePersistentAll(objId, false);
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public void removeAll(Collection<?> instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        final Class<?> historyClass = HistoryTrashClassHelper.getClass(ClassName.trimTrashHistorySuffix(
+                HistoryTrashClassHelper.getInstanceClassName(instances.iterator().next())), EntityType.HISTORY,
+                getBundleContext());
+
+        if (null != historyClass) {
+            final Set<Long> objIds = getInstanceIds(instances);
+
+            run(new HistoryWriter.Operation() {
+                @Override
+                public void execute() {
+                    List<Property> properties = initProperties(historyClass, objIds);
+
+                    Query query = getPersistenceManagerFactory().getPersistenceManager().newQuery(historyClass);
+                    QueryUtil.useFilter(query, properties);
+                    QueryExecutor.executeDelete(query, properties.toArray(), null);
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public void setTrashFlag(Object instance, Object trash, final boolean flag) {
+        final Class<?> historyClass = HistoryTrashClassHelper.getClass(instance, EntityType.HISTORY,
+                getBundleContext());
 
-            Query query = initQuery(historyClass, true);
+        if (null != historyClass) {
+            final Long objId = getInstanceId(instance);
+            final Long trashId = getInstanceId(trash);
+
+            run(new HistoryWriter.Operation() {
+                @Override
+                public void execute() {
+                    PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+                    Query query = initQuery(historyClass, true);
+
+                    // we have to find entries with the correct instance id and trash flag that is reverse
+                    // to trash param.
+                    Collection collection = flag
+                            ? (Collection) query.execute(objId, false)
+                            : (Collection) query.execute(trashId, true);
+
+                    for (Object data : collection) {
+                        // depends on the flag param if instance object is moved to trash the history
+                        // entries should be connected with trash object by current version field (the same
+                        // is true in the opposite direction) ...
+                        PropertyUtil.safeSetProperty(data, HistoryTrashClassHelper.currentVersion(historyClass),
+                                flag ? trashId : objId);
+
+                        // .. and the trash flag should be set (or unset).
+                        PropertyUtil.safeSetProperty(data, HistoryTrashClassHelper.trashFlag(historyClass), flag);
+                    }
+
+                    // in the end all entries should be saved in database.
+                    manager.makePersistentAll(collection);
+                }
+            });
+        }
+    }
 
-            // we have to find entries with the correct instance id and trash flag that is reverse
-            // to trash param.
-            Collection collection = flag
-                    ? (Collection) query.execute(objId, false)
-                    : (Collection) query.execute(trashId, true);
+    @Override
+    @Transactional
+    public void setTrashFlags(List<?> instances, List<?> trashes) {
+        if (instances.isEmpty()) {
+            return;
+        }
 
-            for (Object data : collection) {
-                // depends on the flag param if instance object is moved to trash the history
-                // entries should be connected with trash object by current version field (the same
-                // is true in the opposite direction) ...
-                PropertyUtil.safeSetProperty(data, HistoryTrashClassHelper.currentVersion(historyClass),
-                        flag ? trashId : objId);
+        final Class<?> historyClass = HistoryTrashClassHelper.getClass(instances.get(0), EntityType.HISTORY,
+                getBundleContext());
 
-                // .. and the trash flag should be set (or unset).
-                PropertyUtil.safeSetProperty(data, HistoryTrashClassHelper.trashFlag(historyClass), flag);
+        if (null != historyClass) {
+            final Map<Long, Long> trashIds = new HashMap<>();
+            for (int i = 0; i < instances.size(); ++i) {
+                trashIds.put(getInstanceId(instances.get(i)), getInstanceId(trashes.get(i)));
             }
 
-            // in the end all entries should be saved in database.
-            manager.makePersistentAll(collection);
+            run(new HistoryWriter.Operation() {
+                @Override
+                public void execute() {
+                    List<Property> properties = initProperties(historyClass, trashIds.keySet());
+
+                    PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+                    Query query = manager.newQuery(historyClass);
+                    QueryUtil.useFilter(query, properties);
+
+                    Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties);
+                    String currentVersion = HistoryTrashClassHelper.currentVersion(historyClass);
+
+                    for (Object data : collection) {
+                        Object objId = PropertyUtil.safeGetProperty(data, currentVersion);
+
+                        PropertyUtil.safeSetProperty(data, currentVersion, trashIds.get(objId));
+                        PropertyUtil.safeSetProperty(data, HistoryTrashClassHelper.trashFlag(historyClass), true);
+                    }
+
+                    manager.makePersistentAll(collection);
+                }
+            });
         }
     }
 
@@ -143,10 +334,7 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
     }
 
     private <T> Object create(Class<T> historyClass, Object instance, EntityType type) {
-        ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext());
-        Object currentHistoryInstance = create(historyClass, instance, type, valueGetter);
-
-        setHistoryProperties(currentHistoryInstance, instance);
+        Object currentHistoryInstance = prepare(historyClass, instance, type);
 
         PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
@@ -156,6 +344,52 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return currentHistoryInstance;
     }
 
+    private <T> Object prepare(Class<T> historyClass, Object instance, EntityType type) {
+        ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext());
+        Object currentHistoryInstance = create(historyClass, instance, type, valueGetter);
+
+        setHistoryProperties(currentHistoryInstance, instance);
+
+        return currentHistoryInstance;
+    }
+
+    // operations on the stored history run after the queued records, if they are written in the background
+    private void run(HistoryWriter.Operation operation) {
+        if (historyWriter == null) {
+            operation.execute();
+        } else {
+            submitAfterCommit(Collections.<Object>singletonList(operation));
+        }
+    }
+
+    private void submitAfterCommit(final List<Object> historyInstances) {
+        // changes which are rolled back must not end up in the history
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    submit(historyInstances);
+                }
+            });
+        } else {
+            submit(historyInstances);
+        }
+    }
+
+    private void submit(List<Object> historyInstances) {
+        for (Object historyInstance : historyInstances) {
+            historyWriter.submit(historyInstance);
+        }
+    }
+
+    private Set<Long> getInstanceIds(Collection<?> instances) {
+        Set<Long> ids = new HashSet<>();
+        for (Object instance : instances) {
+            ids.add(getInstanceId(instance));
+        }
+        return ids;
+    }
+
     private void setHistoryProperties(Object newHistoryObj, Object realCurrentObj) {
         // creates connection between instance object and history object
         Long id = getInstanceId(realCurrentObj);
@@ -176,6 +410,15 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return query.execute(instanceId);
     }
 
+    // the history of the instances with the given ids, which are not in the trash
+    private List<Property> initProperties(Class<?> historyClass, Set<Long> instanceIds) {
+        List<Property> properties = new ArrayList<>(2);
+        properties.add(PropertyBuilder.create(HistoryTrashClassHelper.currentVersion(historyClass), instanceIds,
+                Long.class));
+        properties.add(PropertyBuilder.create(HistoryTrashClassHelper.trashFlag(historyClass), false, Boolean.class));
+        return properties;
+    }
+
     private Query initQuery(Class<?> historyClass) {
         return initQuery(historyClass, true);
     }
@@ -198,6 +441,17 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return query;
     }
 
+    @Autowired(required = false)
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
+
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     /**
      * We override the default behaviour because the history service needs to set additional information.
      * For relationship fields, we must set the ids tying them to real object. We must also properly handle
@@ -0,0 +1,263 @@
+package org.motechproject.mds.service.impl.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jdo.PersistenceManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Writes history records to the database in the background. The records are prepared by the
+ * {@link HistoryServiceImpl} in the transaction that changed the instance, and handed to this writer once
+ * that transaction commits. A single thread stores them in the order in which they were submitted, in
+ * batches, each batch in its own transaction. Operations changing the stored history, like removing it or
+ * moving it to the trash, are queued as well, so that they run after the records submitted before them.
+ * When the queue is full, submitting waits for the writer, so that a burst of changes doesn't exhaust the
+ * memory. The queue is kept in memory only: items which are still queued when the writer is stopped are
+ * written before it stops, but they are lost if the server crashes.
+ */
+public class HistoryWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryWriter.class);
+
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 60000;
+
+    private final PersistenceManagerFactory persistenceManagerFactory;
+    private final PlatformTransactionManager transactionManager;
+    private final int batchSize;
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object progressLock = new Object();
+
+    private long submitted;
+    private long written;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public HistoryWriter(PersistenceManagerFactory persistenceManagerFactory,
+                         PlatformTransactionManager transactionManager, int batchSize) {
+        this.persistenceManagerFactory = persistenceManagerFactory;
+        this.transactionManager = transactionManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeRecords();
+                }
+            }, "mds-history-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queues the given history record or {@link Operation} for writing.
+     *
+     * @param item the history record, not persisted yet, or the operation on the stored history
+     */
+    public void submit(Object item) {
+        synchronized (progressLock) {
+            submitted++;
+        }
+
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while queuing a history record, writing it right away");
+            try {
+                process(singletonList(item));
+            } finally {
+                markWritten(1);
+            }
+        }
+    }
+
+    /**
+     * Waits until all records and operations submitted before this call are written to the database,
+     * but no longer than the given time.
+     *
+     * @param timeoutMillis the maximum time to wait, in milliseconds
+     * @return true if everything submitted before this call was written, false otherwise
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (progressLock) {
+            long target = submitted;
+
+            while (written < target && isRunning()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                try {
+                    progressLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.warn("Interrupted while waiting for the history records to be written");
+                    return false;
+                }
+            }
+
+            return written >= target;
+        }
+    }
+
+    /**
+     * Writes the remaining records and stops the writer thread.
+     */
+    public synchronized void shutdown() {
+        if (thread != null) {
+            if (!flush(SHUTDOWN_TIMEOUT_MILLIS)) {
+                LOGGER.warn("The history writer did not finish in {} ms, stopping it", SHUTDOWN_TIMEOUT_MILLIS);
+            }
+
+            running = false;
+            thread.interrupt();
+            thread = null;
+
+            // records submitted while stopping
+            List<Object> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                try {
+                    process(remaining);
+                } finally {
+                    markWritten(remaining.size());
+                }
+            }
+        }
+    }
+
+    private boolean isRunning() {
+        return running;
+    }
+
+    private void writeRecords() {
+        List<Object> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+
+                process(batch);
+            } catch (InterruptedException e) {
+                LOGGER.debug("The history writer was interrupted");
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to write {} history records", batch.size(), e);
+            } finally {
+                markWritten(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    // the records between operations are written in batches, each operation runs in its own transaction
+    private void process(List<Object> items) {
+        List<Object> records = new ArrayList<>(items.size());
+
+        for (Object item : items) {
+            if (item instanceof Operation) {
+                if (!records.isEmpty()) {
+                    write(records);
+                    records.clear();
+                }
+                execute((Operation) item);
+            } else {
+                records.add(item);
+            }
+        }
+
+        if (!records.isEmpty()) {
+            write(records);
+        }
+    }
+
+    private void write(List<Object> records) {
+        try {
+            persist(records);
+        } catch (RuntimeException e) {
+            if (records.size() == 1) {
+                LOGGER.error("Unable to write the history record of {}", records.get(0).getClass().getName(), e);
+                return;
+            }
+
+            LOGGER.warn("Unable to write a batch of {} history records, writing them one by one", records.size(), e);
+
+            // a single broken record must not cost the rest of the batch
+            for (Object record : records) {
+                try {
+                    persist(singletonList(record));
+                } catch (RuntimeException ex) {
+                    LOGGER.error("Unable to write the history record of {}", record.getClass().getName(), ex);
+                }
+            }
+        }
+    }
+
+    private void persist(final Collection<Object> records) {
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                persistenceManagerFactory.getPersistenceManager().makePersistentAll(records);
+            }
+        });
+
+        LOGGER.debug("Wrote {} history records", records.size());
+    }
+
+    private void execute(final Operation operation) {
+        try {
+            new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    operation.execute();
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to execute an operation on the history", e);
+        }
+    }
+
+    private void markWritten(int count) {
+        synchronized (progressLock) {
+            written += count;
+            progressLock.notifyAll();
+        }
+    }
+
+    /**
+     * An operation on the history which is already stored, like removing it or moving it to the trash. It is run
+     * by the writer in its own transaction, after the records submitted before it are written.
+     */
+    public interface Operation {
+
+        /**
+         * Executes the operation, in a transaction started by the writer.
+         */
+        void execute();
+    }
+}
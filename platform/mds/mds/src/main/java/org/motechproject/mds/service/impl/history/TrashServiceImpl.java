@@ -1,7 +1,10 @@
 package org.motechproject.mds.service.impl.history;
 
 import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.config.DeleteMode;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.EntityType;
@@ -14,11 +17,17 @@ import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.service.MdsSchedulerService;
 import org.motechproject.mds.service.TrashService;
 import org.motechproject.mds.util.ObjectReferenceRepository;
+import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.jdo.PersistenceManager;
@@ -26,18 +35,33 @@ import javax.jdo.Query;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.motechproject.mds.util.Constants.Config.MDS_EMPTY_TRASH_CHUNK_SIZE;
+import static org.motechproject.mds.util.Constants.Config.MDS_EMPTY_TRASH_RETENTION_DAYS;
+import static org.motechproject.mds.util.Constants.Util.DELETION_DATE_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 
 /**
- * Default implementation of {@link org.motechproject.mds.service.TrashService} interface.
+ * Default implementation of {@link org.motechproject.mds.service.TrashService} interface. The trash is emptied
+ * entity by entity, in chunks of instances removed in separate transactions, so an interrupted run leaves no
+ * work half done and the next run continues with the instances that are left.
  */
 public class TrashServiceImpl extends BasePersistenceService implements TrashService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TrashServiceImpl.class);
 
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+
     private MdsSchedulerService mdsSchedulerService;
     private SettingsService settingsService;
     private HistoryService historyService;
     private ValueGetter trashValueGetter;
+    private MdsConfig mdsConfig;
+    private PlatformTransactionManager transactionManager;
 
     @Override
     public boolean isTrashMode() {
@@ -59,17 +83,7 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
             LOGGER.debug("Moving {} to trash", instance);
 
             // create and save a trash instance
-            LOGGER.debug("Creating trash instance for: {}", instance);
-
-            Object trash = create(trashClass, instance, EntityType.TRASH, trashValueGetter);
-
-            LOGGER.debug("Created trash instance for: {}", instance);
-
-            try {
-                MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                LOGGER.error("Failed to set schema version of the trash instance.");
-            }
+            Object trash = createTrash(trashClass, instance, entityVersion);
 
             PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
@@ -86,6 +100,36 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         }
     }
 
+    @Override
+    @Transactional
+    public void moveAllToTrash(Collection<?> instances, Long entityVersion, boolean recordHistory) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Object first = instances.iterator().next();
+        Class<?> trashClass = HistoryTrashClassHelper.getClass(first, EntityType.TRASH, getBundleContext());
+
+        if (null == trashClass) {
+            throw new IllegalStateException("Not found the trash class for " + first.getClass().getName());
+        }
+
+        LOGGER.debug("Moving {} instances of {} to trash", instances.size(), first.getClass().getName());
+
+        List<Object> trashes = new ArrayList<>(instances.size());
+        for (Object instance : instances) {
+            trashes.add(createTrash(trashClass, instance, entityVersion));
+        }
+
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        manager.makePersistentAll(trashes);
+
+        // set the flag in historical data
+        if (recordHistory) {
+            historyService.setTrashFlags(new ArrayList<>(instances), trashes);
+        }
+    }
+
     @Override
     @Transactional
     public Object findTrashById(Object instanceId, Object entityId) {
@@ -175,24 +219,136 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
     }
 
     @Override
-    @Transactional
     public void emptyTrash() {
-        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        // the trash flags of queued history records must be set before their history can be found
+        if (!historyService.flush()) {
+            LOGGER.warn("The history is still being written, the trash will be emptied by the next run");
+            return;
+        }
 
-        for (Entity entity : getEntities()) {
-            Class<?> trashClass =  HistoryTrashClassHelper.getClass(entity.getClassName(), EntityType.TRASH,
-                    getBundleContext());
+        Properties properties = (mdsConfig == null) ? null : mdsConfig.asProperties();
+        int chunkSize = getIntProperty(properties, MDS_EMPTY_TRASH_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        int retentionDays = getIntProperty(properties, MDS_EMPTY_TRASH_RETENTION_DAYS, 0);
 
-            Query query = manager.newQuery(trashClass);
-            Collection instances = (Collection) query.execute();
-            if (entity.isRecordHistory()) {
-                for (Object instance : instances) {
-                    historyService.remove(instance);
+        final Date deletedBefore = retentionDays > 0 ? DateUtil.now().minusDays(retentionDays).toDate() : null;
+
+        Map<String, Boolean> entities = doInTransaction(new TransactionCallback<Map<String, Boolean>>() {
+            @Override
+            public Map<String, Boolean> doInTransaction(TransactionStatus status) {
+                Map<String, Boolean> recordHistory = new LinkedHashMap<>();
+                for (Entity entity : getEntities()) {
+                    recordHistory.put(entity.getClassName(), entity.isRecordHistory());
                 }
+                return recordHistory;
             }
+        });
 
-            manager.deletePersistentAll(instances);
+        for (Map.Entry<String, Boolean> entry : entities.entrySet()) {
+            Class<?> trashClass = HistoryTrashClassHelper.getClass(entry.getKey(), EntityType.TRASH,
+                    getBundleContext());
+            Class<?> historyClass = entry.getValue()
+                    ? HistoryTrashClassHelper.getClass(entry.getKey(), EntityType.HISTORY, getBundleContext())
+                    : null;
+
+            if (null == trashClass) {
+                continue;
             }
+
+            long removed = 0;
+            int chunkRemoved;
+
+            do {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOGGER.warn("Emptying the trash was interrupted, the remaining instances will be removed by the next run");
+                    return;
+                }
+
+                chunkRemoved = emptyTrashChunk(trashClass, historyClass, deletedBefore, chunkSize);
+                removed += chunkRemoved;
+            } while (chunkRemoved == chunkSize);
+
+            LOGGER.debug("Removed {} instances of {} from the trash", removed, entry.getKey());
+        }
+    }
+
+    /**
+     * Permanently removes a single chunk of trash instances of the given class, together with their history,
+     * in a separate transaction. Only the ids of the instances are loaded, the instances and the history
+     * records are removed with bulk deletes.
+     *
+     * @return the number of removed trash instances
+     */
+    private int emptyTrashChunk(final Class<?> trashClass, final Class<?> historyClass, final Date deletedBefore,
+                                final int chunkSize) {
+        return doInTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+                Query idQuery = manager.newQuery(trashClass);
+                idQuery.setResult(ID_FIELD_NAME);
+                idQuery.setOrdering(ID_FIELD_NAME + " ascending");
+                idQuery.setRange(0, chunkSize);
+
+                Collection<Long> ids;
+                if (null == deletedBefore) {
+                    ids = new ArrayList<>((Collection<Long>) idQuery.execute());
+                } else {
+                    idQuery.setFilter(DELETION_DATE_FIELD_NAME + " < deletedBefore");
+                    idQuery.declareParameters(Date.class.getName() + " deletedBefore");
+                    ids = new ArrayList<>((Collection<Long>) idQuery.execute(deletedBefore));
+                }
+
+                if (!ids.isEmpty()) {
+                    if (null != historyClass) {
+                        Query historyQuery = manager.newQuery(historyClass);
+                        historyQuery.setFilter(String.format("ids.contains(%s) && %s == true",
+                                HistoryTrashClassHelper.currentVersion(historyClass),
+                                HistoryTrashClassHelper.trashFlag(historyClass)));
+                        historyQuery.declareParameters(Collection.class.getName() + " ids");
+                        historyQuery.deletePersistentAll(ids);
+                    }
+
+                    Query trashQuery = manager.newQuery(trashClass);
+                    trashQuery.setFilter("ids.contains(" + ID_FIELD_NAME + ")");
+                    trashQuery.declareParameters(Collection.class.getName() + " ids");
+                    trashQuery.deletePersistentAll(ids);
+                }
+
+                return ids.size();
+            }
+        });
+    }
+
+    private <T> T doInTransaction(TransactionCallback<T> callback) {
+        return null == transactionManager
+                ? callback.doInTransaction(null)
+                : new TransactionTemplate(transactionManager).execute(callback);
+    }
+
+    private Object createTrash(Class<?> trashClass, Object instance, Long entityVersion) {
+        LOGGER.debug("Creating trash instance for: {}", instance);
+
+        Object trash = create(trashClass, instance, EntityType.TRASH, trashValueGetter);
+
+        LOGGER.debug("Created trash instance for: {}", instance);
+
+        try {
+            MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.error("Failed to set schema version of the trash instance.");
+        }
+
+        PropertyUtil.safeSetProperty(trash, DELETION_DATE_FIELD_NAME, DateUtil.now().toDate());
+
+        return trash;
+    }
+
+    private static int getIntProperty(Properties properties, String key, int defaultValue) {
+        String value = (properties == null) ? null : StringUtils.trim(properties.getProperty(key));
+
+        return StringUtils.isNumeric(value) && StringUtils.isNotEmpty(value) && !"0".equals(value)
+                ? Integer.parseInt(value) : defaultValue;
     }
 
     @Autowired
@@ -210,6 +366,17 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         this.historyService = historyService;
     }
 
+    @Autowired(required = false)
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
+
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     /**
      * We do not create deep trash copies, hence this getter implementation.
      */
@@ -223,6 +223,62 @@ public final class Constants {
          */
         public static final String MDS_TIME_UNIT = "mds.emptyTrash.afterTimeUnit";
 
+        /**
+         * The integer property that specifies how many trash instances are permanently removed in
+         * a single transaction, when the trash is emptied.
+         *
+         * @see #MDS_EMPTY_TRASH
+         */
+        public static final String MDS_EMPTY_TRASH_CHUNK_SIZE = "mds.emptyTrash.chunkSize";
+
+        /**
+         * The integer property that specifies for how many days deleted instances are kept in the trash.
+         * Only instances deleted earlier are removed when the trash is emptied. Zero means that all
+         * instances are removed.
+         *
+         * @see #MDS_EMPTY_TRASH
+         */
+        public static final String MDS_EMPTY_TRASH_RETENTION_DAYS = "mds.emptyTrash.retentionDays";
+
+        /**
+         * The experimental boolean property that specifies if the history of instances should be stored
+         * in the background. It is disabled by default. If it is set, history records are prepared in the
+         * transaction that changes an instance, but they are written to the database after that transaction
+         * commits, in batches. The records waiting to be written are kept in memory only, so they are lost
+         * if the server crashes or a flush times out before they are written. Because of that it must not be
+         * enabled when the history is used as an audit trail.
+         *
+         * @see #MDS_HISTORY_BATCH_SIZE
+         */
+        public static final String MDS_HISTORY_ASYNC = "mds.history.async";
+
+        /**
+         * The integer property that specifies how many history records can be written in
+         * a single transaction, when the history is stored in the background.
+         *
+         * @see #MDS_HISTORY_ASYNC
+         */
+        public static final String MDS_HISTORY_BATCH_SIZE = "mds.history.batchSize";
+
+        /**
+         * The integer property that specifies for how many seconds the instances of cacheable entities are kept
+         * in the second-level cache. After that time the cache is cleared. Zero means that the instances are kept
+         * until they are changed or the memory is needed.
+         */
+        public static final String MDS_CACHE_TIME_TO_LIVE = "mds.cache.timeToLive";
+
+        /**
+         * The integer property that specifies how many instances are persisted in a single transaction by
+         * the bulk operations of the data services.
+         */
+        public static final String MDS_BULK_CHUNK_SIZE = "mds.bulk.chunkSize";
+
+        /**
+         * The boolean property that specifies whether the bulk operations of the data services send a CRUD event
+         * for every instance, as the single instance operations do, instead of a single bulk event for each chunk.
+         */
+        public static final String MDS_BULK_INSTANCE_EVENTS = "mds.bulk.instanceEvents";
+
         /**
          * Constant <code>EMPTY_TRASH_JOB</code> presents a name of job scheduled by scheduler
          * module.
@@ -429,6 +485,7 @@ public final class Constants {
         public static final String MODIFICATION_DATE_FIELD_NAME = "modificationDate";
         public static final String ID_DISPLAY_FIELD_NAME = "Id";
         public static final String INSTANCE_VERSION_FIELD_NAME = "instanceVersion";
+        public static final String DELETION_DATE_FIELD_NAME = "deletionDate";
         public static final String CREATOR_DISPLAY_FIELD_NAME = "Created By";
         public static final String CREATION_DATE_DISPLAY_FIELD_NAME = "Creation Date";
         public static final String OWNER_DISPLAY_FIELD_NAME = "Owner";
@@ -552,6 +609,7 @@ public final class Constants {
         public static final String NAMESPACE = "namespace";
         public static final String ENTITY_CLASS = "entity_class";
         public static final String OBJECT_ID = "object_id";
+        public static final String OBJECT_IDS = "object_ids";
 
         private static final String CSV_IMPORT_PREFIX = "csv-import.";
         public static final String CSV_IMPORT_CREATED_IDS = CSV_IMPORT_PREFIX + "created_ids";
@@ -565,6 +623,7 @@ public final class Constants {
 
         // subject
         public static final String BASE_SUBJECT = "mds.crud.";
+        public static final String BULK_SUFFIX = "_BULK";
         public static final String CSV_IMPORT_SUCCESS = "csv-import.success";
         public static final String CSV_IMPORT_FAILURE = "csv-import.failure";
     }
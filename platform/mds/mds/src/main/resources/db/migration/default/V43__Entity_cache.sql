@@ -0,0 +1,2 @@
+-- adds the second-level cache setting of entities
+ALTER TABLE "Tracking" ADD "cacheable" boolean NOT NULL DEFAULT false;
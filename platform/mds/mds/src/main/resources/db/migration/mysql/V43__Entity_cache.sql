@@ -0,0 +1,2 @@
+-- adds the second-level cache setting of entities
+ALTER TABLE Tracking add cacheable bit(1) NOT NULL default 0;
@@ -135,6 +135,21 @@ public class EntityMetadataBuilderTest {
         verifyCommonClassMetadata();
     }
 
+    @Test
+    public void shouldSetCacheableForCacheableEntities() {
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getTableName()).thenReturn(TABLE_NAME);
+        when(jdoMetadata.newPackageMetadata(anyString())).thenReturn(packageMetadata);
+        when(packageMetadata.newClassMetadata(anyString())).thenReturn(classMetadata);
+
+        entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+        verify(classMetadata).setCacheable(false);
+
+        when(entity.isCacheable()).thenReturn(true);
+        entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+        verify(classMetadata).setCacheable(true);
+    }
+
     @Test
     public void shouldAddToAnExistingPackage() {
         when(entity.getName()).thenReturn(ENTITY_NAME);
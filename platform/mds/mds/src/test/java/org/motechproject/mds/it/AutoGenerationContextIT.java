@@ -88,4 +88,35 @@ public class AutoGenerationContextIT extends BaseInstanceIT {
         assertEquals(create.getMillis(), ((DateTime) PropertyUtil.safeGetProperty(instance, CREATION_DATE_FIELD_NAME)).getMillis(), hour);
         assertEquals(update.getMillis(), ((DateTime) PropertyUtil.safeGetProperty(instance, MODIFICATION_DATE_FIELD_NAME)).getMillis(), hour);
     }
+
+    @Test
+    public void shouldCreateUpdateAndDeleteInstancesInBulk() throws Exception {
+        Class<?> definition = getEntityClass();
+        List<Object> instances = new ArrayList<>();
+
+        for (int i = 0; i < 3; ++i) {
+            Object instance = definition.newInstance();
+            PropertyUtil.safeSetProperty(instance, VALUE_FIELD, DUKE + i);
+            instances.add(instance);
+        }
+
+        List<Object> created = getService().createAll(instances);
+
+        assertEquals(3, created.size());
+        assertEquals(3, getService().count());
+
+        for (Object instance : created) {
+            PropertyUtil.safeSetProperty(instance, VALUE_FIELD, "nukem");
+        }
+
+        getService().updateAll(created);
+
+        for (Object instance : getService().retrieveAll()) {
+            assertEquals("nukem", PropertyUtil.safeGetProperty(instance, VALUE_FIELD));
+        }
+
+        getService().deleteAll(created);
+
+        assertEquals(0, getService().count());
+    }
 }
@@ -116,6 +116,23 @@ public class LookupExecutorTest {
         assertEquals(COUNT, result);
     }
 
+    @Test
+    public void shouldReuseCompiledLookupInSubsequentExecutions() {
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap.put(TEXTAREA_FIELD_NAME, TEXTAREA_ARG);
+
+        assertEquals(dataService.find(STR_ARG, INT_ARG, TEXTAREA_ARG), lookupExecutor1.execute(lookupMap));
+        assertEquals(COUNT, lookupExecutor1.executeCount(lookupMap));
+
+        // values which are not of the argument type are still parsed
+        lookupMap.put(INT_FIELD_NAME, String.valueOf(INT_ARG));
+
+        assertEquals(dataService.find(STR_ARG, INT_ARG, TEXTAREA_ARG), lookupExecutor1.execute(lookupMap));
+        assertEquals(COUNT, lookupExecutor1.executeCount(lookupMap));
+    }
+
     @Test
     public void shouldExecuteLookupWithRelatedFields() {
         Map<String, Object> lookupMap = new HashMap<>();
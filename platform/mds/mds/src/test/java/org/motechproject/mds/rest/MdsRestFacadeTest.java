@@ -53,6 +53,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -201,6 +202,21 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldSkipCountAndReturnKeysetCursor() {
+        setUpCrudAccess(false, true, false, false);
+
+        QueryParams queryParams = QueryParams.keyset(0L, 1, Order.Direction.ASC);
+        queryParams.setCountTotal(false);
+
+        RestResponse result = mdsRestFacade.get(queryParams, false);
+
+        verify(dataService, never()).count();
+
+        assertEquals(RestMetadata.TOTAL_COUNT_SKIPPED, result.getMetadata().getTotalCount());
+        assertEquals(recordOne.getId(), result.getMetadata().getNext());
+    }
+
     @Test
     public void shouldAppendMetadataWhenIdParamWasSpecified() {
         setUpCrudAccess(false, true, false, false);
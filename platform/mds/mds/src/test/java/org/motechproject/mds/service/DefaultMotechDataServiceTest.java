@@ -0,0 +1,238 @@
+package org.motechproject.mds.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.config.MdsConfig;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.event.CrudEventBuilder;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.repository.AllEntities;
+import org.motechproject.mds.repository.MotechDataRepository;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.springframework.orm.jdo.JdoTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultMotechDataServiceTest {
+
+    private static final String MODULE = "test";
+    private static final String ENTITY_NAME = "Record";
+    private static final Long SCHEMA_VERSION = 3L;
+
+    @Mock
+    private MotechDataRepository<Record> repository;
+
+    @Mock
+    private AllEntities allEntities;
+
+    @Mock
+    private Entity entity;
+
+    @Mock
+    private HistoryService historyService;
+
+    @Mock
+    private TrashService trashService;
+
+    @Mock
+    private EntityService entityService;
+
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
+    @Mock
+    private JdoTransactionManager transactionManager;
+
+    @Mock
+    private MdsConfig mdsConfig;
+
+    private DefaultMotechDataService<Record> dataService;
+
+    @Before
+    public void setUp() {
+        when(repository.getClassType()).thenReturn(Record.class);
+        when(allEntities.retrieveByClassName(Record.class.getName())).thenReturn(entity);
+        when(allEntities.retrieveById(1L)).thenReturn(entity);
+        when(entity.getId()).thenReturn(1L);
+        when(entity.getEntityVersion()).thenReturn(SCHEMA_VERSION);
+        when(entity.getModule()).thenReturn(MODULE);
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getFields()).thenReturn(new ArrayList<Field>());
+        when(entity.getStringComboboxFields()).thenReturn(new ArrayList<Field>());
+        when(entity.isRecordHistory()).thenReturn(true);
+        when(entity.isAllowCreateEvent()).thenReturn(true);
+        when(entity.isAllowUpdateEvent()).thenReturn(true);
+        when(entity.isAllowDeleteEvent()).thenReturn(true);
+
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_BULK_CHUNK_SIZE, "2");
+        when(mdsConfig.asProperties()).thenReturn(properties);
+
+        when(repository.createAll(anyCollection())).thenAnswer(new ReturnFirstArgument());
+        when(repository.updateAll(anyCollection())).thenAnswer(new ReturnFirstArgument());
+
+        dataService = new DefaultMotechDataService<Record>() { };
+        dataService.setRepository(repository);
+        dataService.setAllEntities(allEntities);
+        dataService.setHistoryService(historyService);
+        dataService.setTrashService(trashService);
+        dataService.setEntityService(entityService);
+        dataService.setOsgiEventProxy(osgiEventProxy);
+        dataService.setTransactionManager(transactionManager);
+        dataService.setMdsConfig(mdsConfig);
+        dataService.initializeSecurityState();
+    }
+
+    @Test
+    public void shouldCreateInstancesInChunksOfConfiguredSize() {
+        List<Record> records = records(1L, 2L, 3L, 4L, 5L);
+
+        List<Record> created = dataService.createAll(records);
+
+        assertEquals(records, created);
+
+        ArgumentCaptor<Collection> chunkCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(repository, times(3)).createAll(chunkCaptor.capture());
+        assertEquals(asList(records.subList(0, 2), records.subList(2, 4), records.subList(4, 5)),
+                chunkCaptor.getAllValues());
+
+        verify(historyService).recordAll(records.subList(0, 2));
+        verify(historyService).recordAll(records.subList(2, 4));
+        verify(historyService).recordAll(records.subList(4, 5));
+        verify(historyService, never()).record(any());
+
+        assertBulkEvents(CrudEventType.CREATE, asList(1L, 2L), asList(3L, 4L), asList(5L));
+    }
+
+    @Test
+    public void shouldNotCreateEmptyChunkWhenSizeIsMultipleOfChunkSize() {
+        List<Record> records = records(1L, 2L, 3L, 4L);
+
+        dataService.updateAll(records);
+
+        verify(repository, times(2)).updateAll(anyCollection());
+        verify(historyService, times(2)).recordAll(anyCollection());
+
+        assertBulkEvents(CrudEventType.UPDATE, asList(1L, 2L), asList(3L, 4L));
+    }
+
+    @Test
+    public void shouldMoveDeletedInstancesToTrashAtOnce() {
+        List<Record> records = records(1L, 2L, 3L);
+        when(trashService.isTrashMode()).thenReturn(true);
+        // the second instance no longer exists
+        when(repository.retrieveAll(anyList(), any(InstanceSecurityRestriction.class)))
+                .thenReturn(records(1L), records(3L));
+
+        dataService.deleteAll(records);
+
+        verify(repository, times(2)).retrieveAll(anyList(), any(InstanceSecurityRestriction.class));
+        verify(repository, never()).retrieve(anyString(), any());
+        verify(trashService).moveAllToTrash(asList(records.get(0)), SCHEMA_VERSION, true);
+        verify(trashService).moveAllToTrash(asList(records.get(2)), SCHEMA_VERSION, true);
+        verify(trashService, never()).moveToTrash(any(), any(Long.class), eq(true));
+        verify(historyService, never()).removeAll(anyCollection());
+
+        assertBulkEvents(CrudEventType.DELETE, asList(1L), asList(3L));
+    }
+
+    @Test
+    public void shouldRemoveHistoryOfDeletedInstancesWhenTrashIsDisabled() {
+        List<Record> records = records(1L, 2L);
+        when(trashService.isTrashMode()).thenReturn(false);
+        when(repository.retrieveAll(anyList(), any(InstanceSecurityRestriction.class))).thenReturn(records(1L, 2L));
+
+        dataService.deleteAll(records);
+
+        ArgumentCaptor<List> propertiesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(repository).retrieveAll(propertiesCaptor.capture(), any(InstanceSecurityRestriction.class));
+        assertEquals(Constants.Util.ID_FIELD_NAME, ((Property) propertiesCaptor.getValue().get(0)).getName());
+
+        verify(historyService).removeAll(records);
+        verify(historyService, never()).remove(any());
+        verify(trashService, never()).moveAllToTrash(anyCollection(), any(Long.class), eq(true));
+
+        assertBulkEvents(CrudEventType.DELETE, asList(1L, 2L));
+    }
+
+    @Test
+    public void shouldSendEventForEveryInstanceWhenConfigured() {
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_BULK_CHUNK_SIZE, "2");
+        properties.setProperty(Constants.Config.MDS_BULK_INSTANCE_EVENTS, "true");
+        when(mdsConfig.asProperties()).thenReturn(properties);
+        dataService.initializeSecurityState();
+
+        dataService.createAll(records(1L, 2L, 3L));
+
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+        String subject = CrudEventBuilder.createSubject(MODULE, null, ENTITY_NAME, CrudEventType.CREATE);
+
+        verify(osgiEventProxy, times(3)).sendEvent(eq(subject), paramsCaptor.capture());
+        verify(osgiEventProxy, times(3)).sendEvent(anyString(), anyMap());
+
+        List<Object> ids = new ArrayList<>();
+        for (Map params : paramsCaptor.getAllValues()) {
+            ids.add(params.get(Constants.MDSEvents.OBJECT_ID));
+        }
+        assertEquals(asList(1L, 2L, 3L), ids);
+    }
+
+    private void assertBulkEvents(CrudEventType action, List<Long>... ids) {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+        String subject = CrudEventBuilder.createBulkSubject(MODULE, null, ENTITY_NAME, action);
+
+        verify(osgiEventProxy, times(ids.length)).sendEvent(eq(subject), paramsCaptor.capture());
+        verify(osgiEventProxy, times(ids.length)).sendEvent(anyString(), anyMap());
+
+        for (int i = 0; i < ids.length; ++i) {
+            assertEquals(ids[i], paramsCaptor.getAllValues().get(i).get(Constants.MDSEvents.OBJECT_IDS));
+        }
+    }
+
+    private List<Record> records(Long... ids) {
+        List<Record> records = new ArrayList<>();
+        for (Long id : ids) {
+            Record record = new Record();
+            record.setId(id);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static class ReturnFirstArgument implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) {
+            return invocation.getArguments()[0];
+        }
+    }
+}
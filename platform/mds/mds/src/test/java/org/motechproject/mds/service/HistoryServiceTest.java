@@ -5,8 +5,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.Tracking;
@@ -25,24 +27,31 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.wiring.BundleWiring;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Properties;
 
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -83,6 +92,15 @@ public class HistoryServiceTest {
     @Captor
     private ArgumentCaptor<String> stringCaptor;
 
+    @Captor
+    private ArgumentCaptor<Collection<Object>> recordsCaptor;
+
+    @Mock
+    private MdsConfig mdsConfig;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private HistoryService historyService;
 
     @Before
@@ -117,49 +135,94 @@ public class HistoryServiceTest {
 
     @Test
     public void shouldCreateNewRecord() throws Exception {
-        Entity entity = mock(Entity.class);
+        mockRecordEntity();
 
-        Field idField = mock(Field.class);
-        doReturn("id").when(idField).getName();
+        Record instance = new Record();
+        historyService.record(instance);
 
-        Type idType = mock(Type.class);
-        doReturn(idType).when(idField).getType();
-        doReturn(Long.class.getName()).when(idType).getTypeClassName();
-        doReturn(Long.class).when(idType).getTypeClass();
+        verify(manager).makePersistent(recordHistoryCaptor.capture());
 
-        Field valueField = mock(Field.class);
-        doReturn("value").when(valueField).getName();
+        Record__History history = recordHistoryCaptor.getValue();
 
-        Type valueType = mock(Type.class);
-        doReturn(valueType).when(valueField).getType();
-        doReturn(String.class.getName()).when(valueType).getTypeClassName();
-        doReturn(String.class).when(valueType).getTypeClass();
+        assertEquals(instance.getId(), history.getRecord__HistoryCurrentVersion());
+        assertEquals(instance.getValue(), history.getValue());
+        assertEquals(instance.getDate(), history.getDate());
+    }
 
-        Field dateField = mock(Field.class);
-        doReturn("date").when(dateField).getName();
+    @Test
+    public void shouldCreateNewRecordsAtOnce() throws Exception {
+        mockRecordEntity();
 
-        Type dateType = mock(Type.class);
-        doReturn(dateType).when(dateField).getType();
-        doReturn(Date.class.getName()).when(dateType).getTypeClassName();
-        doReturn(Date.class).when(dateType).getTypeClass();
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+        historyService.recordAll(Arrays.asList(first, second));
 
-        doReturn(17L).when(entity).getEntityVersion();
-        doReturn(true).when(entity).isRecordHistory();
-        doReturn(Arrays.asList(idField, valueField, dateField)).when(entity).getFields();
+        verify(manager, never()).makePersistent(any());
+        verify(manager).makePersistentAll(recordsCaptor.capture());
 
-        doReturn(null).when(query).execute(anyLong());
-        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+        List<Object> histories = new ArrayList<>(recordsCaptor.getValue());
 
-        Record instance = new Record();
-        historyService.record(instance);
+        assertEquals(2, histories.size());
+        assertEquals(first.getId(), ((Record__History) histories.get(0)).getRecord__HistoryCurrentVersion());
+        assertEquals(second.getId(), ((Record__History) histories.get(1)).getRecord__HistoryCurrentVersion());
+    }
 
-        verify(manager).makePersistent(recordHistoryCaptor.capture());
+    @Test
+    public void shouldRecordAsynchronously() throws Exception {
+        mockRecordEntity();
 
-        Record__History history = recordHistoryCaptor.getValue();
+        HistoryServiceImpl asyncHistoryService = startAsyncHistoryService();
 
-        assertEquals(instance.getId(), history.getRecord__HistoryCurrentVersion());
-        assertEquals(instance.getValue(), history.getValue());
-        assertEquals(instance.getDate(), history.getDate());
+        try {
+            Record instance = new Record();
+            asyncHistoryService.record(instance);
+            assertTrue(asyncHistoryService.flush());
+
+            verify(manager, never()).makePersistent(any());
+            verify(manager).makePersistentAll(recordsCaptor.capture());
+
+            Record__History history = (Record__History) recordsCaptor.getValue().iterator().next();
+
+            assertEquals(instance.getId(), history.getRecord__HistoryCurrentVersion());
+            assertEquals(instance.getValue(), history.getValue());
+        } finally {
+            asyncHistoryService.stopHistoryWriter();
+        }
+    }
+
+    @Test
+    public void shouldRemoveHistoryAfterQueuedRecordsWhenRecordingAsynchronously() throws Exception {
+        mockRecordEntity();
+
+        HistoryServiceImpl asyncHistoryService = startAsyncHistoryService();
+
+        try {
+            Record instance = new Record();
+            asyncHistoryService.record(instance);
+            asyncHistoryService.remove(instance);
+
+            assertTrue(asyncHistoryService.flush());
+
+            InOrder inOrder = inOrder(manager, query);
+            inOrder.verify(manager).makePersistentAll(any(Collection.class));
+            inOrder.verify(query).deletePersistentAll(1L, false);
+        } finally {
+            asyncHistoryService.stopHistoryWriter();
+        }
+    }
+
+    @Test
+    public void shouldNotWaitForQueuedRecordsInsideTransaction() throws Exception {
+        HistoryServiceImpl asyncHistoryService = startAsyncHistoryService();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        try {
+            assertFalse(asyncHistoryService.flush());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            asyncHistoryService.stopHistoryWriter();
+        }
     }
 
     @Test
@@ -189,6 +252,21 @@ public class HistoryServiceTest {
         assertThat(values, hasItem("java.lang.Long param0, java.lang.Boolean param1"));
     }
 
+    @Test
+    public void shouldRemoveHistoryRecordsOfInstancesWithSingleQuery() throws Exception {
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+        historyService.removeAll(Arrays.asList(first, second));
+
+        verify(manager).newQuery(Record__History.class);
+        verify(query).setFilter(stringCaptor.capture());
+        verify(query).deletePersistentAll(1L, 2L, false);
+
+        assertThat(stringCaptor.getAllValues(), hasItem("(record__HistoryCurrentVersion == param0_0 || "
+                + "record__HistoryCurrentVersion == param0_1) && record__HistoryFromTrash == param1"));
+    }
+
     @Test
     public void shouldNotSetTrashFlagIfClassNotFound() throws Exception {
         doReturn(null).when(classLoader).loadClass(anyString());
@@ -218,4 +296,51 @@ public class HistoryServiceTest {
         verify(manager).makePersistentAll(collection);
     }
 
+    private HistoryServiceImpl startAsyncHistoryService() {
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_HISTORY_ASYNC, "true");
+        doReturn(properties).when(mdsConfig).asProperties();
+
+        HistoryServiceImpl asyncHistoryService = (HistoryServiceImpl) historyService;
+        asyncHistoryService.setMdsConfig(mdsConfig);
+        asyncHistoryService.setTransactionManager(transactionManager);
+        asyncHistoryService.startHistoryWriter();
+
+        return asyncHistoryService;
+    }
+
+    private void mockRecordEntity() {
+        Entity entity = mock(Entity.class);
+
+        Field idField = mock(Field.class);
+        doReturn("id").when(idField).getName();
+
+        Type idType = mock(Type.class);
+        doReturn(idType).when(idField).getType();
+        doReturn(Long.class.getName()).when(idType).getTypeClassName();
+        doReturn(Long.class).when(idType).getTypeClass();
+
+        Field valueField = mock(Field.class);
+        doReturn("value").when(valueField).getName();
+
+        Type valueType = mock(Type.class);
+        doReturn(valueType).when(valueField).getType();
+        doReturn(String.class.getName()).when(valueType).getTypeClassName();
+        doReturn(String.class).when(valueType).getTypeClass();
+
+        Field dateField = mock(Field.class);
+        doReturn("date").when(dateField).getName();
+
+        Type dateType = mock(Type.class);
+        doReturn(dateType).when(dateField).getType();
+        doReturn(Date.class.getName()).when(dateType).getTypeClassName();
+        doReturn(Date.class).when(dateType).getTypeClass();
+
+        doReturn(17L).when(entity).getEntityVersion();
+        doReturn(true).when(entity).isRecordHistory();
+        doReturn(Arrays.asList(idField, valueField, dateField)).when(entity).getFields();
+
+        doReturn(null).when(query).execute(anyLong());
+        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+    }
 }
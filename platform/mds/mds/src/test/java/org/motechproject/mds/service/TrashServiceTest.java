@@ -9,6 +9,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.motechproject.mds.config.DeleteMode;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.config.TimeUnit;
 import org.motechproject.mds.domain.Entity;
@@ -18,7 +19,9 @@ import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.impl.history.TrashServiceImpl;
 import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.testutil.records.history.Record__History;
 import org.motechproject.mds.testutil.records.history.Record__Trash;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -29,16 +32,22 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
 import static org.motechproject.testing.utils.TimeFaker.stopFakingTime;
@@ -80,12 +89,18 @@ public class TrashServiceTest {
     @Mock
     private BundleWiring bundleWiring;
 
+    @Mock
+    private MdsConfig mdsConfig;
+
     @Mock
     Entity entity;
 
     @Captor
     private ArgumentCaptor<Record__Trash> trashCaptor;
 
+    @Captor
+    private ArgumentCaptor<Date> deletedBeforeCaptor;
+
     private TrashService trashService;
 
     @Before
@@ -105,6 +120,7 @@ public class TrashServiceTest {
         doReturn(bundle).when(bundleContext).getBundle();
         doReturn(bundleWiring).when(bundle).adapt(BundleWiring.class);
         doReturn(classLoader).when(bundleWiring).getClassLoader();
+        doReturn(true).when(historyService).flush();
 
         ((TrashServiceImpl) trashService).init();
     }
@@ -142,6 +158,41 @@ public class TrashServiceTest {
 
         Record__Trash trash = trashCaptor.getValue();
         assertEquals(instance.getValue(), trash.getValue());
+        assertNotNull(trash.getDeletionDate());
+    }
+
+    @Test
+    public void shouldMoveObjectsToTrashAtOnce() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+
+        Entity entity = mock(Entity.class);
+        Field field = mock(Field.class);
+        Type type = mock(Type.class);
+
+        doReturn(17L).when(entity).getEntityVersion();
+        doReturn(field).when(entity).getField("id");
+        doReturn(field).when(entity).getField("value");
+
+        doReturn(type).when(field).getType();
+        doReturn(false).when(type).isRelationship();
+
+        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+        second.setValue("second");
+        trashService.moveAllToTrash(asList(first, second), 1L, true);
+
+        ArgumentCaptor<List> trashesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(manager).makePersistentAll(trashesCaptor.capture());
+        verify(manager, never()).makePersistent(any());
+        verify(historyService).setTrashFlags(asList(first, second), trashesCaptor.getValue());
+
+        List<Record__Trash> trashes = trashesCaptor.getValue();
+        assertEquals(2, trashes.size());
+        assertEquals("value", trashes.get(0).getValue());
+        assertEquals("second", trashes.get(1).getValue());
     }
 
     @Test
@@ -184,6 +235,82 @@ public class TrashServiceTest {
         assertEquals(captor.getValue(), trash.getValue());
     }
 
+    @Test
+    public void shouldEmptyTrashInChunks() throws Exception {
+        Query historyQuery = mock(Query.class);
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_EMPTY_TRASH_CHUNK_SIZE, "2");
+
+        ((TrashServiceImpl) trashService).setMdsConfig(mdsConfig);
+        doReturn(properties).when(mdsConfig).asProperties();
+
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+        doReturn(Record__History.class).when(classLoader).loadClass(Record__History.class.getName());
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+        doReturn(historyQuery).when(manager).newQuery(Record__History.class);
+
+        doReturn(Record.class.getName()).when(entity).getClassName();
+        doReturn(true).when(entity).isActualEntity();
+        doReturn(true).when(entity).isRecordHistory();
+        doReturn(asList(entity)).when(allEntities).retrieveAll();
+
+        doReturn(asList(1L, 2L)).doReturn(asList(3L)).when(query).execute();
+
+        trashService.emptyTrash();
+
+        verify(historyService).flush();
+        verify(query, times(2)).setRange(0, 2);
+        verify(query, never()).execute(any(Date.class));
+
+        verify(historyQuery).deletePersistentAll(asList(1L, 2L));
+        verify(historyQuery).deletePersistentAll(asList(3L));
+        verify(query).deletePersistentAll(asList(1L, 2L));
+        verify(query).deletePersistentAll(asList(3L));
+    }
+
+    @Test
+    public void shouldNotEmptyTrashUntilHistoryIsWritten() throws Exception {
+        doReturn(false).when(historyService).flush();
+
+        trashService.emptyTrash();
+
+        verify(allEntities, never()).retrieveAll();
+        verify(manager, never()).newQuery(any(Class.class));
+    }
+
+    @Test
+    public void shouldEmptyTrashOnlyFromInstancesOlderThanRetentionPeriod() throws Exception {
+        DateTime now = DateTime.now();
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_EMPTY_TRASH_RETENTION_DAYS, "30");
+
+        ((TrashServiceImpl) trashService).setMdsConfig(mdsConfig);
+        doReturn(properties).when(mdsConfig).asProperties();
+
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+
+        doReturn(Record.class.getName()).when(entity).getClassName();
+        doReturn(true).when(entity).isActualEntity();
+        doReturn(asList(entity)).when(allEntities).retrieveAll();
+
+        doReturn(asList(1L)).when(query).execute(any(Date.class));
+
+        fakeNow(now);
+
+        try {
+            trashService.emptyTrash();
+        } finally {
+            stopFakingTime();
+        }
+
+        verify(query).setFilter("deletionDate < deletedBefore");
+        verify(query).execute(deletedBeforeCaptor.capture());
+        verify(query).deletePersistentAll(asList(1L));
+
+        assertEquals(now.minusDays(30).getMillis(), deletedBeforeCaptor.getValue().getTime());
+    }
+
     @Test
     public void shouldNotScheduleJobIfNotTrashMode() throws Exception {
         doReturn(DeleteMode.DELETE).when(settingsService).getDeleteMode();
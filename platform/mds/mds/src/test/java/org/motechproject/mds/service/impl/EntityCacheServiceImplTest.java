@@ -0,0 +1,168 @@
+package org.motechproject.mds.service.impl;
+
+import org.datanucleus.api.jdo.JDODataStoreCache;
+import org.datanucleus.cache.Level2Cache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.dto.EntityCacheStatisticsDto;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.service.event.Event;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.service.EntityCacheService.EVICT_ENTITY_CACHE;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityCacheServiceImplTest {
+
+    private static final String OID_1 = "oid-1";
+    private static final String OID_2 = "oid-2";
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private JDODataStoreCache dataStoreCache;
+
+    @Mock
+    private Level2Cache level2Cache;
+
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundle;
+
+    @Mock
+    private BundleWiring bundleWiring;
+
+    @Mock
+    private ClassLoader classLoader;
+
+    @InjectMocks
+    private EntityCacheServiceImpl entityCacheService = new EntityCacheServiceImpl();
+
+    @Before
+    public void setUp() {
+        when(persistenceManagerFactory.getPersistenceManager()).thenReturn(persistenceManager);
+        when(persistenceManagerFactory.getDataStoreCache()).thenReturn(dataStoreCache);
+        when(dataStoreCache.getLevel2Cache()).thenReturn(level2Cache);
+        when(persistenceManager.newObjectIdInstance(Record.class, 1L)).thenReturn(OID_1);
+        when(persistenceManager.newObjectIdInstance(Record.class, 2L)).thenReturn(OID_2);
+        when(level2Cache.containsOid(OID_1)).thenReturn(true);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundle.adapt(BundleWiring.class)).thenReturn(bundleWiring);
+        when(bundleWiring.getClassLoader()).thenReturn(classLoader);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        entityCacheService.recordLookup(Record.class, OID_1);
+        entityCacheService.recordLookup(Record.class, OID_1);
+        entityCacheService.recordLookup(Record.class, OID_2);
+
+        List<EntityCacheStatisticsDto> statistics = entityCacheService.getStatistics();
+
+        assertEquals(1, statistics.size());
+        assertEquals(Record.class.getName(), statistics.get(0).getClassName());
+        assertEquals(2, statistics.get(0).getHits());
+        assertEquals(1, statistics.get(0).getMisses());
+
+        entityCacheService.clearStatistics();
+
+        assertTrue(entityCacheService.getStatistics().isEmpty());
+        verify(persistenceManagerFactory, never()).getPersistenceManager();
+    }
+
+    @Test
+    public void shouldEvictInstancesAndBroadcastTheEviction() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        entityCacheService.evict(Record.class, asList(1L, 2L));
+
+        verify(dataStoreCache).evictAll(asList(OID_1, OID_2));
+        verify(osgiEventProxy).broadcastEvent(eq(EVICT_ENTITY_CACHE), paramsCaptor.capture(), eq(true));
+
+        Map<String, Object> params = paramsCaptor.getValue();
+        assertEquals(Record.class.getName(), params.get("class_name"));
+        assertEquals(asList(1L, 2L), params.get("ids"));
+    }
+
+    @Test
+    public void shouldEvictInstancesChangedOnOtherInstance() throws ClassNotFoundException {
+        doReturn(Record.class).when(classLoader).loadClass(Record.class.getName());
+
+        // the class was not used here yet, so it is loaded from the entities bundle
+        entityCacheService.handleEvent(new Event(EVICT_ENTITY_CACHE, evictionParams(Record.class.getName())));
+
+        verify(dataStoreCache).evictAll(asList(OID_2));
+        verify(dataStoreCache, never()).evictAll();
+        verify(osgiEventProxy, never()).broadcastEvent(anyString(), anyMap(), anyBoolean());
+    }
+
+    @Test
+    public void shouldIgnoreEvictionOfUnknownClass() throws ClassNotFoundException {
+        doThrow(new ClassNotFoundException()).when(classLoader).loadClass("org.example.Unknown");
+
+        entityCacheService.handleEvent(new Event(EVICT_ENTITY_CACHE, evictionParams("org.example.Unknown")));
+
+        verify(dataStoreCache, never()).evictAll();
+        verify(dataStoreCache, never()).evictAll(anyCollection());
+    }
+
+    @Test
+    public void shouldIgnoreEvictionFromItself() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        entityCacheService.evictAll(Record.class);
+
+        verify(dataStoreCache).evictAll(false, Record.class);
+        verify(osgiEventProxy).broadcastEvent(eq(EVICT_ENTITY_CACHE), paramsCaptor.capture(), eq(true));
+
+        entityCacheService.handleEvent(new Event(EVICT_ENTITY_CACHE, paramsCaptor.getValue()));
+
+        verify(dataStoreCache).evictAll(false, Record.class);
+        verify(dataStoreCache, never()).evictAll();
+        verify(dataStoreCache, never()).evictAll(anyCollection());
+    }
+
+    private Map<String, Object> evictionParams(String className) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("class_name", className);
+        params.put("ids", asList(2L));
+        params.put("origin", "other-instance");
+        return params;
+    }
+}
@@ -0,0 +1,134 @@
+package org.motechproject.mds.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.service.EntityService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.testutil.FieldTestHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityMetadataCacheTest {
+
+    private static final Long ENTITY_ID = 4L;
+    private static final String CLASS_NAME = "org.motechproject.mds.entity.Patient";
+    private static final String LOOKUP_NAME = "byName";
+
+    @Mock
+    private EntityService entityService;
+
+    @Mock
+    private MotechDataService dataService;
+
+    @Mock
+    private MotechDataService regeneratedDataService;
+
+    private EntityMetadataCache metadataCache;
+
+    private EntityDto entity;
+    private LookupDto lookup;
+    private Map<String, FieldDto> mapping;
+
+    @Before
+    public void setUp() {
+        metadataCache = new EntityMetadataCache();
+        metadataCache.setEntityService(entityService);
+
+        entity = new EntityDto(ENTITY_ID, CLASS_NAME);
+
+        LookupFieldDto lookupField = FieldTestHelper.lookupFieldDto(1L, "name");
+        lookup = new LookupDto(LOOKUP_NAME, true, false, asList(lookupField), false);
+
+        mapping = new HashMap<>();
+        mapping.put("name", FieldTestHelper.fieldDto(1L, "name", String.class.getName(), "Name", null));
+
+        when(entityService.getEntityByClassName(CLASS_NAME)).thenReturn(entity);
+        when(entityService.getEntity(ENTITY_ID)).thenReturn(entity);
+        when(entityService.getLookupByName(ENTITY_ID, LOOKUP_NAME)).thenReturn(lookup);
+        when(entityService.getLookupFieldsMapping(ENTITY_ID, LOOKUP_NAME)).thenReturn(mapping);
+        when(entityService.listEntities()).thenReturn(asList(entity));
+        when(entityService.getEntityLookups(ENTITY_ID)).thenReturn(asList(lookup));
+    }
+
+    @Test
+    public void shouldLoadDefinitionsOnlyOnce() {
+        for (int i = 0; i < 3; ++i) {
+            assertSame(entity, metadataCache.getEntity(CLASS_NAME));
+            assertSame(entity, metadataCache.getEntity(ENTITY_ID));
+            assertSame(lookup, metadataCache.getLookup(ENTITY_ID, LOOKUP_NAME));
+            assertEquals(mapping, metadataCache.getLookupFieldsMapping(ENTITY_ID, LOOKUP_NAME));
+        }
+
+        verify(entityService).getEntityByClassName(CLASS_NAME);
+        verify(entityService, never()).getEntity(ENTITY_ID);
+        verify(entityService).getLookupByName(ENTITY_ID, LOOKUP_NAME);
+        verify(entityService).getLookupFieldsMapping(ENTITY_ID, LOOKUP_NAME);
+    }
+
+    @Test
+    public void shouldLoadDefinitionsAgainAfterInvalidation() {
+        long version = metadataCache.getVersion();
+        metadataCache.getEntity(CLASS_NAME);
+
+        metadataCache.invalidate();
+        assertTrue(metadataCache.getVersion() > version);
+
+        metadataCache.getEntity(CLASS_NAME);
+
+        verify(entityService, times(2)).getEntityByClassName(CLASS_NAME);
+    }
+
+    @Test
+    public void shouldNotCacheMissingEntities() {
+        assertNull(metadataCache.getEntity("org.motechproject.mds.entity.Missing"));
+        assertNull(metadataCache.getEntity("org.motechproject.mds.entity.Missing"));
+
+        verify(entityService, times(2)).getEntityByClassName("org.motechproject.mds.entity.Missing");
+    }
+
+    @Test
+    public void shouldLoadAllEntitiesOnReload() {
+        metadataCache.reload();
+
+        assertSame(entity, metadataCache.getEntity(CLASS_NAME));
+        assertSame(lookup, metadataCache.getLookup(ENTITY_ID, LOOKUP_NAME));
+
+        verify(entityService, never()).getEntityByClassName(CLASS_NAME);
+        verify(entityService, never()).getLookupByName(ENTITY_ID, LOOKUP_NAME);
+    }
+
+    @Test
+    public void shouldKeepLookupExecutorsForDataService() {
+        LookupExecutor executor = metadataCache.getLookupExecutor(dataService, ENTITY_ID, LOOKUP_NAME);
+
+        assertSame(dataService, executor.getDataService());
+        assertSame(executor, metadataCache.getLookupExecutor(dataService, ENTITY_ID, LOOKUP_NAME));
+
+        LookupExecutor regenerated = metadataCache.getLookupExecutor(regeneratedDataService, ENTITY_ID, LOOKUP_NAME);
+
+        assertNotSame(executor, regenerated);
+        assertSame(regeneratedDataService, regenerated.getDataService());
+        assertSame(regenerated, metadataCache.getLookupExecutor(regeneratedDataService, ENTITY_ID, LOOKUP_NAME));
+    }
+}
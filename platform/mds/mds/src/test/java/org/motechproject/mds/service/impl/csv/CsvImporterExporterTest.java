@@ -16,9 +16,11 @@ import org.motechproject.mds.domain.UIDisplayFieldComparator;
 import org.motechproject.mds.dto.CsvImportResults;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.CsvImportCustomizer;
+import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
@@ -32,6 +34,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -40,6 +43,7 @@ import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -132,18 +136,20 @@ public class CsvImporterExporterTest {
 
     @Test
     public void shouldExportAllInstancesAsCsv() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        CsvTestHelper.mockQueryResults(motechDataService, testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer);
 
+        verify(motechDataService, never()).retrieveAll(any(QueryParams.class));
+
         assertEquals(INSTANCE_COUNT, result);
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
     }
 
     @Test
     public void shouldUseExportCustomizer() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        CsvTestHelper.mockQueryResults(motechDataService, testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer, csvExportCustomizer);
@@ -230,6 +236,46 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldImportInChunks() {
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        csvImporterExporter.setImportChunkSize(6);
+
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
+
+        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        verify(motechDataService, times(17)).create(captor.capture());
+        verify(motechDataService, never()).executeQuery(any(QueryExecution.class));
+
+        assertEquals(listFromRangeInclusive(0, 16), results.getNewInstanceIDs());
+        assertTrue(results.getUpdatedInstanceIDs().isEmpty());
+        // rows are numbered from 1, the invalid rows are the 4th, 8th and 12th one
+        assertEquals(new HashSet<>(Arrays.asList(4, 8, 12)), results.getRowErrors().keySet());
+    }
+
+    @Test
+    public void shouldAskSubclassOfDefaultImportCustomizerForEveryRow() {
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        final List<Map<String, String>> rows = new ArrayList<>();
+
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID));
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, new DefaultCsvImportCustomizer() {
+            @Override
+            public Object findExistingInstance(Map<String, String> row, MotechDataService dataService) {
+                rows.add(row);
+                return null;
+            }
+        }, CONTINUE_ON_ERROR);
+
+        verify(motechDataService, never()).executeQuery(any(QueryExecution.class));
+        verify(motechDataService, times(INSTANCE_COUNT)).create(any(Record2.class));
+        assertEquals(INSTANCE_COUNT, rows.size());
+        assertEquals(INSTANCE_COUNT, results.newInstanceCount());
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
@@ -240,9 +286,13 @@ public class CsvImporterExporterTest {
                     return (Record2) invocation.getArguments()[0];
                 }
             });
+            List<Record2> existingInstances = new ArrayList<>();
             for (long i = 0; i < INSTANCE_COUNT; i++) {
-                when(motechDataService.findById(i)).thenReturn(new Record2());
+                Record2 existing = new Record2();
+                existing.setId(i);
+                existingInstances.add(existing);
             }
+            when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(existingInstances);
         } else {
             when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
         }
@@ -251,6 +301,8 @@ public class CsvImporterExporterTest {
 
         ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
         if (idMode == IdMode.INCLUDE_ID) {
+            verify(motechDataService).executeQuery(any(QueryExecution.class));
+            verify(motechDataService, never()).findById(anyLong());
             verify(motechDataService, times(INSTANCE_COUNT)).update(captor.capture());
         } else {
             verify(motechDataService, times(INSTANCE_COUNT)).create(captor.capture());
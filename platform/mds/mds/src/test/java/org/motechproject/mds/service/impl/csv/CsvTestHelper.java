@@ -1,6 +1,8 @@
 package org.motechproject.mds.service.impl.csv;
 
 import org.joda.time.DateTime;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.FieldMetadata;
@@ -9,15 +11,22 @@ import org.motechproject.mds.domain.OneToManyRelationship;
 import org.motechproject.mds.domain.OneToOneRelationship;
 import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.domain.TypeSetting;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.records.Record2;
 import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.motechproject.mds.util.Constants;
 
+import javax.jdo.FetchPlan;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class CsvTestHelper {
@@ -45,6 +54,20 @@ public class CsvTestHelper {
     }
 
 
+    public static void mockQueryResults(MotechDataService dataService, List<?> instances) {
+        final Query query = mock(Query.class);
+        when(query.getFetchPlan()).thenReturn(mock(FetchPlan.class));
+        when(query.getPersistenceManager()).thenReturn(mock(PersistenceManager.class));
+        when(query.execute()).thenReturn(instances);
+
+        when(dataService.executeQuery(any(QueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((QueryExecution) invocation.getArguments()[0]).execute(query, null);
+            }
+        });
+    }
+
     private static Field comboboxField(Entity mockEntity, String name, boolean isList) {
         Field field = new Field(mockEntity, name, name + " Disp", new Type("mds.field.combobox", "desc", List.class));
 
@@ -158,7 +158,7 @@ public class PdfCsvExporterTest {
             instances.add(instance2);
         }
 
-        when(dataService.retrieveAll(null)).thenReturn(instances);
+        CsvTestHelper.mockQueryResults(dataService, instances);
     }
 
     private void writePdfToFile() {
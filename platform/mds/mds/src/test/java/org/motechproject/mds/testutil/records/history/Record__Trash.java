@@ -1,9 +1,12 @@
 package org.motechproject.mds.testutil.records.history;
 
+import java.util.Date;
+
 public class Record__Trash {
 
     private Long id = 3L;
     private String value = "value";
+    private Date deletionDate;
 
     public Long getId() {
         return id;
@@ -20,4 +23,12 @@ public class Record__Trash {
     public void setValue(String value) {
         this.value = value;
     }
-}
\ No newline at end of file
+
+    public Date getDeletionDate() {
+        return deletionDate;
+    }
+
+    public void setDeletionDate(Date deletionDate) {
+        this.deletionDate = deletionDate;
+    }
+}
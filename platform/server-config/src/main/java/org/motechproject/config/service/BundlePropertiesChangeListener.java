@@ -0,0 +1,15 @@
+package org.motechproject.config.service;
+
+/**
+ * Listener notified by the {@link ConfigurationService} when the properties of a bundle change, either on this
+ * MOTECH instance or on another instance of the cluster.
+ */
+public interface BundlePropertiesChangeListener {
+
+    /**
+     * Called after the properties of the given bundle were changed.
+     *
+     * @param bundle the symbolic name of the bundle, or null if the properties of any bundle could have changed
+     */
+    void bundlePropertiesChanged(String bundle);
+}
@@ -22,6 +22,11 @@ import java.util.Properties;
 public interface ConfigurationService {
     String SETTINGS_CACHE_NAME = "MotechSettings";
 
+    /**
+     * The topic of the event broadcast to all MOTECH instances when the properties of a bundle change.
+     */
+    String BUNDLE_PROPERTIES_CHANGED = "org_motechproject_config_bundle_properties_changed";
+
     /**
      * <p>Loads bootstrap config that is used to start up the Motech server.</p>
      * <p>
@@ -353,4 +358,19 @@ public interface ConfigurationService {
      * @param record a record to store
      */
     void addOrUpdateBundleRecord(ModulePropertiesRecord record);
+
+    /**
+     * Registers a listener notified whenever the properties of a bundle change. The listener is notified about
+     * changes made through this service and about changes made on the other MOTECH instances.
+     *
+     * @param listener the listener to register
+     */
+    void addBundlePropertiesChangeListener(BundlePropertiesChangeListener listener);
+
+    /**
+     * Unregisters a listener registered with {@link #addBundlePropertiesChangeListener(BundlePropertiesChangeListener)}.
+     *
+     * @param listener the listener to unregister
+     */
+    void removeBundlePropertiesChangeListener(BundlePropertiesChangeListener listener);
 }
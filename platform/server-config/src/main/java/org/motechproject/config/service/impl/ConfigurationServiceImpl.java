@@ -10,17 +10,22 @@ import org.joda.time.DateTime;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.commons.api.MotechMapUtils;
 import org.motechproject.config.core.MotechConfigurationException;
+import org.motechproject.config.core.constants.ConfigurationConstants;
 import org.motechproject.config.core.domain.BootstrapConfig;
 import org.motechproject.config.core.domain.ConfigLocation;
 import org.motechproject.config.core.domain.ConfigSource;
 import org.motechproject.config.core.service.CoreConfigurationService;
 import org.motechproject.config.domain.ModulePropertiesRecord;
+import org.motechproject.config.service.BundlePropertiesChangeListener;
 import org.motechproject.config.service.BundlePropertiesService;
 import org.motechproject.config.service.ConfigurationService;
 import org.motechproject.server.config.domain.MotechSettings;
 import org.motechproject.server.config.domain.SettingsRecord;
 import org.motechproject.server.config.service.ConfigLoader;
 import org.motechproject.server.config.service.SettingService;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,28 +48,40 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import static org.motechproject.config.core.filters.ConfigFileFilter.isPlatformCoreConfigFile;
 
 /**
- * Default implementation of {@link org.motechproject.config.service.ConfigurationService}.
+ * Default implementation of {@link org.motechproject.config.service.ConfigurationService}. Changes of the bundle
+ * properties are announced to the registered {@link BundlePropertiesChangeListener}s and broadcast to the other
+ * MOTECH instances through the {@link OsgiEventProxy}; events sent by this instance are ignored when they come back.
  */
 @Service("configurationService")
-public class ConfigurationServiceImpl implements ConfigurationService {
+public class ConfigurationServiceImpl implements ConfigurationService, EventHandler {
     private static final String STRING_FORMAT = "%s/%s";
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationServiceImpl.class);
 
+    private static final String ORIGIN_EVENT_PARAM = "origin";
+
+    private final String origin = UUID.randomUUID().toString();
+    private final List<BundlePropertiesChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
     private ConfigLoader configLoader;
     private ConfigSource configSource;
     private ResourceLoader resourceLoader;
     private CoreConfigurationService coreConfigurationService;
     private BundlePropertiesService bundlePropertiesService;
     private SettingService settingService;
+    private OsgiEventProxy osgiEventProxy;
 
     private Properties defaultConfig;
     private Properties configAnnotation;
@@ -340,6 +357,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
             Properties currentProperties = getBundleProperties(bundle, filename, defaultProperties);
             Properties toStore = MotechMapUtils.asProperties(MotechMapUtils.mergeMaps(currentProperties, newProperties));
             checkDifferencesAndSaveFile(bundle, filename, toStore);
+            bundlePropertiesChanged(bundle);
         }
     }
 
@@ -377,6 +395,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
             } catch (IOException e) {
                 throw new MotechConfigurationException("Could not delete configuration file", e);
             }
+            bundlePropertiesChanged(bundle);
         }
     }
 
@@ -563,6 +582,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         } catch (java.nio.file.FileSystemException e) {
             throw new MotechConfigurationException("Cannot add and/or update file monitoring location", e);
         }
+        bundlePropertiesChanged(null);
     }
 
     @Override
@@ -571,6 +591,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         for (ModulePropertiesRecord record : records) {
             bundlePropertiesService.delete(record);
         }
+        bundlePropertiesChanged(bundle);
     }
 
     @Override
@@ -579,6 +600,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         for (ModulePropertiesRecord record : records) {
             bundlePropertiesService.delete(record);
         }
+        bundlePropertiesChanged(bundle);
     }
 
     @Override
@@ -675,26 +697,93 @@ public class ConfigurationServiceImpl implements ConfigurationService {
 
     @Override
     public void addOrUpdateBundleRecord(ModulePropertiesRecord record) {
-        ModulePropertiesRecord rec = getBundlePropertiesRecord(record.getBundle(), record.getFilename());
-        if (rec == null) {
-            bundlePropertiesService.create(record);
-        } else {
-            rec.setProperties(record.getProperties());
-            bundlePropertiesService.update(rec);
-        }
+        saveBundleRecord(record);
+        bundlePropertiesChanged(record.getBundle());
     }
 
     @Override
     public void addOrUpdateBundleRecords(List<ModulePropertiesRecord> records) {
+        Set<String> bundles = new LinkedHashSet<>();
         for (ModulePropertiesRecord rec : records) {
-            addOrUpdateBundleRecord(rec);
+            saveBundleRecord(rec);
+            bundles.add(rec.getBundle());
+        }
+
+        for (String bundle : bundles) {
+            bundlePropertiesChanged(bundle);
         }
     }
 
     @Override
     public void removeBundleRecords(List<ModulePropertiesRecord> records) {
+        Set<String> bundles = new LinkedHashSet<>();
         for (ModulePropertiesRecord rec : records) {
             bundlePropertiesService.delete(rec);
+            bundles.add(rec.getBundle());
+        }
+
+        for (String bundle : bundles) {
+            bundlePropertiesChanged(bundle);
+        }
+    }
+
+    @Override
+    public void addBundlePropertiesChangeListener(BundlePropertiesChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void removeBundlePropertiesChangeListener(BundlePropertiesChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        switch (event.getTopic()) {
+            case BUNDLE_PROPERTIES_CHANGED:
+                if (!origin.equals(event.getProperty(ORIGIN_EVENT_PARAM))) {
+                    notifyChangeListeners((String) event.getProperty(ConfigurationConstants.BUNDLE_SYMBOLIC_NAME));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+    }
+
+    @Autowired(required = false)
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
+    }
+
+    private void saveBundleRecord(ModulePropertiesRecord record) {
+        ModulePropertiesRecord rec = getBundlePropertiesRecord(record.getBundle(), record.getFilename());
+        if (rec == null) {
+            bundlePropertiesService.create(record);
+        } else {
+            rec.setProperties(record.getProperties());
+            bundlePropertiesService.update(rec);
+        }
+    }
+
+    private void bundlePropertiesChanged(String bundle) {
+        notifyChangeListeners(bundle);
+
+        if (osgiEventProxy != null) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(ConfigurationConstants.BUNDLE_SYMBOLIC_NAME, bundle);
+            params.put(ORIGIN_EVENT_PARAM, origin);
+
+            osgiEventProxy.broadcastEvent(BUNDLE_PROPERTIES_CHANGED, params, true);
+        }
+    }
+
+    private void notifyChangeListeners(String bundle) {
+        for (BundlePropertiesChangeListener listener : changeListeners) {
+            try {
+                listener.bundlePropertiesChanged(bundle);
+            } catch (RuntimeException e) {
+                LOGGER.error("Error while notifying about the changed properties of {}", bundle, e);
+            }
         }
     }
 
@@ -3,6 +3,7 @@ package org.motechproject.server.config;
 import org.apache.commons.io.IOUtils;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.config.core.MotechConfigurationException;
+import org.motechproject.config.service.BundlePropertiesChangeListener;
 import org.motechproject.config.service.ConfigurationService;
 import org.motechproject.osgi.web.util.OSGiServiceUtils;
 import org.motechproject.server.config.domain.MotechSettings;
@@ -15,15 +16,24 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SettingsFacade provides an interface to access application configuration present in files or database.
+ * Properties are read from an immutable snapshot, which is loaded from the {@link ConfigurationService} when it is
+ * first needed and dropped whenever the properties of the bundle change, either through this facade or through
+ * the configuration service, on this or on another MOTECH instance.
  */
 public class SettingsFacade {
 
@@ -42,6 +52,18 @@ public class SettingsFacade {
     private Bundle bundle;
     private BundleContext bundleContext;
 
+    private final AtomicReference<PropertiesSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong changes = new AtomicLong();
+
+    private final BundlePropertiesChangeListener changeListener = new BundlePropertiesChangeListener() {
+        @Override
+        public void bundlePropertiesChanged(String bundleSymbolicName) {
+            if (bundleSymbolicName == null || bundleSymbolicName.equals(getBundleSymbolicName())) {
+                invalidateProperties();
+            }
+        }
+    };
+
     public String getBundleSymbolicName() {
         return bundle != null ? bundle.getSymbolicName() : "";
     }
@@ -69,9 +91,18 @@ public class SettingsFacade {
                     " is unable to retrieve ConfigurationService");
         }
 
+        configurationService.addBundlePropertiesChangeListener(changeListener);
+
         registerConfigurationSettings();
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (configurationService != null) {
+            configurationService.removeBundlePropertiesChangeListener(changeListener);
+        }
+    }
+
     public void setConfigFiles(List<Resource> resources) {
         for (Resource configFile : resources) {
             InputStream is = null;
@@ -90,6 +121,7 @@ public class SettingsFacade {
                 IOUtils.closeQuietly(is);
             }
         }
+        invalidateProperties();
         registerAllProperties();
     }
 
@@ -102,14 +134,10 @@ public class SettingsFacade {
 
 
     public String getProperty(String key) {
-        String result = null;
-        String filename = findFilename(key);
+        PropertiesSnapshot current = getSnapshot();
+        String filename = current.findFilename(key);
 
-        if (filename != null) {
-            result = getProperty(key, filename);
-        }
-
-        return result;
+        return filename == null ? null : current.getProperty(filename, key);
     }
 
     /**
@@ -120,12 +148,13 @@ public class SettingsFacade {
      * @return property value as {@code String}
      */
     public String getProperty(String key, String filename) {
-        String result = null;
-        Properties props = getProperties(filename);
-        if (props != null) {
-            result = props.getProperty(key);
+        PropertiesSnapshot current = getSnapshot();
+
+        if (!current.containsFile(filename)) {
+            current = loadUnknownFile(filename);
         }
-        return result;
+
+        return current.getProperty(filename, key);
     }
 
     /**
@@ -135,20 +164,13 @@ public class SettingsFacade {
      * @return properties stored in the file
      */
     public Properties getProperties(String filename) {
-        if (propsRegistered) {
-            try {
-                Properties p = configurationService.getBundleProperties(getBundleSymbolicName(), filename, defaultConfig.get(filename));
-                config.put(filename, p);
-            } catch (IOException e) {
-                throw new MotechException("Can't read settings", e);
-            }
-        }
+        PropertiesSnapshot current = getSnapshot();
 
-        Properties result = config.get(filename);
-        if (result == null) {
-            result = defaultConfig.get(filename);
+        if (!current.containsFile(filename)) {
+            current = loadUnknownFile(filename);
         }
-        return (result == null ? new Properties() : result);
+
+        return current.getProperties(filename);
     }
 
     public void setProperty(String key, String value) {
@@ -172,6 +194,7 @@ public class SettingsFacade {
      */
     public void saveConfigProperties(String filename, Properties properties) {
         config.put(filename, properties);
+        invalidateProperties();
         if (propsRegistered) {
             try {
                 configurationService.addOrUpdateProperties(getBundleSymbolicName(), getBundleVersion(), filename,
@@ -252,11 +275,7 @@ public class SettingsFacade {
      * @return the configuration as {@code Properties}
      */
     public Properties asProperties() {
-        Properties result = new Properties();
-        for (Properties p : config.values()) {
-            result.putAll(p);
-        }
-        return result;
+        return getSnapshot().asProperties();
     }
 
     /**
@@ -294,6 +313,7 @@ public class SettingsFacade {
                 Properties registeredProps = configurationService.getBundleProperties(
                         getBundleSymbolicName(), filename, defaultConfig.get(filename));
                 config.put(filename, registeredProps);
+                invalidateProperties();
             } catch (IOException e) {
                 throw new MotechException("Cant register settings", e);
             }
@@ -380,6 +400,80 @@ public class SettingsFacade {
         return name;
     }
 
+    /**
+     * Drops the snapshot of the properties, so that they are loaded again when they are needed.
+     */
+    protected void invalidateProperties() {
+        changes.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    private PropertiesSnapshot getSnapshot() {
+        PropertiesSnapshot current = snapshot.get();
+        return current == null ? loadSnapshot() : current;
+    }
+
+    private synchronized PropertiesSnapshot loadSnapshot() {
+        PropertiesSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+
+        long version = changes.get();
+
+        Set<String> filenames = new LinkedHashSet<>(config.keySet());
+        filenames.addAll(defaultConfig.keySet());
+
+        if (propsRegistered) {
+            for (String filename : filenames) {
+                Properties registered = readRegisteredProperties(filename);
+                if (registered != null) {
+                    config.put(filename, registered);
+                }
+            }
+        }
+
+        Map<String, Properties> files = new HashMap<>();
+        for (String filename : filenames) {
+            Properties props = config.get(filename);
+            if (props == null) {
+                props = defaultConfig.get(filename);
+            }
+            if (props != null) {
+                files.put(filename, props);
+            }
+        }
+
+        current = new PropertiesSnapshot(files);
+
+        // the properties could have changed while they were being loaded
+        if (changes.get() == version) {
+            snapshot.compareAndSet(null, current);
+        }
+
+        return current;
+    }
+
+    private synchronized PropertiesSnapshot loadUnknownFile(String filename) {
+        if (propsRegistered && !config.containsKey(filename)) {
+            Properties registered = readRegisteredProperties(filename);
+            if (registered != null) {
+                config.put(filename, registered);
+                invalidateProperties();
+            }
+        }
+
+        return getSnapshot();
+    }
+
+    private Properties readRegisteredProperties(String filename) {
+        try {
+            return configurationService.getBundleProperties(getBundleSymbolicName(), filename, defaultConfig.get(filename));
+        } catch (IOException e) {
+            throw new MotechException("Can't read settings", e);
+        }
+    }
+
     private void registerConfigurationSettings() {
         if (!propsRegistered) {
             registerAllProperties();
@@ -421,4 +515,63 @@ public class SettingsFacade {
     public boolean areConfigurationSettingsRegistered() {
         return propsRegistered && rawConfigRegistered;
     }
+
+    /**
+     * Immutable copy of the properties of the bundle, grouped by the files they come from.
+     */
+    private static final class PropertiesSnapshot {
+
+        private final Map<String, Map<String, String>> files;
+        private final Map<String, String> filenamesByKey;
+
+        private PropertiesSnapshot(Map<String, Properties> properties) {
+            Map<String, Map<String, String>> filesMap = new HashMap<>();
+            Map<String, String> filenames = new HashMap<>();
+
+            for (Map.Entry<String, Properties> entry : properties.entrySet()) {
+                Map<String, String> values = new HashMap<>();
+                for (String key : entry.getValue().stringPropertyNames()) {
+                    values.put(key, entry.getValue().getProperty(key));
+
+                    if (!filenames.containsKey(key)) {
+                        filenames.put(key, entry.getKey());
+                    }
+                }
+                filesMap.put(entry.getKey(), Collections.unmodifiableMap(values));
+            }
+
+            this.files = Collections.unmodifiableMap(filesMap);
+            this.filenamesByKey = Collections.unmodifiableMap(filenames);
+        }
+
+        private boolean containsFile(String filename) {
+            return files.containsKey(filename);
+        }
+
+        private String findFilename(String key) {
+            return filenamesByKey.get(key);
+        }
+
+        private String getProperty(String filename, String key) {
+            Map<String, String> values = files.get(filename);
+            return values == null ? null : values.get(key);
+        }
+
+        private Properties getProperties(String filename) {
+            Properties result = new Properties();
+            Map<String, String> values = files.get(filename);
+            if (values != null) {
+                result.putAll(values);
+            }
+            return result;
+        }
+
+        private Properties asProperties() {
+            Properties result = new Properties();
+            for (Map<String, String> values : files.values()) {
+                result.putAll(values);
+            }
+            return result;
+        }
+    }
 }
@@ -6,25 +6,31 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
+import org.motechproject.config.core.constants.ConfigurationConstants;
 import org.motechproject.config.core.domain.BootstrapConfig;
 import org.motechproject.config.core.domain.ConfigLocation;
 import org.motechproject.config.core.domain.ConfigSource;
 import org.motechproject.config.core.domain.SQLDBConfig;
 import org.motechproject.config.core.service.CoreConfigurationService;
 import org.motechproject.config.domain.ModulePropertiesRecord;
+import org.motechproject.config.service.BundlePropertiesChangeListener;
 import org.motechproject.config.service.ConfigurationService;
 import org.motechproject.config.service.BundlePropertiesService;
 import org.motechproject.server.config.domain.SettingsRecord;
 import org.motechproject.server.config.service.ConfigLoader;
 import org.motechproject.server.config.service.SettingService;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.motechproject.testing.utils.FileHelper;
+import org.osgi.service.event.Event;
 import org.springframework.core.io.ResourceLoader;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static junit.framework.Assert.assertEquals;
@@ -33,6 +39,7 @@ import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -59,6 +66,9 @@ public class ConfigurationServiceTest {
     @Mock
     private ResourceLoader resourceLoader;
 
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
     @Captor
     ArgumentCaptor<ModulePropertiesRecord> propertieCaptor;
 
@@ -214,6 +224,38 @@ public class ConfigurationServiceTest {
         verify(bundlePropertiesService).update((ModulePropertiesRecord) any());
     }
 
+    @Test
+    public void shouldNotifyListenersAndOtherInstancesAboutChangedProperties() {
+        BundlePropertiesChangeListener listener = mock(BundlePropertiesChangeListener.class);
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        ((ConfigurationServiceImpl) configurationService).setOsgiEventProxy(osgiEventProxy);
+        configurationService.addBundlePropertiesChangeListener(listener);
+
+        configurationService.addOrUpdate(FileHelper.getResourceFile("config/org.motechproject.motech-module2/raw/somemodule.json"));
+
+        verify(listener).bundlePropertiesChanged("org.motechproject.motech-module2");
+        verify(osgiEventProxy).broadcastEvent(eq(ConfigurationService.BUNDLE_PROPERTIES_CHANGED),
+                paramsCaptor.capture(), eq(true));
+
+        // the event comes back to this instance
+        ((ConfigurationServiceImpl) configurationService).handleEvent(
+                new Event(ConfigurationService.BUNDLE_PROPERTIES_CHANGED, paramsCaptor.getValue()));
+        verify(listener).bundlePropertiesChanged("org.motechproject.motech-module2");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(ConfigurationConstants.BUNDLE_SYMBOLIC_NAME, "org.motechproject.motech-module1");
+        params.put("origin", "other-instance");
+
+        ((ConfigurationServiceImpl) configurationService).handleEvent(
+                new Event(ConfigurationService.BUNDLE_PROPERTIES_CHANGED, params));
+        verify(listener).bundlePropertiesChanged("org.motechproject.motech-module1");
+
+        configurationService.removeBundlePropertiesChangeListener(listener);
+        configurationService.deleteByBundle("org.motechproject.motech-module1");
+        verify(listener).bundlePropertiesChanged("org.motechproject.motech-module1");
+    }
+
     @Test
     public void shouldIndicateThatConfigFilesAreNotRequiredWhenConfigSourceIsUI() throws IOException {
         BootstrapConfig bootstrapConfig = new BootstrapConfig(new SQLDBConfig("jdbc:mysql://localhost:3306/", "com.mysql.jdbc.Driver", null, null), "motech", ConfigSource.UI, null, "tcp://localhost:61616");
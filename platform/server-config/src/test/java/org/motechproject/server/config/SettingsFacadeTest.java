@@ -5,6 +5,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.motechproject.config.core.MotechConfigurationException;
+import org.motechproject.config.service.BundlePropertiesChangeListener;
 import org.motechproject.config.service.ConfigurationService;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -21,6 +22,7 @@ import static junit.framework.Assert.assertEquals;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -87,6 +89,33 @@ public class SettingsFacadeTest {
         assertEquals(LANGUAGE_VALUE, result.get(LANGUAGE_PROP));
     }
 
+    @Test
+    public void shouldReadPropertiesFromSnapshotUntilTheyChange() throws IOException {
+        ArgumentCaptor<BundlePropertiesChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(BundlePropertiesChangeListener.class);
+
+        setUpConfig();
+        verify(configurationService).addBundlePropertiesChangeListener(listenerCaptor.capture());
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(LANGUAGE_VALUE, settingsFacade.getProperty(LANGUAGE_PROP));
+            assertEquals(LANGUAGE_VALUE, settingsFacade.getProperties(FILENAME).getProperty(LANGUAGE_PROP));
+        }
+
+        // once when registering, once when the snapshot is loaded
+        verify(configurationService, times(2)).getBundleProperties(eq(BUNDLE_NAME), eq(FILENAME), any(Properties.class));
+
+        Properties changed = new Properties();
+        changed.put(LANGUAGE_PROP, "pl");
+        when(configurationService.getBundleProperties(eq(BUNDLE_NAME), eq(FILENAME), any(Properties.class))).thenReturn(changed);
+
+        listenerCaptor.getValue().bundlePropertiesChanged("org.motechproject.other-bundle");
+        assertEquals(LANGUAGE_VALUE, settingsFacade.getProperty(LANGUAGE_PROP));
+
+        listenerCaptor.getValue().bundlePropertiesChanged(BUNDLE_NAME);
+        assertEquals("pl", settingsFacade.getProperty(LANGUAGE_PROP));
+        assertEquals("pl", settingsFacade.getProperty(LANGUAGE_PROP, FILENAME));
+    }
 
     @Test(expected = MotechConfigurationException.class)
     public void shouldThrowExceptionsComingFromService() throws IOException {
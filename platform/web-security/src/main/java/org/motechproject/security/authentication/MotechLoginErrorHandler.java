@@ -4,6 +4,7 @@ import org.motechproject.security.config.SettingService;
 import org.motechproject.security.domain.MotechUser;
 import org.motechproject.security.domain.UserStatus;
 import org.motechproject.security.repository.AllMotechUsers;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +33,9 @@ public class MotechLoginErrorHandler extends SimpleUrlAuthenticationFailureHandl
     @Autowired
     private SettingService settingService;
 
+    @Autowired
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     private RedirectStrategy redirectStrategy = new DefaultRedirectStrategy();
 
     private String userBlockedUrl;
@@ -44,13 +48,18 @@ public class MotechLoginErrorHandler extends SimpleUrlAuthenticationFailureHandl
         if (motechUser != null && failureLoginLimit > 0) {
             int failureLoginCounter = motechUser.getFailureLoginCounter();
             failureLoginCounter++;
-            if (failureLoginCounter > failureLoginLimit && motechUser.isActive()) {
+            boolean blocked = failureLoginCounter > failureLoginLimit && motechUser.isActive();
+            if (blocked) {
                 motechUser.setUserStatus(UserStatus.BLOCKED);
                 failureLoginCounter = 0;
                 LOGGER.debug("User {} has been blocked", motechUser.getUserName());
             }
             motechUser.setFailureLoginCounter(failureLoginCounter);
             allMotechUsers.update(motechUser);
+            // after the update, so that a login which loaded the user before it is not cached
+            if (blocked) {
+                verifiedCredentialsCache.invalidate(motechUser.getUserName());
+            }
         }
         if (motechUser != null && !motechUser.isActive()) {
             LOGGER.debug("Redirecting to " + userBlockedUrl);
@@ -12,13 +12,16 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.authentication.dao.AbstractUserDetailsAuthenticationProvider;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 /**
  * Extends Spring's @AbstractUserDetailsAuthenticationProvider to provide implementation for the API retrieve user
- * and additional checks on password.
+ * and additional checks on password. Verified credentials are kept for a short time in the
+ * {@link VerifiedCredentialsCache}, so that repeated authentications with the same credentials don't have to load
+ * the user and check the password hash again.
  */
 @Component
 public class MotechAuthenticationProvider extends AbstractUserDetailsAuthenticationProvider {
@@ -30,13 +33,52 @@ public class MotechAuthenticationProvider extends AbstractUserDetailsAuthenticat
     private AllMotechUsers allMotechUsers;
     private MotechPasswordEncoder passwordEncoder;
     private AuthoritiesService authoritiesService;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
 
     @Autowired
     public MotechAuthenticationProvider(AllMotechUsers allMotechUsers, MotechPasswordEncoder motechPasswordEncoder,
-                                        AuthoritiesService authoritiesService) {
+                                        AuthoritiesService authoritiesService,
+                                        VerifiedCredentialsCache verifiedCredentialsCache) {
         this.allMotechUsers = allMotechUsers;
         this.passwordEncoder = motechPasswordEncoder;
         this.authoritiesService = authoritiesService;
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
+
+    /**
+     * Authenticates the user with the cached result of a recent verification of the same credentials, or
+     * verifies them and caches the result if there is none.
+     *
+     * @param authentication data used for authentication
+     * @return the successful authentication
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken) || !(credentials instanceof String)
+                || StringUtils.isEmpty((String) credentials)) {
+            return super.authenticate(authentication);
+        }
+
+        String password = (String) credentials;
+        VerifiedCredentialsCache.VerifiedUser verifiedUser = verifiedCredentialsCache.get(username, password);
+
+        if (verifiedUser != null) {
+            ((UsernamePasswordAuthenticationToken) authentication).setDetails(verifiedUser.getUserProfile());
+            return createSuccessAuthentication(verifiedUser.getUserDetails(), authentication, verifiedUser.getUserDetails());
+        }
+
+        long cacheVersion = verifiedCredentialsCache.getVersion();
+        Authentication result = super.authenticate(authentication);
+
+        if (result.getPrincipal() instanceof UserDetails && result.getDetails() instanceof MotechUserProfile) {
+            verifiedCredentialsCache.put(username, password, (UserDetails) result.getPrincipal(),
+                    (MotechUserProfile) result.getDetails(), cacheVersion);
+        }
+
+        return result;
     }
 
     /**
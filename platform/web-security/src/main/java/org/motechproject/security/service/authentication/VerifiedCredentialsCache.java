@@ -0,0 +1,252 @@
+package org.motechproject.security.service.authentication;
+
+import org.motechproject.security.domain.MotechUserProfile;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the users whose credentials were recently verified, so that clients sending the same credentials with every
+ * request, like the ones using basic authentication, don't have to be loaded and checked against the BCrypt hash of
+ * their password every time. Only a keyed digest of the password is kept, and entries expire after a short time.
+ * The cache holds a limited number of users, evicting the least recently authenticated ones. Entries of a user must
+ * be invalidated whenever the password, status or roles of the user change, and all the entries whenever roles or
+ * permissions change. Invalidations are broadcast to the other MOTECH instances through the {@link OsgiEventProxy};
+ * events sent by this instance are ignored when they come back.
+ */
+@Component
+public class VerifiedCredentialsCache implements EventHandler {
+
+    /**
+     * The subject of the event, which invalidates the cached credentials on all MOTECH instances.
+     */
+    public static final String INVALIDATE_CREDENTIALS = "org_motechproject_security_invalidate_credentials";
+
+    private static final String USERNAME_EVENT_PARAM = "username";
+    private static final String ORIGIN_EVENT_PARAM = "origin";
+
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+    private static final int SECRET_LENGTH = 32;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60000;
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final byte[] secret = new byte[SECRET_LENGTH];
+    private final long timeToLiveMillis;
+    private final Map<String, Entry> entries;
+    private final AtomicLong version = new AtomicLong();
+    private final String origin = UUID.randomUUID().toString();
+
+    private OsgiEventProxy osgiEventProxy;
+
+    public VerifiedCredentialsCache() {
+        this(DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public VerifiedCredentialsCache(long timeToLiveMillis, final int maxEntries) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        new SecureRandom().nextBytes(secret);
+    }
+
+    /**
+     * Returns the version of the cache, which changes with every invalidation. It should be read before the user is
+     * loaded, and passed to {@link #put(String, String, UserDetails, MotechUserProfile, long)} once the credentials
+     * are verified, so that a user loaded before a change is not cached after it.
+     *
+     * @return the current version of the cache
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the user for the given credentials, if they were verified recently.
+     *
+     * @param username the name of the user
+     * @param password the password sent by the user
+     * @return the verified user, or null if the credentials are not in the cache
+     */
+    public VerifiedUser get(String username, String password) {
+        Entry entry = entries.get(username);
+
+        if (entry == null) {
+            return null;
+        } else if (entry.isExpired()) {
+            entries.remove(username);
+            return null;
+        }
+
+        return MessageDigest.isEqual(entry.passwordDigest, digest(password))
+                ? new VerifiedUser(copy(entry.userDetails), entry.userProfile)
+                : null;
+    }
+
+    /**
+     * Caches verified credentials, unless the cache was invalidated since the given version was read.
+     *
+     * @param username the name of the user
+     * @param password the verified password
+     * @param userDetails the details of the authenticated user
+     * @param userProfile the profile of the authenticated user
+     * @param loadedAtVersion the version of the cache read before the user was loaded
+     */
+    public void put(String username, String password, UserDetails userDetails, MotechUserProfile userProfile,
+                    long loadedAtVersion) {
+        Entry entry = new Entry(digest(password), copy(userDetails), userProfile,
+                System.currentTimeMillis() + timeToLiveMillis);
+
+        synchronized (entries) {
+            if (version.get() == loadedAtVersion) {
+                entries.put(username, entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached credentials of the given user, on this and all the other MOTECH instances.
+     *
+     * @param username the name of the user
+     */
+    public void invalidate(String username) {
+        invalidateLocally(username);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(USERNAME_EVENT_PARAM, username);
+        broadcast(params);
+    }
+
+    /**
+     * Removes the cached credentials of all users, on this and all the other MOTECH instances.
+     */
+    public void invalidateAll() {
+        invalidateAllLocally();
+        broadcast(new HashMap<String, Object>());
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        switch (event.getTopic()) {
+            case INVALIDATE_CREDENTIALS:
+                if (!origin.equals(event.getProperty(ORIGIN_EVENT_PARAM))) {
+                    String username = (String) event.getProperty(USERNAME_EVENT_PARAM);
+
+                    if (username == null) {
+                        invalidateAllLocally();
+                    } else {
+                        invalidateLocally(username);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+    }
+
+    @Autowired(required = false)
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
+    }
+
+    private void invalidateLocally(String username) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(username);
+        }
+    }
+
+    private void invalidateAllLocally() {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private void broadcast(Map<String, Object> params) {
+        if (osgiEventProxy != null) {
+            params.put(ORIGIN_EVENT_PARAM, origin);
+            osgiEventProxy.broadcastEvent(INVALIDATE_CREDENTIALS, params, true);
+        }
+    }
+
+    private byte[] digest(String password) {
+        try {
+            Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, DIGEST_ALGORITHM));
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to digest the credentials", e);
+        }
+    }
+
+    // the authenticated principal gets its password erased, so every authentication receives its own copy
+    private UserDetails copy(UserDetails userDetails) {
+        return new User(userDetails.getUsername(), userDetails.getPassword() == null ? "" : userDetails.getPassword(),
+                userDetails.isEnabled(), userDetails.isAccountNonExpired(), userDetails.isCredentialsNonExpired(),
+                userDetails.isAccountNonLocked(), userDetails.getAuthorities());
+    }
+
+    /**
+     * A user whose credentials were verified.
+     */
+    public static final class VerifiedUser {
+
+        private final UserDetails userDetails;
+        private final MotechUserProfile userProfile;
+
+        private VerifiedUser(UserDetails userDetails, MotechUserProfile userProfile) {
+            this.userDetails = userDetails;
+            this.userProfile = userProfile;
+        }
+
+        public UserDetails getUserDetails() {
+            return userDetails;
+        }
+
+        public MotechUserProfile getUserProfile() {
+            return userProfile;
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] passwordDigest;
+        private final UserDetails userDetails;
+        private final MotechUserProfile userProfile;
+        private final long expiresAt;
+
+        private Entry(byte[] passwordDigest, UserDetails userDetails, MotechUserProfile userProfile, long expiresAt) {
+            this.passwordDigest = passwordDigest;
+            this.userDetails = userDetails;
+            this.userProfile = userProfile;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.motechproject.security.repository.AllMotechPermissions;
 import org.motechproject.security.repository.AllMotechRoles;
 import org.motechproject.security.service.MotechPermissionService;
 import org.motechproject.security.service.UserContextService;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,7 @@ public class MotechPermissionServiceImpl implements MotechPermissionService {
     private AllMotechPermissions allMotechPermissions;
     private UserContextService userContextsService;
     private AllMotechRoles allMotechRoles;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
 
     @Override
     public List<PermissionDto> getPermissions() {
@@ -56,6 +58,7 @@ public class MotechPermissionServiceImpl implements MotechPermissionService {
         if (permission != null) {
             allMotechPermissions.delete(permission);
             removePermissionFromRoles(permissionName);
+            verifiedCredentialsCache.invalidateAll();
             userContextsService.refreshAllUsersContextIfActive();
         }
         LOGGER.info("Deleted permission: {}", permissionName);
@@ -87,4 +90,9 @@ public class MotechPermissionServiceImpl implements MotechPermissionService {
     public void setAllMotechRoles(AllMotechRoles allMotechRoles) {
         this.allMotechRoles = allMotechRoles;
     }
+
+    @Autowired
+    public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
 }
@@ -9,6 +9,7 @@ import org.motechproject.security.repository.AllMotechRoles;
 import org.motechproject.security.repository.AllMotechUsers;
 import org.motechproject.security.service.MotechRoleService;
 import org.motechproject.security.service.UserContextService;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,7 @@ public class MotechRoleServiceImpl implements MotechRoleService {
     private AllMotechRoles allMotechRoles;
     private AllMotechUsers allMotechUsers;
     private UserContextService userContextsService;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
 
     @Override
     public List<RoleDto> getRoles() {
@@ -66,6 +68,7 @@ public class MotechRoleServiceImpl implements MotechRoleService {
 
         allMotechRoles.update(motechRole);
 
+        verifiedCredentialsCache.invalidateAll();
         userContextsService.refreshAllUsersContextIfActive();
 
         LOGGER.info("Updated role: {}", role.getRoleName());
@@ -81,6 +84,7 @@ public class MotechRoleServiceImpl implements MotechRoleService {
                 throw new RoleHasUserException("Role cannot be deleted because a user has the role.");
             }
             allMotechRoles.remove(motechRole);
+            verifiedCredentialsCache.invalidateAll();
             userContextsService.refreshAllUsersContextIfActive();
             LOGGER.info("Deleted role: {}", role);
         } else {
@@ -95,6 +99,7 @@ public class MotechRoleServiceImpl implements MotechRoleService {
         MotechRole motechRole = new MotechRole(role.getRoleName(), role.getPermissionNames(),
                 role.isDeletable());
         allMotechRoles.add(motechRole);
+        verifiedCredentialsCache.invalidateAll();
         userContextsService.refreshAllUsersContextIfActive();
         LOGGER.info("Created role: {}", role.getRoleName());
     }
@@ -113,4 +118,9 @@ public class MotechRoleServiceImpl implements MotechRoleService {
     public void setUserContextsService(UserContextService userContextsService) {
         this.userContextsService = userContextsService;
     }
+
+    @Autowired
+    public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
 }
@@ -17,6 +17,7 @@ import org.motechproject.security.repository.AllMotechUsers;
 import org.motechproject.security.service.MotechUserService;
 import org.motechproject.security.service.PasswordRecoveryService;
 import org.motechproject.security.service.UserContextService;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.motechproject.security.validator.PasswordValidator;
 import org.motechproject.server.config.SettingsFacade;
 import org.slf4j.Logger;
@@ -51,6 +52,7 @@ public class MotechUserServiceImpl implements MotechUserService {
     private SettingService settingService;
     private SettingsFacade settingsFacade;
     private PasswordRecoveryService passwordRecoveryService;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
 
     @Override
     public void register(String username, String password, String email, String externalId, List<String> roles,
@@ -74,6 +76,7 @@ public class MotechUserServiceImpl implements MotechUserService {
                 openId, locale);
         user.setUserStatus(userStatus);
         allMotechUsers.add(user);
+        verifiedCredentialsCache.invalidate(username);
         LOGGER.info("Registered new user: {}", username);
     }
 
@@ -97,6 +100,7 @@ public class MotechUserServiceImpl implements MotechUserService {
         if (motechUser != null) {
             motechUser.setUserStatus(UserStatus.ACTIVE);
             allMotechUsers.update(motechUser);
+            verifiedCredentialsCache.invalidate(username);
         }
         LOGGER.info("Activated user: {}", username);
     }
@@ -132,6 +136,7 @@ public class MotechUserServiceImpl implements MotechUserService {
         if (motechUser != null && passwordEncoder.isPasswordValid(motechUser.getPassword(), oldPassword)) {
             motechUser.setPassword(passwordEncoder.encodePassword(newPassword));
             allMotechUsers.update(motechUser);
+            verifiedCredentialsCache.invalidate(userName);
             return new MotechUserProfile(motechUser);
         }
         return null;
@@ -204,6 +209,7 @@ public class MotechUserServiceImpl implements MotechUserService {
         motechUser.setRoles(user.getRoles());
         motechUser.setLocale(user.getLocale());
         allMotechUsers.update(motechUser);
+        verifiedCredentialsCache.invalidate(motechUser.getUserName());
         userContextsService.refreshUserContextIfActive(motechUser.getUserName());
     }
 
@@ -221,6 +227,7 @@ public class MotechUserServiceImpl implements MotechUserService {
             motechUser.setRoles(user.getRoles());
             motechUser.setLocale(user.getLocale());
             allMotechUsers.update(motechUser);
+            verifiedCredentialsCache.invalidate(motechUser.getUserName());
             userContextsService.refreshUserContextIfActive(motechUser.getUserName());
         } else {
             throw new IllegalArgumentException("User password cannot be empty. If you wish to omit changing user password, " +
@@ -234,6 +241,7 @@ public class MotechUserServiceImpl implements MotechUserService {
 
         MotechUser motechUser = allMotechUsers.findByUserName(user.getUserName());
         allMotechUsers.remove(motechUser);
+        verifiedCredentialsCache.invalidate(user.getUserName());
 
         userContextsService.logoutUser(user.getUserName());
 
@@ -321,5 +329,9 @@ public class MotechUserServiceImpl implements MotechUserService {
     public void setPasswordRecoveryService(PasswordRecoveryService passwordRecoveryService) {
         this.passwordRecoveryService = passwordRecoveryService;
     }
-}
 
+    @Autowired
+    public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
+}
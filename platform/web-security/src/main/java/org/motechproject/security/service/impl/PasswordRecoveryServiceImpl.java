@@ -13,6 +13,7 @@ import org.motechproject.security.ex.UserNotFoundException;
 import org.motechproject.security.repository.AllMotechUsers;
 import org.motechproject.security.repository.AllPasswordRecoveries;
 import org.motechproject.security.service.PasswordRecoveryService;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,6 +50,7 @@ public class PasswordRecoveryServiceImpl implements PasswordRecoveryService {
     private EmailSender emailSender;
     private MotechPasswordEncoder passwordEncoder;
     private OpenIDAuthenticationProvider authenticationManager;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
 
     private RedirectStrategy redirectStrategy = new DefaultRedirectStrategy();
 
@@ -197,6 +199,7 @@ public class PasswordRecoveryServiceImpl implements PasswordRecoveryService {
         user.setPassword(encodedPassword);
 
         allMotechUsers.update(user);
+        verifiedCredentialsCache.invalidate(user.getUserName());
         allPasswordRecoveries.remove(recovery);
     }
 
@@ -228,4 +231,9 @@ public class PasswordRecoveryServiceImpl implements PasswordRecoveryService {
     public void setAuthenticationManager(OpenIDAuthenticationProvider authenticationManager) {
         this.authenticationManager = authenticationManager;
     }
+
+    @Autowired
+    public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
 }
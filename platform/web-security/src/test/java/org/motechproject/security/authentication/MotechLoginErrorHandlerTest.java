@@ -3,12 +3,14 @@ package org.motechproject.security.authentication;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.motechproject.security.config.SettingService;
 import org.motechproject.security.domain.MotechUser;
 import org.motechproject.security.domain.UserStatus;
 import org.motechproject.security.repository.AllMotechUsers;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -21,6 +23,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -35,6 +38,9 @@ public class MotechLoginErrorHandlerTest {
     @Mock
     private SettingService settingService;
 
+    @Mock
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     @InjectMocks
     MotechLoginErrorHandler motechLoginErrorHandler = new MotechLoginErrorHandler();
 
@@ -80,7 +86,10 @@ public class MotechLoginErrorHandlerTest {
         motechLoginErrorHandler.setUserBlockedUrl("/module/server/login?blocked=true");
         motechLoginErrorHandler.onAuthenticationFailure(request, response, exception);
 
-        verify(allMotechUsers).update(userCaptor.capture());
+        InOrder inOrder = inOrder(allMotechUsers, verifiedCredentialsCache);
+        inOrder.verify(allMotechUsers).update(userCaptor.capture());
+        inOrder.verify(verifiedCredentialsCache).invalidate("testUser");
+
         MotechUser capturedUser = userCaptor.getValue();
         assertEquals((Integer)0, capturedUser.getFailureLoginCounter());
         assertEquals(UserStatus.BLOCKED, capturedUser.getUserStatus());
@@ -10,6 +10,7 @@ import org.motechproject.security.domain.MotechPermission;
 import org.motechproject.security.model.PermissionDto;
 import org.motechproject.security.repository.AllMotechPermissions;
 import org.motechproject.security.repository.AllMotechRoles;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.motechproject.security.service.impl.MotechPermissionServiceImpl;
 
 import java.util.List;
@@ -37,6 +38,9 @@ public class MotechPermissionServiceTest {
     @Mock
     private UserContextService userContextsService;
 
+    @Mock
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -9,6 +9,7 @@ import org.motechproject.security.domain.MotechRole;
 import org.motechproject.security.model.RoleDto;
 import org.motechproject.security.repository.AllMotechRoles;
 import org.motechproject.security.repository.AllMotechUsers;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.motechproject.security.service.impl.MotechRoleServiceImpl;
 
 import static java.util.Arrays.asList;
@@ -31,6 +32,9 @@ public class MotechRoleServiceImplTest {
     @Mock
     private UserContextService userContextsService;
 
+    @Mock
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     @Before
     public void before() {
         motechRoleService = new MotechRoleServiceImpl();
@@ -43,6 +47,7 @@ public class MotechRoleServiceImplTest {
 
         motechRoleService.createRole(role);
 
+        verify(verifiedCredentialsCache).invalidateAll();
         verify(userContextsService).refreshAllUsersContextIfActive();
     }
 
@@ -55,6 +60,7 @@ public class MotechRoleServiceImplTest {
 
         motechRoleService.updateRole(role);
 
+        verify(verifiedCredentialsCache).invalidateAll();
         verify(userContextsService).refreshAllUsersContextIfActive();
     }
 
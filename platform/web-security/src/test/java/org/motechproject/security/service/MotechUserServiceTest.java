@@ -11,6 +11,7 @@ import org.motechproject.security.domain.MotechUser;
 import org.motechproject.security.ex.PasswordValidatorException;
 import org.motechproject.security.model.UserDto;
 import org.motechproject.security.repository.AllMotechUsers;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.motechproject.security.service.impl.MotechUserServiceImpl;
 import org.motechproject.security.validator.PasswordValidator;
 
@@ -35,6 +36,9 @@ public class MotechUserServiceTest {
     @Mock
     private AllMotechUsers allMotechUsers;
 
+    @Mock
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     @Mock
     private MotechUser user;
 
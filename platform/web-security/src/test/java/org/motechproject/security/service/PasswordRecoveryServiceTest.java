@@ -21,6 +21,7 @@ import org.motechproject.security.ex.NonAdminUserException;
 import org.motechproject.security.ex.UserNotFoundException;
 import org.motechproject.security.repository.AllMotechUsers;
 import org.motechproject.security.repository.AllPasswordRecoveries;
+import org.motechproject.security.service.authentication.VerifiedCredentialsCache;
 import org.motechproject.security.service.impl.PasswordRecoveryServiceImpl;
 import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.server.config.domain.LoginMode;
@@ -72,6 +73,9 @@ public class PasswordRecoveryServiceTest {
     @Mock
     private AllPasswordRecoveries allPasswordRecoveries;
 
+    @Mock
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     @Mock
     private EventRelay eventRelay;
 
@@ -231,12 +235,14 @@ public class PasswordRecoveryServiceTest {
         when(recovery.getExpirationDate()).thenReturn(now.plusMinutes(30));
         when(recovery.getUsername()).thenReturn(USERNAME);
         when(allMotechUsers.findByUserName(USERNAME)).thenReturn(user);
+        when(user.getUserName()).thenReturn(USERNAME);
         when(passwordEncoder.encodePassword(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
         recoveryService.resetPassword(TOKEN, PASSWORD, PASSWORD);
 
         verify(user).setPassword(ENCODED_PASSWORD);
         verify(allMotechUsers).update(user);
+        verify(verifiedCredentialsCache).invalidate(USERNAME);
         verify(allPasswordRecoveries).remove(recovery);
     }
 
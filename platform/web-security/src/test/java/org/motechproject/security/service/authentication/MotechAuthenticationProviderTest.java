@@ -11,8 +11,10 @@ import org.motechproject.security.domain.UserStatus;
 import org.motechproject.security.repository.AllMotechRoles;
 import org.motechproject.security.repository.AllMotechUsers;
 import org.motechproject.security.service.AuthoritiesService;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -20,7 +22,10 @@ import java.util.Locale;
 
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -36,12 +41,16 @@ public class MotechAuthenticationProviderTest {
     @Mock
     private AuthoritiesService authoritiesService;
 
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
     private MotechAuthenticationProvider authenticationProvider;
 
     @Before
     public void setup() {
         initMocks(this);
-        authenticationProvider = new MotechAuthenticationProvider(allMotechUsers, passwordEncoder, authoritiesService);
+        verifiedCredentialsCache = new VerifiedCredentialsCache();
+        authenticationProvider = new MotechAuthenticationProvider(allMotechUsers, passwordEncoder, authoritiesService,
+                verifiedCredentialsCache);
     }
 
     @Test
@@ -107,4 +116,51 @@ public class MotechAuthenticationProviderTest {
 
         authenticationProvider.additionalAuthenticationChecks(user, authentication);
     }
+
+    @Test
+    public void shouldNotVerifyRecentlyVerifiedCredentialsAgain() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(allMotechUsers.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+
+        Authentication first = authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+        Authentication second = authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        assertEquals("bob", ((UserDetails) second.getPrincipal()).getUsername());
+        assertEquals("bob", ((MotechUserProfile) second.getDetails()).getUserName());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+        verify(allMotechUsers, times(1)).findByUserName("bob");
+        verify(passwordEncoder, times(1)).isPasswordValid("encodedPassword", "password");
+    }
+
+    @Test
+    public void shouldVerifyCredentialsAgainAfterUserChanged() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(allMotechUsers.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+        verifiedCredentialsCache.invalidate("bob");
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        verify(allMotechUsers, times(2)).findByUserName("bob");
+        verify(passwordEncoder, times(2)).isPasswordValid("encodedPassword", "password");
+    }
+
+    @Test
+    public void shouldNotAuthenticateOtherPasswordOfCachedUser() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(allMotechUsers.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "wrong")).thenReturn(false);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        try {
+            authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "wrong"));
+            fail("Authenticated with a wrong password");
+        } catch (BadCredentialsException e) {
+            verify(passwordEncoder).isPasswordValid("encodedPassword", "wrong");
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package org.motechproject.security.service.authentication;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.security.domain.MotechUserProfile;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.service.event.Event;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class VerifiedCredentialsCacheTest {
+
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
+    @Mock
+    private MotechUserProfile userProfile;
+
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        verifiedCredentialsCache = new VerifiedCredentialsCache();
+        verifiedCredentialsCache.setOsgiEventProxy(osgiEventProxy);
+    }
+
+    @Test
+    public void shouldBroadcastInvalidation() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        put("bob");
+        verifiedCredentialsCache.invalidate("bob");
+
+        assertNull(verifiedCredentialsCache.get("bob", "password"));
+        verify(osgiEventProxy).broadcastEvent(eq(VerifiedCredentialsCache.INVALIDATE_CREDENTIALS),
+                paramsCaptor.capture(), eq(true));
+        assertEquals("bob", paramsCaptor.getValue().get("username"));
+        assertNotNull(paramsCaptor.getValue().get("origin"));
+    }
+
+    @Test
+    public void shouldEvictEntryOnRemoteInvalidation() {
+        put("bob");
+        put("alice");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("username", "bob");
+        params.put("origin", "other-instance");
+
+        verifiedCredentialsCache.handleEvent(new Event(VerifiedCredentialsCache.INVALIDATE_CREDENTIALS, params));
+
+        assertNull(verifiedCredentialsCache.get("bob", "password"));
+        assertNotNull(verifiedCredentialsCache.get("alice", "password"));
+    }
+
+    @Test
+    public void shouldEvictAllEntriesOnRemoteInvalidationWithoutUsername() {
+        put("bob");
+        put("alice");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("origin", "other-instance");
+
+        verifiedCredentialsCache.handleEvent(new Event(VerifiedCredentialsCache.INVALIDATE_CREDENTIALS, params));
+
+        assertNull(verifiedCredentialsCache.get("bob", "password"));
+        assertNull(verifiedCredentialsCache.get("alice", "password"));
+    }
+
+    @Test
+    public void shouldIgnoreOwnInvalidationEvents() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        verifiedCredentialsCache.invalidate("bob");
+        verify(osgiEventProxy).broadcastEvent(eq(VerifiedCredentialsCache.INVALIDATE_CREDENTIALS),
+                paramsCaptor.capture(), eq(true));
+
+        // the event comes back to this instance after the user was cached again
+        put("bob");
+        verifiedCredentialsCache.handleEvent(new Event(VerifiedCredentialsCache.INVALIDATE_CREDENTIALS,
+                paramsCaptor.getValue()));
+
+        assertNotNull(verifiedCredentialsCache.get("bob", "password"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectEventsWithUnknownTopic() {
+        verifiedCredentialsCache.handleEvent(new Event("some_topic", new HashMap<String, Object>()));
+    }
+
+    private void put(String username) {
+        User user = new User(username, "encodedPassword",
+                Collections.singletonList(new SimpleGrantedAuthority("some_permission")));
+        verifiedCredentialsCache.put(username, "password", user, userProfile, verifiedCredentialsCache.getVersion());
+    }
+}